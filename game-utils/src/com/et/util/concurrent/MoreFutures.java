@@ -0,0 +1,39 @@
+package com.et.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Joins the tasks that the mesh passes fan out over an executor.
+ */
+public final class MoreFutures {
+
+  private MoreFutures() {}
+
+  /**
+   * Waits for every future and returns their results in order. If one fails, the rest are
+   * cancelled and its cause is rethrown, wrapped in a RuntimeException if it is checked.
+   *
+   * The calling thread blocks until the futures are done, so it must not be a task running on a
+   * bounded executor that the futures are also waiting for a thread of.
+   */
+  public static <T> List<T> getAll(List<Future<T>> futures) {
+    List<T> results = Lists.newArrayListWithCapacity(futures.size());
+    try {
+      for (Future<T> future : futures) {
+        results.add(Uninterruptibles.getUninterruptibly(future));
+      }
+    } catch (ExecutionException e) {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+      throw Throwables.propagate(e.getCause());
+    }
+    return results;
+  }
+}
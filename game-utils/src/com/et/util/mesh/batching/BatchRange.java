@@ -0,0 +1,77 @@
+package com.et.util.mesh.batching;
+
+import com.google.common.base.Objects;
+
+/**
+ * The indices one batched instance contributes to a {@link MeshBatch} under one material. Ranges
+ * of instances that are culled can be left out of the draw, and the ranges of visible instances
+ * that follow each other can be drawn with a single call.
+ */
+public class BatchRange {
+
+  private final int instance;
+  private final String materialName;
+  private final int firstIndex;
+  private final int indexCount;
+
+  public BatchRange(int instance, String materialName, int firstIndex, int indexCount) {
+    this.instance = instance;
+    this.materialName = materialName;
+    this.firstIndex = firstIndex;
+    this.indexCount = indexCount;
+  }
+
+  /**
+   * Position of the instance in the list of meshes given to the {@link StaticMeshBatcher}.
+   */
+  public int getInstance() {
+    return instance;
+  }
+
+  /**
+   * The material of the range, or null if the instance's faces had none.
+   */
+  public String getMaterialName() {
+    return materialName;
+  }
+
+  public int getFirstIndex() {
+    return firstIndex;
+  }
+
+  public int getIndexCount() {
+    return indexCount;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("instance", instance)
+        .add("materialName", materialName)
+        .add("firstIndex", firstIndex)
+        .add("indexCount", indexCount)
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(instance, materialName, firstIndex, indexCount);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof BatchRange)) {
+      return false;
+    }
+
+    BatchRange other = (BatchRange) obj;
+    return instance == other.instance &&
+        Objects.equal(materialName, other.materialName) &&
+        firstIndex == other.firstIndex &&
+        indexCount == other.indexCount;
+  }
+}
@@ -0,0 +1,60 @@
+package com.et.util.mesh.batching;
+
+import java.util.List;
+
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * One merged buffer set made by a {@link StaticMeshBatcher}. The mesh has unified indices with
+ * its faces ordered by material, so each of its {@link MeshData#getMaterialRanges()} is a single
+ * draw when every instance is visible. The batch ranges break those material ranges down by
+ * instance, in index order, for when some instances are culled.
+ */
+public class MeshBatch {
+
+  private final MeshData meshData;
+  private final List<BatchRange> ranges;
+
+  public MeshBatch(MeshData meshData, List<BatchRange> ranges) {
+    this.meshData = meshData;
+    this.ranges = ImmutableList.copyOf(ranges);
+  }
+
+  public MeshData getMeshData() {
+    return meshData;
+  }
+
+  public List<BatchRange> getRanges() {
+    return ranges;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("meshData", meshData)
+        .add("ranges", ranges)
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(meshData, ranges);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof MeshBatch)) {
+      return false;
+    }
+
+    MeshBatch other = (MeshBatch) obj;
+    return Objects.equal(meshData, other.meshData) &&
+        Objects.equal(ranges, other.ranges);
+  }
+}
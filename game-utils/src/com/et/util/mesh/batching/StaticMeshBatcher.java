@@ -0,0 +1,328 @@
+package com.et.util.mesh.batching;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.NORMAL_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.TEXTURE_COORD_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Merges many small static meshes into a few {@link MeshBatch}es so they can be drawn with a
+ * call per material rather than a call per mesh and material.
+ */
+public class StaticMeshBatcher {
+
+  /**
+   * Keeps every index of a batch within an unsigned short, see {@link MeshData#hasShortIndices()}.
+   */
+  public static final int DEFAULT_MAX_VERTICES_PER_BATCH = MeshData.MAX_SHORT_INDEXED_VERTICES;
+
+  private static final String BATCH_NAME_PREFIX = "batch";
+  private static final int MATRIX_SIZE = 16;
+
+  private int maxVerticesPerBatch = DEFAULT_MAX_VERTICES_PER_BATCH;
+
+  public void setMaxVerticesPerBatch(int maxVerticesPerBatch) {
+    Preconditions.checkArgument(maxVerticesPerBatch > 0, "Batches must hold at least a vertex.");
+    this.maxVerticesPerBatch = maxVerticesPerBatch;
+  }
+
+  /**
+   * Batches the meshes as they are.
+   */
+  public List<MeshBatch> batch(List<MeshData> meshes) {
+    return batch(meshes, null);
+  }
+
+  /**
+   * Batches the meshes, each transformed by the column major 4x4 matrix at the same position in
+   * transforms, as used by android.opengl.Matrix. Either the list or any of its entries may be
+   * null for meshes that are not transformed. Transforms that mirror a mesh also reverse the
+   * winding of its faces, so they keep facing outwards.
+   *
+   * Meshes go into a batch in the order given until the next would take it past
+   * {@link #setMaxVerticesPerBatch(int)} vertices, and a mesh over the limit on its own gets a
+   * batch to itself. Where some meshes of a batch have normals or texture coordinates and others
+   * do not, the others get zeroes in that stream. Smoothing groups are renumbered so no group
+   * spans two meshes, and a mesh without groups gets one of its own, as
+   * {@link com.et.util.mesh.normals.NormalGenerator} treats it.
+   */
+  public List<MeshBatch> batch(List<MeshData> meshes, List<float[]> transforms) {
+    Preconditions.checkArgument(transforms == null || transforms.size() == meshes.size(),
+        "Got %s transforms for %s meshes.", transforms == null ? 0 : transforms.size(),
+        meshes.size());
+    List<MeshBatch> batches = Lists.newArrayList();
+    int batchStart = 0;
+    int batchVertices = 0;
+    for (int instance = 0; instance < meshes.size(); instance++) {
+      MeshData mesh = meshes.get(instance);
+      Preconditions.checkArgument(mesh.hasUnifiedIndices(),
+          "Mesh %s must have unified indices to be batched.", mesh.getName());
+      float[] transform = (transforms == null ? null : transforms.get(instance));
+      Preconditions.checkArgument(transform == null || transform.length == MATRIX_SIZE,
+          "Transform of mesh %s is not a 4x4 matrix.", mesh.getName());
+
+      int vertices = getVertexCount(mesh);
+      if (instance > batchStart && batchVertices + (long) vertices > maxVerticesPerBatch) {
+        batches.add(makeBatch(batches.size(), meshes, transforms, batchStart, instance));
+        batchStart = instance;
+        batchVertices = 0;
+      }
+      batchVertices += vertices;
+    }
+
+    if (batchStart < meshes.size()) {
+      batches.add(makeBatch(batches.size(), meshes, transforms, batchStart, meshes.size()));
+    }
+    return batches;
+  }
+
+  private MeshBatch makeBatch(int batchNumber, List<MeshData> meshes, List<float[]> transforms,
+      int start, int end) {
+    int numVertices = 0;
+    int numIndices = 0;
+    boolean anyNormals = false;
+    boolean anyTextureCoords = false;
+    boolean anySmoothingGroups = false;
+    for (int instance = start; instance < end; instance++) {
+      MeshData mesh = meshes.get(instance);
+      numVertices += getVertexCount(mesh);
+      numIndices += mesh.getVertexIndices().capacity();
+      anyNormals |= MeshData.hasStream(mesh.getNormals());
+      anyTextureCoords |= MeshData.hasStream(mesh.getTextureCoords());
+      anySmoothingGroups |= MeshData.hasStream(mesh.getSmoothingGroups());
+    }
+
+    float[] vertices = new float[numVertices * VERTEX_COMPONENTS];
+    float[] normals = new float[anyNormals ? numVertices * NORMAL_COMPONENTS : 0];
+    float[] textureCoords = new float[anyTextureCoords ? numVertices * TEXTURE_COORD_COMPONENTS
+        : 0];
+    int[] baseVertices = new int[end - start];
+    boolean[] mirrored = new boolean[end - start];
+    int[][] instanceGroups = new int[end - start][];
+    int nextGroup = 1;
+    // Every material's pieces, materials in order of first use
+    Map<String, List<Piece>> pieces = Maps.newLinkedHashMap();
+
+    int baseVertex = 0;
+    for (int instance = start; instance < end; instance++) {
+      MeshData mesh = meshes.get(instance);
+      float[] transform = (transforms == null ? null : transforms.get(instance));
+      baseVertices[instance - start] = baseVertex;
+      mirrored[instance - start] = transform != null && determinant3(transform) < 0f;
+
+      copyVertices(mesh.getVerticies(), transform, vertices, baseVertex);
+      if (MeshData.hasStream(mesh.getNormals())) {
+        copyNormals(mesh.getNormals(), transform, normals, baseVertex);
+      }
+      if (MeshData.hasStream(mesh.getTextureCoords())) {
+        copyValues(mesh.getTextureCoords(), textureCoords,
+            baseVertex * TEXTURE_COORD_COMPONENTS);
+      }
+      baseVertex += getVertexCount(mesh);
+      if (anySmoothingGroups) {
+        instanceGroups[instance - start] = renumberGroups(mesh, nextGroup);
+        for (int group : instanceGroups[instance - start]) {
+          nextGroup = Math.max(nextGroup, group + 1);
+        }
+      }
+
+      List<MaterialRange> ranges = mesh.getMaterialRanges();
+      if (ranges.isEmpty()) {
+        ranges = ImmutableList.of(new MaterialRange(null, 0, mesh.getVertexIndices().capacity()));
+      }
+      for (MaterialRange range : ranges) {
+        List<Piece> materialPieces = pieces.get(range.getMaterialName());
+        if (materialPieces == null) {
+          materialPieces = Lists.newArrayList();
+          pieces.put(range.getMaterialName(), materialPieces);
+        }
+        materialPieces.add(new Piece(instance, range));
+      }
+    }
+
+    int[] indices = new int[numIndices];
+    int[] smoothingGroups = new int[anySmoothingGroups ? numIndices / INDICES_PER_TRIANGLE : 0];
+    int numWritten = 0;
+    List<BatchRange> batchRanges = Lists.newArrayList();
+    List<MaterialRange> materialRanges = Lists.newArrayList();
+    for (Map.Entry<String, List<Piece>> material : pieces.entrySet()) {
+      int materialStart = numWritten;
+      for (Piece piece : material.getValue()) {
+        int instance = piece.instance;
+        MaterialRange range = piece.range;
+        copyIndices(meshes.get(instance).getVertexIndices(), range.getFirstIndex(),
+            range.getIndexCount(), baseVertices[instance - start], mirrored[instance - start],
+            indices, numWritten);
+        if (anySmoothingGroups) {
+          System.arraycopy(instanceGroups[instance - start],
+              range.getFirstIndex() / INDICES_PER_TRIANGLE, smoothingGroups,
+              numWritten / INDICES_PER_TRIANGLE, range.getIndexCount() / INDICES_PER_TRIANGLE);
+        }
+        batchRanges.add(new BatchRange(instance, material.getKey(), numWritten,
+            range.getIndexCount()));
+        numWritten += range.getIndexCount();
+      }
+      materialRanges.add(new MaterialRange(material.getKey(), materialStart,
+          numWritten - materialStart));
+    }
+
+    boolean anyMaterial = pieces.size() > 1 || !pieces.containsKey(null);
+    MeshData meshData = new MeshData.Builder()
+        .setName(BATCH_NAME_PREFIX + batchNumber)
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setNormals(FloatBuffer.wrap(normals))
+        .setTextureCoords(FloatBuffer.wrap(textureCoords))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .setMaterialRanges(anyMaterial ? materialRanges : null)
+        .setSmoothingGroups(IntBuffer.wrap(smoothingGroups))
+        .build();
+    return new MeshBatch(meshData, batchRanges);
+  }
+
+  /**
+   * Returns the mesh's smoothing group per triangle, with each nonzero group given a number from
+   * firstGroup on and flat triangles left in group 0.
+   */
+  private static int[] renumberGroups(MeshData mesh, int firstGroup) {
+    int[] groups = new int[mesh.getVertexIndices().capacity() / INDICES_PER_TRIANGLE];
+    IntBuffer source = mesh.getSmoothingGroups();
+    if (!MeshData.hasStream(source)) {
+      Arrays.fill(groups, firstGroup);
+      return groups;
+    }
+    Map<Integer, Integer> renumbered = Maps.newHashMap();
+    for (int triangle = 0; triangle < groups.length; triangle++) {
+      int group = source.get(triangle);
+      if (group == 0) {
+        continue;
+      }
+      Integer number = renumbered.get(group);
+      if (number == null) {
+        number = firstGroup + renumbered.size();
+        renumbered.put(group, number);
+      }
+      groups[triangle] = number;
+    }
+    return groups;
+  }
+
+  private static int getVertexCount(MeshData mesh) {
+    return mesh.getVerticies().capacity() / VERTEX_COMPONENTS;
+  }
+
+  private static void copyVertices(FloatBuffer source, float[] transform, float[] target,
+      int baseVertex) {
+    int offset = baseVertex * VERTEX_COMPONENTS;
+    for (int value = 0; value < source.capacity(); value += VERTEX_COMPONENTS) {
+      float x = source.get(value);
+      float y = source.get(value + 1);
+      float z = source.get(value + 2);
+      float w = source.get(value + 3);
+      if (transform == null) {
+        target[offset++] = x;
+        target[offset++] = y;
+        target[offset++] = z;
+        target[offset++] = w;
+        continue;
+      }
+      for (int row = 0; row < VERTEX_COMPONENTS; row++) {
+        target[offset++] = transform[row] * x + transform[4 + row] * y + transform[8 + row] * z
+            + transform[12 + row] * w;
+      }
+    }
+  }
+
+  /**
+   * Copies normals through the inverse transpose of the transform's upper 3x3, which keeps them
+   * perpendicular to their faces under non-uniform scales, and renormalizes them.
+   */
+  private static void copyNormals(FloatBuffer source, float[] transform, float[] target,
+      int baseVertex) {
+    int offset = baseVertex * NORMAL_COMPONENTS;
+    if (transform == null) {
+      copyValues(source, target, offset);
+      return;
+    }
+
+    // The cofactor matrix is the inverse transpose scaled by the determinant. Only its direction
+    // matters here, so divide by the determinant's sign alone to keep mirrored normals outwards.
+    float[] m = transform;
+    float sign = determinant3(m) < 0f ? -1f : 1f;
+    float c00 = sign * (m[5] * m[10] - m[9] * m[6]);
+    float c01 = sign * (m[9] * m[2] - m[1] * m[10]);
+    float c02 = sign * (m[1] * m[6] - m[5] * m[2]);
+    float c10 = sign * (m[8] * m[6] - m[4] * m[10]);
+    float c11 = sign * (m[0] * m[10] - m[8] * m[2]);
+    float c12 = sign * (m[4] * m[2] - m[0] * m[6]);
+    float c20 = sign * (m[4] * m[9] - m[8] * m[5]);
+    float c21 = sign * (m[8] * m[1] - m[0] * m[9]);
+    float c22 = sign * (m[0] * m[5] - m[4] * m[1]);
+    for (int value = 0; value < source.capacity(); value += NORMAL_COMPONENTS) {
+      float x = source.get(value);
+      float y = source.get(value + 1);
+      float z = source.get(value + 2);
+      float nx = c00 * x + c01 * y + c02 * z;
+      float ny = c10 * x + c11 * y + c12 * z;
+      float nz = c20 * x + c21 * y + c22 * z;
+      float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+      float scale = length > 0f ? 1f / length : 0f;
+      target[offset++] = nx * scale;
+      target[offset++] = ny * scale;
+      target[offset++] = nz * scale;
+    }
+  }
+
+  private static void copyValues(FloatBuffer source, float[] target, int offset) {
+    FloatBuffer values = source.duplicate();
+    values.clear();
+    values.get(target, offset, values.capacity());
+  }
+
+  private static void copyIndices(IntBuffer source, int first, int count, int baseVertex,
+      boolean reverseWinding, int[] target, int offset) {
+    for (int index = 0; index < count; index += INDICES_PER_TRIANGLE) {
+      int a = source.get(first + index) + baseVertex;
+      int b = source.get(first + index + 1) + baseVertex;
+      int c = source.get(first + index + 2) + baseVertex;
+      target[offset + index] = a;
+      target[offset + index + 1] = reverseWinding ? c : b;
+      target[offset + index + 2] = reverseWinding ? b : c;
+    }
+  }
+
+  /**
+   * Determinant of the upper 3x3 of a column major 4x4 matrix.
+   */
+  private static float determinant3(float[] m) {
+    return m[0] * (m[5] * m[10] - m[9] * m[6])
+        - m[4] * (m[1] * m[10] - m[9] * m[2])
+        + m[8] * (m[1] * m[6] - m[5] * m[2]);
+  }
+
+  /**
+   * A material range of one of the instances being batched.
+   */
+  private static class Piece {
+    final int instance;
+    final MaterialRange range;
+
+    Piece(int instance, MaterialRange range) {
+      this.instance = instance;
+      this.range = range;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.et.util.mesh.binary;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of binary mesh files, which hold a {@link com.et.util.mesh.data.MeshObject} ready to be
+ * used without parsing. Everything is little-endian, the byte order of the devices we target.
+ * 
+ * <pre>
+ * header     magic, version, mesh count, library count      4 ints
+ * directory  per mesh: name offset, name length, flags,     31 ints per mesh
+ *            range table offset, range count, LOD owner
+ *            name offset and length, the bounds' min, max,
+ *            and sphere center x, y, z and sphere radius as
+ *            floats, then offset and count of each stream
+ *            in {@link #STREAMS} order
+ * libraries  per material library: name offset and length  2 ints per library
+ * ranges     per material range: material name offset and  4 ints per range
+ *            length, first index, index count
+ * names      UTF-8 mesh, library, and material names
+ * blocks     one per present stream, each starting at a multiple of {@link #BLOCK_ALIGNMENT}
+ * </pre>
+ * 
+ * Offsets are from the start of the file and counts are in floats or ints. A null name has
+ * length {@link #ABSENT} and an absent stream has count {@link #ABSENT}, so they read back as
+ * null rather than empty. Empty bounds are flagged with {@link #FLAG_EMPTY_BOUNDS} and their
+ * floats are zero. Bounds are stored so loading never walks the vertices to find them.
+ * 
+ * The mesh count covers levels of detail too. Their entries come after the meshes', flagged with
+ * {@link #FLAG_LOD} and naming the mesh they belong to as their LOD owner, with each owner's
+ * levels in order from most to least detailed. Other entries leave the owner name absent.
+ */
+final class BinaryMeshFormat {
+  
+  // "ETMB" when read as little-endian bytes
+  static final int MAGIC = 0x424D5445;
+  static final int VERSION = 5;
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+  
+  static final int HEADER_INTS = 4;
+  static final int MESH_COUNT_OFFSET = 8;
+  static final int LIBRARY_COUNT_OFFSET = 12;
+  
+  static final int FLAG_UNIFIED_INDICES = 1;
+  static final int FLAG_EMPTY_BOUNDS = 2;
+  static final int FLAG_LOD = 4;
+  static final int ABSENT = -1;
+  
+  /** The order streams are listed in a directory entry. */
+  static final int VERTICES = 0;
+  static final int NORMALS = 1;
+  static final int TEXTURE_COORDS = 2;
+  static final int VERTEX_INDICES = 3;
+  static final int NORMAL_INDICES = 4;
+  static final int TEXTURE_INDICES = 5;
+  static final int SMOOTHING_GROUPS = 6;
+  static final int STREAMS = 7;
+  
+  /** Ints in a directory entry before its bounds. */
+  static final int MESH_FIELDS = 7;
+  /** Offset in ints of the LOD owner name within a directory entry. */
+  static final int LOD_OWNER_FIELD = 5;
+  /** Floats of a mesh's bounds: min x, y, z, max x, y, z, sphere center x, y, z, radius. */
+  static final int BOUNDS_FLOATS = 10;
+  /** Ints in a directory entry before its streams. */
+  static final int STREAMS_START = MESH_FIELDS + BOUNDS_FLOATS;
+  static final int DIRECTORY_ENTRY_INTS = STREAMS_START + STREAMS * 2;
+  static final int LIBRARY_ENTRY_INTS = 2;
+  static final int RANGE_ENTRY_INTS = 4;
+  static final int BLOCK_ALIGNMENT = 16;
+  static final int BYTES_PER_VALUE = 4;
+  
+  private BinaryMeshFormat() {}
+  
+  static int align(int offset) {
+    return (offset + BLOCK_ALIGNMENT - 1) & -BLOCK_ALIGNMENT;
+  }
+}
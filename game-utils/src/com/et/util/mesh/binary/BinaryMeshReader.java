@@ -0,0 +1,198 @@
+package com.et.util.mesh.binary;
+
+import static com.et.util.mesh.binary.BinaryMeshFormat.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.et.util.mesh.data.Bounds;
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Loads {@link MeshObject}s written by a {@link BinaryMeshWriter}. The streams of every mesh are
+ * views straight into the loaded bytes and its bounds are read from its directory entry, so
+ * loading does no per element work and costs about as much as reading the file. The views are
+ * little-endian, which is the native order of the devices we target, and share the loaded bytes,
+ * so a mapped file stays mapped while its meshes are in use. Throws
+ * {@link IllegalArgumentException} for bytes that do not hold a valid mesh file of a known
+ * version.
+ */
+public class BinaryMeshReader {
+  
+  /**
+   * Maps the file read-only and reads the meshes out of the mapping.
+   */
+  public MeshObject read(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+  
+  /**
+   * Reads the whole stream into a direct buffer and reads the meshes out of that.
+   */
+  public MeshObject read(InputStream input) throws IOException {
+    byte[] contents = ByteStreams.toByteArray(input);
+    ByteBuffer bytes = ByteBuffer.allocateDirect(contents.length);
+    bytes.put(contents).clear();
+    return read(bytes);
+  }
+  
+  /**
+   * Reads the meshes in the bytes between the buffer's position and limit. The buffer's own
+   * position is left untouched.
+   */
+  public MeshObject read(ByteBuffer buffer) {
+    ByteBuffer bytes = buffer.slice().order(BYTE_ORDER);
+    Preconditions.checkArgument(bytes.remaining() >= HEADER_INTS * BYTES_PER_VALUE,
+        "File is too short.");
+    Preconditions.checkArgument(bytes.getInt(0) == MAGIC, "File is not a binary mesh file.");
+    int version = bytes.getInt(BYTES_PER_VALUE);
+    Preconditions.checkArgument(version == VERSION, "Unsupported binary mesh version %s.",
+        version);
+    
+    int meshCount = bytes.getInt(MESH_COUNT_OFFSET);
+    int libraryCount = bytes.getInt(LIBRARY_COUNT_OFFSET);
+    long directoryEnd = (HEADER_INTS + (long) meshCount * DIRECTORY_ENTRY_INTS) * BYTES_PER_VALUE;
+    Preconditions.checkArgument(meshCount >= 0 && directoryEnd <= bytes.limit(),
+        "Directory of %s meshes does not fit in file.", meshCount);
+    Preconditions.checkArgument(libraryCount >= 0 && directoryEnd
+        + (long) libraryCount * LIBRARY_ENTRY_INTS * BYTES_PER_VALUE <= bytes.limit(),
+        "Table of %s material libraries does not fit in file.", libraryCount);
+    
+    MeshObject meshObject = new MeshObject();
+    Map<String, List<MeshData>> lods = Maps.newLinkedHashMap();
+    int entry = HEADER_INTS * BYTES_PER_VALUE;
+    for (int mesh = 0; mesh < meshCount; mesh++) {
+      MeshData data = readMesh(bytes, entry);
+      if ((bytes.getInt(entry + 2 * BYTES_PER_VALUE) & FLAG_LOD) == 0) {
+        meshObject.addMesh(data);
+      } else {
+        String owner = readName(bytes, entry + LOD_OWNER_FIELD * BYTES_PER_VALUE);
+        List<MeshData> levels = lods.get(owner);
+        if (levels == null) {
+          levels = Lists.newArrayList();
+          lods.put(owner, levels);
+        }
+        levels.add(data);
+      }
+      entry += DIRECTORY_ENTRY_INTS * BYTES_PER_VALUE;
+    }
+    for (Map.Entry<String, List<MeshData>> levels : lods.entrySet()) {
+      meshObject.setLods(levels.getKey(), levels.getValue());
+    }
+    for (int library = 0; library < libraryCount; library++) {
+      meshObject.addMaterialLibrary(readName(bytes, entry));
+      entry += LIBRARY_ENTRY_INTS * BYTES_PER_VALUE;
+    }
+    return meshObject;
+  }
+  
+  private MeshData readMesh(ByteBuffer bytes, int entry) {
+    int flags = bytes.getInt(entry + 2 * BYTES_PER_VALUE);
+    MeshData.Builder builder = new MeshData.Builder()
+        .setName(readName(bytes, entry))
+        .setUnifiedIndices((flags & FLAG_UNIFIED_INDICES) != 0)
+        .setMaterialRanges(readRanges(bytes, bytes.getInt(entry + 3 * BYTES_PER_VALUE),
+            bytes.getInt(entry + 4 * BYTES_PER_VALUE)));
+    
+    int streams = entry + STREAMS_START * BYTES_PER_VALUE;
+    return builder.setVertices(floatBlock(bytes, streams, VERTICES))
+        .setBounds(readBounds(bytes, entry + MESH_FIELDS * BYTES_PER_VALUE, flags))
+        .setNormals(floatBlock(bytes, streams, NORMALS))
+        .setTextureCoords(floatBlock(bytes, streams, TEXTURE_COORDS))
+        .setVertexIndices(intBlock(bytes, streams, VERTEX_INDICES))
+        .setNormalIndices(intBlock(bytes, streams, NORMAL_INDICES))
+        .setTextureCoordIndices(intBlock(bytes, streams, TEXTURE_INDICES))
+        .setSmoothingGroups(intBlock(bytes, streams, SMOOTHING_GROUPS))
+        .build();
+  }
+  
+  private Bounds readBounds(ByteBuffer bytes, int offset, int flags) {
+    if ((flags & FLAG_EMPTY_BOUNDS) != 0) {
+      return Bounds.EMPTY;
+    }
+    float[] values = new float[BOUNDS_FLOATS];
+    for (int value = 0; value < BOUNDS_FLOATS; value++) {
+      values[value] = bytes.getFloat(offset + value * BYTES_PER_VALUE);
+    }
+    return new Bounds(Arrays.copyOfRange(values, 0, 3), Arrays.copyOfRange(values, 3, 6),
+        Arrays.copyOfRange(values, 6, 9), values[9]);
+  }
+  
+  private List<MaterialRange> readRanges(ByteBuffer bytes, int offset, int count) {
+    // Checks that the whole table is in the file
+    block(bytes, offset, count, RANGE_ENTRY_INTS * BYTES_PER_VALUE);
+    List<MaterialRange> ranges = Lists.newArrayListWithCapacity(count);
+    for (int range = 0; range < count; range++) {
+      int entry = offset + range * RANGE_ENTRY_INTS * BYTES_PER_VALUE;
+      ranges.add(new MaterialRange(readName(bytes, entry),
+          bytes.getInt(entry + 2 * BYTES_PER_VALUE), bytes.getInt(entry + 3 * BYTES_PER_VALUE)));
+    }
+    return ranges;
+  }
+  
+  /**
+   * Reads the name whose offset and length are stored at entry.
+   */
+  private String readName(ByteBuffer bytes, int entry) {
+    int offset = bytes.getInt(entry);
+    int length = bytes.getInt(entry + BYTES_PER_VALUE);
+    if (length == ABSENT) {
+      return null;
+    }
+    byte[] name = new byte[length];
+    block(bytes, offset, length, 1).get(name);
+    return new String(name, Charsets.UTF_8);
+  }
+  
+  private FloatBuffer floatBlock(ByteBuffer bytes, int streams, int stream) {
+    ByteBuffer block = streamBlock(bytes, streams, stream);
+    return block == null ? null : block.asFloatBuffer();
+  }
+  
+  private IntBuffer intBlock(ByteBuffer bytes, int streams, int stream) {
+    ByteBuffer block = streamBlock(bytes, streams, stream);
+    return block == null ? null : block.asIntBuffer();
+  }
+  
+  private ByteBuffer streamBlock(ByteBuffer bytes, int streams, int stream) {
+    int offset = bytes.getInt(streams + stream * 2 * BYTES_PER_VALUE);
+    int count = bytes.getInt(streams + (stream * 2 + 1) * BYTES_PER_VALUE);
+    if (count == ABSENT) {
+      return null;
+    }
+    Preconditions.checkArgument(offset % BLOCK_ALIGNMENT == 0, "Block at %s is not aligned.",
+        offset);
+    return block(bytes, offset, count, BYTES_PER_VALUE);
+  }
+  
+  private ByteBuffer block(ByteBuffer bytes, int offset, int count, int bytesPerValue) {
+    Preconditions.checkArgument(offset >= 0 && count >= 0
+        && offset + (long) count * bytesPerValue <= bytes.limit(),
+        "Block of %s values at %s does not fit in file.", count, offset);
+    ByteBuffer block = bytes.duplicate();
+    block.limit(offset + count * bytesPerValue).position(offset);
+    return block.slice().order(BYTE_ORDER);
+  }
+}
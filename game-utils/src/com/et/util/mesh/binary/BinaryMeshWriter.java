@@ -0,0 +1,225 @@
+package com.et.util.mesh.binary;
+
+import static com.et.util.mesh.binary.BinaryMeshFormat.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Map;
+
+import com.et.util.mesh.data.Bounds;
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+
+/**
+ * Writes {@link MeshObject}s in the layout described by {@link BinaryMeshFormat}, to be loaded
+ * back by a {@link BinaryMeshReader}.
+ */
+public class BinaryMeshWriter {
+  
+  /**
+   * Returns the object encoded as a heap buffer, positioned at 0.
+   */
+  public ByteBuffer toBytes(MeshObject meshObject) {
+    List<Entry> entries = Lists.newArrayList();
+    for (MeshData mesh : meshObject.getAllMeshes()) {
+      entries.add(new Entry(mesh, false, null));
+    }
+    for (Map.Entry<String, List<MeshData>> lods : meshObject.getAllLods().entrySet()) {
+      for (MeshData lod : lods.getValue()) {
+        entries.add(new Entry(lod, true, lods.getKey()));
+      }
+    }
+    List<String> libraries = meshObject.getMaterialLibraries();
+    
+    int rangeCount = 0;
+    int namesSize = 0;
+    for (String library : libraries) {
+      namesSize += encodedLength(library);
+    }
+    for (Entry entry : entries) {
+      MeshData mesh = entry.mesh;
+      namesSize += encodedLength(mesh.getName()) + encodedLength(entry.lodOwner);
+      rangeCount += mesh.getMaterialRanges().size();
+      for (MaterialRange range : mesh.getMaterialRanges()) {
+        namesSize += encodedLength(range.getMaterialName());
+      }
+    }
+    
+    int libraryTableOffset = (HEADER_INTS + entries.size() * DIRECTORY_ENTRY_INTS)
+        * BYTES_PER_VALUE;
+    int rangeTableOffset = libraryTableOffset
+        + libraries.size() * LIBRARY_ENTRY_INTS * BYTES_PER_VALUE;
+    int namesOffset = rangeTableOffset + rangeCount * RANGE_ENTRY_INTS * BYTES_PER_VALUE;
+    int size = namesOffset + namesSize;
+    for (Entry entry : entries) {
+      for (Buffer stream : getStreams(entry.mesh)) {
+        if (stream != null) {
+          size = align(size) + stream.capacity() * BYTES_PER_VALUE;
+        }
+      }
+    }
+    
+    ByteBuffer bytes = ByteBuffer.allocate(size).order(BYTE_ORDER);
+    bytes.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(libraries.size());
+    
+    int nameOffset = namesOffset;
+    int rangeOffset = rangeTableOffset;
+    int blockOffset = namesOffset + namesSize;
+    for (Entry entry : entries) {
+      MeshData mesh = entry.mesh;
+      int entryOffset = bytes.position();
+      nameOffset = putName(bytes, entryOffset, nameOffset, mesh.getName());
+      bytes.position(entryOffset + 2 * BYTES_PER_VALUE);
+      List<MaterialRange> ranges = mesh.getMaterialRanges();
+      Bounds bounds = mesh.getBounds();
+      int flags = (mesh.hasUnifiedIndices() ? FLAG_UNIFIED_INDICES : 0) |
+          (bounds.isEmpty() ? FLAG_EMPTY_BOUNDS : 0) |
+          (entry.lod ? FLAG_LOD : 0);
+      bytes.putInt(flags)
+          .putInt(rangeOffset)
+          .putInt(ranges.size());
+      int ownerField = entryOffset + LOD_OWNER_FIELD * BYTES_PER_VALUE;
+      if (entry.lod) {
+        nameOffset = putName(bytes, ownerField, nameOffset, entry.lodOwner);
+      } else {
+        bytes.putInt(ownerField, 0).putInt(ownerField + BYTES_PER_VALUE, ABSENT);
+      }
+      bytes.position(ownerField + 2 * BYTES_PER_VALUE);
+      putBounds(bytes, bounds);
+      for (MaterialRange range : ranges) {
+        nameOffset = putName(bytes, rangeOffset, nameOffset, range.getMaterialName());
+        bytes.putInt(rangeOffset + 2 * BYTES_PER_VALUE, range.getFirstIndex());
+        bytes.putInt(rangeOffset + 3 * BYTES_PER_VALUE, range.getIndexCount());
+        rangeOffset += RANGE_ENTRY_INTS * BYTES_PER_VALUE;
+      }
+      
+      for (Buffer stream : getStreams(mesh)) {
+        if (stream == null) {
+          bytes.putInt(0).putInt(ABSENT);
+          continue;
+        }
+        blockOffset = align(blockOffset);
+        bytes.putInt(blockOffset).putInt(stream.capacity());
+        putBlockAt(bytes, blockOffset, stream);
+        blockOffset += stream.capacity() * BYTES_PER_VALUE;
+      }
+    }
+    
+    int libraryOffset = libraryTableOffset;
+    for (String library : libraries) {
+      nameOffset = putName(bytes, libraryOffset, nameOffset, library);
+      libraryOffset += LIBRARY_ENTRY_INTS * BYTES_PER_VALUE;
+    }
+    
+    bytes.clear();
+    return bytes;
+  }
+  
+  public void write(MeshObject meshObject, OutputStream output) throws IOException {
+    ByteBuffer bytes = toBytes(meshObject);
+    output.write(bytes.array(), bytes.arrayOffset(), bytes.capacity());
+  }
+  
+  public void write(MeshObject meshObject, File file) throws IOException {
+    OutputStream output = new FileOutputStream(file);
+    boolean threw = true;
+    try {
+      write(meshObject, output);
+      threw = false;
+    } finally {
+      Closeables.close(output, threw);
+    }
+  }
+  
+  /**
+   * A directory entry to write: a mesh, or a level of detail of the mesh named by lodOwner.
+   */
+  private static class Entry {
+    final MeshData mesh;
+    final boolean lod;
+    final String lodOwner;
+    
+    Entry(MeshData mesh, boolean lod, String lodOwner) {
+      this.mesh = mesh;
+      this.lod = lod;
+      this.lodOwner = lodOwner;
+    }
+  }
+  
+  private List<Buffer> getStreams(MeshData mesh) {
+    Buffer[] streams = new Buffer[STREAMS];
+    streams[VERTICES] = mesh.getVerticies();
+    streams[NORMALS] = mesh.getNormals();
+    streams[TEXTURE_COORDS] = mesh.getTextureCoords();
+    streams[VERTEX_INDICES] = mesh.getVertexIndices();
+    streams[NORMAL_INDICES] = mesh.getNormalIndices();
+    streams[TEXTURE_INDICES] = mesh.getTextureIndices();
+    streams[SMOOTHING_GROUPS] = mesh.getSmoothingGroups();
+    return Lists.newArrayList(streams);
+  }
+  
+  private void putBounds(ByteBuffer bytes, Bounds bounds) {
+    if (bounds.isEmpty()) {
+      bytes.position(bytes.position() + BOUNDS_FLOATS * BYTES_PER_VALUE);
+      return;
+    }
+    for (int axis = 0; axis < 3; axis++) {
+      bytes.putFloat(bounds.getMin(axis));
+    }
+    for (int axis = 0; axis < 3; axis++) {
+      bytes.putFloat(bounds.getMax(axis));
+    }
+    for (int axis = 0; axis < 3; axis++) {
+      bytes.putFloat(bounds.getSphereCenter(axis));
+    }
+    bytes.putFloat(bounds.getSphereRadius());
+  }
+  
+  private int encodedLength(String name) {
+    return name == null ? 0 : name.getBytes(Charsets.UTF_8).length;
+  }
+  
+  /**
+   * Writes the name's offset and length at entryOffset and the name itself at nameOffset, and
+   * returns the offset the next name goes at.
+   */
+  private int putName(ByteBuffer bytes, int entryOffset, int nameOffset, String name) {
+    if (name == null) {
+      bytes.putInt(entryOffset, nameOffset).putInt(entryOffset + BYTES_PER_VALUE, ABSENT);
+      return nameOffset;
+    }
+    byte[] encoded = name.getBytes(Charsets.UTF_8);
+    bytes.putInt(entryOffset, nameOffset).putInt(entryOffset + BYTES_PER_VALUE, encoded.length);
+    ByteBuffer target = bytes.duplicate();
+    target.position(nameOffset);
+    target.put(encoded);
+    return nameOffset + encoded.length;
+  }
+  
+  private void putBlockAt(ByteBuffer bytes, int offset, Buffer stream) {
+    ByteBuffer target = bytes.duplicate();
+    target.position(offset);
+    target = target.slice().order(BYTE_ORDER);
+    // Streams are sized by capacity, wherever their position happens to be
+    if (stream instanceof FloatBuffer) {
+      FloatBuffer values = ((FloatBuffer) stream).duplicate();
+      values.clear();
+      target.asFloatBuffer().put(values);
+    } else {
+      IntBuffer values = ((IntBuffer) stream).duplicate();
+      values.clear();
+      target.asIntBuffer().put(values);
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package com.et.util.mesh.binary;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.io.Files;
+
+/**
+ * A directory of {@link MeshObject}s stored in the binary mesh format, keyed by a hash of where
+ * they came from. Each entry is one file holding a header, which stamps the cache and format
+ * versions, the key, and a checksum, followed by the binary mesh file. Entries from another
+ * version, for another key, or that fail their checksum are deleted and reported as misses. Once
+ * the entries take more than the size cap, the least recently used are deleted.
+ * 
+ * Loaded objects are views of a mapping of their entry, as with {@link BinaryMeshReader}, so they
+ * stay valid after the entry is evicted. Entries are written to a temporary file and renamed into
+ * place, so a crash while writing never leaves a partial entry behind.
+ * 
+ * Any number of threads, or caches in other processes, may share a directory. Every write has a
+ * temporary file of its own, so readers only ever see whole entries, and when several threads
+ * put the same key at once the last rename wins.
+ */
+public class MeshObjectDiskCache {
+  
+  private static final Logger logger = LoggerFactory.getLogger(MeshObjectDiskCache.class);
+  
+  // "ETMC" when read as little-endian bytes
+  private static final int MAGIC = 0x434D5445;
+  // Bump whenever the header layout changes; the mesh format version is stamped separately
+  private static final int CACHE_VERSION = 1;
+  private static final String ENTRY_SUFFIX = ".mesh";
+  private static final String TEMP_SUFFIX = ".tmp";
+  // The header is the magic, cache version, format version, checksum, and payload length, then the
+  // key, padded so the mesh file after it keeps its blocks aligned
+  private static final int CACHE_VERSION_OFFSET = 4;
+  private static final int FORMAT_VERSION_OFFSET = 8;
+  private static final int CHECKSUM_OFFSET = 12;
+  private static final int PAYLOAD_LENGTH_OFFSET = 16;
+  private static final int KEY_OFFSET = 20;
+  private static final int KEY_BYTES = 16;
+  private static final int HEADER_BYTES = BinaryMeshFormat.align(KEY_OFFSET + KEY_BYTES);
+  private static final int CHECKSUM_CHUNK_BYTES = 8 * 1024;
+  
+  private final File directory;
+  private final long maxBytes;
+  private final BinaryMeshReader reader;
+  private final BinaryMeshWriter writer;
+  
+  /**
+   * @param maxBytes the most bytes of entries to keep in the directory
+   */
+  public MeshObjectDiskCache(File directory, long maxBytes, BinaryMeshReader reader,
+      BinaryMeshWriter writer) {
+    Preconditions.checkArgument(maxBytes > 0, "Cache must be allowed some space.");
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.reader = reader;
+    this.writer = writer;
+  }
+  
+  /**
+   * Returns the object stored under key, or null if there is no usable entry for it.
+   */
+  public MeshObject get(HashCode key) {
+    File entry = entryFile(key);
+    if (!entry.isFile()) {
+      return null;
+    }
+    
+    try {
+      ByteBuffer bytes = map(entry).order(BinaryMeshFormat.BYTE_ORDER);
+      String problem = checkEntry(bytes, key);
+      if (problem == null) {
+        bytes.position(HEADER_BYTES);
+        MeshObject meshObject = reader.read(bytes);
+        // Keeps recently used entries from being evicted first
+        entry.setLastModified(System.currentTimeMillis());
+        return meshObject;
+      }
+      logger.warn("Discarding mesh cache entry {}: {}", entry, problem);
+    } catch (IOException e) {
+      logger.warn("Could not read mesh cache entry " + entry, e);
+    } catch (IllegalArgumentException e) {
+      logger.warn("Discarding corrupt mesh cache entry " + entry, e);
+    }
+    entry.delete();
+    return null;
+  }
+  
+  /**
+   * Stores the object under key, replacing any entry already there, then evicts entries until the
+   * cache fits its size cap again.
+   */
+  public void put(HashCode key, MeshObject meshObject) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create mesh cache directory " + directory);
+    }
+    
+    ByteBuffer payload = writer.toBytes(meshObject);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(BinaryMeshFormat.BYTE_ORDER);
+    header.putInt(MAGIC)
+        .putInt(CACHE_VERSION)
+        .putInt(BinaryMeshFormat.VERSION)
+        .putInt(checksum(payload.duplicate()))
+        .putInt(payload.remaining())
+        .put(keyBytes(key));
+    
+    File temp = File.createTempFile(key.toString(), TEMP_SUFFIX, directory);
+    byte[] contents = new byte[HEADER_BYTES + payload.remaining()];
+    System.arraycopy(header.array(), 0, contents, 0, HEADER_BYTES);
+    payload.get(contents, HEADER_BYTES, payload.remaining());
+    Files.write(contents, temp);
+    
+    File entry = entryFile(key);
+    // Renaming replaces the entry where the platform allows it, so it never goes missing
+    if (!temp.renameTo(entry) && !(entry.delete() && temp.renameTo(entry))) {
+      temp.delete();
+      throw new IOException("Could not move mesh cache entry into place at " + entry);
+    }
+    evict();
+  }
+  
+  /**
+   * Returns the bytes taken by every entry in the cache.
+   */
+  public long size() {
+    long size = 0;
+    for (File entry : listEntries()) {
+      size += entry.length();
+    }
+    return size;
+  }
+  
+  private String checkEntry(ByteBuffer bytes, HashCode key) {
+    if (bytes.remaining() < HEADER_BYTES || bytes.getInt(0) != MAGIC) {
+      return "not a cache entry";
+    }
+    if (bytes.getInt(CACHE_VERSION_OFFSET) != CACHE_VERSION
+        || bytes.getInt(FORMAT_VERSION_OFFSET) != BinaryMeshFormat.VERSION) {
+      return "written by another version";
+    }
+    
+    byte[] storedKey = new byte[KEY_BYTES];
+    ByteBuffer keyView = bytes.duplicate();
+    keyView.position(KEY_OFFSET);
+    keyView.get(storedKey);
+    if (!Arrays.equals(storedKey, keyBytes(key))) {
+      return "stored under another key";
+    }
+    
+    int payloadLength = bytes.getInt(PAYLOAD_LENGTH_OFFSET);
+    if (payloadLength != bytes.remaining() - HEADER_BYTES) {
+      return "truncated";
+    }
+    ByteBuffer payload = bytes.duplicate();
+    payload.position(HEADER_BYTES);
+    if (checksum(payload) != bytes.getInt(CHECKSUM_OFFSET)) {
+      return "checksum mismatch";
+    }
+    return null;
+  }
+  
+  private void evict() {
+    File[] entries = listEntries();
+    long size = 0;
+    for (File entry : entries) {
+      size += entry.length();
+    }
+    if (size <= maxBytes) {
+      return;
+    }
+    
+    Arrays.sort(entries, new Comparator<File>() {
+      @Override
+      public int compare(File first, File second) {
+        long firstUsed = first.lastModified();
+        long secondUsed = second.lastModified();
+        return firstUsed < secondUsed ? -1 : (firstUsed == secondUsed ? 0 : 1);
+      }
+    });
+    for (int entry = 0; entry < entries.length && size > maxBytes; entry++) {
+      long length = entries[entry].length();
+      if (entries[entry].delete()) {
+        size -= length;
+      }
+    }
+  }
+  
+  private File[] listEntries() {
+    File[] entries = directory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && file.getName().endsWith(ENTRY_SUFFIX);
+      }
+    });
+    return entries == null ? new File[0] : entries;
+  }
+  
+  private File entryFile(HashCode key) {
+    return new File(directory, key + ENTRY_SUFFIX);
+  }
+  
+  private static byte[] keyBytes(HashCode key) {
+    return Arrays.copyOf(key.asBytes(), KEY_BYTES);
+  }
+  
+  private static ByteBuffer map(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+  
+  /**
+   * Returns the CRC-32 of the bytes between the buffer's position and limit, consuming them.
+   */
+  private static int checksum(ByteBuffer bytes) {
+    CRC32 crc = new CRC32();
+    byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK_BYTES, bytes.remaining())];
+    while (bytes.hasRemaining()) {
+      int length = Math.min(chunk.length, bytes.remaining());
+      bytes.get(chunk, 0, length);
+      crc.update(chunk, 0, length);
+    }
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,89 @@
+package com.et.util.mesh.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.et.util.mesh.fileparser.obj.MappedObjFile;
+import com.et.util.mesh.fileparser.obj.ObjFileMeshObjectParser;
+import com.et.util.mesh.normals.NormalGenerator;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+
+/**
+ * Bakes Wavefront .obj files into binary mesh files at build time, so devices load them with a
+ * {@link BinaryMeshReader} instead of parsing text. Meshes the file declared no normals for can
+ * be given generated ones on the way, so the device need not compute them either.
+ * 
+ * Usage: {@code ObjToBinaryMeshConverter [--unified] [--normals] <input.obj> <output>}
+ */
+public class ObjToBinaryMeshConverter {
+  
+  private static final String UNIFIED_FLAG = "--unified";
+  private static final String NORMALS_FLAG = "--normals";
+  
+  private final ObjFileMeshObjectParser parser;
+  private final BinaryMeshWriter writer;
+  private NormalGenerator normalGenerator = null;
+  
+  @Inject
+  public ObjToBinaryMeshConverter(ObjFileMeshObjectParser parser, BinaryMeshWriter writer) {
+    this.parser = parser;
+    this.writer = writer;
+  }
+  
+  /**
+   * See {@link ObjFileMeshObjectParser#setUnifiedIndices(boolean)}.
+   */
+  public void setUnifiedIndices(boolean unifiedIndices) {
+    parser.setUnifiedIndices(unifiedIndices);
+  }
+  
+  /**
+   * Sets the generator that adds normals to meshes without any before they are written, see
+   * {@link NormalGenerator#addMissingNormals(MeshObject)}. Null, the default, writes them as
+   * parsed.
+   */
+  public void setNormalGenerator(NormalGenerator normalGenerator) {
+    this.normalGenerator = normalGenerator;
+  }
+  
+  /**
+   * Parses the .obj file and writes what it holds to the output file, returning it.
+   */
+  public MeshObject convert(File objFile, File output) throws IOException {
+    MeshObject meshObject = parser.parse(MappedObjFile.open(objFile));
+    if (normalGenerator != null) {
+      normalGenerator.addMissingNormals(meshObject);
+    }
+    writer.write(meshObject, output);
+    return meshObject;
+  }
+  
+  public static void main(String[] args) throws IOException {
+    List<String> flags = Arrays.asList(args).subList(0, Math.max(args.length - 2, 0));
+    boolean unifiedIndices = flags.contains(UNIFIED_FLAG);
+    boolean generateNormals = flags.contains(NORMALS_FLAG);
+    if (args.length < 2 ||
+        flags.size() != (unifiedIndices ? 1 : 0) + (generateNormals ? 1 : 0)) {
+      System.err.println("Usage: ObjToBinaryMeshConverter [" + UNIFIED_FLAG + "] ["
+          + NORMALS_FLAG + "] <input.obj> <output>");
+      System.exit(1);
+    }
+    
+    ObjToBinaryMeshConverter converter = Guice.createInjector(new MeshFileParserModule())
+        .getInstance(ObjToBinaryMeshConverter.class);
+    converter.setUnifiedIndices(unifiedIndices);
+    if (generateNormals) {
+      converter.setNormalGenerator(new NormalGenerator());
+    }
+    int firstFile = args.length - 2;
+    MeshObject meshObject = converter.convert(new File(args[firstFile]),
+        new File(args[firstFile + 1]));
+    System.out.println("Wrote " + meshObject.getAllMeshes().size() + " meshes to "
+        + args[firstFile + 1]);
+  }
+}
@@ -0,0 +1,291 @@
+package com.et.util.mesh.bvh;
+
+/**
+ * Ray casts and overlap tests against a {@link TriangleBvh}. A query holds the traversal stack
+ * and the last hit, so it allocates nothing per call but must not be shared between threads.
+ * Triangles are reported by their number in the mesh, that is the position of their first index
+ * divided by three.
+ *
+ * Ray distances are in multiples of the direction, which need not be unit length, so a hit lies
+ * at origin + distance * direction.
+ */
+public class BvhQuery {
+
+  private static final int NO_HIT = -1;
+  private static final float ROUNDING_SCALE = 1.00001f;
+
+  private final TriangleBvh bvh;
+  private final int[] stack;
+  private final float[] stackDistances;
+  private final float[] hitScratch = new float[3];
+
+  private int hitTriangle = NO_HIT;
+  private float hitDistance;
+  private float hitU;
+  private float hitV;
+
+  BvhQuery(TriangleBvh bvh) {
+    this.bvh = bvh;
+    // Each level pushes two children after popping their parent
+    this.stack = new int[bvh.depth + 2];
+    this.stackDistances = new float[bvh.depth + 2];
+  }
+
+  /**
+   * Finds the nearest triangle the ray hits within maxDistance, from either side. Ties go to the
+   * triangle numbered lowest, so results do not depend on how the hierarchy was built.
+   */
+  public boolean raycastClosest(float ox, float oy, float oz, float dx, float dy, float dz,
+      float maxDistance) {
+    hitTriangle = NO_HIT;
+    if (bvh.nodeCount == 0) {
+      return false;
+    }
+    float inverseX = 1f / dx;
+    float inverseY = 1f / dy;
+    float inverseZ = 1f / dz;
+    float closest = maxDistance;
+
+    int size = 0;
+    float rootDistance = rayEntry(0, ox, oy, oz, inverseX, inverseY, inverseZ, closest);
+    if (rootDistance != Float.POSITIVE_INFINITY) {
+      stack[size] = 0;
+      stackDistances[size++] = rootDistance;
+    }
+    while (size > 0) {
+      int node = stack[--size];
+      if (stackDistances[size] > closest * ROUNDING_SCALE) {
+        // Something nearer was hit since this node was pushed
+        continue;
+      }
+      int first = bvh.nodeData[node * TriangleBvh.NODE_STRIDE];
+      int count = bvh.nodeData[node * TriangleBvh.NODE_STRIDE + 1];
+      if (count > 0) {
+        for (int triangle = first; triangle < first + count; triangle++) {
+          if (Intersections.raycastTriangle(bvh.triangles, triangle * TriangleBvh.TRIANGLE_STRIDE,
+              ox, oy, oz, dx, dy, dz, hitScratch) && isCloser(hitScratch[0],
+              bvh.triangleIds[triangle], closest)) {
+            closest = hitScratch[0];
+            hitDistance = closest;
+            hitU = hitScratch[1];
+            hitV = hitScratch[2];
+            hitTriangle = bvh.triangleIds[triangle];
+          }
+        }
+        continue;
+      }
+
+      float leftDistance = rayEntry(first, ox, oy, oz, inverseX, inverseY, inverseZ, closest);
+      float rightDistance =
+          rayEntry(first + 1, ox, oy, oz, inverseX, inverseY, inverseZ, closest);
+      // Push the farther child first so the nearer one is searched first
+      boolean leftNearer = leftDistance <= rightDistance;
+      float nearDistance = leftNearer ? leftDistance : rightDistance;
+      float farDistance = leftNearer ? rightDistance : leftDistance;
+      if (farDistance != Float.POSITIVE_INFINITY) {
+        stack[size] = leftNearer ? first + 1 : first;
+        stackDistances[size++] = farDistance;
+      }
+      if (nearDistance != Float.POSITIVE_INFINITY) {
+        stack[size] = leftNearer ? first : first + 1;
+        stackDistances[size++] = nearDistance;
+      }
+    }
+    return hitTriangle != NO_HIT;
+  }
+
+  private boolean isCloser(float distance, int triangle, float closest) {
+    return distance < closest
+        || (distance == closest && (hitTriangle == NO_HIT || triangle < hitTriangle));
+  }
+
+  /**
+   * Returns true if the ray hits any triangle within maxDistance, stopping at the first one
+   * found. The hit is not recorded.
+   */
+  public boolean raycastAny(float ox, float oy, float oz, float dx, float dy, float dz,
+      float maxDistance) {
+    hitTriangle = NO_HIT;
+    if (bvh.nodeCount == 0) {
+      return false;
+    }
+    float inverseX = 1f / dx;
+    float inverseY = 1f / dy;
+    float inverseZ = 1f / dz;
+
+    int size = 0;
+    stack[size++] = 0;
+    while (size > 0) {
+      int node = stack[--size];
+      if (rayEntry(node, ox, oy, oz, inverseX, inverseY, inverseZ, maxDistance)
+          == Float.POSITIVE_INFINITY) {
+        continue;
+      }
+      int first = bvh.nodeData[node * TriangleBvh.NODE_STRIDE];
+      int count = bvh.nodeData[node * TriangleBvh.NODE_STRIDE + 1];
+      if (count == 0) {
+        stack[size++] = first + 1;
+        stack[size++] = first;
+        continue;
+      }
+      for (int triangle = first; triangle < first + count; triangle++) {
+        if (Intersections.raycastTriangle(bvh.triangles, triangle * TriangleBvh.TRIANGLE_STRIDE,
+            ox, oy, oz, dx, dy, dz, hitScratch) && hitScratch[0] <= maxDistance) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the mesh number of the triangle the last {@link #raycastClosest} hit, or -1 if it
+   * missed.
+   */
+  public int getHitTriangle() {
+    return hitTriangle;
+  }
+
+  public float getHitDistance() {
+    return hitDistance;
+  }
+
+  /**
+   * Returns the barycentric weight of the hit triangle's second corner at the hit.
+   */
+  public float getHitU() {
+    return hitU;
+  }
+
+  /**
+   * Returns the barycentric weight of the hit triangle's third corner at the hit.
+   */
+  public float getHitV() {
+    return hitV;
+  }
+
+  /**
+   * Finds the triangles touching the box, writing as many as fit to out in no particular order,
+   * and returns how many there are in all.
+   */
+  public int overlapBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+      int[] out) {
+    if (bvh.nodeCount == 0) {
+      return 0;
+    }
+    float centerX = (minX + maxX) / 2f;
+    float centerY = (minY + maxY) / 2f;
+    float centerZ = (minZ + maxZ) / 2f;
+    float halfX = (maxX - minX) / 2f;
+    float halfY = (maxY - minY) / 2f;
+    float halfZ = (maxZ - minZ) / 2f;
+
+    int found = 0;
+    int size = 0;
+    stack[size++] = 0;
+    while (size > 0) {
+      int node = stack[--size];
+      int bounds = node * TriangleBvh.BOUNDS_STRIDE;
+      float[] nodeBounds = bvh.nodeBounds;
+      if (nodeBounds[bounds] > maxX || nodeBounds[bounds + 3] < minX
+          || nodeBounds[bounds + 1] > maxY || nodeBounds[bounds + 4] < minY
+          || nodeBounds[bounds + 2] > maxZ || nodeBounds[bounds + 5] < minZ) {
+        continue;
+      }
+      int first = bvh.nodeData[node * TriangleBvh.NODE_STRIDE];
+      int count = bvh.nodeData[node * TriangleBvh.NODE_STRIDE + 1];
+      if (count == 0) {
+        stack[size++] = first + 1;
+        stack[size++] = first;
+        continue;
+      }
+      for (int triangle = first; triangle < first + count; triangle++) {
+        if (Intersections.triangleOverlapsBox(bvh.triangles,
+            triangle * TriangleBvh.TRIANGLE_STRIDE, centerX, centerY, centerZ, halfX, halfY,
+            halfZ)) {
+          if (found < out.length) {
+            out[found] = bvh.triangleIds[triangle];
+          }
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Finds the triangles touching the sphere, writing as many as fit to out in no particular
+   * order, and returns how many there are in all.
+   */
+  public int overlapSphere(float centerX, float centerY, float centerZ, float radius,
+      int[] out) {
+    if (bvh.nodeCount == 0) {
+      return 0;
+    }
+    float radiusSquared = radius * radius;
+
+    int found = 0;
+    int size = 0;
+    stack[size++] = 0;
+    while (size > 0) {
+      int node = stack[--size];
+      if (squaredDistanceToNode(node, centerX, centerY, centerZ) > radiusSquared) {
+        continue;
+      }
+      int first = bvh.nodeData[node * TriangleBvh.NODE_STRIDE];
+      int count = bvh.nodeData[node * TriangleBvh.NODE_STRIDE + 1];
+      if (count == 0) {
+        stack[size++] = first + 1;
+        stack[size++] = first;
+        continue;
+      }
+      for (int triangle = first; triangle < first + count; triangle++) {
+        if (Intersections.squaredDistanceToTriangle(bvh.triangles,
+            triangle * TriangleBvh.TRIANGLE_STRIDE, centerX, centerY, centerZ)
+            <= radiusSquared) {
+          if (found < out.length) {
+            out[found] = bvh.triangleIds[triangle];
+          }
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the distance at which the ray enters the node's box, clamped to 0 for rays starting
+   * inside it, or positive infinity if it misses the box within maxDistance.
+   */
+  private float rayEntry(int node, float ox, float oy, float oz, float inverseX, float inverseY,
+      float inverseZ, float maxDistance) {
+    int bounds = node * TriangleBvh.BOUNDS_STRIDE;
+    float[] nodeBounds = bvh.nodeBounds;
+    float near = 0f;
+    float far = maxDistance;
+    for (int axis = 0; axis < 3; axis++) {
+      float origin = axis == 0 ? ox : axis == 1 ? oy : oz;
+      float inverse = axis == 0 ? inverseX : axis == 1 ? inverseY : inverseZ;
+      float lower = (nodeBounds[bounds + axis] - origin) * inverse;
+      float upper = (nodeBounds[bounds + 3 + axis] - origin) * inverse;
+      // A ray along a face of the box gives 0 * infinity, and the comparisons below pass over
+      // the NaN so the ray counts as inside that slab
+      float entry = Math.min(lower, upper);
+      float exit = Math.max(lower, upper);
+      near = entry > near ? entry : near;
+      far = exit < far ? exit : far;
+    }
+    // Widened so rounding never loses a triangle on the box's surface, or one that ties the
+    // closest hit so far
+    return near <= far * ROUNDING_SCALE ? near : Float.POSITIVE_INFINITY;
+  }
+
+  private float squaredDistanceToNode(int node, float x, float y, float z) {
+    int bounds = node * TriangleBvh.BOUNDS_STRIDE;
+    float[] nodeBounds = bvh.nodeBounds;
+    float dx = Math.max(0f, Math.max(nodeBounds[bounds] - x, x - nodeBounds[bounds + 3]));
+    float dy = Math.max(0f, Math.max(nodeBounds[bounds + 1] - y, y - nodeBounds[bounds + 4]));
+    float dz = Math.max(0f, Math.max(nodeBounds[bounds + 2] - z, z - nodeBounds[bounds + 5]));
+    return dx * dx + dy * dy + dz * dz;
+  }
+}
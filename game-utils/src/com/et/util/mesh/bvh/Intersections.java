@@ -0,0 +1,214 @@
+package com.et.util.mesh.bvh;
+
+/**
+ * Exact tests of one triangle against a ray, a box and a sphere. Triangles are read as nine
+ * floats, x, y, z for each corner, starting at an offset into an array.
+ */
+final class Intersections {
+
+  private Intersections() {
+  }
+
+  /**
+   * Moller and Trumbore's ray triangle test, hitting both faces. On a hit at or beyond the
+   * origin, writes the distance in multiples of the direction and the barycentric u and v of the
+   * second and third corners to out[0..2].
+   */
+  static boolean raycastTriangle(float[] triangles, int offset, float ox, float oy, float oz,
+      float dx, float dy, float dz, float[] out) {
+    float ax = triangles[offset];
+    float ay = triangles[offset + 1];
+    float az = triangles[offset + 2];
+    float e1x = triangles[offset + 3] - ax;
+    float e1y = triangles[offset + 4] - ay;
+    float e1z = triangles[offset + 5] - az;
+    float e2x = triangles[offset + 6] - ax;
+    float e2y = triangles[offset + 7] - ay;
+    float e2z = triangles[offset + 8] - az;
+
+    float px = dy * e2z - dz * e2y;
+    float py = dz * e2x - dx * e2z;
+    float pz = dx * e2y - dy * e2x;
+    float determinant = e1x * px + e1y * py + e1z * pz;
+    if (determinant == 0f) {
+      // The ray runs along the triangle's plane
+      return false;
+    }
+    float inverse = 1f / determinant;
+
+    float sx = ox - ax;
+    float sy = oy - ay;
+    float sz = oz - az;
+    float u = (sx * px + sy * py + sz * pz) * inverse;
+    if (u < 0f || u > 1f) {
+      return false;
+    }
+    float qx = sy * e1z - sz * e1y;
+    float qy = sz * e1x - sx * e1z;
+    float qz = sx * e1y - sy * e1x;
+    float v = (dx * qx + dy * qy + dz * qz) * inverse;
+    if (v < 0f || u + v > 1f) {
+      return false;
+    }
+    float distance = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+    if (distance < 0f) {
+      return false;
+    }
+    out[0] = distance;
+    out[1] = u;
+    out[2] = v;
+    return true;
+  }
+
+  /**
+   * Akenine-Moller's separating axis test of a triangle against the box with the given center
+   * and half sizes.
+   */
+  static boolean triangleOverlapsBox(float[] triangles, int offset, float cx, float cy, float cz,
+      float hx, float hy, float hz) {
+    // Move the box to the origin
+    float v0x = triangles[offset] - cx;
+    float v0y = triangles[offset + 1] - cy;
+    float v0z = triangles[offset + 2] - cz;
+    float v1x = triangles[offset + 3] - cx;
+    float v1y = triangles[offset + 4] - cy;
+    float v1z = triangles[offset + 5] - cz;
+    float v2x = triangles[offset + 6] - cx;
+    float v2y = triangles[offset + 7] - cy;
+    float v2z = triangles[offset + 8] - cz;
+
+    // The box's own axes
+    if (Math.min(v0x, Math.min(v1x, v2x)) > hx || Math.max(v0x, Math.max(v1x, v2x)) < -hx
+        || Math.min(v0y, Math.min(v1y, v2y)) > hy || Math.max(v0y, Math.max(v1y, v2y)) < -hy
+        || Math.min(v0z, Math.min(v1z, v2z)) > hz || Math.max(v0z, Math.max(v1z, v2z)) < -hz) {
+      return false;
+    }
+
+    float e0x = v1x - v0x;
+    float e0y = v1y - v0y;
+    float e0z = v1z - v0z;
+    float e1x = v2x - v1x;
+    float e1y = v2y - v1y;
+    float e1z = v2z - v1z;
+    float e2x = v0x - v2x;
+    float e2y = v0y - v2y;
+    float e2z = v0z - v2z;
+
+    // The triangle's plane
+    float nx = e0y * e1z - e0z * e1y;
+    float ny = e0z * e1x - e0x * e1z;
+    float nz = e0x * e1y - e0y * e1x;
+    if (separates(nx, ny, nz, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)) {
+      return false;
+    }
+
+    // The cross products of the box's axes and the triangle's edges
+    return !separatesAcrossEdge(e0x, e0y, e0z, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx,
+            hy, hz)
+        && !separatesAcrossEdge(e1x, e1y, e1z, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx,
+            hy, hz)
+        && !separatesAcrossEdge(e2x, e2y, e2z, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx,
+            hy, hz);
+  }
+
+  private static boolean separatesAcrossEdge(float ex, float ey, float ez, float v0x, float v0y,
+      float v0z, float v1x, float v1y, float v1z, float v2x, float v2y, float v2z, float hx,
+      float hy, float hz) {
+    return separates(0f, -ez, ey, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+        || separates(ez, 0f, -ex, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+        || separates(-ey, ex, 0f, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz);
+  }
+
+  private static boolean separates(float ax, float ay, float az, float v0x, float v0y,
+      float v0z, float v1x, float v1y, float v1z, float v2x, float v2y, float v2z, float hx,
+      float hy, float hz) {
+    float p0 = ax * v0x + ay * v0y + az * v0z;
+    float p1 = ax * v1x + ay * v1y + az * v1z;
+    float p2 = ax * v2x + ay * v2y + az * v2z;
+    float radius = hx * Math.abs(ax) + hy * Math.abs(ay) + hz * Math.abs(az);
+    return Math.min(p0, Math.min(p1, p2)) > radius || Math.max(p0, Math.max(p1, p2)) < -radius;
+  }
+
+  /**
+   * Returns the squared distance from a point to the closest point of a triangle, found by
+   * Ericson's Voronoi region walk.
+   */
+  static float squaredDistanceToTriangle(float[] triangles, int offset, float px, float py,
+      float pz) {
+    float ax = triangles[offset];
+    float ay = triangles[offset + 1];
+    float az = triangles[offset + 2];
+    float bx = triangles[offset + 3];
+    float by = triangles[offset + 4];
+    float bz = triangles[offset + 5];
+    float cx = triangles[offset + 6];
+    float cy = triangles[offset + 7];
+    float cz = triangles[offset + 8];
+    float abx = bx - ax;
+    float aby = by - ay;
+    float abz = bz - az;
+    float acx = cx - ax;
+    float acy = cy - ay;
+    float acz = cz - az;
+
+    float apx = px - ax;
+    float apy = py - ay;
+    float apz = pz - az;
+    float d1 = abx * apx + aby * apy + abz * apz;
+    float d2 = acx * apx + acy * apy + acz * apz;
+    if (d1 <= 0f && d2 <= 0f) {
+      return squaredDistance(px, py, pz, ax, ay, az);
+    }
+
+    float bpx = px - bx;
+    float bpy = py - by;
+    float bpz = pz - bz;
+    float d3 = abx * bpx + aby * bpy + abz * bpz;
+    float d4 = acx * bpx + acy * bpy + acz * bpz;
+    if (d3 >= 0f && d4 <= d3) {
+      return squaredDistance(px, py, pz, bx, by, bz);
+    }
+
+    float vc = d1 * d4 - d3 * d2;
+    if (vc <= 0f && d1 >= 0f && d3 <= 0f) {
+      float t = d1 / (d1 - d3);
+      return squaredDistance(px, py, pz, ax + abx * t, ay + aby * t, az + abz * t);
+    }
+
+    float cpx = px - cx;
+    float cpy = py - cy;
+    float cpz = pz - cz;
+    float d5 = abx * cpx + aby * cpy + abz * cpz;
+    float d6 = acx * cpx + acy * cpy + acz * cpz;
+    if (d6 >= 0f && d5 <= d6) {
+      return squaredDistance(px, py, pz, cx, cy, cz);
+    }
+
+    float vb = d5 * d2 - d1 * d6;
+    if (vb <= 0f && d2 >= 0f && d6 <= 0f) {
+      float t = d2 / (d2 - d6);
+      return squaredDistance(px, py, pz, ax + acx * t, ay + acy * t, az + acz * t);
+    }
+
+    float va = d3 * d6 - d5 * d4;
+    if (va <= 0f && d4 - d3 >= 0f && d5 - d6 >= 0f) {
+      float t = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+      return squaredDistance(px, py, pz, bx + (cx - bx) * t, by + (cy - by) * t,
+          bz + (cz - bz) * t);
+    }
+
+    float scale = 1f / (va + vb + vc);
+    float v = vb * scale;
+    float w = vc * scale;
+    return squaredDistance(px, py, pz, ax + abx * v + acx * w, ay + aby * v + acy * w,
+        az + abz * v + acz * w);
+  }
+
+  private static float squaredDistance(float ax, float ay, float az, float bx, float by,
+      float bz) {
+    float dx = ax - bx;
+    float dy = ay - by;
+    float dz = az - bz;
+    return dx * dx + dy * dy + dz * dz;
+  }
+}
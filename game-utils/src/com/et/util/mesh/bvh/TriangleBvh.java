@@ -0,0 +1,77 @@
+package com.et.util.mesh.bvh;
+
+import com.google.common.base.Objects;
+
+/**
+ * A bounding volume hierarchy over a mesh's triangles, made by a {@link TriangleBvhBuilder} and
+ * queried through {@link BvhQuery}s. Nodes are held in flat arrays with no object per node. Each
+ * node has six floats of bounds, min x, y, z then max x, y, z, and two ints: the first of its two
+ * adjacent children and 0 for an inner node, or its first triangle and triangle count for a
+ * leaf. Triangles are stored in leaf order, nine floats each, next to the number each had in the
+ * mesh, so a leaf's triangles are read in one run.
+ *
+ * A hierarchy is never changed once built, so any number of threads can query it at once.
+ */
+public class TriangleBvh {
+
+  static final int BOUNDS_STRIDE = 6;
+  static final int NODE_STRIDE = 2;
+  static final int TRIANGLE_STRIDE = 9;
+
+  final float[] nodeBounds;
+  final int[] nodeData;
+  final int nodeCount;
+  final int depth;
+  final float[] triangles;
+  final int[] triangleIds;
+
+  TriangleBvh(float[] nodeBounds, int[] nodeData, int nodeCount, int depth, float[] triangles,
+      int[] triangleIds) {
+    this.nodeBounds = nodeBounds;
+    this.nodeData = nodeData;
+    this.nodeCount = nodeCount;
+    this.depth = depth;
+    this.triangles = triangles;
+    this.triangleIds = triangleIds;
+  }
+
+  public int getTriangleCount() {
+    return triangleIds.length;
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * Returns the number of nodes on the longest path from the root to a leaf, or 0 without
+   * triangles.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns a new query over this hierarchy. Queries keep their own traversal stack and hit, so
+   * each thread needs its own, but one query can be reused for any number of casts and overlap
+   * tests without allocating.
+   */
+  public BvhQuery newQuery() {
+    return new BvhQuery(this);
+  }
+
+  public long getSizeInBytes() {
+    // Floats and ints both take four bytes
+    return (nodeCount * (BOUNDS_STRIDE + NODE_STRIDE) + triangles.length + triangleIds.length)
+        * 4L;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("triangleCount", getTriangleCount())
+        .add("nodeCount", nodeCount)
+        .add("depth", depth)
+        .toString();
+  }
+}
@@ -0,0 +1,455 @@
+package com.et.util.mesh.bvh;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.et.util.concurrent.MoreFutures;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Builds {@link TriangleBvh}s over a mesh's vertices and vertex indices with the binned surface
+ * area heuristic: each node's triangles are sorted into bins by centroid along each axis, and the
+ * node is split at the bin boundary that minimizes the expected cost of a ray passing through it.
+ * Nodes with at most the leaf size of triangles become leaves, as do nodes the heuristic finds
+ * cheaper to test whole. Triangles whose centroids all coincide are split in half.
+ *
+ * The top of the tree is built on the calling thread until every unfinished node holds at most
+ * {@link #SUBTREE_TRIANGLES} triangles, and those subtrees are then built on the executor, if
+ * there is one, and joined in the order they were found. The subtrees are the same with or
+ * without an executor, so the hierarchy is too.
+ */
+public class TriangleBvhBuilder {
+
+  public static final int DEFAULT_MAX_LEAF_SIZE = 4;
+  public static final int SUBTREE_TRIANGLES = 4096;
+
+  private static final int BINS = 16;
+  // Cost of visiting a node relative to testing a triangle
+  private static final float TRAVERSAL_COST = 1f;
+  private static final int WORK_STRIDE = 4;
+
+  private final int maxLeafSize;
+  private final ExecutorService executor;
+
+  public TriangleBvhBuilder() {
+    this(DEFAULT_MAX_LEAF_SIZE, null);
+  }
+
+  public TriangleBvhBuilder(ExecutorService executor) {
+    this(DEFAULT_MAX_LEAF_SIZE, Preconditions.checkNotNull(executor));
+  }
+
+  /**
+   * Builds with leaves of at most maxLeafSize triangles, on the executor if it is not null.
+   */
+  public TriangleBvhBuilder(int maxLeafSize, ExecutorService executor) {
+    Preconditions.checkArgument(maxLeafSize > 0, "Leaf size %s is not positive.", maxLeafSize);
+    this.maxLeafSize = maxLeafSize;
+    this.executor = executor;
+  }
+
+  /**
+   * Builds a hierarchy over every triangle of the mesh. The mesh need not have unified indices,
+   * as only its vertex indices are used.
+   */
+  public TriangleBvh build(MeshData mesh) {
+    FloatBuffer vertices = mesh.getVerticies();
+    IntBuffer indices = mesh.getVertexIndices();
+    int triangleCount = indices.capacity() / INDICES_PER_TRIANGLE;
+    if (triangleCount == 0) {
+      return new TriangleBvh(new float[0], new int[0], 0, 0, new float[0], new int[0]);
+    }
+
+    final Triangles triangles = new Triangles(vertices, indices, triangleCount);
+    NodeList top = new NodeList(2 * triangleCount / SUBTREE_TRIANGLES + 1);
+    top.add(triangles, 0, triangleCount);
+    final List<Subtree> subtrees = Lists.newArrayList();
+    int topDepth = grow(triangles, top, 0, 0, triangleCount, 1, subtrees);
+
+    if (executor == null || subtrees.size() == 1) {
+      for (Subtree subtree : subtrees) {
+        subtree.build(triangles);
+      }
+    } else {
+      List<Future<Void>> pending = Lists.newArrayListWithCapacity(subtrees.size());
+      for (final Subtree subtree : subtrees) {
+        pending.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            subtree.build(triangles);
+            return null;
+          }
+        }));
+      }
+      MoreFutures.getAll(pending);
+    }
+
+    int depth = topDepth;
+    for (Subtree subtree : subtrees) {
+      top.graft(subtree.node, subtree.nodes);
+      depth = Math.max(depth, subtree.depth + subtree.nodes.depth - 1);
+    }
+    return new TriangleBvh(Arrays.copyOf(top.bounds, top.count * TriangleBvh.BOUNDS_STRIDE),
+        Arrays.copyOf(top.data, top.count * TriangleBvh.NODE_STRIDE), top.count, depth,
+        triangles.inLeafOrder(), triangles.order);
+  }
+
+  /**
+   * Splits the node at root, which holds positions [start, end) of the triangle order, until
+   * every node below it is a leaf, or if subtrees is not null until every unfinished node is
+   * small enough to be added to subtrees instead. Returns the depth of the deepest node made.
+   */
+  private int grow(Triangles triangles, NodeList nodes, int root, int start, int end,
+      int rootDepth, List<Subtree> subtrees) {
+    Binning binning = new Binning();
+    int[] work = new int[WORK_STRIDE * 16];
+    int size = push(work, 0, root, start, end, rootDepth);
+    int depth = rootDepth;
+    while (size > 0) {
+      size -= WORK_STRIDE;
+      int node = work[size];
+      int first = work[size + 1];
+      int last = work[size + 2];
+      int nodeDepth = work[size + 3];
+      int count = last - first;
+      depth = Math.max(depth, nodeDepth);
+
+      if (subtrees != null && count <= SUBTREE_TRIANGLES) {
+        subtrees.add(new Subtree(node, first, last, nodeDepth));
+        continue;
+      }
+      int middle = count <= maxLeafSize ? first
+          : binning.split(triangles, first, last, nodes.surfaceArea(node));
+      if (middle == first) {
+        nodes.setLeaf(node, first, count);
+        continue;
+      }
+
+      int left = nodes.add(triangles, first, middle);
+      nodes.add(triangles, middle, last);
+      nodes.setInner(node, left);
+      if (size + 2 * WORK_STRIDE > work.length) {
+        work = Arrays.copyOf(work, work.length * 2);
+      }
+      size = push(work, size, left + 1, middle, last, nodeDepth + 1);
+      size = push(work, size, left, first, middle, nodeDepth + 1);
+    }
+    return depth;
+  }
+
+  private static int push(int[] work, int size, int node, int start, int end, int depth) {
+    work[size] = node;
+    work[size + 1] = start;
+    work[size + 2] = end;
+    work[size + 3] = depth;
+    return size + WORK_STRIDE;
+  }
+
+  /**
+   * A node left for a task of its own, and the nodes below it once built.
+   */
+  private class Subtree {
+
+    final int node;
+    final int start;
+    final int end;
+    final int depth;
+    NodeList nodes;
+
+    Subtree(int node, int start, int end, int depth) {
+      this.node = node;
+      this.start = start;
+      this.end = end;
+      this.depth = depth;
+    }
+
+    void build(Triangles triangles) {
+      NodeList built = new NodeList(2 * (end - start) / maxLeafSize + 1);
+      built.add(triangles, start, end);
+      built.depth = grow(triangles, built, 0, start, end, 1, null);
+      nodes = built;
+    }
+  }
+
+  /**
+   * The mesh's triangles, with the bounds and centroid of each, and the order the build sorts
+   * them into. Subtrees only reorder their own run of the order, so tasks can share one.
+   */
+  private static class Triangles {
+
+    final FloatBuffer vertices;
+    final IntBuffer indices;
+    final float[] bounds;
+    final float[] centroids;
+    final int[] order;
+
+    Triangles(FloatBuffer vertices, IntBuffer indices, int count) {
+      this.vertices = vertices;
+      this.indices = indices;
+      this.bounds = new float[count * TriangleBvh.BOUNDS_STRIDE];
+      this.centroids = new float[count * 3];
+      this.order = new int[count];
+      for (int triangle = 0; triangle < count; triangle++) {
+        order[triangle] = triangle;
+        int box = triangle * TriangleBvh.BOUNDS_STRIDE;
+        for (int axis = 0; axis < 3; axis++) {
+          bounds[box + axis] = Float.POSITIVE_INFINITY;
+          bounds[box + 3 + axis] = Float.NEGATIVE_INFINITY;
+        }
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int vertex = indices.get(triangle * INDICES_PER_TRIANGLE + corner) * VERTEX_COMPONENTS;
+          for (int axis = 0; axis < 3; axis++) {
+            float value = vertices.get(vertex + axis);
+            bounds[box + axis] = Math.min(bounds[box + axis], value);
+            bounds[box + 3 + axis] = Math.max(bounds[box + 3 + axis], value);
+          }
+        }
+        for (int axis = 0; axis < 3; axis++) {
+          centroids[triangle * 3 + axis] = (bounds[box + axis] + bounds[box + 3 + axis]) / 2f;
+        }
+      }
+    }
+
+    /**
+     * Returns the corners of every triangle in the built order, nine floats each.
+     */
+    float[] inLeafOrder() {
+      float[] sorted = new float[order.length * TriangleBvh.TRIANGLE_STRIDE];
+      for (int position = 0; position < order.length; position++) {
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int vertex = indices.get(order[position] * INDICES_PER_TRIANGLE + corner)
+              * VERTEX_COMPONENTS;
+          int target = position * TriangleBvh.TRIANGLE_STRIDE + corner * 3;
+          sorted[target] = vertices.get(vertex);
+          sorted[target + 1] = vertices.get(vertex + 1);
+          sorted[target + 2] = vertices.get(vertex + 2);
+        }
+      }
+      return sorted;
+    }
+  }
+
+  /**
+   * Scratch space for finding the best split of a node, reused from node to node.
+   */
+  private static class Binning {
+
+    final int[] counts = new int[3 * BINS];
+    final float[] binBounds = new float[3 * BINS * TriangleBvh.BOUNDS_STRIDE];
+    // Surface area and triangle count of everything right of each bin boundary
+    final float[] rightAreas = new float[BINS];
+    final int[] rightCounts = new int[BINS];
+    final float[] sweep = new float[TriangleBvh.BOUNDS_STRIDE];
+    final float[] centroidMin = new float[3];
+    final float[] centroidMax = new float[3];
+    final float[] centroidScale = new float[3];
+
+    /**
+     * Reorders positions [start, end) of the triangle order so the node's left child comes first
+     * and returns where the right child starts, or start if the node should be a leaf.
+     */
+    int split(Triangles triangles, int start, int end, float nodeArea) {
+      int count = end - start;
+      float[] centroids = triangles.centroids;
+      int[] order = triangles.order;
+      for (int axis = 0; axis < 3; axis++) {
+        centroidMin[axis] = Float.POSITIVE_INFINITY;
+        centroidMax[axis] = Float.NEGATIVE_INFINITY;
+      }
+      for (int position = start; position < end; position++) {
+        int centroid = order[position] * 3;
+        for (int axis = 0; axis < 3; axis++) {
+          centroidMin[axis] = Math.min(centroidMin[axis], centroids[centroid + axis]);
+          centroidMax[axis] = Math.max(centroidMax[axis], centroids[centroid + axis]);
+        }
+      }
+      boolean degenerate = true;
+      for (int axis = 0; axis < 3; axis++) {
+        float extent = centroidMax[axis] - centroidMin[axis];
+        centroidScale[axis] = extent > 0f ? BINS / extent : 0f;
+        degenerate &= extent <= 0f;
+      }
+      if (degenerate) {
+        // Nothing tells the triangles apart, so halve them to keep leaves small
+        return start + count / 2;
+      }
+
+      Arrays.fill(counts, 0);
+      for (int bin = 0; bin < 3 * BINS; bin++) {
+        resetBox(binBounds, bin * TriangleBvh.BOUNDS_STRIDE);
+      }
+      for (int position = start; position < end; position++) {
+        int triangle = order[position];
+        for (int axis = 0; axis < 3; axis++) {
+          if (centroidScale[axis] == 0f) {
+            continue;
+          }
+          int bin = axis * BINS + binOf(centroids[triangle * 3 + axis], axis);
+          counts[bin]++;
+          growBox(binBounds, bin * TriangleBvh.BOUNDS_STRIDE, triangles.bounds,
+              triangle * TriangleBvh.BOUNDS_STRIDE);
+        }
+      }
+
+      float bestCost = Float.POSITIVE_INFINITY;
+      int bestAxis = -1;
+      int bestBin = 0;
+      for (int axis = 0; axis < 3; axis++) {
+        if (centroidScale[axis] == 0f) {
+          continue;
+        }
+        resetBox(sweep, 0);
+        int rightCount = 0;
+        for (int bin = BINS - 1; bin > 0; bin--) {
+          growBox(sweep, 0, binBounds, (axis * BINS + bin) * TriangleBvh.BOUNDS_STRIDE);
+          rightCount += counts[axis * BINS + bin];
+          rightAreas[bin] = surfaceArea(sweep, 0);
+          rightCounts[bin] = rightCount;
+        }
+        resetBox(sweep, 0);
+        int leftCount = 0;
+        for (int bin = 1; bin < BINS; bin++) {
+          growBox(sweep, 0, binBounds, (axis * BINS + bin - 1) * TriangleBvh.BOUNDS_STRIDE);
+          leftCount += counts[axis * BINS + bin - 1];
+          if (leftCount == 0 || rightCounts[bin] == 0) {
+            continue;
+          }
+          float cost = surfaceArea(sweep, 0) * leftCount + rightAreas[bin] * rightCounts[bin];
+          if (cost < bestCost) {
+            bestCost = cost;
+            bestAxis = axis;
+            bestBin = bin;
+          }
+        }
+      }
+
+      // Costs so far are in triangle tests times area, relative to the node's own area
+      float splitCost = nodeArea > 0f ? TRAVERSAL_COST + bestCost / nodeArea : count;
+      if (bestAxis < 0 || splitCost >= count) {
+        return start;
+      }
+
+      int left = start;
+      int right = end - 1;
+      while (left <= right) {
+        if (binOf(centroids[order[left] * 3 + bestAxis], bestAxis) < bestBin) {
+          left++;
+        } else {
+          int swap = order[left];
+          order[left] = order[right];
+          order[right--] = swap;
+        }
+      }
+      return left;
+    }
+
+    private int binOf(float centroid, int axis) {
+      return Math.min(BINS - 1, (int) ((centroid - centroidMin[axis]) * centroidScale[axis]));
+    }
+  }
+
+  /**
+   * Growable flat storage for nodes, laid out as in {@link TriangleBvh}.
+   */
+  private static class NodeList {
+
+    float[] bounds;
+    int[] data;
+    int count;
+    int depth;
+
+    NodeList(int capacity) {
+      bounds = new float[capacity * TriangleBvh.BOUNDS_STRIDE];
+      data = new int[capacity * TriangleBvh.NODE_STRIDE];
+    }
+
+    /**
+     * Adds a node bounding positions [start, end) of the triangle order and returns its number.
+     */
+    int add(Triangles triangles, int start, int end) {
+      ensureCapacity(count + 1);
+      int box = count * TriangleBvh.BOUNDS_STRIDE;
+      resetBox(bounds, box);
+      for (int position = start; position < end; position++) {
+        growBox(bounds, box, triangles.bounds,
+            triangles.order[position] * TriangleBvh.BOUNDS_STRIDE);
+      }
+      return count++;
+    }
+
+    void setLeaf(int node, int first, int triangleCount) {
+      data[node * TriangleBvh.NODE_STRIDE] = first;
+      data[node * TriangleBvh.NODE_STRIDE + 1] = triangleCount;
+    }
+
+    void setInner(int node, int left) {
+      data[node * TriangleBvh.NODE_STRIDE] = left;
+      data[node * TriangleBvh.NODE_STRIDE + 1] = 0;
+    }
+
+    float surfaceArea(int node) {
+      return TriangleBvhBuilder.surfaceArea(bounds, node * TriangleBvh.BOUNDS_STRIDE);
+    }
+
+    /**
+     * Replaces node with the root of subtree and appends the rest of its nodes. Leaves already
+     * point into the shared triangle order, so only child numbers change.
+     */
+    void graft(int node, NodeList subtree) {
+      int base = count - 1;
+      ensureCapacity(count + subtree.count - 1);
+      System.arraycopy(subtree.bounds, TriangleBvh.BOUNDS_STRIDE, bounds,
+          count * TriangleBvh.BOUNDS_STRIDE, (subtree.count - 1) * TriangleBvh.BOUNDS_STRIDE);
+      for (int local = 0; local < subtree.count; local++) {
+        int global = local == 0 ? node : base + local;
+        int first = subtree.data[local * TriangleBvh.NODE_STRIDE];
+        int triangleCount = subtree.data[local * TriangleBvh.NODE_STRIDE + 1];
+        if (triangleCount == 0) {
+          setInner(global, base + first);
+        } else {
+          setLeaf(global, first, triangleCount);
+        }
+      }
+      count += subtree.count - 1;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity * TriangleBvh.NODE_STRIDE > data.length) {
+        int grown = Math.max(capacity, data.length / TriangleBvh.NODE_STRIDE * 2);
+        bounds = Arrays.copyOf(bounds, grown * TriangleBvh.BOUNDS_STRIDE);
+        data = Arrays.copyOf(data, grown * TriangleBvh.NODE_STRIDE);
+      }
+    }
+  }
+
+  private static void resetBox(float[] box, int offset) {
+    for (int axis = 0; axis < 3; axis++) {
+      box[offset + axis] = Float.POSITIVE_INFINITY;
+      box[offset + 3 + axis] = Float.NEGATIVE_INFINITY;
+    }
+  }
+
+  private static void growBox(float[] box, int offset, float[] other, int otherOffset) {
+    for (int axis = 0; axis < 3; axis++) {
+      box[offset + axis] = Math.min(box[offset + axis], other[otherOffset + axis]);
+      box[offset + 3 + axis] = Math.max(box[offset + 3 + axis], other[otherOffset + 3 + axis]);
+    }
+  }
+
+  private static float surfaceArea(float[] box, int offset) {
+    float x = box[offset + 3] - box[offset];
+    float y = box[offset + 4] - box[offset + 1];
+    float z = box[offset + 5] - box[offset + 2];
+    return 2f * (x * y + y * z + z * x);
+  }
+}
@@ -0,0 +1,96 @@
+package com.et.util.mesh.culling;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * The six planes bounding a view, for {@link FrustumCuller}. Each plane is four floats a, b, c and
+ * d, with (a, b, c) of unit length and pointing into the frustum, so a point is on the inside of
+ * a plane when a * x + b * y + c * z + d is at least 0. Planes are numbered as the constants
+ * below.
+ *
+ * A frustum is meant to be set once per frame and reused, so it is mutable.
+ */
+public class Frustum {
+
+  public static final int LEFT = 0;
+  public static final int RIGHT = 1;
+  public static final int BOTTOM = 2;
+  public static final int TOP = 3;
+  public static final int NEAR = 4;
+  public static final int FAR = 5;
+  public static final int PLANES = 6;
+
+  static final int PLANE_COMPONENTS = 4;
+
+  final float[] planes = new float[PLANES * PLANE_COMPONENTS];
+
+  /**
+   * Sets the planes from a column major view projection matrix, as made by
+   * android.opengl.Matrix, so the frustum is in the space the matrix transforms from: world
+   * space for a view projection matrix, or view space for a projection matrix alone.
+   */
+  public Frustum setFromMatrix(float[] matrix, int offset) {
+    Preconditions.checkArgument(offset >= 0 && offset + 16 <= matrix.length,
+        "Matrix at %s does not fit in %s floats.", offset, matrix.length);
+    // Each plane is the fourth row of the matrix plus or minus one of the others
+    for (int plane = 0; plane < PLANES; plane++) {
+      int row = plane / 2;
+      float sign = plane % 2 == 0 ? 1f : -1f;
+      for (int column = 0; column < PLANE_COMPONENTS; column++) {
+        planes[plane * PLANE_COMPONENTS + column] = matrix[offset + column * 4 + 3]
+            + sign * matrix[offset + column * 4 + row];
+      }
+    }
+    normalize();
+    return this;
+  }
+
+  /**
+   * Sets the planes from 24 floats, four per plane in the order of the plane constants. The
+   * normals need not be unit length but must point inwards.
+   */
+  public Frustum setPlanes(float[] newPlanes) {
+    Preconditions.checkArgument(newPlanes.length == planes.length,
+        "Expected %s plane components but got %s.", planes.length, newPlanes.length);
+    System.arraycopy(newPlanes, 0, planes, 0, planes.length);
+    normalize();
+    return this;
+  }
+
+  private void normalize() {
+    for (int plane = 0; plane < PLANES; plane++) {
+      int base = plane * PLANE_COMPONENTS;
+      float length = (float) Math.sqrt(planes[base] * planes[base]
+          + planes[base + 1] * planes[base + 1] + planes[base + 2] * planes[base + 2]);
+      Preconditions.checkArgument(length > 0f, "Plane %s has no normal.", plane);
+      for (int component = 0; component < PLANE_COMPONENTS; component++) {
+        planes[base + component] /= length;
+      }
+    }
+  }
+
+  /**
+   * Returns component 0 to 3, that is a, b, c or d, of a plane.
+   */
+  public float getPlaneComponent(int plane, int component) {
+    return planes[plane * PLANE_COMPONENTS + component];
+  }
+
+  /**
+   * Returns the signed distance of a point from a plane, positive on the inside.
+   */
+  public float distance(int plane, float x, float y, float z) {
+    int base = plane * PLANE_COMPONENTS;
+    return planes[base] * x + planes[base + 1] * y + planes[base + 2] * z + planes[base + 3];
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("planes", Arrays.toString(planes))
+        .toString();
+  }
+}
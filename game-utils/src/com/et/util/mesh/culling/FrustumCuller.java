@@ -0,0 +1,212 @@
+package com.et.util.mesh.culling;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.et.util.concurrent.MoreFutures;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Finds the instances of an {@link InstanceList} that may be visible in a {@link Frustum}. An
+ * instance is culled if its bounding sphere or its bounding box is wholly outside any plane; the
+ * box is only tested against planes the sphere straddles. Two tricks, after Assarsson and
+ * Moller, skip most plane tests in scenes that change little from frame to frame:
+ *
+ * Masking: each block of instances is tested first. A block outside a plane is culled whole, and
+ * planes a block is wholly inside are masked out for its instances, so a block inside the
+ * frustum is accepted without testing any of them.
+ *
+ * Plane coherency: the plane that last culled each instance and block is remembered and tested
+ * first next time, and is usually the one that culls it again.
+ *
+ * Large lists are split into runs of whole blocks, each culled by its own task on the executor,
+ * if there is one.
+ *
+ * The remembered planes only change which plane is tested first, never the result. They belong
+ * to one view, so each camera or shadow map needs its own culler, and a culler must not be used
+ * from two threads at once.
+ */
+public class FrustumCuller {
+
+  public static final int DEFAULT_INSTANCES_PER_TASK = 2048;
+
+  private static final int ALL_PLANES = (1 << Frustum.PLANES) - 1;
+  private static final int COMPONENTS = Frustum.PLANE_COMPONENTS;
+
+  private final ExecutorService executor;
+  private final int blocksPerTask;
+
+  private byte[] instancePlanes = new byte[0];
+  private byte[] blockPlanes = new byte[0];
+
+  public FrustumCuller() {
+    this(null, DEFAULT_INSTANCES_PER_TASK);
+  }
+
+  public FrustumCuller(ExecutorService executor) {
+    this(Preconditions.checkNotNull(executor), DEFAULT_INSTANCES_PER_TASK);
+  }
+
+  /**
+   * Culls runs of about instancesPerTask instances, rounded up to whole blocks, as separate tasks
+   * on the executor if it is not null.
+   */
+  public FrustumCuller(ExecutorService executor, int instancesPerTask) {
+    Preconditions.checkArgument(instancesPerTask > 0, "Instances per task %s is not positive.",
+        instancesPerTask);
+    this.executor = executor;
+    this.blocksPerTask =
+        (instancesPerTask + InstanceList.BLOCK_SIZE - 1) / InstanceList.BLOCK_SIZE;
+  }
+
+  /**
+   * Writes the numbers of the instances that may be visible to the start of visible, which must
+   * have room for every instance, in increasing order, and returns how many there are.
+   */
+  public int cull(final InstanceList instances, Frustum frustum, final int[] visible) {
+    Preconditions.checkArgument(visible.length >= instances.size(),
+        "Room for %s instances but there are %s.", visible.length, instances.size());
+    instances.refreshBlocks();
+    final int blockCount = instances.blockCount();
+    if (instancePlanes.length < instances.size()) {
+      instancePlanes =
+          Arrays.copyOf(instancePlanes, Math.max(instances.size(), instancePlanes.length * 2));
+    }
+    if (blockPlanes.length < blockCount) {
+      blockPlanes = Arrays.copyOf(blockPlanes, Math.max(blockCount, blockPlanes.length * 2));
+    }
+    final float[] planes = frustum.planes;
+
+    if (executor == null || blockCount <= blocksPerTask) {
+      return cullBlocks(instances, planes, 0, blockCount, visible);
+    }
+
+    List<Future<Integer>> pending = Lists.newArrayList();
+    for (int first = 0; first < blockCount; first += blocksPerTask) {
+      final int firstBlock = first;
+      pending.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return cullBlocks(instances, planes, firstBlock,
+              Math.min(blockCount, firstBlock + blocksPerTask), visible);
+        }
+      }));
+    }
+
+    // Each task wrote from its own first instance on, so close the gaps between them in order
+    List<Integer> found = MoreFutures.getAll(pending);
+    int count = 0;
+    for (int task = 0; task < found.size(); task++) {
+      System.arraycopy(visible, task * blocksPerTask * InstanceList.BLOCK_SIZE, visible, count,
+          found.get(task));
+      count += found.get(task);
+    }
+    return count;
+  }
+
+  /**
+   * Culls blocks [firstBlock, endBlock), writing the visible instances from the first instance
+   * of firstBlock on, and returns how many there are.
+   */
+  private int cullBlocks(InstanceList instances, float[] planes, int firstBlock, int endBlock,
+      int[] visible) {
+    int count = 0;
+    int output = firstBlock * InstanceList.BLOCK_SIZE;
+    for (int block = firstBlock; block < endBlock; block++) {
+      int mask = blockMask(instances.blockBounds, planes, block);
+      if (mask < 0) {
+        continue;
+      }
+      int end = Math.min(instances.size, (block + 1) * InstanceList.BLOCK_SIZE);
+      float[] radius = instances.radius;
+      for (int instance = block * InstanceList.BLOCK_SIZE; instance < end; instance++) {
+        // Empty meshes have a negative radius and are never visible
+        if (mask == 0 ? radius[instance] >= 0f : isVisible(instances, planes, instance, mask)) {
+          visible[output + count++] = instance;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns -1 if the block is outside the frustum, and otherwise the planes its instances still
+   * need testing against, one bit per plane.
+   */
+  private int blockMask(float[] bounds, float[] planes, int block) {
+    int base = block * InstanceList.BOX_COMPONENTS;
+    if (bounds[base] > bounds[base + 3]) {
+      // Only empty meshes
+      return -1;
+    }
+    int mask = ALL_PLANES;
+    int first = blockPlanes[block];
+    for (int step = 0; step <= Frustum.PLANES; step++) {
+      // The remembered plane first, then the rest in order
+      int plane = step == 0 ? first : step - 1;
+      if (step > 0 && plane == first) {
+        continue;
+      }
+      int p = plane * COMPONENTS;
+      float a = planes[p];
+      float b = planes[p + 1];
+      float c = planes[p + 2];
+      float d = planes[p + 3];
+      // The corners furthest along and against the plane's normal
+      float farthest = a * bounds[base + (a >= 0f ? 3 : 0)] + b * bounds[base + (b >= 0f ? 4 : 1)]
+          + c * bounds[base + (c >= 0f ? 5 : 2)] + d;
+      if (farthest < 0f) {
+        blockPlanes[block] = (byte) plane;
+        return -1;
+      }
+      float nearest = a * bounds[base + (a >= 0f ? 0 : 3)] + b * bounds[base + (b >= 0f ? 1 : 4)]
+          + c * bounds[base + (c >= 0f ? 2 : 5)] + d;
+      if (nearest >= 0f) {
+        mask &= ~(1 << plane);
+      }
+    }
+    return mask;
+  }
+
+  private boolean isVisible(InstanceList instances, float[] planes, int instance, int mask) {
+    int first = instancePlanes[instance];
+    if ((mask & (1 << first)) != 0 && isOutside(instances, planes, first, instance)) {
+      return false;
+    }
+    for (int plane = 0; plane < Frustum.PLANES; plane++) {
+      if (plane != first && (mask & (1 << plane)) != 0
+          && isOutside(instances, planes, plane, instance)) {
+        instancePlanes[instance] = (byte) plane;
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isOutside(InstanceList instances, float[] planes, int plane,
+      int instance) {
+    int p = plane * COMPONENTS;
+    float a = planes[p];
+    float b = planes[p + 1];
+    float c = planes[p + 2];
+    float d = planes[p + 3];
+    float distance = a * instances.centerX[instance] + b * instances.centerY[instance]
+        + c * instances.centerZ[instance] + d;
+    float radius = instances.radius[instance];
+    if (distance < -radius) {
+      return true;
+    }
+    if (distance >= radius) {
+      return false;
+    }
+    // The sphere straddles the plane, but the box may not
+    float farthest = a * (a >= 0f ? instances.maxX[instance] : instances.minX[instance])
+        + b * (b >= 0f ? instances.maxY[instance] : instances.minY[instance])
+        + c * (c >= 0f ? instances.maxZ[instance] : instances.minZ[instance]) + d;
+    return farthest < 0f;
+  }
+}
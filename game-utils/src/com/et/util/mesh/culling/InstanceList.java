@@ -0,0 +1,256 @@
+package com.et.util.mesh.culling;
+
+import java.util.Arrays;
+
+import com.et.util.mesh.data.Bounds;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Placed instances of meshes, kept for {@link FrustumCuller} as the world space bounding sphere
+ * and box of each in parallel float arrays, one array per component, so culling reads them in
+ * straight runs. Instances are numbered in the order they are added.
+ *
+ * Instances are also grouped into blocks of {@link #BLOCK_SIZE} consecutive instances with a box
+ * around each block, which lets the culler reject or accept a whole block at once. Blocks only
+ * help when their instances are near each other, so instances should be added in some spatial
+ * order, such as a level's cells or a sort along a space filling curve.
+ *
+ * Lists are not thread-safe and must not be changed while being culled.
+ */
+public class InstanceList {
+
+  public static final int BLOCK_SIZE = 64;
+
+  static final int BOX_COMPONENTS = 6;
+
+  private static final int INITIAL_CAPACITY = BLOCK_SIZE;
+  private static final int AXES = 3;
+  private static final int MATRIX_SIZE = 16;
+
+  MeshData[] meshes = new MeshData[INITIAL_CAPACITY];
+  float[] centerX = new float[INITIAL_CAPACITY];
+  float[] centerY = new float[INITIAL_CAPACITY];
+  float[] centerZ = new float[INITIAL_CAPACITY];
+  float[] radius = new float[INITIAL_CAPACITY];
+  float[] minX = new float[INITIAL_CAPACITY];
+  float[] minY = new float[INITIAL_CAPACITY];
+  float[] minZ = new float[INITIAL_CAPACITY];
+  float[] maxX = new float[INITIAL_CAPACITY];
+  float[] maxY = new float[INITIAL_CAPACITY];
+  float[] maxZ = new float[INITIAL_CAPACITY];
+  int size;
+
+  // Min x, y, z then max x, y, z of each block, refreshed before culling if dirty
+  float[] blockBounds = new float[BOX_COMPONENTS];
+  private boolean[] blockDirty = new boolean[1];
+
+  private final float[] identity = new float[MATRIX_SIZE];
+  // Scratch for placing instances, so moving them every frame makes no garbage
+  private final float[] placedMin = new float[AXES];
+  private final float[] placedMax = new float[AXES];
+  private final float[] placedCenter = new float[AXES];
+
+  public InstanceList() {
+    for (int axis = 0; axis < 4; axis++) {
+      identity[axis * 5] = 1f;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public MeshData getMesh(int instance) {
+    Preconditions.checkElementIndex(instance, size);
+    return meshes[instance];
+  }
+
+  /**
+   * Adds an instance of the mesh moved by (x, y, z) and returns its number.
+   */
+  public int add(MeshData mesh, float x, float y, float z) {
+    int instance = add(mesh, identity, 0);
+    translate(instance, x, y, z);
+    return instance;
+  }
+
+  /**
+   * Adds an instance of the mesh placed by a column major model matrix, which may rotate and
+   * scale as well as move it, and returns its number.
+   */
+  public int add(MeshData mesh, float[] modelMatrix, int offset) {
+    Preconditions.checkNotNull(mesh);
+    ensureCapacity(size + 1);
+    meshes[size] = mesh;
+    place(size, mesh.getBounds(), modelMatrix, offset);
+    return size++;
+  }
+
+  /**
+   * Adds an instance of every mesh of the object, all placed by the same model matrix, and
+   * returns the number of the first. The rest follow it in the order of
+   * {@link MeshObject#getAllMeshes()}.
+   */
+  public int addAll(MeshObject meshObject, float[] modelMatrix, int offset) {
+    int first = size;
+    for (MeshData mesh : meshObject.getAllMeshes()) {
+      add(mesh, modelMatrix, offset);
+    }
+    return first;
+  }
+
+  /**
+   * Moves an instance to where the model matrix places its mesh.
+   */
+  public void setTransform(int instance, float[] modelMatrix, int offset) {
+    Preconditions.checkElementIndex(instance, size);
+    place(instance, meshes[instance].getBounds(), modelMatrix, offset);
+  }
+
+  public void clear() {
+    Arrays.fill(meshes, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * Transforms the mesh's bounds into the instance's slot. The box is the box around the
+   * transformed box, after Arvo, and the sphere is scaled by the longest axis of the matrix.
+   */
+  private void place(int instance, Bounds bounds, float[] matrix, int offset) {
+    Preconditions.checkArgument(offset >= 0 && offset + MATRIX_SIZE <= matrix.length,
+        "Matrix at %s does not fit in %s floats.", offset, matrix.length);
+    blockDirty[instance / BLOCK_SIZE] = true;
+    if (bounds.isEmpty()) {
+      // Outside every plane, so never visible
+      centerX[instance] = 0f;
+      centerY[instance] = 0f;
+      centerZ[instance] = 0f;
+      radius[instance] = Float.NEGATIVE_INFINITY;
+      setBox(instance, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY);
+      return;
+    }
+
+    float[] min = placedMin;
+    float[] max = placedMax;
+    float[] center = placedCenter;
+    float longestAxisSquared = 0f;
+    for (int row = 0; row < AXES; row++) {
+      float translation = matrix[offset + 12 + row];
+      min[row] = translation;
+      max[row] = translation;
+      center[row] = translation;
+      for (int column = 0; column < AXES; column++) {
+        float element = matrix[offset + column * 4 + row];
+        float low = element * bounds.getMin(column);
+        float high = element * bounds.getMax(column);
+        min[row] += Math.min(low, high);
+        max[row] += Math.max(low, high);
+        center[row] += element * bounds.getSphereCenter(column);
+      }
+    }
+    for (int column = 0; column < AXES; column++) {
+      float axisSquared = 0f;
+      for (int row = 0; row < AXES; row++) {
+        float element = matrix[offset + column * 4 + row];
+        axisSquared += element * element;
+      }
+      longestAxisSquared = Math.max(longestAxisSquared, axisSquared);
+    }
+
+    centerX[instance] = center[0];
+    centerY[instance] = center[1];
+    centerZ[instance] = center[2];
+    radius[instance] = bounds.getSphereRadius() * (float) Math.sqrt(longestAxisSquared);
+    minX[instance] = min[0];
+    minY[instance] = min[1];
+    minZ[instance] = min[2];
+    maxX[instance] = max[0];
+    maxY[instance] = max[1];
+    maxZ[instance] = max[2];
+  }
+
+  private void translate(int instance, float x, float y, float z) {
+    centerX[instance] += x;
+    centerY[instance] += y;
+    centerZ[instance] += z;
+    minX[instance] += x;
+    minY[instance] += y;
+    minZ[instance] += z;
+    maxX[instance] += x;
+    maxY[instance] += y;
+    maxZ[instance] += z;
+  }
+
+  private void setBox(int instance, float min, float max) {
+    minX[instance] = min;
+    minY[instance] = min;
+    minZ[instance] = min;
+    maxX[instance] = max;
+    maxY[instance] = max;
+    maxZ[instance] = max;
+  }
+
+  int blockCount() {
+    return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+  }
+
+  /**
+   * Recomputes the boxes of blocks whose instances changed since the last call. A block of only
+   * empty instances gets a box with min above max.
+   */
+  void refreshBlocks() {
+    for (int block = 0; block < blockCount(); block++) {
+      if (!blockDirty[block]) {
+        continue;
+      }
+      blockDirty[block] = false;
+      int base = block * BOX_COMPONENTS;
+      for (int axis = 0; axis < AXES; axis++) {
+        blockBounds[base + axis] = Float.POSITIVE_INFINITY;
+        blockBounds[base + AXES + axis] = Float.NEGATIVE_INFINITY;
+      }
+      int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+      for (int instance = block * BLOCK_SIZE; instance < end; instance++) {
+        blockBounds[base] = Math.min(blockBounds[base], minX[instance]);
+        blockBounds[base + 1] = Math.min(blockBounds[base + 1], minY[instance]);
+        blockBounds[base + 2] = Math.min(blockBounds[base + 2], minZ[instance]);
+        blockBounds[base + 3] = Math.max(blockBounds[base + 3], maxX[instance]);
+        blockBounds[base + 4] = Math.max(blockBounds[base + 4], maxY[instance]);
+        blockBounds[base + 5] = Math.max(blockBounds[base + 5], maxZ[instance]);
+      }
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > meshes.length) {
+      int grown = Math.max(capacity, meshes.length * 2);
+      meshes = Arrays.copyOf(meshes, grown);
+      centerX = Arrays.copyOf(centerX, grown);
+      centerY = Arrays.copyOf(centerY, grown);
+      centerZ = Arrays.copyOf(centerZ, grown);
+      radius = Arrays.copyOf(radius, grown);
+      minX = Arrays.copyOf(minX, grown);
+      minY = Arrays.copyOf(minY, grown);
+      minZ = Arrays.copyOf(minZ, grown);
+      maxX = Arrays.copyOf(maxX, grown);
+      maxY = Arrays.copyOf(maxY, grown);
+      maxZ = Arrays.copyOf(maxZ, grown);
+    }
+    int blocks = (capacity + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    if (blocks > blockDirty.length) {
+      int grown = Math.max(blocks, blockDirty.length * 2);
+      blockDirty = Arrays.copyOf(blockDirty, grown);
+      blockBounds = Arrays.copyOf(blockBounds, grown * BOX_COMPONENTS);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("size", size)
+        .toString();
+  }
+}
@@ -0,0 +1,249 @@
+package com.et.util.mesh.data;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+
+/**
+ * An axis aligned bounding box and a bounding sphere of a set of points, for culling. Axes are
+ * numbered 0, 1 and 2 for x, y and z. Bounds of no points are {@link #EMPTY}, which contains
+ * nothing and leaves other bounds unchanged under {@link #union(Bounds)}.
+ */
+public class Bounds {
+
+  public static final Bounds EMPTY = new Bounds(new float[3], new float[3], new float[3], 0f, true);
+
+  private static final int AXES = 3;
+
+  private final float[] min;
+  private final float[] max;
+  private final float[] sphereCenter;
+  private final float sphereRadius;
+  private final boolean empty;
+
+  public Bounds(float[] min, float[] max, float[] sphereCenter, float sphereRadius) {
+    this(min.clone(), max.clone(), sphereCenter.clone(), sphereRadius, false);
+  }
+
+  private Bounds(float[] min, float[] max, float[] sphereCenter, float sphereRadius,
+      boolean empty) {
+    this.min = min;
+    this.max = max;
+    this.sphereCenter = sphereCenter;
+    this.sphereRadius = sphereRadius;
+    this.empty = empty;
+  }
+
+  /**
+   * Returns the bounds of a buffer of x, y, z, w vertices, ignoring w.
+   */
+  public static Bounds of(FloatBuffer vertices) {
+    Builder builder = new Builder();
+    if (vertices != null) {
+      for (int base = 0; base + AXES <= vertices.capacity(); base += VERTEX_COMPONENTS) {
+        builder.add(vertices.get(base), vertices.get(base + 1), vertices.get(base + 2));
+      }
+    }
+    return builder.build();
+  }
+
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  public float getMin(int axis) {
+    return min[axis];
+  }
+
+  public float getMax(int axis) {
+    return max[axis];
+  }
+
+  public float getSphereCenter(int axis) {
+    return sphereCenter[axis];
+  }
+
+  public float getSphereRadius() {
+    return sphereRadius;
+  }
+
+  /**
+   * Returns bounds holding both these and other. The sphere is the smallest one holding both
+   * spheres, or the box's if that is smaller.
+   */
+  public Bounds union(Bounds other) {
+    if (other.empty) {
+      return this;
+    }
+    if (empty) {
+      return other;
+    }
+
+    float[] unionMin = new float[AXES];
+    float[] unionMax = new float[AXES];
+    for (int axis = 0; axis < AXES; axis++) {
+      unionMin[axis] = Math.min(min[axis], other.min[axis]);
+      unionMax[axis] = Math.max(max[axis], other.max[axis]);
+    }
+
+    double distance = distance(sphereCenter, other.sphereCenter);
+    float[] center;
+    double radius;
+    if (distance + other.sphereRadius <= sphereRadius) {
+      center = sphereCenter;
+      radius = sphereRadius;
+    } else if (distance + sphereRadius <= other.sphereRadius) {
+      center = other.sphereCenter;
+      radius = other.sphereRadius;
+    } else {
+      double mergedRadius = (distance + sphereRadius + other.sphereRadius) / 2;
+      double shift = (mergedRadius - sphereRadius) / distance;
+      center = new float[AXES];
+      for (int axis = 0; axis < AXES; axis++) {
+        center[axis] = (float) (sphereCenter[axis]
+            + (other.sphereCenter[axis] - sphereCenter[axis]) * shift);
+      }
+      // Measured from the rounded center so both spheres stay inside
+      radius = Math.max(distance(center, sphereCenter) + sphereRadius,
+          distance(center, other.sphereCenter) + other.sphereRadius);
+    }
+    return smallerSphere(unionMin, unionMax, center, radius);
+  }
+
+  /**
+   * Picks the smaller of the given sphere and the sphere around the box, rounding the radius up
+   * so float rounding never leaves a point outside.
+   */
+  private static Bounds smallerSphere(float[] min, float[] max, float[] center, double radius) {
+    float[] boxCenter = new float[AXES];
+    double halfDiagonal = 0.0;
+    for (int axis = 0; axis < AXES; axis++) {
+      boxCenter[axis] = (min[axis] + max[axis]) / 2f;
+      double half = Math.max(max[axis] - boxCenter[axis], boxCenter[axis] - min[axis]);
+      halfDiagonal += half * half;
+    }
+    halfDiagonal = Math.sqrt(halfDiagonal);
+    if (halfDiagonal < radius) {
+      return new Bounds(min, max, boxCenter, roundUp(halfDiagonal), false);
+    }
+    return new Bounds(min, max, center.clone(), roundUp(radius), false);
+  }
+
+  private static float roundUp(double value) {
+    float rounded = (float) value;
+    return rounded < value ? Math.nextUp(rounded) : rounded;
+  }
+
+  private static double distance(float[] a, float[] b) {
+    double sum = 0.0;
+    for (int axis = 0; axis < AXES; axis++) {
+      double delta = (double) a[axis] - b[axis];
+      sum += delta * delta;
+    }
+    return Math.sqrt(sum);
+  }
+
+  @Override
+  public String toString() {
+    if (empty) {
+      return Objects.toStringHelper(getClass()).add("empty", true).toString();
+    }
+    return Objects.toStringHelper(getClass())
+        .add("min", Arrays.toString(min))
+        .add("max", Arrays.toString(max))
+        .add("sphereCenter", Arrays.toString(sphereCenter))
+        .add("sphereRadius", sphereRadius)
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(Arrays.hashCode(min), Arrays.hashCode(max),
+        Arrays.hashCode(sphereCenter), sphereRadius, empty);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof Bounds)) {
+      return false;
+    }
+
+    Bounds other = (Bounds) obj;
+    return Arrays.equals(min, other.min) &&
+        Arrays.equals(max, other.max) &&
+        Arrays.equals(sphereCenter, other.sphereCenter) &&
+        sphereRadius == other.sphereRadius &&
+        empty == other.empty;
+  }
+
+  /**
+   * Accumulates bounds one point at a time, so they can be gathered while the points are
+   * produced instead of in another pass over them. The box is exact. The sphere is Ritter's,
+   * grown just enough to take in each point outside it, unless the sphere around the box is
+   * smaller.
+   */
+  public static class Builder {
+    private final float[] min = new float[AXES];
+    private final float[] max = new float[AXES];
+    private final double[] center = new double[AXES];
+    private double radius;
+    private boolean empty = true;
+
+    public Builder add(float x, float y, float z) {
+      if (empty) {
+        empty = false;
+        min[0] = max[0] = x;
+        min[1] = max[1] = y;
+        min[2] = max[2] = z;
+        center[0] = x;
+        center[1] = y;
+        center[2] = z;
+        return this;
+      }
+
+      min[0] = Math.min(min[0], x);
+      min[1] = Math.min(min[1], y);
+      min[2] = Math.min(min[2], z);
+      max[0] = Math.max(max[0], x);
+      max[1] = Math.max(max[1], y);
+      max[2] = Math.max(max[2], z);
+
+      double dx = x - center[0];
+      double dy = y - center[1];
+      double dz = z - center[2];
+      double squaredDistance = dx * dx + dy * dy + dz * dz;
+      if (squaredDistance > radius * radius) {
+        double distance = Math.sqrt(squaredDistance);
+        double grownRadius = (radius + distance) / 2;
+        double shift = (grownRadius - radius) / distance;
+        center[0] += dx * shift;
+        center[1] += dy * shift;
+        center[2] += dz * shift;
+        radius = grownRadius;
+      }
+      return this;
+    }
+
+    public Bounds build() {
+      if (empty) {
+        return EMPTY;
+      }
+      float[] floatCenter = {(float) center[0], (float) center[1], (float) center[2]};
+      // Moving the center to floats can move it away from the far points by up to its rounding
+      double centerRounding = 0.0;
+      for (int axis = 0; axis < AXES; axis++) {
+        double delta = floatCenter[axis] - center[axis];
+        centerRounding += delta * delta;
+      }
+      return smallerSphere(min.clone(), max.clone(), floatCenter,
+          radius + Math.sqrt(centerRounding));
+    }
+  }
+}
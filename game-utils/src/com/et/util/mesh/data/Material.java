@@ -0,0 +1,287 @@
+package com.et.util.mesh.data;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Domain object for a material declared in a Wavefront .mtl library. Colors are red, green, blue
+ * triples and texture maps are file names relative to the library, or null when the material has
+ * none. Values the library leaves out keep the defaults of the {@link Builder}.
+ */
+public class Material {
+
+  private static final int COLOR_COMPONENTS = 3;
+
+  private final String name;
+  private final float[] ambientColor;
+  private final float[] diffuseColor;
+  private final float[] specularColor;
+  private final float[] emissiveColor;
+  private final float specularExponent;
+  private final float dissolve;
+  private final float opticalDensity;
+  private final int illuminationModel;
+  private final String ambientMap;
+  private final String diffuseMap;
+  private final String specularMap;
+  private final String dissolveMap;
+  private final String bumpMap;
+
+  Material(Builder builder) {
+    this.name = builder.name;
+    this.ambientColor = builder.ambientColor.clone();
+    this.diffuseColor = builder.diffuseColor.clone();
+    this.specularColor = builder.specularColor.clone();
+    this.emissiveColor = builder.emissiveColor.clone();
+    this.specularExponent = builder.specularExponent;
+    this.dissolve = builder.dissolve;
+    this.opticalDensity = builder.opticalDensity;
+    this.illuminationModel = builder.illuminationModel;
+    this.ambientMap = builder.ambientMap;
+    this.diffuseMap = builder.diffuseMap;
+    this.specularMap = builder.specularMap;
+    this.dissolveMap = builder.dissolveMap;
+    this.bumpMap = builder.bumpMap;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns a copy of the ambient color (Ka).
+   */
+  public float[] getAmbientColor() {
+    return ambientColor.clone();
+  }
+
+  /**
+   * Returns a copy of the diffuse color (Kd).
+   */
+  public float[] getDiffuseColor() {
+    return diffuseColor.clone();
+  }
+
+  /**
+   * Returns a copy of the specular color (Ks).
+   */
+  public float[] getSpecularColor() {
+    return specularColor.clone();
+  }
+
+  /**
+   * Returns a copy of the emissive color (Ke).
+   */
+  public float[] getEmissiveColor() {
+    return emissiveColor.clone();
+  }
+
+  /**
+   * The specular highlight exponent (Ns).
+   */
+  public float getSpecularExponent() {
+    return specularExponent;
+  }
+
+  /**
+   * Opacity (d) from 0, fully transparent, to 1, fully opaque.
+   */
+  public float getDissolve() {
+    return dissolve;
+  }
+
+  /**
+   * Index of refraction (Ni).
+   */
+  public float getOpticalDensity() {
+    return opticalDensity;
+  }
+
+  /**
+   * The .mtl illumination model number (illum).
+   */
+  public int getIlluminationModel() {
+    return illuminationModel;
+  }
+
+  public String getAmbientMap() {
+    return ambientMap;
+  }
+
+  public String getDiffuseMap() {
+    return diffuseMap;
+  }
+
+  public String getSpecularMap() {
+    return specularMap;
+  }
+
+  public String getDissolveMap() {
+    return dissolveMap;
+  }
+
+  public String getBumpMap() {
+    return bumpMap;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("name", name)
+        .add("ambientColor", Arrays.toString(ambientColor))
+        .add("diffuseColor", Arrays.toString(diffuseColor))
+        .add("specularColor", Arrays.toString(specularColor))
+        .add("emissiveColor", Arrays.toString(emissiveColor))
+        .add("specularExponent", specularExponent)
+        .add("dissolve", dissolve)
+        .add("opticalDensity", opticalDensity)
+        .add("illuminationModel", illuminationModel)
+        .add("ambientMap", ambientMap)
+        .add("diffuseMap", diffuseMap)
+        .add("specularMap", specularMap)
+        .add("dissolveMap", dissolveMap)
+        .add("bumpMap", bumpMap)
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(name, Arrays.hashCode(ambientColor), Arrays.hashCode(diffuseColor),
+        Arrays.hashCode(specularColor), Arrays.hashCode(emissiveColor), specularExponent,
+        dissolve, opticalDensity, illuminationModel, ambientMap, diffuseMap, specularMap,
+        dissolveMap, bumpMap);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof Material)) {
+      return false;
+    }
+
+    Material other = (Material) obj;
+    return Objects.equal(name, other.name) &&
+        Arrays.equals(ambientColor, other.ambientColor) &&
+        Arrays.equals(diffuseColor, other.diffuseColor) &&
+        Arrays.equals(specularColor, other.specularColor) &&
+        Arrays.equals(emissiveColor, other.emissiveColor) &&
+        Objects.equal(specularExponent, other.specularExponent) &&
+        Objects.equal(dissolve, other.dissolve) &&
+        Objects.equal(opticalDensity, other.opticalDensity) &&
+        illuminationModel == other.illuminationModel &&
+        Objects.equal(ambientMap, other.ambientMap) &&
+        Objects.equal(diffuseMap, other.diffuseMap) &&
+        Objects.equal(specularMap, other.specularMap) &&
+        Objects.equal(dissolveMap, other.dissolveMap) &&
+        Objects.equal(bumpMap, other.bumpMap);
+  }
+
+  /**
+   * Builds materials starting from a white, opaque, untextured diffuse material.
+   */
+  public static class Builder {
+    private String name = null;
+    private float[] ambientColor = {0f, 0f, 0f};
+    private float[] diffuseColor = {1f, 1f, 1f};
+    private float[] specularColor = {0f, 0f, 0f};
+    private float[] emissiveColor = {0f, 0f, 0f};
+    private float specularExponent = 0f;
+    private float dissolve = 1f;
+    private float opticalDensity = 1f;
+    private int illuminationModel = 1;
+    private String ambientMap = null;
+    private String diffuseMap = null;
+    private String specularMap = null;
+    private String dissolveMap = null;
+    private String bumpMap = null;
+
+    public Builder setName(String name) {
+      this.name = name;
+      return this;
+    }
+
+    public Builder setAmbientColor(float red, float green, float blue) {
+      ambientColor = color(red, green, blue);
+      return this;
+    }
+
+    public Builder setDiffuseColor(float red, float green, float blue) {
+      diffuseColor = color(red, green, blue);
+      return this;
+    }
+
+    public Builder setSpecularColor(float red, float green, float blue) {
+      specularColor = color(red, green, blue);
+      return this;
+    }
+
+    public Builder setEmissiveColor(float red, float green, float blue) {
+      emissiveColor = color(red, green, blue);
+      return this;
+    }
+
+    public Builder setSpecularExponent(float specularExponent) {
+      this.specularExponent = specularExponent;
+      return this;
+    }
+
+    public Builder setDissolve(float dissolve) {
+      Preconditions.checkArgument(dissolve >= 0f && dissolve <= 1f,
+          "Dissolve %s is outside [0, 1].", dissolve);
+      this.dissolve = dissolve;
+      return this;
+    }
+
+    public Builder setOpticalDensity(float opticalDensity) {
+      this.opticalDensity = opticalDensity;
+      return this;
+    }
+
+    public Builder setIlluminationModel(int illuminationModel) {
+      this.illuminationModel = illuminationModel;
+      return this;
+    }
+
+    public Builder setAmbientMap(String ambientMap) {
+      this.ambientMap = ambientMap;
+      return this;
+    }
+
+    public Builder setDiffuseMap(String diffuseMap) {
+      this.diffuseMap = diffuseMap;
+      return this;
+    }
+
+    public Builder setSpecularMap(String specularMap) {
+      this.specularMap = specularMap;
+      return this;
+    }
+
+    public Builder setDissolveMap(String dissolveMap) {
+      this.dissolveMap = dissolveMap;
+      return this;
+    }
+
+    public Builder setBumpMap(String bumpMap) {
+      this.bumpMap = bumpMap;
+      return this;
+    }
+
+    public Material build() {
+      return new Material(this);
+    }
+
+    private static float[] color(float red, float green, float blue) {
+      float[] color = new float[COLOR_COMPONENTS];
+      color[0] = red;
+      color[1] = green;
+      color[2] = blue;
+      return color;
+    }
+  }
+}
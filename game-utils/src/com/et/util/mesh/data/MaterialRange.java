@@ -0,0 +1,70 @@
+package com.et.util.mesh.data;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A contiguous run of a mesh's vertex indices whose faces all use one material, so the run can be
+ * drawn with a single glDrawElements call after binding that material once. The material is
+ * referenced by the name it has in the mesh file's material libraries, see
+ * {@link MeshObject#getMaterialLibraries()}, or is null for faces declared before any material.
+ */
+public class MaterialRange {
+
+  private final String materialName;
+  private final int firstIndex;
+  private final int indexCount;
+
+  public MaterialRange(String materialName, int firstIndex, int indexCount) {
+    Preconditions.checkArgument(firstIndex >= 0, "First index %s is negative.", firstIndex);
+    Preconditions.checkArgument(indexCount >= 0, "Index count %s is negative.", indexCount);
+    this.materialName = materialName;
+    this.firstIndex = firstIndex;
+    this.indexCount = indexCount;
+  }
+
+  public String getMaterialName() {
+    return materialName;
+  }
+
+  /**
+   * Position in the vertex indices of the range's first index.
+   */
+  public int getFirstIndex() {
+    return firstIndex;
+  }
+
+  public int getIndexCount() {
+    return indexCount;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("materialName", materialName)
+        .add("firstIndex", firstIndex)
+        .add("indexCount", indexCount)
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(materialName, firstIndex, indexCount);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof MaterialRange)) {
+      return false;
+    }
+
+    MaterialRange other = (MaterialRange) obj;
+    return Objects.equal(materialName, other.materialName) &&
+        firstIndex == other.firstIndex &&
+        indexCount == other.indexCount;
+  }
+}
@@ -1,21 +1,43 @@
 package com.et.util.mesh.data;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.List;
 
+import com.et.util.primitives.FloatArrayList;
+import com.et.util.primitives.IntArrayList;
 import com.et.util.primitives.TextureCoords;
 import com.et.util.primitives.TriangularFace;
 import com.et.util.primitives.geom.NormalVector;
 import com.et.util.primitives.geom.Vertex;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Domain object that captures the basic data of most meshes.
  */
 public class MeshData {
+  
+  /**
+   * The most vertices a mesh can have for its indices to fit in GL_UNSIGNED_SHORT. The largest
+   * index, 0xFFFF, is left unused as GLES 3 reserves it for primitive restart.
+   */
+  public static final int MAX_SHORT_INDEXED_VERTICES = 0xFFFF;
+  /** GL_UNSIGNED_SHORT, the index type of {@link #getIndicesForAndroid()} for small meshes. */
+  public static final int GL_UNSIGNED_SHORT = 0x1403;
+  /** GL_UNSIGNED_INT, the index type of {@link #getIndicesForAndroid()} for large meshes. */
+  public static final int GL_UNSIGNED_INT = 0x1405;
+  /** Values per vertex in {@link #getVerticies()}: x, y, z and w. */
+  public static final int VERTEX_COMPONENTS = 4;
+  /** Values per normal in {@link #getNormals()}: x, y and z. */
+  public static final int NORMAL_COMPONENTS = 3;
+  /** Values per texture coordinate in {@link #getTextureCoords()}: u and v. */
+  public static final int TEXTURE_COORD_COMPONENTS = 2;
+  public static final int INDICES_PER_TRIANGLE = 3;
 
   private FloatBuffer verticies = null;
   private FloatBuffer normals = null;
@@ -23,7 +45,11 @@ public class MeshData {
   private IntBuffer vertexIndices = null;
   private IntBuffer normalIndices = null;
   private IntBuffer textureIndices = null;
+  private boolean unifiedIndices;
+  private List<MaterialRange> materialRanges;
+  private IntBuffer smoothingGroups = null;
   private String name;
+  private Bounds bounds;
 
   MeshData(Builder builder) {
     this.verticies = builder.verticies;
@@ -32,7 +58,11 @@ public class MeshData {
     this.vertexIndices = builder.vertexIndices;
     this.normalIndices = builder.normalIndices;
     this.textureIndices = builder.textureIndices;
+    this.unifiedIndices = builder.unifiedIndices;
+    this.materialRanges = builder.materialRanges;
+    this.smoothingGroups = builder.smoothingGroups;
     this.name = builder.name;
+    this.bounds = builder.bounds != null ? builder.bounds : Bounds.of(builder.verticies);
   }
   
   
@@ -80,6 +110,52 @@ public class MeshData {
     return getForAndroid(vertexIndices);
   }
   
+  /**
+   * Returns true if every vertex index fits in an unsigned short, which core GLES 2 requires of
+   * glDrawElements. Larger meshes can be split with
+   * {@link com.et.util.mesh.optimize.MeshSplitter}.
+   */
+  public boolean hasShortIndices() {
+    return verticies == null || verticies.capacity() / VERTEX_COMPONENTS
+        <= MAX_SHORT_INDEXED_VERTICES;
+  }
+  
+  /**
+   * Returns vertex indices as a {@link ByteOrder#nativeOrder()} {@link ShortBuffer} of unsigned
+   * shorts, at half the size of {@link #getVertIndicesForAndroid()}. Throws
+   * {@link IllegalStateException} if the mesh does not have {@link #hasShortIndices()}.
+   */
+  public ShortBuffer getVertIndicesAsShortsForAndroid() {
+    if (!hasShortIndices()) {
+      throw new IllegalStateException("Mesh " + name + " has too many vertices for short "
+          + "indices.");
+    }
+    ByteBuffer bb = ByteBuffer.allocateDirect(vertexIndices.capacity() * 2);
+    bb.order(ByteOrder.nativeOrder());
+    ShortBuffer toRet = bb.asShortBuffer();
+    for (int i = 0; i < vertexIndices.capacity(); i++) {
+      toRet.put(i, (short) vertexIndices.get(i));
+    }
+    return toRet;
+  }
+  
+  /**
+   * Returns vertex indices for glDrawElements in the smallest type that holds them: a
+   * {@link ShortBuffer} when the mesh {@link #hasShortIndices()} and an {@link IntBuffer}
+   * otherwise. {@link #getIndexType()} gives the matching GL type.
+   */
+  public Buffer getIndicesForAndroid() {
+    return hasShortIndices() ? getVertIndicesAsShortsForAndroid() : getVertIndicesForAndroid();
+  }
+  
+  /**
+   * Returns the GL type of {@link #getIndicesForAndroid()}, {@link #GL_UNSIGNED_SHORT} or
+   * {@link #GL_UNSIGNED_INT}.
+   */
+  public int getIndexType() {
+    return hasShortIndices() ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+  }
+  
   public IntBuffer getNormalIndices() {
     return normalIndices;
   }
@@ -102,9 +178,107 @@ public class MeshData {
     return getForAndroid(textureIndices);
   }
   
+  /**
+   * Returns true if the vertex indices index every attribute stream. In that case the vertex,
+   * normal, and texture coordinate buffers are parallel arrays, there are no separate normal or
+   * texture indices, and the vertex indices can be handed to glDrawElements as they are. The
+   * batching, optimizing, quantizing and simplifying passes only take such meshes, which the OBJ
+   * parsers make when asked with
+   * {@link com.et.util.mesh.fileparser.obj.ObjFileMeshObjectParser#setUnifiedIndices(boolean)}.
+   */
+  public boolean hasUnifiedIndices() {
+    return unifiedIndices;
+  }
+  
+  /**
+   * Returns the runs of the vertex indices that share a material, in index order, or an empty
+   * list when the mesh file assigned no materials. The ranges cover every face, so a renderer can
+   * issue one draw per range with a single material bind each.
+   */
+  public List<MaterialRange> getMaterialRanges() {
+    return materialRanges;
+  }
+  
+  /**
+   * Returns the smoothing group of each triangle, in index order, where 0 means the triangle is
+   * not smoothed with any other, or null when the mesh file declared no smoothing groups. See
+   * {@link com.et.util.mesh.normals.NormalGenerator}. Passes that reorder, split, merge or remove
+   * triangles carry the groups along with them.
+   */
+  public IntBuffer getSmoothingGroups() {
+    return smoothingGroups;
+  }
+  
+  /**
+   * Returns the bounds of the vertices, which the OBJ parsers gather while localizing them and
+   * the {@link Builder} otherwise computes when building.
+   */
+  public Bounds getBounds() {
+    return bounds;
+  }
+  
   public String getName() {
     return name;
   }
+  
+  /**
+   * Returns the bytes held by this mesh's streams, whether on the heap or in direct buffers.
+   */
+  public long getSizeInBytes() {
+    return getSizeInBytes(verticies) + getSizeInBytes(normals) + getSizeInBytes(textureCoords)
+        + getSizeInBytes(vertexIndices) + getSizeInBytes(normalIndices)
+        + getSizeInBytes(textureIndices) + getSizeInBytes(smoothingGroups);
+  }
+  
+  private static long getSizeInBytes(Buffer buffer) {
+    // Floats and ints both take four bytes
+    return buffer == null ? 0 : buffer.capacity() * 4L;
+  }
+  
+  /**
+   * Returns true if the stream is set and holds any values. Meshes may leave a stream they do not
+   * have null or empty.
+   */
+  public static boolean hasStream(Buffer stream) {
+    return stream != null && stream.capacity() > 0;
+  }
+  
+  /**
+   * Returns a heap copy of the first count of the given elements of a stream, in that order, for
+   * passes that reorder, drop or copy vertices or triangles. Each element is components values.
+   * Streams the mesh does not have are returned as they are.
+   */
+  public static FloatBuffer gather(FloatBuffer stream, int components, int[] elements,
+      int count) {
+    if (!hasStream(stream)) {
+      return stream;
+    }
+    float[] gathered = new float[count * components];
+    for (int element = 0; element < count; element++) {
+      int source = elements[element] * components;
+      for (int component = 0; component < components; component++) {
+        gathered[element * components + component] = stream.get(source + component);
+      }
+    }
+    return FloatBuffer.wrap(gathered);
+  }
+  
+  /**
+   * See {@link #gather(FloatBuffer, int, int[], int)}.
+   */
+  public static IntBuffer gather(IntBuffer stream, int components, int[] elements, int count) {
+    if (!hasStream(stream)) {
+      return stream;
+    }
+    int[] gathered = new int[count * components];
+    for (int element = 0; element < count; element++) {
+      int source = elements[element] * components;
+      for (int component = 0; component < components; component++) {
+        gathered[element * components + component] = stream.get(source + component);
+      }
+    }
+    return IntBuffer.wrap(gathered);
+  }
 
   private FloatBuffer getForAndroid(FloatBuffer buffer) {
     buffer.rewind();
@@ -135,7 +309,11 @@ public class MeshData {
         .add("normals", getBufferAsString(normals)) 
         .add("textureIndices", getBufferAsString(textureIndices))
         .add("textureCoords", getBufferAsString(textureCoords))
+        .add("unifiedIndices", unifiedIndices)
+        .add("materialRanges", materialRanges)
+        .add("smoothingGroups", getBufferAsString(smoothingGroups))
         .add("name", name)
+        .add("bounds", bounds)
         .toString();
   }
   
@@ -174,7 +352,7 @@ public class MeshData {
   @Override
   public int hashCode() {
     return Objects.hashCode(vertexIndices, verticies, normalIndices, normals, textureIndices,
-        textureCoords, name);
+        textureCoords, unifiedIndices, materialRanges, smoothingGroups, name);
   }
 
 
@@ -190,6 +368,9 @@ public class MeshData {
     
     MeshData other = (MeshData) obj;
     return Objects.equal(name, other.name) &&
+        unifiedIndices == other.unifiedIndices &&
+        Objects.equal(materialRanges, other.materialRanges) &&
+        Objects.equal(smoothingGroups, other.smoothingGroups) &&
         Objects.equal(vertexIndices, other.vertexIndices) &&
         Objects.equal(verticies, other.verticies) &&
         Objects.equal(normalIndices, other.normalIndices) &&
@@ -207,7 +388,11 @@ public class MeshData {
     private IntBuffer vertexIndices = null;
     private IntBuffer normalIndices = null;
     private IntBuffer textureIndices = null;
+    private boolean unifiedIndices = false;
+    private List<MaterialRange> materialRanges = ImmutableList.of();
+    private IntBuffer smoothingGroups = null;
     private String name = null;
+    private Bounds bounds = null;
     
     public Builder setVertices(List<Vertex> providedVertices) {
       if (providedVertices == null) {
@@ -215,15 +400,18 @@ public class MeshData {
       }
       
       verticies = FloatBuffer.allocate(providedVertices.size() * 4);
+      Bounds.Builder boundsBuilder = new Bounds.Builder();
       
       for (Vertex vert : providedVertices) {
         verticies.put(vert.getX());
         verticies.put(vert.getY());
         verticies.put(vert.getZ());
         verticies.put(vert.getW());
+        boundsBuilder.add(vert.getX(), vert.getY(), vert.getZ());
       }
       
       verticies.rewind();
+      bounds = boundsBuilder.build();
       return this;
     }
     
@@ -261,6 +449,74 @@ public class MeshData {
       return this;
     }
     
+    /**
+     * Uses the given buffer of x, y, z, w values directly instead of copying it. As with all
+     * buffer setters, the buffer should be at position 0 with a capacity equal to the number of
+     * values in it, since streams are sized by capacity.
+     */
+    public Builder setVertices(FloatBuffer providedVertices) {
+      verticies = providedVertices;
+      bounds = null;
+      return this;
+    }
+    
+    /**
+     * Copies the given x, y, z, w values into a direct buffer. Bounds are gathered when the mesh
+     * is built.
+     */
+    public Builder setVertices(FloatArrayList providedVertices) {
+      if (providedVertices == null) {
+        return this;
+      }
+      return setVertices(providedVertices.toBuffer());
+    }
+    
+    /**
+     * Sets the bounds of the vertices already set, for callers that gathered them while making
+     * the vertices, so building does not walk the vertices again. Setting vertices afterwards
+     * drops them.
+     */
+    public Builder setBounds(Bounds bounds) {
+      this.bounds = bounds;
+      return this;
+    }
+    
+    /**
+     * Uses the given buffer of u, v values directly instead of copying it.
+     */
+    public Builder setTextureCoords(FloatBuffer providedCoords) {
+      textureCoords = providedCoords;
+      return this;
+    }
+    
+    /**
+     * Uses the given buffer of x, y, z values directly instead of copying it.
+     */
+    public Builder setNormals(FloatBuffer providedNormals) {
+      normals = providedNormals;
+      return this;
+    }
+    
+    /**
+     * Copies the given u, v values into a direct buffer.
+     */
+    public Builder setTextureCoords(FloatArrayList providedCoords) {
+      if (providedCoords == null) {
+        return this;
+      }
+      return setTextureCoords(providedCoords.toBuffer());
+    }
+    
+    /**
+     * Copies the given x, y, z values into a direct buffer.
+     */
+    public Builder setNormals(FloatArrayList providedNormals) {
+      if (providedNormals == null) {
+        return this;
+      }
+      return setNormals(providedNormals.toBuffer());
+    }
+    
     public Builder setFaces(List<TriangularFace> providedFaces) {
       if (providedFaces == null) {
         return this;
@@ -299,6 +555,64 @@ public class MeshData {
       return setIndices(indices, textureIndices);
     }
     
+    /**
+     * Copies the given indices into a direct buffer without boxing them. Later changes to the
+     * list do not affect the mesh.
+     */
+    public Builder setVertexIndices(IntArrayList indices) {
+      if (indices == null) {
+        return this;
+      }
+      vertexIndices = indices.toBuffer();
+      return this;
+    }
+    
+    /**
+     * Copies the given indices into a direct buffer without boxing them.
+     */
+    public Builder setNormalIndices(IntArrayList indices) {
+      if (indices == null) {
+        return this;
+      }
+      normalIndices = indices.toBuffer();
+      return this;
+    }
+    
+    /**
+     * Copies the given indices into a direct buffer without boxing them.
+     */
+    public Builder setTextureCoordIndices(IntArrayList indices) {
+      if (indices == null) {
+        return this;
+      }
+      textureIndices = indices.toBuffer();
+      return this;
+    }
+    
+    /**
+     * Uses the given buffer directly instead of copying it.
+     */
+    public Builder setVertexIndices(IntBuffer indices) {
+      vertexIndices = indices;
+      return this;
+    }
+    
+    /**
+     * Uses the given buffer directly instead of copying it.
+     */
+    public Builder setNormalIndices(IntBuffer indices) {
+      normalIndices = indices;
+      return this;
+    }
+    
+    /**
+     * Uses the given buffer directly instead of copying it.
+     */
+    public Builder setTextureCoordIndices(IntBuffer indices) {
+      textureIndices = indices;
+      return this;
+    }
+    
     private Builder setIndices(List<Integer> providedIndices, IntBuffer toSet) {
       for (Integer idx : providedIndices) {
         toSet.put(idx);
@@ -308,6 +622,34 @@ public class MeshData {
       return this;
     }
     
+    /**
+     * Marks the vertex indices as indexing all attribute streams. See
+     * {@link MeshData#hasUnifiedIndices()}.
+     */
+    public Builder setUnifiedIndices(boolean unifiedIndices) {
+      this.unifiedIndices = unifiedIndices;
+      return this;
+    }
+    
+    /**
+     * Sets the material ranges of the mesh, see {@link MeshData#getMaterialRanges()}. A null list
+     * is taken as no ranges.
+     */
+    public Builder setMaterialRanges(List<MaterialRange> materialRanges) {
+      this.materialRanges = (materialRanges == null ? ImmutableList.<MaterialRange>of() :
+          ImmutableList.copyOf(materialRanges));
+      return this;
+    }
+    
+    /**
+     * Uses the given buffer of one smoothing group per triangle directly instead of copying it.
+     * See {@link MeshData#getSmoothingGroups()}.
+     */
+    public Builder setSmoothingGroups(IntBuffer smoothingGroups) {
+      this.smoothingGroups = smoothingGroups;
+      return this;
+    }
+    
     public Builder setName(String name) {
       this.name = name;
       return this;
@@ -318,25 +660,25 @@ public class MeshData {
     }
     
     private void allocateIndicesFromFace(TriangularFace face) {
-      vertexIndices = IntBuffer.allocate(face.getVertexIndices().size() * 3);
-      normalIndices = (face.hasNormals() ? IntBuffer.allocate(face.getNormalIndices().size() * 3) :
-        null);
+      vertexIndices = IntBuffer.allocate(face.getVertexIndexList().size() * 3);
+      normalIndices = (face.hasNormals() ? IntBuffer.allocate(
+          face.getNormalIndexList().size() * 3) : null);
       textureIndices = (face.hasTextureCoords() ? IntBuffer.allocate(
-          face.getTextureIndices().size() * 3) : null);
+          face.getTextureIndexList().size() * 3) : null);
       
-      for (Integer vIdx : face.getVertexIndices()) {
-        vertexIndices.put(vIdx);
+      for (int corner = 0; corner < face.getVertexIndexList().size(); corner++) {
+        vertexIndices.put(face.getVertexIndex(corner));
       }
       
       if (normalIndices != null) {
-        for (Integer nIdx : face.getNormalIndices()) {
-          normalIndices.put(nIdx);
+        for (int corner = 0; corner < face.getNormalIndexList().size(); corner++) {
+          normalIndices.put(face.getNormalIndex(corner));
         }
       }
       
       if (textureIndices != null) {
-        for (Integer tIdx : face.getTextureIndices()) {
-          textureIndices.put(tIdx);
+        for (int corner = 0; corner < face.getTextureIndexList().size(); corner++) {
+          textureIndices.put(face.getTextureIndex(corner));
         }
       }
     }
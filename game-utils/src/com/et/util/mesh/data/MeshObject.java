@@ -1,9 +1,13 @@
 package com.et.util.mesh.data;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -11,6 +15,8 @@ import com.google.common.collect.Maps;
  */
 public class MeshObject {
   private Map<String, MeshData> meshes = Maps.newHashMap();
+  private List<String> materialLibraries = Lists.newArrayList();
+  private Map<String, List<MeshData>> lods = Maps.newHashMap();
 
   public void addMesh(MeshData newMesh) {
     meshes.put(newMesh.getName(), newMesh);
@@ -23,17 +29,102 @@ public class MeshObject {
   public Collection<MeshData> getAllMeshes() {
     return meshes.values();
   }
+  
+  /**
+   * Returns bounds holding the bounds of all meshes, see {@link MeshData#getBounds()}.
+   */
+  public Bounds getBounds() {
+    Bounds bounds = Bounds.EMPTY;
+    for (MeshData mesh : meshes.values()) {
+      bounds = bounds.union(mesh.getBounds());
+    }
+    return bounds;
+  }
+  
+  /**
+   * Records the file name of a material library the object's {@link MaterialRange}s refer into.
+   */
+  public void addMaterialLibrary(String fileName) {
+    materialLibraries.add(fileName);
+  }
+  
+  /**
+   * Returns the file names of the object's material libraries in the order they were declared.
+   */
+  public List<String> getMaterialLibraries() {
+    return materialLibraries;
+  }
+  
+  /**
+   * Sets the levels of detail of the named mesh, from most to least detailed, replacing any it
+   * had. The mesh itself is level 0 and is not part of the list. An empty list removes them. See
+   * {@link com.et.util.mesh.simplify.MeshLodGenerator}.
+   */
+  public void setLods(String meshName, List<MeshData> levels) {
+    if (levels.isEmpty()) {
+      lods.remove(meshName);
+    } else {
+      lods.put(meshName, ImmutableList.copyOf(levels));
+    }
+  }
+  
+  /**
+   * Returns the levels of detail of every mesh that has some, keyed by mesh name.
+   */
+  public Map<String, List<MeshData>> getAllLods() {
+    return Collections.unmodifiableMap(lods);
+  }
+  
+  /**
+   * Returns the levels of detail below the named mesh, from most to least detailed, which is
+   * empty if it has none.
+   */
+  public List<MeshData> getLods(String meshName) {
+    List<MeshData> levels = lods.get(meshName);
+    return levels == null ? ImmutableList.<MeshData>of() : levels;
+  }
+  
+  /**
+   * Returns the named mesh at a level of detail, where 0 is the mesh itself and levels beyond
+   * the last give the last, or null if there is no such mesh.
+   */
+  public MeshData getLod(String meshName, int level) {
+    List<MeshData> levels = getLods(meshName);
+    if (level <= 0 || levels.isEmpty()) {
+      return meshes.get(meshName);
+    }
+    return levels.get(Math.min(level, levels.size()) - 1);
+  }
+  
+  /**
+   * Returns the bytes held by the streams of all meshes and their levels of detail. See
+   * {@link MeshData#getSizeInBytes()}.
+   */
+  public long getSizeInBytes() {
+    long size = 0;
+    for (MeshData mesh : meshes.values()) {
+      size += mesh.getSizeInBytes();
+    }
+    for (List<MeshData> levels : lods.values()) {
+      for (MeshData level : levels) {
+        size += level.getSizeInBytes();
+      }
+    }
+    return size;
+  }
 
   @Override
   public String toString() {
     return Objects.toStringHelper(getClass())
         .add("meshes", meshes)
+        .add("materialLibraries", materialLibraries)
+        .add("lods", lods)
         .toString();
   }
   
   @Override
   public int hashCode() {
-    return Objects.hashCode(meshes);
+    return Objects.hashCode(meshes, materialLibraries, lods);
   }
 
   @Override
@@ -47,7 +138,9 @@ public class MeshObject {
     }
     
     MeshObject other = (MeshObject) obj;
-    return Objects.equal(meshes, other.meshes);
+    return Objects.equal(meshes, other.meshes) &&
+        Objects.equal(materialLibraries, other.materialLibraries) &&
+        Objects.equal(lods, other.lods);
   }
 
 }
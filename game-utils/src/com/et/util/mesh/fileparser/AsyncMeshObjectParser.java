@@ -0,0 +1,23 @@
+package com.et.util.mesh.fileparser;
+
+import java.util.concurrent.Executor;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.files.MeshFile;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Defines a parser that parses mesh data from a {@link MeshFile} in the background. Cancelling a
+ * returned future stops its parse at the next opportunity, whether or not it may interrupt.
+ */
+public interface AsyncMeshObjectParser <T extends MeshFile<?>> {
+  ListenableFuture<MeshObject> parse(T file);
+  
+  /**
+   * Like {@link #parse(MeshFile)}, also delivering the outcome to the callback on the given
+   * executor.
+   */
+  ListenableFuture<MeshObject> parse(T file, FutureCallback<? super MeshObject> callback,
+      Executor callbackExecutor);
+}
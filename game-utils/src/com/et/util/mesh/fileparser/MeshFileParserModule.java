@@ -1,18 +1,128 @@
 package com.et.util.mesh.fileparser;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.annotations.MeshLoadExecutor;
+import com.et.util.mesh.fileparser.annotations.MeshParseExecutor;
 import com.et.util.mesh.fileparser.annotations.ObjMeshFileParser;
+import com.et.util.mesh.fileparser.annotations.ParallelObjMeshFileParser;
+import com.et.util.mesh.fileparser.annotations.PresizedObjMeshFileParser;
+import com.et.util.mesh.fileparser.annotations.UnifiedIndexObjMeshFileParser;
+import com.et.util.mesh.fileparser.obj.AsyncObjFileMeshObjectParser;
+import com.et.util.mesh.fileparser.obj.MappedObjFile;
+import com.et.util.mesh.fileparser.obj.ObjFile;
 import com.et.util.mesh.fileparser.obj.ObjFileMeshObjectParser;
+import com.et.util.mesh.fileparser.obj.ObjFileStreamingParser;
+import com.et.util.mesh.fileparser.obj.ParallelObjFileMeshObjectParser;
+import com.et.util.mesh.fileparser.obj.PresizedObjFileMeshObjectParser;
 import com.et.util.mesh.fileparser.obj.ResourceObjFile;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 
 public class MeshFileParserModule extends AbstractModule {
+  
+  private static final int DEFAULT_MESH_LOAD_QUEUE_SIZE = 64;
+  private static final long IDLE_LOAD_THREAD_SECONDS = 30;
+  
+  private final int meshLoadThreads;
+  private final int meshLoadQueueSize;
+  
+  /**
+   * Runs asynchronous mesh loads on one thread fewer than there are processors, leaving one for
+   * the game loop, with room for {@value #DEFAULT_MESH_LOAD_QUEUE_SIZE} waiting loads.
+   */
+  public MeshFileParserModule() {
+    this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        DEFAULT_MESH_LOAD_QUEUE_SIZE);
+  }
+  
+  /**
+   * Runs asynchronous mesh loads on at most meshLoadThreads threads, with room for
+   * meshLoadQueueSize loads waiting for one. Loads beyond that fail with a
+   * {@link java.util.concurrent.RejectedExecutionException}.
+   */
+  public MeshFileParserModule(int meshLoadThreads, int meshLoadQueueSize) {
+    Preconditions.checkArgument(meshLoadThreads > 0, "Need at least one mesh load thread.");
+    Preconditions.checkArgument(meshLoadQueueSize > 0, "Need room for at least one mesh load.");
+    this.meshLoadThreads = meshLoadThreads;
+    this.meshLoadQueueSize = meshLoadQueueSize;
+  }
 
   @Override
   protected void configure() {
-    bind(new TypeLiteral<MeshObjectParser<ResourceObjFile>> () {})
+    bind(new TypeLiteral<MeshObjectParser<ObjFile>> () {})
         .annotatedWith(ObjMeshFileParser.class)
         .to(ObjFileMeshObjectParser.class);
+    bind(new TypeLiteral<StreamingMeshParser<ObjFile>> () {})
+        .annotatedWith(ObjMeshFileParser.class)
+        .to(ObjFileStreamingParser.class);
+    bind(new TypeLiteral<AsyncMeshObjectParser<ObjFile>> () {})
+        .annotatedWith(ObjMeshFileParser.class)
+        .to(AsyncObjFileMeshObjectParser.class);
+    bind(new TypeLiteral<MeshObjectParser<MappedObjFile>> () {})
+        .annotatedWith(ParallelObjMeshFileParser.class)
+        .to(ParallelObjFileMeshObjectParser.class);
+    bind(new TypeLiteral<MeshObjectParser<MappedObjFile>> () {})
+        .annotatedWith(PresizedObjMeshFileParser.class)
+        .to(PresizedObjFileMeshObjectParser.class);
+  }
+  
+  /**
+   * Keeps the binding this module has always offered for resource files, served by the same
+   * parser as {@code @ObjMeshFileParser MeshObjectParser<ObjFile>}.
+   */
+  @Provides
+  @ObjMeshFileParser
+  MeshObjectParser<ResourceObjFile> provideResourceObjParser(
+      final ObjFileMeshObjectParser parser) {
+    return new MeshObjectParser<ResourceObjFile>() {
+      @Override
+      public MeshObject parse(ResourceObjFile file) {
+        return parser.parse(file);
+      }
+    };
+  }
+  
+  @Provides
+  @UnifiedIndexObjMeshFileParser
+  MeshObjectParser<ObjFile> provideUnifiedIndexObjParser(ObjFileMeshObjectParser parser) {
+    parser.setUnifiedIndices(true);
+    return parser;
+  }
+  
+  @Provides
+  @MeshParseExecutor
+  @Singleton
+  ExecutorService provideMeshParseExecutor() {
+    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("mesh-parse-%d")
+            .build());
+  }
+  
+  @Provides
+  @MeshLoadExecutor
+  @Singleton
+  ExecutorService provideMeshLoadExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(meshLoadThreads, meshLoadThreads,
+        IDLE_LOAD_THREAD_SECONDS, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(meshLoadQueueSize),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("mesh-load-%d")
+            .build());
+    // Idle loaders are let go, as levels are loaded in bursts
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
-
 }
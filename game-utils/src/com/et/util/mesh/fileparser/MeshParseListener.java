@@ -0,0 +1,65 @@
+package com.et.util.mesh.fileparser;
+
+/**
+ * Receives the elements of a mesh file as a {@link StreamingMeshParser} reads them, in file
+ * order. Nothing is kept by the parser between events, so a listener can write elements straight
+ * into its own buffers, collect statistics, or build a
+ * {@link com.et.util.mesh.data.MeshObject} without an intermediate model being made.
+ * 
+ * Indices given to {@link #onFace(int[])} are global, as in .obj files: each counts from 0 over
+ * every element of its kind declared so far in the file, regardless of object.
+ */
+public interface MeshParseListener {
+  
+  /** Marks an index a face corner does not declare. */
+  int MISSING_INDEX = -1;
+  
+  /**
+   * A new object starts with the given name. Elements before the first object start belong to
+   * no named object.
+   */
+  void onObjectStart(String name);
+  
+  void onVertex(float x, float y, float z, float w);
+  
+  /**
+   * A texture coordinate. w is 0 when the file does not declare it.
+   */
+  void onTexCoord(float u, float v, float w);
+  
+  void onNormal(float x, float y, float z);
+  
+  /**
+   * A triangle, given as nine indices: a (vertex, texture coord, normal) triple for each corner.
+   * A face declares texture coords or normals for all of its corners or for none, and undeclared
+   * ones are {@link #MISSING_INDEX}. The array is reused for the next face, so copy what needs
+   * keeping.
+   */
+  void onFace(int[] indices);
+  
+  /**
+   * Following elements belong to the given groups, as declared: names separated by spaces.
+   */
+  void onGroup(String names);
+  
+  /**
+   * Following faces belong to the given smoothing group, where 0 means smoothing is off.
+   */
+  void onSmoothingGroup(int group);
+  
+  /**
+   * Following faces use the named material.
+   */
+  void onUseMaterial(String name);
+  
+  /**
+   * The file's materials are defined in the given material library files, as declared: names
+   * separated by spaces.
+   */
+  void onMaterialLibrary(String fileNames);
+  
+  /**
+   * The file has been read completely. No events follow.
+   */
+  void onEnd();
+}
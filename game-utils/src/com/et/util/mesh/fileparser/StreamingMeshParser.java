@@ -0,0 +1,11 @@
+package com.et.util.mesh.fileparser;
+
+import com.et.util.mesh.files.MeshFile;
+
+/**
+ * Defines a parser that pushes the elements of a {@link MeshFile} to a {@link MeshParseListener}
+ * as they are read, instead of returning a complete model as a {@link MeshObjectParser} does.
+ */
+public interface StreamingMeshParser <T extends MeshFile<?>> {
+  void parse(T file, MeshParseListener listener);
+}
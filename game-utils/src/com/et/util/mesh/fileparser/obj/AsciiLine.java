@@ -0,0 +1,49 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CharSequence} view of a range of single byte characters in a {@link ByteBuffer}. Bytes
+ * are widened to chars on access, so nothing is decoded or copied until {@link #toString()} is
+ * called. One instance is meant to be re-pointed at each line in turn.
+ */
+class AsciiLine implements CharSequence {
+  
+  private ByteBuffer buffer;
+  private int start;
+  private int length;
+  
+  AsciiLine set(ByteBuffer buffer, int start, int end) {
+    this.buffer = buffer;
+    this.start = start;
+    this.length = end - start;
+    return this;
+  }
+  
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index " + index + " outside line of length " + length);
+    }
+    return (char) (buffer.get(start + index) & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().substring(start, end);
+  }
+  
+  @Override
+  public String toString() {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) (buffer.get(start + i) & 0xFF);
+    }
+    return new String(chars);
+  }
+}
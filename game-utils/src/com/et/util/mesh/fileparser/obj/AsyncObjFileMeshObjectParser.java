@@ -0,0 +1,100 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.AsyncMeshObjectParser;
+import com.et.util.mesh.fileparser.annotations.MeshLoadExecutor;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Inject;
+
+/**
+ * An {@link AsyncMeshObjectParser} for .obj files. Each file is parsed as an
+ * {@link IncrementalObjParse} on the {@link MeshLoadExecutor}, checking between short steps
+ * whether its future was cancelled, so a load nobody wants any more stops using CPU soon after.
+ * A load the executor rejects, such as when its queue is full, fails its future with the
+ * {@link RejectedExecutionException}.
+ */
+public class AsyncObjFileMeshObjectParser implements AsyncMeshObjectParser<ObjFile> {
+  
+  private static final long DEFAULT_CANCELLATION_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+  
+  private final IncrementalObjFileMeshObjectParser parser;
+  private final ExecutorService executor;
+  private long cancellationCheckNanos = DEFAULT_CANCELLATION_CHECK_NANOS;
+  
+  @Inject
+  public AsyncObjFileMeshObjectParser(IncrementalObjFileMeshObjectParser parser,
+      @MeshLoadExecutor ExecutorService executor) {
+    this.parser = parser;
+    this.executor = executor;
+  }
+  
+  /**
+   * See {@link ObjFileMeshObjectParser#setUnifiedIndices(boolean)}. Applies to parses started
+   * after it is set.
+   */
+  public void setUnifiedIndices(boolean unifiedIndices) {
+    parser.setUnifiedIndices(unifiedIndices);
+  }
+  
+  /**
+   * Sets about how long a parse runs between checks for cancellation.
+   */
+  public void setCancellationCheckInterval(long duration, TimeUnit unit) {
+    cancellationCheckNanos = unit.toNanos(duration);
+  }
+
+  @Override
+  public ListenableFuture<MeshObject> parse(ObjFile file) {
+    SettableFuture<MeshObject> result = SettableFuture.create();
+    // Begun here so the parse uses the settings in place when it was asked for
+    ParseTask task = new ParseTask(parser.begin(file), cancellationCheckNanos, result);
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      result.setException(e);
+    }
+    return result;
+  }
+
+  @Override
+  public ListenableFuture<MeshObject> parse(ObjFile file,
+      FutureCallback<? super MeshObject> callback, Executor callbackExecutor) {
+    ListenableFuture<MeshObject> result = parse(file);
+    Futures.addCallback(result, callback, callbackExecutor);
+    return result;
+  }
+  
+  private static class ParseTask implements Runnable {
+    private final IncrementalObjParse parse;
+    private final long stepNanos;
+    private final SettableFuture<MeshObject> result;
+    
+    ParseTask(IncrementalObjParse parse, long stepNanos, SettableFuture<MeshObject> result) {
+      this.parse = parse;
+      this.stepNanos = stepNanos;
+      this.result = result;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!result.isCancelled()) {
+          if (parse.step(stepNanos)) {
+            result.set(parse.getMeshObject());
+            return;
+          }
+        }
+      } catch (Throwable t) {
+        result.setException(t);
+      }
+    }
+  }
+}
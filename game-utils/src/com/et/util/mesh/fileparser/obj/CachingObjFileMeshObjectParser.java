@@ -0,0 +1,77 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.et.util.mesh.binary.MeshObjectDiskCache;
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshObjectParser;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A {@link MeshObjectParser} that only parses a {@link MappedObjFile} whose bytes it has not seen
+ * before. Files are keyed by a 128 bit murmur3 hash of their unread bytes, which is fast enough
+ * to cost far less than parsing, and looked up in a {@link MeshObjectDiskCache}. Misses are
+ * handed to the delegate and the result stored for next time. On a hit the file's lines are not
+ * read at all.
+ * 
+ * The variant is hashed into every key and should name whatever configures the delegate, such as
+ * whether it unifies indices, so differently configured parsers never share entries. Failing to
+ * store an entry is logged and does not fail the parse.
+ */
+public class CachingObjFileMeshObjectParser implements MeshObjectParser<MappedObjFile> {
+  
+  private static final Logger logger =
+      LoggerFactory.getLogger(CachingObjFileMeshObjectParser.class);
+  
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private static final int HASH_CHUNK_BYTES = 8 * 1024;
+  
+  private final MeshObjectParser<? super MappedObjFile> delegate;
+  private final String variant;
+  private final MeshObjectDiskCache cache;
+  
+  public CachingObjFileMeshObjectParser(MeshObjectParser<? super MappedObjFile> delegate,
+      String variant, MeshObjectDiskCache cache) {
+    this.delegate = delegate;
+    this.variant = variant;
+    this.cache = cache;
+  }
+
+  @Override
+  public MeshObject parse(MappedObjFile file) {
+    HashCode key = hash(file.getUnreadBytes());
+    MeshObject cached = cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    
+    MeshObject parsed = delegate.parse(file);
+    try {
+      cache.put(key, parsed);
+    } catch (IOException e) {
+      logger.warn("Could not cache parsed mesh.", e);
+    }
+    return parsed;
+  }
+  
+  private HashCode hash(ByteBuffer bytes) {
+    Hasher hasher = HASH_FUNCTION.newHasher()
+        .putString(variant, Charsets.UTF_8)
+        .putInt(bytes.remaining());
+    byte[] chunk = new byte[Math.min(HASH_CHUNK_BYTES, bytes.remaining())];
+    while (bytes.hasRemaining()) {
+      int length = Math.min(chunk.length, bytes.remaining());
+      bytes.get(chunk, 0, length);
+      hasher.putBytes(chunk, 0, length);
+    }
+    return hasher.hash();
+  }
+}
@@ -0,0 +1,57 @@
+package com.et.util.mesh.fileparser.obj;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshObjectParser;
+import com.google.common.base.Ticker;
+import com.google.inject.Inject;
+
+/**
+ * A {@link MeshObjectParser} whose parses can also be run in time slices through
+ * {@link #begin(ObjFile)}, for loading meshes while a game loop keeps its frame rate.
+ */
+public class IncrementalObjFileMeshObjectParser implements MeshObjectParser<ObjFile> {
+  
+  private final ObjFileStreamingParser streamingParser;
+  private final ObjMeshLocalizer meshLocalizer;
+  private final Ticker ticker;
+  private boolean unifiedIndices = false;
+  
+  @Inject
+  public IncrementalObjFileMeshObjectParser(ObjFileStreamingParser streamingParser,
+      ObjMeshLocalizer meshLocalizer) {
+    this(streamingParser, meshLocalizer, Ticker.systemTicker());
+  }
+  
+  IncrementalObjFileMeshObjectParser(ObjFileStreamingParser streamingParser,
+      ObjMeshLocalizer meshLocalizer, Ticker ticker) {
+    this.streamingParser = streamingParser;
+    this.meshLocalizer = meshLocalizer;
+    this.ticker = ticker;
+  }
+  
+  /**
+   * See {@link ObjFileMeshObjectParser#setUnifiedIndices(boolean)}. Applies to parses begun after
+   * it is set.
+   */
+  public void setUnifiedIndices(boolean unifiedIndices) {
+    this.unifiedIndices = unifiedIndices;
+  }
+  
+  /**
+   * Starts a parse of the given file without reading any of it. Advance it with
+   * {@link IncrementalObjParse#step(long)}.
+   */
+  public IncrementalObjParse begin(ObjFile file) {
+    ObjMeshObjectListener listener = new ObjMeshObjectListener(meshLocalizer, unifiedIndices);
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+    return new IncrementalObjParse(file, streamingParser.newLineDispatcher(listener, diagnostics),
+        listener, diagnostics, ticker);
+  }
+
+  @Override
+  public MeshObject parse(ObjFile file) {
+    IncrementalObjParse parse = begin(file);
+    parse.step(Long.MAX_VALUE);
+    return parse.getMeshObject();
+  }
+}
@@ -0,0 +1,106 @@
+package com.et.util.mesh.fileparser.obj;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.obj.ObjFileStreamingParser.LineDispatcher;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+/**
+ * A parse of an .obj file that runs a slice at a time, so a mesh can be loaded over several
+ * frames of a game loop. Each {@link #step(long)} parses lines until its time budget is spent and
+ * keeps the file's cursor and the pools parsed so far for the next step. The finished
+ * {@link MeshObject} equals the one {@link ObjFileMeshObjectParser} produces.
+ * 
+ * The clock is only read every few lines, and an object is localized whole in the step that sees
+ * it end, so a step can overrun its budget by that much. Not thread safe; drive it from one
+ * thread at a time.
+ */
+public class IncrementalObjParse {
+  
+  // Reading the clock costs about as much as parsing a short line, so it is only done this often
+  private static final int LINES_PER_CLOCK_CHECK = 16;
+  
+  private final ObjFile file;
+  private final LineDispatcher dispatcher;
+  private final ObjMeshObjectListener listener;
+  private final ObjParseDiagnostics diagnostics;
+  private final Ticker ticker;
+  private long linesParsed = 0;
+  private boolean done = false;
+  
+  IncrementalObjParse(ObjFile file, LineDispatcher dispatcher, ObjMeshObjectListener listener,
+      ObjParseDiagnostics diagnostics, Ticker ticker) {
+    this.file = file;
+    this.dispatcher = dispatcher;
+    this.listener = listener;
+    this.diagnostics = diagnostics;
+    this.ticker = ticker;
+  }
+  
+  /**
+   * Parses lines for about budgetNanos nanoseconds, always making some progress even with no
+   * budget. Returns true once the whole file has been parsed.
+   */
+  public boolean step(long budgetNanos) {
+    if (done) {
+      return true;
+    }
+    
+    long start = ticker.read();
+    int linesSinceCheck = 0;
+    while (file.hasMoreElements()) {
+      dispatcher.dispatch(file.getNextElement());
+      linesParsed++;
+      
+      if (++linesSinceCheck == LINES_PER_CLOCK_CHECK) {
+        linesSinceCheck = 0;
+        if (ticker.read() - start >= budgetNanos) {
+          return false;
+        }
+      }
+    }
+    
+    listener.onEnd();
+    ObjFileStreamingParser.logProblems(diagnostics);
+    done = true;
+    return true;
+  }
+  
+  public boolean isDone() {
+    return done;
+  }
+  
+  /**
+   * Returns the problems met so far. A summary is also logged once the parse is done.
+   */
+  public ObjParseDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+  
+  public long getLinesParsed() {
+    return linesParsed;
+  }
+  
+  /**
+   * Returns how far the parse has got, from 0 to 1. Only a {@link MappedObjFile} knows its size
+   * up front; the progress of any other file stays at 0 until it is done.
+   */
+  public float getProgress() {
+    if (done) {
+      return 1f;
+    }
+    if (file instanceof MappedObjFile) {
+      // The last lines still have to be localized, so never claim to be finished early
+      return Math.min(((MappedObjFile) file).getFractionRead(), Math.nextAfter(1f, 0));
+    }
+    return 0f;
+  }
+  
+  /**
+   * Returns the parsed object. Only available once the parse is done.
+   */
+  public MeshObject getMeshObject() {
+    Preconditions.checkState(done, "Parse is not done.");
+    return listener.getMeshObject();
+  }
+}
@@ -0,0 +1,111 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Queues;
+
+/**
+ * An object file read straight out of a {@link ByteBuffer}, normally a memory mapping of a file
+ * on disk. Lines are scanned directly from the bytes and handed out through one reused
+ * {@link CharSequence}, so there is no charset decoding and no String per line. Expects ASCII (or
+ * another single byte encoding); '\n' and '\r\n' line endings are both accepted.
+ */
+public class MappedObjFile implements ObjFile {
+  
+  private static final byte LINE_FEED = '\n';
+  private static final byte CARRIAGE_RETURN = '\r';
+  
+  private final ByteBuffer buffer;
+  private final int limit;
+  private final AsciiLine currentLine = new AsciiLine();
+  private final Queue<String> returnedElements = Queues.newArrayDeque();
+  private int position;
+  
+  /**
+   * Reads lines between the buffer's current position and its limit. The buffer's own position
+   * is never moved.
+   */
+  public MappedObjFile(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.position = buffer.position();
+    this.limit = buffer.limit();
+  }
+  
+  /**
+   * Maps the given file read-only into memory. The mapping stays valid after the underlying
+   * channel is closed, which happens before this returns.
+   */
+  public static MappedObjFile open(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return new MappedObjFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Returns the next line. Unless it was put back through {@link #putLine(String)}, the returned
+   * sequence is reused and is only valid until the next call.
+   */
+  @Override
+  public CharSequence getNextElement() {
+    if (!returnedElements.isEmpty()) {
+      return returnedElements.remove();
+    }
+    
+    if (position >= limit) {
+      return null;
+    }
+    
+    int lineStart = position;
+    int lineEnd = lineStart;
+    while (lineEnd < limit && buffer.get(lineEnd) != LINE_FEED) {
+      lineEnd++;
+    }
+    // Step past the line feed, if any, for the next read
+    position = Math.min(lineEnd + 1, limit);
+    
+    if (lineEnd > lineStart && buffer.get(lineEnd - 1) == CARRIAGE_RETURN) {
+      lineEnd--;
+    }
+    return currentLine.set(buffer, lineStart, lineEnd);
+  }
+
+  /**
+   * Returns the fraction of the buffer's bytes read so far, from 0 to 1.
+   */
+  float getFractionRead() {
+    int start = buffer.position();
+    return limit == start ? 1f : (float) (position - start) / (limit - start);
+  }
+  
+  /**
+   * Returns a view of the bytes not yet read, leaving this file's own position untouched. Fails
+   * if lines have been put back, as those no longer live in the buffer.
+   */
+  ByteBuffer getUnreadBytes() {
+    Preconditions.checkState(returnedElements.isEmpty(), "File has lines put back into it.");
+    ByteBuffer unread = buffer.duplicate();
+    unread.limit(limit);
+    unread.position(position);
+    return unread;
+  }
+
+  @Override
+  public boolean hasMoreElements() {
+    return !returnedElements.isEmpty() || position < limit;
+  }
+
+  @Override
+  public void putLine(String line) {
+    returnedElements.add(line);
+  }
+}
@@ -0,0 +1,167 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.et.util.mesh.data.Material;
+import com.et.util.mesh.files.MeshFile;
+import com.et.util.mesh.fileparser.obj.lineparsers.ObjLineTokenizer;
+import com.google.common.collect.Maps;
+
+/**
+ * Parses Wavefront .mtl material libraries, the files named by an .obj file's mtllib lines, into
+ * {@link Material}s keyed by the names {@link com.et.util.mesh.data.MaterialRange}s refer to them
+ * by. The file can be read through any of the .obj file sources, as both formats are plain lines.
+ * Colors, the specular exponent, dissolve, optical density, the illumination model, and the
+ * ambient, diffuse, specular, dissolve, and bump maps are read. Texture map options are skipped
+ * and only the map's file name is kept. Other directives and malformed lines are skipped and
+ * recorded in {@link ObjParseDiagnostics} like they are for .obj files.
+ */
+public class MtlFileParser {
+
+  private static final Logger logger = LoggerFactory.getLogger(MtlFileParser.class);
+  private static final char COMMENT = '#';
+  private static final char OPTION = '-';
+
+  /**
+   * Parses the file into materials in the order they were declared, logging a summary of any
+   * problems once it is done. A material declared twice keeps its last declaration.
+   */
+  public Map<String, Material> parse(MeshFile<? extends CharSequence> file) {
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+    Map<String, Material> materials = parse(file, diagnostics);
+    if (diagnostics.hasProblems()) {
+      logger.warn("Skipped lines while parsing .mtl file: {}", diagnostics);
+    }
+    return materials;
+  }
+
+  /**
+   * Parses the file, recording any problems in the given diagnostics instead of logging them.
+   */
+  public Map<String, Material> parse(MeshFile<? extends CharSequence> file,
+      ObjParseDiagnostics diagnostics) {
+    Map<String, Material> materials = Maps.newLinkedHashMap();
+    ObjLineTokenizer tokenizer = new ObjLineTokenizer();
+    Material.Builder material = null;
+    String materialName = null;
+
+    while (file.hasMoreElements()) {
+      tokenizer.reset(file.getNextElement());
+      if (!tokenizer.nextToken()) {
+        continue;
+      }
+      CharSequence line = tokenizer.getLine();
+      if (line.charAt(tokenizer.getTokenStart()) == COMMENT) {
+        continue;
+      }
+
+      String directive =
+          line.subSequence(tokenizer.getTokenStart(), tokenizer.getTokenEnd()).toString();
+      try {
+        if (directive.equals("newmtl")) {
+          if (material != null) {
+            materials.put(materialName, material.build());
+          }
+          materialName = nonEmpty(tokenizer.remainder(), "material name");
+          material = new Material.Builder().setName(materialName);
+        } else if (!parseProperty(directive, tokenizer, material)) {
+          diagnostics.recordUnknownDirective(tokenizer);
+        }
+      } catch (IllegalArgumentException e) {
+        diagnostics.recordMalformedLine(line, e);
+      }
+    }
+
+    if (material != null) {
+      materials.put(materialName, material.build());
+    }
+    return materials;
+  }
+
+  /**
+   * Parses a property of the current material into it. Returns false, without reading any
+   * further, for directives that are not known.
+   */
+  private boolean parseProperty(String directive, ObjLineTokenizer tokenizer,
+      Material.Builder material) {
+    if (directive.equals("Ka")) {
+      float[] ambient = parseColor(tokenizer);
+      checkMaterial(material).setAmbientColor(ambient[0], ambient[1], ambient[2]);
+    } else if (directive.equals("Kd")) {
+      float[] diffuse = parseColor(tokenizer);
+      checkMaterial(material).setDiffuseColor(diffuse[0], diffuse[1], diffuse[2]);
+    } else if (directive.equals("Ks")) {
+      float[] specular = parseColor(tokenizer);
+      checkMaterial(material).setSpecularColor(specular[0], specular[1], specular[2]);
+    } else if (directive.equals("Ke")) {
+      float[] emissive = parseColor(tokenizer);
+      checkMaterial(material).setEmissiveColor(emissive[0], emissive[1], emissive[2]);
+    } else if (directive.equals("Ns")) {
+      checkMaterial(material).setSpecularExponent(tokenizer.nextFloat());
+    } else if (directive.equals("d")) {
+      checkMaterial(material).setDissolve(tokenizer.nextFloat());
+    } else if (directive.equals("Tr")) {
+      // Transparency is the inverse of dissolve
+      checkMaterial(material).setDissolve(1f - tokenizer.nextFloat());
+    } else if (directive.equals("Ni")) {
+      checkMaterial(material).setOpticalDensity(tokenizer.nextFloat());
+    } else if (directive.equals("illum")) {
+      checkMaterial(material).setIlluminationModel(Integer.parseInt(tokenizer.remainder()));
+    } else if (directive.equals("map_Ka")) {
+      checkMaterial(material).setAmbientMap(parseMapFileName(tokenizer));
+    } else if (directive.equals("map_Kd")) {
+      checkMaterial(material).setDiffuseMap(parseMapFileName(tokenizer));
+    } else if (directive.equals("map_Ks")) {
+      checkMaterial(material).setSpecularMap(parseMapFileName(tokenizer));
+    } else if (directive.equals("map_d")) {
+      checkMaterial(material).setDissolveMap(parseMapFileName(tokenizer));
+    } else if (directive.equals("map_Bump") || directive.equals("map_bump") ||
+        directive.equals("bump")) {
+      checkMaterial(material).setBumpMap(parseMapFileName(tokenizer));
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Reads an r g b color. A single value is used for all three components, as the format allows.
+   */
+  private float[] parseColor(ObjLineTokenizer tokenizer) {
+    float red = tokenizer.nextFloat();
+    if (!tokenizer.hasMoreTokens()) {
+      return new float[] {red, red, red};
+    }
+    return new float[] {red, tokenizer.nextFloat(), tokenizer.nextFloat()};
+  }
+
+  /**
+   * Reads a texture map's file name, which follows any options such as '-s 1 1 1'. As option
+   * arguments vary in number, a map with options is taken to end in a file name without spaces.
+   */
+  private String parseMapFileName(ObjLineTokenizer tokenizer) {
+    String remainder = nonEmpty(tokenizer.remainder(), "texture map file name");
+    if (remainder.charAt(0) != OPTION) {
+      return remainder;
+    }
+    int lastSpace = Math.max(remainder.lastIndexOf(' '), remainder.lastIndexOf('\t'));
+    return nonEmpty(remainder.substring(lastSpace + 1), "texture map file name");
+  }
+
+  private static Material.Builder checkMaterial(Material.Builder material) {
+    if (material == null) {
+      throw new IllegalArgumentException("Material property declared before any newmtl.");
+    }
+    return material;
+  }
+
+  private static String nonEmpty(String value, String description) {
+    if (value.isEmpty()) {
+      throw new IllegalArgumentException("Missing " + description + ".");
+    }
+    return value;
+  }
+}
@@ -0,0 +1,10 @@
+package com.et.util.mesh.fileparser.obj;
+
+import com.et.util.mesh.files.MeshFile;
+
+/**
+ * A Wavefront .obj file presented as a stream of lines. Lines are handed out as
+ * {@link CharSequence}s so sources that do not decode into Strings can be parsed directly. A
+ * returned line is only guaranteed to be valid until the next call to {@link #getNextElement()}.
+ */
+public interface ObjFile extends MeshFile<CharSequence> {}
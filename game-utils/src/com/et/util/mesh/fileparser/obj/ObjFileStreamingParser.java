@@ -0,0 +1,179 @@
+package com.et.util.mesh.fileparser.obj;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.et.util.mesh.fileparser.MeshParseListener;
+import com.et.util.mesh.fileparser.StreamingMeshParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.FaceDeclLineParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.NormalVectorDeclLineParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.ObjDirective;
+import com.et.util.mesh.fileparser.obj.lineparsers.ObjLineTokenizer;
+import com.et.util.mesh.fileparser.obj.lineparsers.TextureCoordDeclLineParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.VertexDeclLineParser;
+import com.google.inject.Inject;
+
+/**
+ * A {@link StreamingMeshParser} for Wavefront's .obj files. Each line is decoded in place into a
+ * few reused arrays and handed to the listener, so parsing allocates nothing per element.
+ * Comments, blank lines, and line elements ('l') are skipped. Lines with an unknown directive or
+ * that cannot be parsed are skipped without reaching the listener and recorded in
+ * {@link ObjParseDiagnostics}, which are logged once per file rather than once per line.
+ */
+public class ObjFileStreamingParser implements StreamingMeshParser<ObjFile> {
+  
+  private static final Logger logger = LoggerFactory.getLogger(ObjFileStreamingParser.class);
+  private static final String SMOOTHING_OFF = "off";
+  
+  private final VertexDeclLineParser vertexLineParser;
+  private final NormalVectorDeclLineParser normalLineParser;
+  private final TextureCoordDeclLineParser textureCoordLineParser;
+  private final FaceDeclLineParser faceLineParser;
+  
+  @Inject
+  public ObjFileStreamingParser(VertexDeclLineParser vertexLineParser,
+      NormalVectorDeclLineParser normalLineParser,
+      TextureCoordDeclLineParser textureCoordLineParser,
+      FaceDeclLineParser faceLineParser) {
+    this.vertexLineParser = vertexLineParser;
+    this.normalLineParser = normalLineParser;
+    this.textureCoordLineParser = textureCoordLineParser;
+    this.faceLineParser = faceLineParser;
+  }
+
+  /**
+   * Parses the file, logging a summary of any problems once it is done.
+   */
+  @Override
+  public void parse(ObjFile file, MeshParseListener listener) {
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+    parse(file, listener, diagnostics);
+    logProblems(diagnostics);
+  }
+  
+  /**
+   * Parses the file, recording any problems in the given diagnostics instead of logging them.
+   */
+  public void parse(ObjFile file, MeshParseListener listener, ObjParseDiagnostics diagnostics) {
+    LineDispatcher dispatcher = newLineDispatcher(listener, diagnostics);
+    while (file.hasMoreElements()) {
+      dispatcher.dispatch(file.getNextElement());
+    }
+    listener.onEnd();
+  }
+  
+  static void logProblems(ObjParseDiagnostics diagnostics) {
+    if (diagnostics.hasProblems()) {
+      logger.warn("Skipped lines while parsing .obj file: {}", diagnostics);
+    }
+  }
+  
+  /**
+   * Creates a dispatcher that sends lines, one at a time, to the given listener. It does not call
+   * {@link MeshParseListener#onEnd()}, which is left to whoever knows the file is done.
+   */
+  LineDispatcher newLineDispatcher(MeshParseListener listener, ObjParseDiagnostics diagnostics) {
+    return new LineDispatcher(listener, diagnostics);
+  }
+  
+  /**
+   * Parses the group of an 's' line whose directive has already been read, where 'off' is group
+   * 0. Throws {@link NumberFormatException} for anything else that is not an integer.
+   */
+  static int parseSmoothingGroup(ObjLineTokenizer tokenizer) {
+    String group = tokenizer.remainder();
+    return group.equals(SMOOTHING_OFF) ? 0 : Integer.parseInt(group);
+  }
+  
+  /**
+   * Decodes single lines into listener events. Holds the scratch space for one parse, so it must
+   * only be used by one thread at a time.
+   */
+  class LineDispatcher {
+    private final MeshParseListener listener;
+    private final ObjParseDiagnostics diagnostics;
+    private final ObjLineTokenizer tokenizer = new ObjLineTokenizer();
+    private final float[] values = new float[VertexDeclLineParser.NUM_VERTEX_ELEMENTS];
+    private final int[] face = new int[FaceDeclLineParser.NUM_FACE_INDICES];
+    private int smoothingGroup;
+    
+    LineDispatcher(MeshParseListener listener, ObjParseDiagnostics diagnostics) {
+      this.listener = listener;
+      this.diagnostics = diagnostics;
+    }
+    
+    void dispatch(CharSequence line) {
+      ObjDirective directive = tokenizer.reset(line).nextDirective();
+      if (directive == ObjDirective.UNKNOWN) {
+        diagnostics.recordUnknownDirective(tokenizer);
+        return;
+      }
+      
+      try {
+        parseElement(directive);
+      } catch (IllegalArgumentException e) {
+        diagnostics.recordMalformedLine(line, e);
+        return;
+      }
+      // Listener exceptions are the listener's own and are not mistaken for bad lines.
+      notifyListener(directive);
+    }
+    
+    private void parseElement(ObjDirective directive) {
+      switch (directive) {
+        case VERTEX:
+          vertexLineParser.parseVertex(tokenizer, values, 0);
+          break;
+        case TEXTURE_COORD:
+          textureCoordLineParser.parseTextureCords(tokenizer, values, 0);
+          break;
+        case NORMAL:
+          normalLineParser.parseNormalVector(tokenizer, values, 0);
+          break;
+        case FACE:
+          faceLineParser.parseFace(tokenizer, face, 0);
+          break;
+        case SMOOTHING_GROUP:
+          smoothingGroup = parseSmoothingGroup(tokenizer);
+          break;
+        default:
+          break;
+      }
+    }
+    
+    private void notifyListener(ObjDirective directive) {
+      switch (directive) {
+        case VERTEX:
+          listener.onVertex(values[0], values[1], values[2], values[3]);
+          break;
+        case TEXTURE_COORD:
+          listener.onTexCoord(values[0], values[1], values[2]);
+          break;
+        case NORMAL:
+          listener.onNormal(values[0], values[1], values[2]);
+          break;
+        case FACE:
+          listener.onFace(face);
+          break;
+        case OBJECT:
+          // The name is everything after the 'o', with whitespace around it removed.
+          listener.onObjectStart(tokenizer.remainder());
+          break;
+        case GROUP:
+          listener.onGroup(tokenizer.remainder());
+          break;
+        case SMOOTHING_GROUP:
+          listener.onSmoothingGroup(smoothingGroup);
+          break;
+        case USE_MATERIAL:
+          listener.onUseMaterial(tokenizer.remainder());
+          break;
+        case MATERIAL_LIBRARY:
+          listener.onMaterialLibrary(tokenizer.remainder());
+          break;
+        default:
+          break;
+      }
+    }
+  }
+}
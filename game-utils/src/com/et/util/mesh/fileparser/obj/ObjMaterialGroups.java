@@ -0,0 +1,148 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.util.List;
+import java.util.Map;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.primitives.IntArrayList;
+import com.et.util.primitives.TriangularFace;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Orders an object's faces by material so that every material's faces are contiguous, and
+ * describes the result as {@link MaterialRange}s over the object's vertex indices. Materials are
+ * ordered by first use and faces keep their file order within a material, so an object that uses
+ * a single material is left as it was. Objects whose faces were all declared before any material
+ * are left as they were and get no ranges.
+ */
+final class ObjMaterialGroups {
+
+  /** The material id of faces declared before any usemtl line. */
+  static final int NO_MATERIAL = -1;
+
+
+  private ObjMaterialGroups() {}
+
+  /**
+   * Reorders faces [faceStart, faceEnd) of the pools, whose material ids index into
+   * materialNames, and returns their ranges.
+   */
+  static List<MaterialRange> groupFaces(ObjPools pools, int faceStart, int faceEnd,
+      List<String> materialNames) {
+    int numFaces = faceEnd - faceStart;
+    int[] order = new int[numFaces];
+    List<MaterialRange> ranges = sortByMaterial(pools.faceMaterials, faceStart, faceEnd,
+        materialNames, order);
+    if (ranges.size() <= 1) {
+      // Already in order
+      return ranges;
+    }
+
+    int[] faces = new int[numFaces * ObjPools.FACE_STRIDE];
+    int[] faceMaterials = new int[numFaces];
+    int[] faceSmoothingGroups = new int[numFaces];
+    for (int face = 0; face < numFaces; face++) {
+      System.arraycopy(pools.faces, order[face] * ObjPools.FACE_STRIDE, faces,
+          face * ObjPools.FACE_STRIDE, ObjPools.FACE_STRIDE);
+      faceMaterials[face] = pools.faceMaterials[order[face]];
+      faceSmoothingGroups[face] = pools.faceSmoothingGroups[order[face]];
+    }
+    System.arraycopy(faces, 0, pools.faces, faceStart * ObjPools.FACE_STRIDE, faces.length);
+    System.arraycopy(faceMaterials, 0, pools.faceMaterials, faceStart, numFaces);
+    System.arraycopy(faceSmoothingGroups, 0, pools.faceSmoothingGroups, faceStart, numFaces);
+    return ranges;
+  }
+
+  /**
+   * Adds the faces to groupedFaces ordered by material and returns their ranges. faceMaterials
+   * holds the material name of each face, null for faces declared before any material. Unless
+   * faceSmoothingGroups is null, the smoothing group of each face is added to
+   * groupedSmoothingGroups in the same order.
+   */
+  static List<MaterialRange> groupFaces(List<TriangularFace> faces, List<String> faceMaterials,
+      IntArrayList faceSmoothingGroups, List<TriangularFace> groupedFaces,
+      IntArrayList groupedSmoothingGroups) {
+    List<String> materialNames = Lists.newArrayList();
+    Map<String, Integer> materialIds = Maps.newHashMap();
+    int[] materials = new int[faces.size()];
+    for (int face = 0; face < materials.length; face++) {
+      String material = faceMaterials.get(face);
+      if (material == null) {
+        materials[face] = NO_MATERIAL;
+        continue;
+      }
+      Integer id = materialIds.get(material);
+      if (id == null) {
+        id = materialNames.size();
+        materialIds.put(material, id);
+        materialNames.add(material);
+      }
+      materials[face] = id;
+    }
+
+    int[] order = new int[materials.length];
+    List<MaterialRange> ranges = sortByMaterial(materials, 0, materials.length, materialNames,
+        order);
+    for (int face : order) {
+      groupedFaces.add(faces.get(face));
+      if (faceSmoothingGroups != null) {
+        groupedSmoothingGroups.add(faceSmoothingGroups.get(face));
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * Fills order with the positions of faces [start, end), as indices into materials, in grouped
+   * order and returns the ranges of the groups.
+   */
+  private static List<MaterialRange> sortByMaterial(int[] materials, int start, int end,
+      List<String> materialNames, int[] order) {
+    // Groups are numbered by first use. Slot 0 of groupOf is for faces without a material.
+    int[] groupOf = new int[materialNames.size() + 1];
+    int[] groupMaterials = new int[groupOf.length];
+    int numGroups = 0;
+    boolean anyMaterial = false;
+    for (int face = start; face < end; face++) {
+      int slot = materials[face] + 1;
+      anyMaterial |= materials[face] != NO_MATERIAL;
+      if (groupOf[slot] == 0) {
+        groupMaterials[numGroups] = materials[face];
+        groupOf[slot] = ++numGroups;
+      }
+    }
+
+    if (!anyMaterial) {
+      for (int face = start; face < end; face++) {
+        order[face - start] = face;
+      }
+      return ImmutableList.of();
+    }
+
+    int[] groupStarts = new int[numGroups + 1];
+    for (int face = start; face < end; face++) {
+      groupStarts[groupOf[materials[face] + 1]]++;
+    }
+    for (int group = 0; group < numGroups; group++) {
+      groupStarts[group + 1] += groupStarts[group];
+    }
+
+    ImmutableList.Builder<MaterialRange> ranges = ImmutableList.builder();
+    int[] next = new int[numGroups];
+    for (int group = 0; group < numGroups; group++) {
+      next[group] = groupStarts[group];
+      int material = groupMaterials[group];
+      ranges.add(new MaterialRange(material == NO_MATERIAL ? null : materialNames.get(material),
+          groupStarts[group] * INDICES_PER_TRIANGLE,
+          (groupStarts[group + 1] - groupStarts[group]) * INDICES_PER_TRIANGLE));
+    }
+    for (int face = start; face < end; face++) {
+      order[next[groupOf[materials[face] + 1] - 1]++] = face;
+    }
+    return ranges.build();
+  }
+}
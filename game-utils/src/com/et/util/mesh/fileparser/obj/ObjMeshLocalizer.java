@@ -1,22 +1,40 @@
 package com.et.util.mesh.fileparser.obj;
 
-import java.util.Collection;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
+import com.et.util.mesh.data.Bounds;
 import com.et.util.mesh.data.MeshData.Builder;
+import com.et.util.mesh.fileparser.obj.lineparsers.FaceDeclLineParser;
+import com.et.util.primitives.FloatArrayList;
+import com.et.util.primitives.IntArrayList;
 import com.et.util.primitives.TextureCoords;
 import com.et.util.primitives.TriangularFace;
 import com.et.util.primitives.geom.NormalVector;
 import com.et.util.primitives.geom.Vertex;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Given a global array of vertices, texture coords, and normals alongside indices into the global
  * array, creates a local copy of the referenced values and adjusts indices to point into local 
- * copy.
+ * copy. The {@link Bounds} of the local vertices are gathered as they are copied.
  */
 public class ObjMeshLocalizer {
   
+  private static final int UNMAPPED = -1;
+  private static final int COMPONENTS_PER_FACE = 3;
+  // Texture coords are stored as u, v, w but meshes only keep u and v
+  private static final int TEXTURE_COORDS_USED = 2;
+  private static final int INITIAL_LOCAL_CAPACITY = 64;
+  
+  private static final NormalVector MISSING_NORMAL = new NormalVector(0f, 0f, 0f);
+  private static final TextureCoords MISSING_TEXTURE_COORDS = new TextureCoords(0f, 0f);
+  
   public void makeLocalMeshData(Builder meshDataBuilder, List<Vertex> globalVertices,
       List<TextureCoords> globalTextureCoords, List<NormalVector> globalNormals,
       List<TriangularFace> faces) {
@@ -32,20 +50,24 @@ public class ObjMeshLocalizer {
     List<Vertex> localVertices = Lists.newArrayList();
     List<TextureCoords> localTextureCoords = Lists.newArrayList();
     List<NormalVector> localNormals = Lists.newArrayList();
-    List<Integer> localVIndices = Lists.newArrayList();
-    List<Integer> localTCordIndices = Lists.newArrayList();
-    List<Integer> localNIndices = Lists.newArrayList();
+    IntArrayList localVIndices = new IntArrayList(faces.size() * COMPONENTS_PER_FACE);
+    IntArrayList localTCordIndices = new IntArrayList();
+    IntArrayList localNIndices = new IntArrayList();
+    
+    IndexMap<Vertex> vertexMap = new IndexMap<Vertex>(globalVertices, localVertices);
+    IndexMap<NormalVector> normalMap = new IndexMap<NormalVector>(globalNormals, localNormals);
+    IndexMap<TextureCoords> textureMap = new IndexMap<TextureCoords>(globalTextureCoords,
+        localTextureCoords);
     
     for (TriangularFace face :  faces) {
-      localizeElements(globalVertices, localVertices, localVIndices, face.getVertexIndices());
+      localizeElements(vertexMap, localVIndices, face.getVertexIndexList());
       
       if (face.hasNormals()) {
-        localizeElements(globalNormals, localNormals, localNIndices, face.getNormalIndices());
+        localizeElements(normalMap, localNIndices, face.getNormalIndexList());
       }
       
       if (face.hasTextureCoords()) {
-        localizeElements(globalTextureCoords, localTextureCoords, localTCordIndices,
-            face.getTextureIndices());
+        localizeElements(textureMap, localTCordIndices, face.getTextureIndexList());
       }
     }
     
@@ -57,28 +79,469 @@ public class ObjMeshLocalizer {
         .setNormalIndices(localNIndices);
   }
   
-  private <T> void localizeElements(List<T> globalElems, List<T> localElems,
-      List<Integer> localIndices, List<Integer> globalIndices) {
-    for (Integer index : globalIndices) {
-      T elem = globalElems.get(index);
-      if (localElems.contains(elem)) {
-        int pos = getElemPosition(localElems, elem);
-        localIndices.add(pos);
+  /**
+   * Like {@link #makeLocalMeshData}, but treats every distinct (vertex, texture coord, normal)
+   * triple referenced by a face as a single output vertex. The resulting mesh has parallel
+   * attribute streams and a single index buffer, exposed as its vertex indices, so it can be drawn
+   * with one glDrawElements call. Triples that lack a texture coordinate or normal while others in
+   * the mesh have one get zeroed values in that stream.
+   */
+  public void makeUnifiedLocalMeshData(Builder meshDataBuilder, List<Vertex> globalVertices,
+      List<TextureCoords> globalTextureCoords, List<NormalVector> globalNormals,
+      List<TriangularFace> faces) {
+    if (faces == null || faces.size() == 0) {
+      makeLocalMeshData(meshDataBuilder, globalVertices, globalTextureCoords, globalNormals, faces);
+      return;
+    }
+    
+    boolean anyNormals = false;
+    boolean anyTextureCoords = false;
+    for (TriangularFace face : faces) {
+      anyNormals |= face.hasNormals();
+      anyTextureCoords |= face.hasTextureCoords();
+    }
+    
+    List<Vertex> localVertices = Lists.newArrayList();
+    List<TextureCoords> localTextureCoords = Lists.newArrayList();
+    List<NormalVector> localNormals = Lists.newArrayList();
+    IntArrayList localIndices = new IntArrayList(faces.size() * COMPONENTS_PER_FACE);
+    TupleIndexMap tupleMap = new TupleIndexMap(faces.size() * COMPONENTS_PER_FACE);
+    
+    for (TriangularFace face : faces) {
+      for (int corner = 0; corner < COMPONENTS_PER_FACE; corner++) {
+        int vIdx = face.getVertexIndex(corner);
+        int tIdx = face.hasTextureCoords() ? face.getTextureIndex(corner) : UNMAPPED;
+        int nIdx = face.hasNormals() ? face.getNormalIndex(corner) : UNMAPPED;
+        
+        int localIndex = tupleMap.get(vIdx, tIdx, nIdx);
+        if (localIndex == UNMAPPED) {
+          localIndex = localVertices.size();
+          tupleMap.put(vIdx, tIdx, nIdx, localIndex);
+          localVertices.add(globalVertices.get(vIdx));
+          if (anyTextureCoords) {
+            localTextureCoords.add(tIdx == UNMAPPED ? MISSING_TEXTURE_COORDS :
+                globalTextureCoords.get(tIdx));
+          }
+          if (anyNormals) {
+            localNormals.add(nIdx == UNMAPPED ? MISSING_NORMAL : globalNormals.get(nIdx));
+          }
+        }
+        localIndices.add(localIndex);
+      }
+    }
+    
+    meshDataBuilder.setVertices(localVertices)
+        .setTextureCoords(localTextureCoords)
+        .setNormals(localNormals)
+        .setVertexIndices(localIndices)
+        .setUnifiedIndices(true);
+  }
+  
+  /**
+   * Same as {@link #makeLocalMeshData(Builder, List, List, List, List)} for pools held in flat
+   * arrays, producing an equal {@link com.et.util.mesh.data.MeshData}. Localizes faces
+   * [faceStart, faceEnd) of the pools against everything currently in them, without creating an
+   * object per element.
+   */
+  void makeLocalMeshData(Builder meshDataBuilder, ObjPools pools, int faceStart, int faceEnd) {
+    if (faceEnd == faceStart) {
+      setGlobalPools(meshDataBuilder, pools);
+      return;
+    }
+    
+    Bounds.Builder bounds = new Bounds.Builder();
+    ArrayIndexMap vertexMap = new ArrayIndexMap(pools.vertices, pools.vertexCount,
+        ObjPools.VERTEX_STRIDE, bounds);
+    ArrayIndexMap textureMap = new ArrayIndexMap(pools.textureCoords, pools.textureCoordCount,
+        ObjPools.TEXTURE_COORD_STRIDE, null);
+    ArrayIndexMap normalMap = new ArrayIndexMap(pools.normals, pools.normalCount,
+        ObjPools.NORMAL_STRIDE, null);
+    
+    int numFaces = faceEnd - faceStart;
+    int[] localVIndices = new int[numFaces * COMPONENTS_PER_FACE];
+    int[] localTIndices = new int[numFaces * COMPONENTS_PER_FACE];
+    int[] localNIndices = new int[numFaces * COMPONENTS_PER_FACE];
+    int numVIndices = 0;
+    int numTIndices = 0;
+    int numNIndices = 0;
+    
+    int[] faces = pools.faces;
+    for (int face = faceStart; face < faceEnd; face++) {
+      int faceOffset = face * ObjPools.FACE_STRIDE;
+      // A face declares texture coords or normals for all of its corners or for none
+      boolean hasTextureCoords = faces[faceOffset + 1] != FaceDeclLineParser.MISSING_INDEX;
+      boolean hasNormals = faces[faceOffset + 2] != FaceDeclLineParser.MISSING_INDEX;
+      for (int corner = faceOffset; corner < faceOffset + ObjPools.FACE_STRIDE;
+          corner += FaceDeclLineParser.INDICES_PER_CORNER) {
+        localVIndices[numVIndices++] = vertexMap.toLocal(faces[corner]);
+        if (hasTextureCoords) {
+          localTIndices[numTIndices++] = textureMap.toLocal(faces[corner + 1]);
+        }
+        if (hasNormals) {
+          localNIndices[numNIndices++] = normalMap.toLocal(faces[corner + 2]);
+        }
+      }
+    }
+    
+    meshDataBuilder.setVertices(FloatBuffer.wrap(vertexMap.getLocalElements(
+            ObjPools.VERTEX_STRIDE)))
+        .setBounds(bounds.build())
+        .setTextureCoords(FloatBuffer.wrap(textureMap.getLocalElements(TEXTURE_COORDS_USED)))
+        .setNormals(FloatBuffer.wrap(normalMap.getLocalElements(ObjPools.NORMAL_STRIDE)))
+        .setVertexIndices(IntBuffer.wrap(Arrays.copyOf(localVIndices, numVIndices)))
+        .setTextureCoordIndices(IntBuffer.wrap(Arrays.copyOf(localTIndices, numTIndices)))
+        .setNormalIndices(IntBuffer.wrap(Arrays.copyOf(localNIndices, numNIndices)));
+  }
+  
+  /**
+   * Same as {@link #makeUnifiedLocalMeshData(Builder, List, List, List, List)} for pools held in
+   * flat arrays.
+   */
+  void makeUnifiedLocalMeshData(Builder meshDataBuilder, ObjPools pools, int faceStart,
+      int faceEnd) {
+    if (faceEnd == faceStart) {
+      setGlobalPools(meshDataBuilder, pools);
+      return;
+    }
+    
+    int[] faces = pools.faces;
+    boolean anyTextureCoords = false;
+    boolean anyNormals = false;
+    for (int face = faceStart; face < faceEnd; face++) {
+      int faceOffset = face * ObjPools.FACE_STRIDE;
+      anyTextureCoords |= faces[faceOffset + 1] != FaceDeclLineParser.MISSING_INDEX;
+      anyNormals |= faces[faceOffset + 2] != FaceDeclLineParser.MISSING_INDEX;
+    }
+    
+    int maxVertices = (faceEnd - faceStart) * COMPONENTS_PER_FACE;
+    float[] localVertices = new float[maxVertices * ObjPools.VERTEX_STRIDE];
+    float[] localTextureCoords =
+        new float[anyTextureCoords ? maxVertices * TEXTURE_COORDS_USED : 0];
+    float[] localNormals = new float[anyNormals ? maxVertices * ObjPools.NORMAL_STRIDE : 0];
+    int[] localIndices = new int[maxVertices];
+    int numIndices = 0;
+    int numLocal = 0;
+    TupleIndexMap tupleMap = new TupleIndexMap(maxVertices);
+    Bounds.Builder bounds = new Bounds.Builder();
+    
+    for (int face = faceStart; face < faceEnd; face++) {
+      int faceOffset = face * ObjPools.FACE_STRIDE;
+      for (int corner = faceOffset; corner < faceOffset + ObjPools.FACE_STRIDE;
+          corner += FaceDeclLineParser.INDICES_PER_CORNER) {
+        int vIdx = faces[corner];
+        int tIdx = faces[corner + 1];
+        int nIdx = faces[corner + 2];
+        
+        int localIndex = tupleMap.get(vIdx, tIdx, nIdx);
+        if (localIndex == UNMAPPED) {
+          localIndex = numLocal++;
+          tupleMap.put(vIdx, tIdx, nIdx, localIndex);
+          copyElement(pools.vertices, pools.vertexCount, vIdx, ObjPools.VERTEX_STRIDE,
+              localVertices, localIndex, ObjPools.VERTEX_STRIDE);
+          int vertexOffset = localIndex * ObjPools.VERTEX_STRIDE;
+          bounds.add(localVertices[vertexOffset], localVertices[vertexOffset + 1],
+              localVertices[vertexOffset + 2]);
+          if (anyTextureCoords && tIdx != UNMAPPED) {
+            copyElement(pools.textureCoords, pools.textureCoordCount, tIdx,
+                ObjPools.TEXTURE_COORD_STRIDE, localTextureCoords, localIndex,
+                TEXTURE_COORDS_USED);
+          }
+          if (anyNormals && nIdx != UNMAPPED) {
+            copyElement(pools.normals, pools.normalCount, nIdx, ObjPools.NORMAL_STRIDE,
+                localNormals, localIndex, ObjPools.NORMAL_STRIDE);
+          }
+        }
+        localIndices[numIndices++] = localIndex;
+      }
+    }
+    
+    meshDataBuilder.setVertices(FloatBuffer.wrap(Arrays.copyOf(localVertices,
+            numLocal * ObjPools.VERTEX_STRIDE)))
+        .setBounds(bounds.build())
+        .setTextureCoords(FloatBuffer.wrap(Arrays.copyOf(localTextureCoords,
+            anyTextureCoords ? numLocal * TEXTURE_COORDS_USED : 0)))
+        .setNormals(FloatBuffer.wrap(Arrays.copyOf(localNormals,
+            anyNormals ? numLocal * ObjPools.NORMAL_STRIDE : 0)))
+        .setVertexIndices(IntBuffer.wrap(localIndices, 0, numIndices).slice())
+        .setUnifiedIndices(true);
+  }
+  
+  /**
+   * Same as {@link #makeLocalMeshData(Builder, List, List, List, List)} for global pools held in
+   * primitive lists, as a caller assembling them without a parser would. Vertices take four floats
+   * (x, y, z, w), texture coords three (u, v, w), and normals three, and each face takes
+   * {@link FaceDeclLineParser#NUM_FACE_INDICES} ints in the layout of
+   * {@link com.et.util.mesh.fileparser.MeshParseListener#onFace(int[])}. Null lists are taken as
+   * empty, as for meshes without texture coords or normals.
+   */
+  public void makeLocalMeshData(Builder meshDataBuilder, FloatArrayList globalVertices,
+      FloatArrayList globalTextureCoords, FloatArrayList globalNormals, IntArrayList faces) {
+    ObjPools pools = toPools(globalVertices, globalTextureCoords, globalNormals, faces);
+    makeLocalMeshData(meshDataBuilder, pools, 0, pools.faceCount);
+  }
+  
+  /**
+   * Same as {@link #makeUnifiedLocalMeshData(Builder, List, List, List, List)} for global pools
+   * held in primitive lists, laid out as for
+   * {@link #makeLocalMeshData(Builder, FloatArrayList, FloatArrayList, FloatArrayList,
+   * IntArrayList)}.
+   */
+  public void makeUnifiedLocalMeshData(Builder meshDataBuilder, FloatArrayList globalVertices,
+      FloatArrayList globalTextureCoords, FloatArrayList globalNormals, IntArrayList faces) {
+    ObjPools pools = toPools(globalVertices, globalTextureCoords, globalNormals, faces);
+    makeUnifiedLocalMeshData(meshDataBuilder, pools, 0, pools.faceCount);
+  }
+  
+  private static ObjPools toPools(FloatArrayList vertices, FloatArrayList textureCoords,
+      FloatArrayList normals, IntArrayList faces) {
+    ObjPools pools = new ObjPools(0, 0, 0, 0);
+    if (vertices != null) {
+      pools.vertices = vertices.toArray();
+      pools.vertexCount = elementCount(vertices.size(), ObjPools.VERTEX_STRIDE, "vertex");
+    }
+    if (textureCoords != null) {
+      pools.textureCoords = textureCoords.toArray();
+      pools.textureCoordCount = elementCount(textureCoords.size(),
+          ObjPools.TEXTURE_COORD_STRIDE, "texture coord");
+    }
+    if (normals != null) {
+      pools.normals = normals.toArray();
+      pools.normalCount = elementCount(normals.size(), ObjPools.NORMAL_STRIDE, "normal");
+    }
+    if (faces != null) {
+      pools.faces = faces.toArray();
+      pools.faceCount = elementCount(faces.size(), ObjPools.FACE_STRIDE, "face");
+    }
+    return pools;
+  }
+  
+  private static int elementCount(int values, int stride, String element) {
+    Preconditions.checkArgument(values % stride == 0, "%s values do not form whole %s elements",
+        values, element);
+    return values / stride;
+  }
+  
+  // Mirrors the list based path, where an object without faces gets the whole global pools.
+  private void setGlobalPools(Builder meshDataBuilder, ObjPools pools) {
+    meshDataBuilder.setVertices(FloatBuffer.wrap(copyElements(pools.vertices, pools.vertexCount,
+            ObjPools.VERTEX_STRIDE, ObjPools.VERTEX_STRIDE)))
+        .setNormals(FloatBuffer.wrap(copyElements(pools.normals, pools.normalCount,
+            ObjPools.NORMAL_STRIDE, ObjPools.NORMAL_STRIDE)))
+        .setTextureCoords(FloatBuffer.wrap(copyElements(pools.textureCoords,
+            pools.textureCoordCount, ObjPools.TEXTURE_COORD_STRIDE, TEXTURE_COORDS_USED)));
+  }
+  
+  private static float[] copyElements(float[] source, int count, int sourceStride,
+      int componentsToCopy) {
+    float[] copy = new float[count * componentsToCopy];
+    for (int element = 0; element < count; element++) {
+      System.arraycopy(source, element * sourceStride, copy, element * componentsToCopy,
+          componentsToCopy);
+    }
+    return copy;
+  }
+  
+  private static void copyElement(float[] source, int sourceCount, int sourceIndex,
+      int sourceStride, float[] destination, int destinationIndex, int componentsToCopy) {
+    if (sourceIndex < 0 || sourceIndex >= sourceCount) {
+      throw new IndexOutOfBoundsException("Index: " + sourceIndex + ", Size: " + sourceCount);
+    }
+    System.arraycopy(source, sourceIndex * sourceStride, destination,
+        destinationIndex * componentsToCopy, componentsToCopy);
+  }
+  
+  private <T> void localizeElements(IndexMap<T> indexMap, IntArrayList localIndices,
+      IntArrayList globalIndices) {
+    for (int i = 0; i < globalIndices.size(); i++) {
+      localIndices.add(indexMap.toLocal(globalIndices.get(i)));
+    }
+  }
+  
+  /**
+   * Maps indices into a global pool onto indices into a local pool, copying elements into the
+   * local pool on first use. Lookups by global index go through a flat int array so remapping a
+   * face is constant time. Equal elements stored at different global indices still share one
+   * local element, which we resolve once per distinct global index through a hash of the value.
+   */
+  private static class IndexMap<T> {
+    private final List<T> globalElems;
+    private final List<T> localElems;
+    private final Map<T, Integer> localPositions = Maps.newHashMap();
+    private int[] globalToLocal;
+    
+    IndexMap(List<T> globalElems, List<T> localElems) {
+      this.globalElems = globalElems;
+      this.localElems = localElems;
+    }
+    
+    int toLocal(int globalIndex) {
+      if (globalToLocal == null) {
+        // Allocated lazily so streams no face references do not pay for a table.
+        globalToLocal = new int[globalElems.size()];
+        Arrays.fill(globalToLocal, UNMAPPED);
+      }
+      
+      int localIndex = globalToLocal[globalIndex];
+      if (localIndex != UNMAPPED) {
+        return localIndex;
+      }
+      
+      T elem = globalElems.get(globalIndex);
+      Integer existing = localPositions.get(elem);
+      if (existing != null) {
+        localIndex = existing;
       } else {
         localElems.add(elem);
-        localIndices.add(localElems.size() - 1);
+        localIndex = localElems.size() - 1;
+        localPositions.put(elem, localIndex);
+      }
+      globalToLocal[globalIndex] = localIndex;
+      return localIndex;
+    }
+  }
+  
+  /**
+   * The primitive counterpart of {@link IndexMap}, over elements stored as runs of floats in a
+   * flat array. Equal elements are found through an open addressing table of local indices
+   * hashed on the elements' float bits, which gives the same equality as the primitive wrappers.
+   * Given a {@link Bounds.Builder}, the first three components of each local element are added to
+   * it as the element is copied.
+   */
+  private static class ArrayIndexMap {
+    private final float[] globalElems;
+    private final int globalCount;
+    private final int stride;
+    private final Bounds.Builder bounds;
+    private int[] globalToLocal;
+    private float[] localElems;
+    private int localCount;
+    private int[] localSlots;
+    
+    ArrayIndexMap(float[] globalElems, int globalCount, int stride, Bounds.Builder bounds) {
+      this.globalElems = globalElems;
+      this.globalCount = globalCount;
+      this.stride = stride;
+      this.bounds = bounds;
+    }
+    
+    int toLocal(int globalIndex) {
+      if (globalToLocal == null) {
+        globalToLocal = new int[globalCount];
+        Arrays.fill(globalToLocal, UNMAPPED);
+        localElems = new float[Math.min(globalCount, INITIAL_LOCAL_CAPACITY) * stride];
+        localSlots = new int[Integer.highestOneBit(Math.max(globalCount, 1) * 2 - 1) << 1];
+        Arrays.fill(localSlots, UNMAPPED);
+      }
+      
+      int localIndex = globalToLocal[globalIndex];
+      if (localIndex != UNMAPPED) {
+        return localIndex;
+      }
+      
+      int globalOffset = globalIndex * stride;
+      int mask = localSlots.length - 1;
+      int slot = hash(globalElems, globalOffset) & mask;
+      while (localSlots[slot] != UNMAPPED) {
+        if (sameElement(globalOffset, localSlots[slot] * stride)) {
+          localIndex = localSlots[slot];
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+      
+      if (localIndex == UNMAPPED) {
+        localIndex = localCount++;
+        if (localElems.length < localCount * stride) {
+          localElems = Arrays.copyOf(localElems, Math.max(localCount, localElems.length / stride
+              * 2) * stride);
+        }
+        System.arraycopy(globalElems, globalOffset, localElems, localIndex * stride, stride);
+        localSlots[slot] = localIndex;
+        if (bounds != null) {
+          bounds.add(globalElems[globalOffset], globalElems[globalOffset + 1],
+              globalElems[globalOffset + 2]);
+        }
+      }
+      globalToLocal[globalIndex] = localIndex;
+      return localIndex;
+    }
+    
+    /**
+     * Returns the local elements keeping only the first componentsToKeep of each.
+     */
+    float[] getLocalElements(int componentsToKeep) {
+      if (localElems == null) {
+        return new float[0];
+      }
+      return copyElements(localElems, localCount, stride, componentsToKeep);
+    }
+    
+    private boolean sameElement(int globalOffset, int localOffset) {
+      for (int component = 0; component < stride; component++) {
+        if (Float.floatToIntBits(globalElems[globalOffset + component]) !=
+            Float.floatToIntBits(localElems[localOffset + component])) {
+          return false;
+        }
       }
+      return true;
+    }
+    
+    private int hash(float[] elems, int offset) {
+      int h = 0;
+      for (int component = 0; component < stride; component++) {
+        h = (h ^ Float.floatToIntBits(elems[offset + component])) * 0x9E3779B1;
+      }
+      return h ^ (h >>> 16);
     }
   }
   
-  private <T> int getElemPosition(Collection<T> collection, T elem) {
-    int pos = -1;
-    for (T curElem : collection) {
-      pos++;
-      if (elem.equals(curElem)) {
-        break;
+  /**
+   * Open addressing hash table from (vertex, texture coord, normal) index triples to output
+   * vertex indices. Keys live in one flat int array, so lookups never box or allocate.
+   */
+  private static class TupleIndexMap {
+    private final int[] keys;
+    private final int[] values;
+    private final int mask;
+    
+    TupleIndexMap(int maxEntries) {
+      // Keep the load factor at or below one half so probe sequences stay short.
+      int capacity = Integer.highestOneBit(Math.max(maxEntries, 1) * 2 - 1) << 1;
+      keys = new int[capacity * COMPONENTS_PER_FACE];
+      values = new int[capacity];
+      mask = capacity - 1;
+      Arrays.fill(values, UNMAPPED);
+    }
+    
+    int get(int vIdx, int tIdx, int nIdx) {
+      int slot = hash(vIdx, tIdx, nIdx) & mask;
+      while (values[slot] != UNMAPPED) {
+        int key = slot * COMPONENTS_PER_FACE;
+        if (keys[key] == vIdx && keys[key + 1] == tIdx && keys[key + 2] == nIdx) {
+          return values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return UNMAPPED;
+    }
+    
+    void put(int vIdx, int tIdx, int nIdx, int value) {
+      int slot = hash(vIdx, tIdx, nIdx) & mask;
+      while (values[slot] != UNMAPPED) {
+        slot = (slot + 1) & mask;
       }
+      int key = slot * COMPONENTS_PER_FACE;
+      keys[key] = vIdx;
+      keys[key + 1] = tIdx;
+      keys[key + 2] = nIdx;
+      values[slot] = value;
+    }
+    
+    private static int hash(int vIdx, int tIdx, int nIdx) {
+      int h = vIdx * 0x9E3779B1;
+      h = (h ^ tIdx) * 0x85EBCA6B;
+      h = (h ^ nIdx) * 0xC2B2AE35;
+      return h ^ (h >>> 16);
     }
-    return pos;
   }
 }
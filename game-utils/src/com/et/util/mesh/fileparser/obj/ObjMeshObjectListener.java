@@ -0,0 +1,160 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshParseListener;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link MeshParseListener} that builds a {@link MeshObject} from .obj events, the same one
+ * {@link ObjFileMeshObjectParser} returns. Elements are pooled globally in flat primitive arrays
+ * and each object is localized by an {@link ObjMeshLocalizer} once the next one starts. Elements
+ * before the first object form a mesh named "default". Meshes left without vertices, as the
+ * default one usually is, are not added. Each object's faces are grouped by the material they
+ * were declared under into contiguous {@link com.et.util.mesh.data.MaterialRange}s, and material
+ * libraries are recorded on the object. Once the file declares a smoothing group, every mesh
+ * records the group of each of its faces, see {@link MeshData#getSmoothingGroups()}. Groups do not
+ * affect the meshes built.
+ */
+public class ObjMeshObjectListener implements MeshParseListener {
+  
+  private static final String DEFAULT_MESH_NAME = "default";
+  private static final int INITIAL_POOL_CAPACITY = 64;
+  private static final Splitter FILE_NAME_SPLITTER =
+      Splitter.on(CharMatcher.WHITESPACE).omitEmptyStrings();
+  
+  private final ObjMeshLocalizer meshLocalizer;
+  private final boolean unifiedIndices;
+  private final ObjPools pools;
+  private final MeshObject meshObject = new MeshObject();
+  private final List<String> materialNames = Lists.newArrayList();
+  private final Map<String, Integer> materialIds = Maps.newHashMap();
+  private int currentMaterial = ObjMaterialGroups.NO_MATERIAL;
+  private int currentSmoothingGroup = 0;
+  private boolean smoothingGroupsDeclared = false;
+  private String meshName = DEFAULT_MESH_NAME;
+  private int faceStart = 0;
+  private boolean ended = false;
+  
+  /**
+   * @param unifiedIndices whether meshes are localized as described in
+   *     {@link ObjFileMeshObjectParser#setUnifiedIndices(boolean)}
+   */
+  public ObjMeshObjectListener(ObjMeshLocalizer meshLocalizer, boolean unifiedIndices) {
+    this(meshLocalizer, unifiedIndices, new ObjPools(INITIAL_POOL_CAPACITY, INITIAL_POOL_CAPACITY,
+        INITIAL_POOL_CAPACITY, INITIAL_POOL_CAPACITY));
+  }
+  
+  /**
+   * Pools into the given pools, which can be sized up front when the element counts are known.
+   */
+  ObjMeshObjectListener(ObjMeshLocalizer meshLocalizer, boolean unifiedIndices, ObjPools pools) {
+    this.meshLocalizer = meshLocalizer;
+    this.unifiedIndices = unifiedIndices;
+    this.pools = pools;
+  }
+  
+  /**
+   * Returns the parsed object. Only available once {@link #onEnd()} has been called.
+   */
+  public MeshObject getMeshObject() {
+    Preconditions.checkState(ended, "Parse has not ended.");
+    return meshObject;
+  }
+
+  @Override
+  public void onObjectStart(String name) {
+    finishMesh();
+    meshName = name;
+    faceStart = pools.faceCount;
+  }
+
+  @Override
+  public void onVertex(float x, float y, float z, float w) {
+    pools.addVertex(x, y, z, w);
+  }
+
+  @Override
+  public void onTexCoord(float u, float v, float w) {
+    pools.addTextureCoords(u, v, w);
+  }
+
+  @Override
+  public void onNormal(float x, float y, float z) {
+    pools.addNormal(x, y, z);
+  }
+
+  @Override
+  public void onFace(int[] indices) {
+    pools.addFace(indices, currentMaterial, currentSmoothingGroup);
+  }
+
+  @Override
+  public void onGroup(String names) {}
+
+  @Override
+  public void onSmoothingGroup(int group) {
+    currentSmoothingGroup = group;
+    smoothingGroupsDeclared = true;
+  }
+
+  @Override
+  public void onUseMaterial(String name) {
+    Integer id = materialIds.get(name);
+    if (id == null) {
+      id = materialNames.size();
+      materialIds.put(name, id);
+      materialNames.add(name);
+    }
+    currentMaterial = id;
+  }
+
+  @Override
+  public void onMaterialLibrary(String fileNames) {
+    addMaterialLibraries(meshObject, fileNames);
+  }
+
+  @Override
+  public void onEnd() {
+    finishMesh();
+    ended = true;
+  }
+  
+  /**
+   * Records each of the whitespace separated library file names of an mtllib line.
+   */
+  static void addMaterialLibraries(MeshObject meshObject, String fileNames) {
+    for (String fileName : FILE_NAME_SPLITTER.split(fileNames)) {
+      meshObject.addMaterialLibrary(fileName);
+    }
+  }
+  
+  private void finishMesh() {
+    MeshData.Builder meshDataBuilder = new MeshData.Builder().setName(meshName)
+        .setMaterialRanges(ObjMaterialGroups.groupFaces(pools, faceStart, pools.faceCount,
+            materialNames));
+    if (unifiedIndices) {
+      meshLocalizer.makeUnifiedLocalMeshData(meshDataBuilder, pools, faceStart, pools.faceCount);
+    } else {
+      meshLocalizer.makeLocalMeshData(meshDataBuilder, pools, faceStart, pools.faceCount);
+    }
+    if (smoothingGroupsDeclared) {
+      meshDataBuilder.setSmoothingGroups(IntBuffer.wrap(Arrays.copyOfRange(
+          pools.faceSmoothingGroups, faceStart, pools.faceCount)));
+    }
+    MeshData data = meshDataBuilder.build();
+    // Skip preamble declarations that never formed a mesh.
+    if (data.getVerticies().capacity() > 0) {
+      meshObject.addMesh(data);
+    }
+  }
+}
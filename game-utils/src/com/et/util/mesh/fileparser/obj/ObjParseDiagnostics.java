@@ -0,0 +1,106 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.et.util.mesh.fileparser.obj.lineparsers.ObjLineTokenizer;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * What went wrong while parsing an .obj file, gathered instead of reported line by line. Counts
+ * lines with directives the parser does not know, per directive, and lines that were malformed,
+ * and keeps the first few of either as examples. Lines that are skipped on purpose, such as
+ * comments, blank lines, and line elements, are not problems and are not counted.
+ * 
+ * Not thread safe. Parsers working in parallel each keep their own and merge them with
+ * {@link #addAll(ObjParseDiagnostics)}.
+ */
+public class ObjParseDiagnostics {
+  
+  private static final int DEFAULT_MAX_EXAMPLES = 5;
+  
+  private final int maxExamples;
+  // Sorted so summaries read the same from run to run
+  private final Map<String, Integer> unknownDirectiveCounts = Maps.newTreeMap();
+  private final List<String> examples = Lists.newArrayList();
+  private int malformedLineCount = 0;
+  
+  public ObjParseDiagnostics() {
+    this(DEFAULT_MAX_EXAMPLES);
+  }
+  
+  public ObjParseDiagnostics(int maxExamples) {
+    this.maxExamples = maxExamples;
+  }
+  
+  /**
+   * Records the line the tokenizer is on, whose header was not recognized.
+   */
+  void recordUnknownDirective(ObjLineTokenizer tokenizer) {
+    CharSequence line = tokenizer.getLine();
+    String directive =
+        line.subSequence(tokenizer.getTokenStart(), tokenizer.getTokenEnd()).toString();
+    Integer count = unknownDirectiveCounts.get(directive);
+    unknownDirectiveCounts.put(directive, count == null ? 1 : count + 1);
+    addExample(line, "unknown directive");
+  }
+  
+  void recordMalformedLine(CharSequence line, IllegalArgumentException error) {
+    malformedLineCount++;
+    addExample(line, error.getMessage());
+  }
+  
+  /**
+   * Adds everything recorded by other, as if it had been recorded here after what already was.
+   */
+  public void addAll(ObjParseDiagnostics other) {
+    for (Map.Entry<String, Integer> entry : other.unknownDirectiveCounts.entrySet()) {
+      Integer count = unknownDirectiveCounts.get(entry.getKey());
+      unknownDirectiveCounts.put(entry.getKey(),
+          count == null ? entry.getValue() : count + entry.getValue());
+    }
+    malformedLineCount += other.malformedLineCount;
+    for (String example : other.examples) {
+      if (examples.size() < maxExamples) {
+        examples.add(example);
+      }
+    }
+  }
+  
+  public boolean hasProblems() {
+    return malformedLineCount > 0 || !unknownDirectiveCounts.isEmpty();
+  }
+  
+  /**
+   * Returns how many lines started with each unrecognized directive.
+   */
+  public Map<String, Integer> getUnknownDirectiveCounts() {
+    return Collections.unmodifiableMap(unknownDirectiveCounts);
+  }
+  
+  public int getMalformedLineCount() {
+    return malformedLineCount;
+  }
+  
+  /**
+   * Returns the first problem lines, each followed by what was wrong with it.
+   */
+  public List<String> getExamples() {
+    return Collections.unmodifiableList(examples);
+  }
+  
+  private void addExample(CharSequence line, String problem) {
+    if (examples.size() < maxExamples) {
+      examples.add("'" + line + "': " + problem);
+    }
+  }
+  
+  @Override
+  public String toString() {
+    return "unknown directives " + unknownDirectiveCounts + ", " + malformedLineCount
+        + " malformed lines, first problems: [" + Joiner.on("; ").join(examples) + "]";
+  }
+}
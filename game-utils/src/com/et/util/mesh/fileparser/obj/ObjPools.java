@@ -0,0 +1,98 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.util.Arrays;
+
+import com.et.util.mesh.fileparser.MeshParseListener;
+import com.et.util.mesh.fileparser.obj.lineparsers.FaceDeclLineParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.NormalVectorDeclLineParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.TextureCoordDeclLineParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.VertexDeclLineParser;
+
+/**
+ * The global pools of an .obj file held in flat primitive arrays instead of as objects. Vertices
+ * take four floats (x, y, z, w), texture coordinates three (u, v, w), and normals three. Faces
+ * take {@link FaceDeclLineParser#NUM_FACE_INDICES} ints in the layout of
+ * {@link MeshParseListener#onFace(int[])}, and each face also records the id of the material and
+ * the smoothing group it was declared under. Arrays start at the given capacities and grow when
+ * those are exceeded.
+ */
+class ObjPools {
+  
+  static final int VERTEX_STRIDE = VertexDeclLineParser.NUM_VERTEX_ELEMENTS;
+  static final int TEXTURE_COORD_STRIDE = TextureCoordDeclLineParser.NUM_TEXTURE_COORDS;
+  static final int NORMAL_STRIDE = NormalVectorDeclLineParser.NUM_NORMAL_COMPONENTS;
+  static final int FACE_STRIDE = FaceDeclLineParser.NUM_FACE_INDICES;
+  
+  float[] vertices;
+  float[] textureCoords;
+  float[] normals;
+  int[] faces;
+  int[] faceMaterials;
+  int[] faceSmoothingGroups;
+  int vertexCount;
+  int textureCoordCount;
+  int normalCount;
+  int faceCount;
+  
+  ObjPools(int vertexCapacity, int textureCoordCapacity, int normalCapacity, int faceCapacity) {
+    vertices = new float[vertexCapacity * VERTEX_STRIDE];
+    textureCoords = new float[textureCoordCapacity * TEXTURE_COORD_STRIDE];
+    normals = new float[normalCapacity * NORMAL_STRIDE];
+    faces = new int[faceCapacity * FACE_STRIDE];
+    faceMaterials = new int[faceCapacity];
+    faceSmoothingGroups = new int[faceCapacity];
+  }
+  
+  void addVertex(float x, float y, float z, float w) {
+    vertices = ensureCapacity(vertices, (vertexCount + 1) * VERTEX_STRIDE);
+    int offset = vertexCount++ * VERTEX_STRIDE;
+    vertices[offset] = x;
+    vertices[offset + 1] = y;
+    vertices[offset + 2] = z;
+    vertices[offset + 3] = w;
+  }
+  
+  void addTextureCoords(float u, float v, float w) {
+    textureCoords = ensureCapacity(textureCoords,
+        (textureCoordCount + 1) * TEXTURE_COORD_STRIDE);
+    int offset = textureCoordCount++ * TEXTURE_COORD_STRIDE;
+    textureCoords[offset] = u;
+    textureCoords[offset + 1] = v;
+    textureCoords[offset + 2] = w;
+  }
+  
+  void addNormal(float x, float y, float z) {
+    normals = ensureCapacity(normals, (normalCount + 1) * NORMAL_STRIDE);
+    int offset = normalCount++ * NORMAL_STRIDE;
+    normals[offset] = x;
+    normals[offset + 1] = y;
+    normals[offset + 2] = z;
+  }
+  
+  /**
+   * Copies a face given in the layout of {@link MeshParseListener#onFace(int[])}, declared under
+   * the given material id or {@link ObjMaterialGroups#NO_MATERIAL} and the given smoothing group.
+   */
+  void addFace(int[] indices, int material, int smoothingGroup) {
+    faces = ensureCapacity(faces, (faceCount + 1) * FACE_STRIDE);
+    faceMaterials = ensureCapacity(faceMaterials, faceCount + 1);
+    faceSmoothingGroups = ensureCapacity(faceSmoothingGroups, faceCount + 1);
+    faceMaterials[faceCount] = material;
+    faceSmoothingGroups[faceCount] = smoothingGroup;
+    System.arraycopy(indices, 0, faces, faceCount++ * FACE_STRIDE, FACE_STRIDE);
+  }
+  
+  private static float[] ensureCapacity(float[] array, int required) {
+    if (array.length >= required) {
+      return array;
+    }
+    return Arrays.copyOf(array, Math.max(required, array.length * 2));
+  }
+  
+  private static int[] ensureCapacity(int[] array, int required) {
+    if (array.length >= required) {
+      return array;
+    }
+    return Arrays.copyOf(array, Math.max(required, array.length * 2));
+  }
+}
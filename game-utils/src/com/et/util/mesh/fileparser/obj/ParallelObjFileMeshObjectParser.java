@@ -0,0 +1,340 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.et.util.concurrent.MoreFutures;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshObjectParser;
+import com.et.util.mesh.fileparser.annotations.MeshParseExecutor;
+import com.et.util.mesh.fileparser.obj.lineparsers.ObjDirective;
+import com.et.util.mesh.fileparser.obj.lineparsers.ObjLineTokenizer;
+import com.et.util.primitives.IntArrayList;
+import com.et.util.primitives.TextureCoords;
+import com.et.util.primitives.TriangularFace;
+import com.et.util.primitives.geom.NormalVector;
+import com.et.util.primitives.geom.Vertex;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+
+/**
+ * A {@link MeshObjectParser} that parses a {@link MappedObjFile} on several threads. The file is
+ * split into line aligned byte ranges that are parsed concurrently, each into its own pools. As
+ * .obj indices are global, concatenating the chunk pools in file order rebuilds the global pools,
+ * and object boundaries are shifted by the sizes of the chunks before them. Faces a chunk reads
+ * before its first material or smoothing group declaration take the material or group the chunks
+ * before it ended with. Every object is then grouped by material and localized exactly as
+ * {@link ObjFileMeshObjectParser} would, so both produce equal {@link MeshObject}s, smoothing
+ * groups included.
+ * 
+ * Work is submitted to the {@link MeshParseExecutor}, which can be any {@link ExecutorService},
+ * including a ForkJoinPool where the platform has one, and parse waits for it with
+ * {@link MoreFutures#getAll(List)}.
+ */
+public class ParallelObjFileMeshObjectParser implements MeshObjectParser<MappedObjFile> {
+  
+  private static final String DEFAULT_MESH_NAME = "default";
+  private static final int DEFAULT_MIN_CHUNK_SIZE = 256 * 1024;
+  // A few chunks per core evens out chunks that happen to hold slower lines, such as faces.
+  private static final int CHUNKS_PER_PROCESSOR = 2;
+  private static final byte LINE_FEED = '\n';
+  private static final int NO_SMOOTHING_GROUP = -1;
+  
+  private final ObjFileMeshObjectParser lineParser;
+  private final ExecutorService executor;
+  private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+  
+  @Inject
+  public ParallelObjFileMeshObjectParser(ObjFileMeshObjectParser lineParser,
+      @MeshParseExecutor ExecutorService executor) {
+    this.lineParser = lineParser;
+    this.executor = executor;
+  }
+  
+  /**
+   * See {@link ObjFileMeshObjectParser#setUnifiedIndices(boolean)}.
+   */
+  public void setUnifiedIndices(boolean unifiedIndices) {
+    lineParser.setUnifiedIndices(unifiedIndices);
+  }
+  
+  /**
+   * Sets the smallest number of bytes worth handing to a thread. Files smaller than this are
+   * parsed as a single chunk.
+   */
+  public void setMinChunkSize(int minChunkSize) {
+    this.minChunkSize = Math.max(minChunkSize, 1);
+  }
+
+  @Override
+  public MeshObject parse(MappedObjFile file) {
+    List<Future<ParsedChunk>> pendingChunks = Lists.newArrayList();
+    for (ByteBuffer chunk : splitIntoChunks(file.getUnreadBytes())) {
+      pendingChunks.add(executor.submit(new ChunkParse(chunk)));
+    }
+    List<ParsedChunk> chunks = MoreFutures.getAll(pendingChunks);
+    
+    List<Vertex> globalVertices = Lists.newArrayList();
+    List<TextureCoords> globalTextureCoords = Lists.newArrayList();
+    List<NormalVector> globalNormals = Lists.newArrayList();
+    List<TriangularFace> globalFaces = Lists.newArrayList();
+    List<String> globalFaceMaterials = Lists.newArrayList();
+    IntArrayList globalFaceSmoothingGroups = new IntArrayList();
+    MeshObject newObject = new MeshObject();
+    
+    // Everything before the first object declaration belongs to the default mesh
+    List<ObjectStart> objects = Lists.newArrayList(new ObjectStart(DEFAULT_MESH_NAME, 0, 0, 0, 0));
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+    String material = null;
+    int smoothingGroup = 0;
+    // Objects from this one on end after the file's first 's' line, so record smoothing groups
+    int firstSmoothedObject = Integer.MAX_VALUE;
+    for (ParsedChunk chunk : chunks) {
+      diagnostics.addAll(chunk.diagnostics);
+      for (String fileNames : chunk.materialLibraries) {
+        ObjMeshObjectListener.addMaterialLibraries(newObject, fileNames);
+      }
+      for (String faceMaterial : chunk.faceMaterials) {
+        globalFaceMaterials.add(faceMaterial == null ? material : faceMaterial);
+      }
+      if (chunk.usesMaterial) {
+        material = chunk.lastMaterial;
+      }
+      for (int face = 0; face < chunk.faceSmoothingGroups.size(); face++) {
+        globalFaceSmoothingGroups.add(face < chunk.facesBeforeSmoothingGroup ? smoothingGroup
+            : chunk.faceSmoothingGroups.get(face));
+      }
+      if (chunk.firstSmoothingGroupObject != NO_SMOOTHING_GROUP) {
+        smoothingGroup = chunk.lastSmoothingGroup;
+        firstSmoothedObject = Math.min(firstSmoothedObject,
+            objects.size() - 1 + chunk.firstSmoothingGroupObject);
+      }
+      for (ObjectStart start : chunk.objectStarts) {
+        objects.add(start.offsetBy(globalVertices.size(), globalTextureCoords.size(),
+            globalNormals.size(), globalFaces.size()));
+      }
+      globalVertices.addAll(chunk.vertices);
+      globalTextureCoords.addAll(chunk.textureCoords);
+      globalNormals.addAll(chunk.normals);
+      globalFaces.addAll(chunk.faces);
+    }
+    objects.add(new ObjectStart(null, globalVertices.size(), globalTextureCoords.size(),
+        globalNormals.size(), globalFaces.size()));
+    ObjFileStreamingParser.logProblems(diagnostics);
+    
+    List<Future<MeshData>> pendingMeshes = Lists.newArrayList();
+    for (int object = 0; object < objects.size() - 1; object++) {
+      pendingMeshes.add(executor.submit(new ObjectLocalization(objects.get(object),
+          objects.get(object + 1), globalVertices, globalTextureCoords, globalNormals,
+          globalFaces, globalFaceMaterials,
+          object >= firstSmoothedObject ? globalFaceSmoothingGroups : null)));
+    }
+    
+    for (MeshData data : MoreFutures.getAll(pendingMeshes)) {
+      // Same as the sequential parser, skip preamble declarations that never formed a mesh.
+      if (data.getVerticies().capacity() > 0) {
+        newObject.addMesh(data);
+      }
+    }
+    return newObject;
+  }
+  
+  private List<ByteBuffer> splitIntoChunks(ByteBuffer bytes) {
+    int start = bytes.position();
+    int limit = bytes.limit();
+    int size = limit - start;
+    int processors = Runtime.getRuntime().availableProcessors();
+    int numChunks = Math.max(1, Math.min(processors * CHUNKS_PER_PROCESSOR, size / minChunkSize));
+    
+    List<ByteBuffer> chunks = Lists.newArrayListWithCapacity(numChunks);
+    int chunkStart = start;
+    for (int chunk = 1; chunk < numChunks && chunkStart < limit; chunk++) {
+      int chunkEnd = Math.max(start + (int) ((long) size * chunk / numChunks), chunkStart);
+      // Move the boundary up to just past the end of the line it falls in
+      while (chunkEnd < limit && bytes.get(chunkEnd) != LINE_FEED) {
+        chunkEnd++;
+      }
+      chunkEnd = Math.min(chunkEnd + 1, limit);
+      chunks.add(range(bytes, chunkStart, chunkEnd));
+      chunkStart = chunkEnd;
+    }
+    
+    if (chunkStart < limit || chunks.isEmpty()) {
+      chunks.add(range(bytes, chunkStart, limit));
+    }
+    return chunks;
+  }
+  
+  private ByteBuffer range(ByteBuffer bytes, int start, int end) {
+    ByteBuffer range = bytes.duplicate();
+    range.limit(end);
+    range.position(start);
+    return range;
+  }
+  
+  /**
+   * Where an object declaration sits, given as the size of each pool when it was seen.
+   */
+  private static class ObjectStart {
+    final String name;
+    final int vertexCount;
+    final int textureCoordCount;
+    final int normalCount;
+    final int faceCount;
+    
+    ObjectStart(String name, int vertexCount, int textureCoordCount, int normalCount,
+        int faceCount) {
+      this.name = name;
+      this.vertexCount = vertexCount;
+      this.textureCoordCount = textureCoordCount;
+      this.normalCount = normalCount;
+      this.faceCount = faceCount;
+    }
+    
+    ObjectStart offsetBy(int vertices, int textureCoords, int normals, int faces) {
+      return new ObjectStart(name, vertexCount + vertices, textureCoordCount + textureCoords,
+          normalCount + normals, faceCount + faces);
+    }
+  }
+  
+  private static class ParsedChunk {
+    final List<Vertex> vertices = Lists.newArrayList();
+    final List<TextureCoords> textureCoords = Lists.newArrayList();
+    final List<NormalVector> normals = Lists.newArrayList();
+    final List<TriangularFace> faces = Lists.newArrayList();
+    // The material of each face, null for faces before the chunk's first usemtl line
+    final List<String> faceMaterials = Lists.newArrayList();
+    // The smoothing group of each face, where those before the chunk's first 's' line are left 0
+    final IntArrayList faceSmoothingGroups = new IntArrayList();
+    final List<String> materialLibraries = Lists.newArrayList();
+    final List<ObjectStart> objectStarts = Lists.newArrayList();
+    boolean usesMaterial = false;
+    String lastMaterial = null;
+    int facesBeforeSmoothingGroup = 0;
+    // How many objects the chunk had started before its first 's' line
+    int firstSmoothingGroupObject = NO_SMOOTHING_GROUP;
+    int lastSmoothingGroup = 0;
+    final ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+  }
+  
+  private class ChunkParse implements Callable<ParsedChunk> {
+    private final ByteBuffer chunk;
+    
+    ChunkParse(ByteBuffer chunk) {
+      this.chunk = chunk;
+    }
+
+    @Override
+    public ParsedChunk call() {
+      ParsedChunk parsed = new ParsedChunk();
+      MappedObjFile file = new MappedObjFile(chunk);
+      ObjLineTokenizer tokenizer = new ObjLineTokenizer();
+      
+      while (file.hasMoreElements()) {
+        ObjDirective directive = tokenizer.reset(file.getNextElement()).nextDirective();
+        if (directive == ObjDirective.OBJECT) {
+          parsed.objectStarts.add(new ObjectStart(tokenizer.remainder(), parsed.vertices.size(),
+              parsed.textureCoords.size(), parsed.normals.size(), parsed.faces.size()));
+          continue;
+        } else if (directive == ObjDirective.UNKNOWN) {
+          parsed.diagnostics.recordUnknownDirective(tokenizer);
+          continue;
+        } else if (directive == ObjDirective.USE_MATERIAL) {
+          parsed.usesMaterial = true;
+          parsed.lastMaterial = tokenizer.remainder();
+          continue;
+        } else if (directive == ObjDirective.MATERIAL_LIBRARY) {
+          parsed.materialLibraries.add(tokenizer.remainder());
+          continue;
+        }
+        
+        try {
+          if (directive == ObjDirective.SMOOTHING_GROUP) {
+            parsed.lastSmoothingGroup = ObjFileStreamingParser.parseSmoothingGroup(tokenizer);
+            if (parsed.firstSmoothingGroupObject == NO_SMOOTHING_GROUP) {
+              parsed.firstSmoothingGroupObject = parsed.objectStarts.size();
+            }
+            continue;
+          }
+          lineParser.processElement(directive, tokenizer, parsed.vertices, parsed.textureCoords,
+              parsed.normals, parsed.faces);
+          if (directive == ObjDirective.FACE) {
+            parsed.faceMaterials.add(parsed.lastMaterial);
+            parsed.faceSmoothingGroups.add(parsed.lastSmoothingGroup);
+            if (parsed.firstSmoothingGroupObject == NO_SMOOTHING_GROUP) {
+              parsed.facesBeforeSmoothingGroup++;
+            }
+          }
+        } catch (IllegalArgumentException e) {
+          parsed.diagnostics.recordMalformedLine(tokenizer.getLine(), e);
+        }
+      }
+      return parsed;
+    }
+  }
+  
+  /**
+   * Localizes one object against the pools as they stood when the object ended, which is all
+   * the sequential parser would have seen at that point.
+   */
+  private class ObjectLocalization implements Callable<MeshData> {
+    private final ObjectStart start;
+    private final ObjectStart end;
+    private final List<Vertex> globalVertices;
+    private final List<TextureCoords> globalTextureCoords;
+    private final List<NormalVector> globalNormals;
+    private final List<TriangularFace> globalFaces;
+    private final List<String> globalFaceMaterials;
+    private final IntArrayList globalFaceSmoothingGroups;
+    
+    /**
+     * @param globalFaceSmoothingGroups the smoothing group of every face, or null if the object
+     *     ended before the file declared any
+     */
+    ObjectLocalization(ObjectStart start, ObjectStart end, List<Vertex> globalVertices,
+        List<TextureCoords> globalTextureCoords, List<NormalVector> globalNormals,
+        List<TriangularFace> globalFaces, List<String> globalFaceMaterials,
+        IntArrayList globalFaceSmoothingGroups) {
+      this.start = start;
+      this.end = end;
+      this.globalVertices = globalVertices;
+      this.globalTextureCoords = globalTextureCoords;
+      this.globalNormals = globalNormals;
+      this.globalFaces = globalFaces;
+      this.globalFaceMaterials = globalFaceMaterials;
+      this.globalFaceSmoothingGroups = globalFaceSmoothingGroups;
+    }
+
+    @Override
+    public MeshData call() {
+      int numFaces = end.faceCount - start.faceCount;
+      List<TriangularFace> faces = Lists.newArrayListWithCapacity(numFaces);
+      IntArrayList smoothingGroups = null;
+      IntArrayList groupedSmoothingGroups = null;
+      if (globalFaceSmoothingGroups != null) {
+        smoothingGroups = new IntArrayList(numFaces);
+        for (int face = start.faceCount; face < end.faceCount; face++) {
+          smoothingGroups.add(globalFaceSmoothingGroups.get(face));
+        }
+        groupedSmoothingGroups = new IntArrayList(numFaces);
+      }
+      MeshData.Builder meshDataBuilder = new MeshData.Builder().setName(start.name)
+          .setMaterialRanges(ObjMaterialGroups.groupFaces(
+              globalFaces.subList(start.faceCount, end.faceCount),
+              globalFaceMaterials.subList(start.faceCount, end.faceCount), smoothingGroups,
+              faces, groupedSmoothingGroups));
+      lineParser.localizeMeshData(meshDataBuilder, globalVertices.subList(0, end.vertexCount),
+          globalTextureCoords.subList(0, end.textureCoordCount),
+          globalNormals.subList(0, end.normalCount), faces);
+      if (groupedSmoothingGroups != null) {
+        meshDataBuilder.setSmoothingGroups(IntBuffer.wrap(groupedSmoothingGroups.toArray()));
+      }
+      return meshDataBuilder.build();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.et.util.mesh.fileparser.obj;
+
+import java.nio.ByteBuffer;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshObjectParser;
+import com.et.util.mesh.fileparser.obj.lineparsers.ObjLineTokenizer;
+import com.google.inject.Inject;
+
+/**
+ * A {@link MeshObjectParser} that reads a {@link MappedObjFile} twice. The first pass only counts
+ * the vertex, texture coord, normal and face declarations, which lets the second pass parse
+ * straight into flat primitive arrays of exactly the right size, through an
+ * {@link ObjFileStreamingParser} feeding an {@link ObjMeshObjectListener}. Nothing is boxed, no
+ * list is grown, and the file's elements are never turned into objects, which keeps garbage
+ * collection out of loading large meshes. The resulting {@link MeshObject} equals the one
+ * {@link ObjFileMeshObjectParser} produces.
+ */
+public class PresizedObjFileMeshObjectParser implements MeshObjectParser<MappedObjFile> {
+  
+  private final ObjFileStreamingParser streamingParser;
+  private final ObjMeshLocalizer meshLocalizer;
+  private boolean unifiedIndices = false;
+  
+  @Inject
+  public PresizedObjFileMeshObjectParser(ObjFileStreamingParser streamingParser,
+      ObjMeshLocalizer meshLocalizer) {
+    this.streamingParser = streamingParser;
+    this.meshLocalizer = meshLocalizer;
+  }
+  
+  /**
+   * See {@link ObjFileMeshObjectParser#setUnifiedIndices(boolean)}.
+   */
+  public void setUnifiedIndices(boolean unifiedIndices) {
+    this.unifiedIndices = unifiedIndices;
+  }
+
+  @Override
+  public MeshObject parse(MappedObjFile file) {
+    ByteBuffer bytes = file.getUnreadBytes();
+    ObjPools pools = countDeclarations(new MappedObjFile(bytes));
+    
+    ObjMeshObjectListener listener = new ObjMeshObjectListener(meshLocalizer, unifiedIndices,
+        pools);
+    streamingParser.parse(new MappedObjFile(bytes), listener);
+    return listener.getMeshObject();
+  }
+  
+  private ObjPools countDeclarations(MappedObjFile lines) {
+    ObjLineTokenizer tokenizer = new ObjLineTokenizer();
+    int vertexCount = 0;
+    int textureCoordCount = 0;
+    int normalCount = 0;
+    int faceCount = 0;
+    
+    while (lines.hasMoreElements()) {
+      switch (tokenizer.reset(lines.getNextElement()).nextDirective()) {
+        case VERTEX:
+          vertexCount++;
+          break;
+        case TEXTURE_COORD:
+          textureCoordCount++;
+          break;
+        case NORMAL:
+          normalCount++;
+          break;
+        case FACE:
+          faceCount++;
+          break;
+        default:
+          break;
+      }
+    }
+    return new ObjPools(vertexCount, textureCoordCount, normalCount, faceCount);
+  }
+}
@@ -6,13 +6,12 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Queue;
 
-import com.et.util.mesh.files.MeshFile;
 import com.google.common.collect.Queues;
 
 /**
  * An object file derived from an android raw text resource.
  */
-public class ResourceObjFile implements MeshFile<String> {
+public class ResourceObjFile implements ObjFile {
   
   private final BufferedReader fileReader;
   private String nextLine;
@@ -1,10 +1,8 @@
 package com.et.util.mesh.fileparser.obj.lineparsers;
 
-import java.util.List;
-import java.util.StringTokenizer;
-
+import com.et.util.mesh.fileparser.MeshParseListener;
+import com.et.util.primitives.IntArrayList;
 import com.et.util.primitives.TriangularFace;
-import com.google.common.collect.Lists;
 
 /**
  * Parses a line declaring the indices defining a face in Wavefront's .obj file. We assume
@@ -13,13 +11,16 @@ import com.google.common.collect.Lists;
 public class FaceDeclLineParser {
 
   public static final String FACE_LINE_HEADER = "f";
+  public static final int INDICES_PER_CORNER = 3;
+  public static final int NUM_FACE_INDICES = 9;
+  public static final int MISSING_INDEX = MeshParseListener.MISSING_INDEX;
   
-  private static final String COMPONENT_DELIM = "/";
+  private static final char COMPONENT_DELIM = '/';
   // We expect three values, one per vertex, for all set values
   private static final int NUMBER_ELEMENTS_PER_VALUE = 3;
-  private static final int MIN_NUM_INDICES_AND_DELIM = 1;
-  private static final int MAX_NUM_INDICES_AND_DELIM = 5;
   private static final int NUM_FACE_DECL_COMPONENTS = 4;
+  // Marks an index field that was left empty, as in the texture field of 'x//z'
+  private static final int NO_INDEX = Integer.MIN_VALUE;
 
   
   /**
@@ -28,90 +29,165 @@ public class FaceDeclLineParser {
    * coordinates, and z is an index into the set of normal coordinates.
    */
   public TriangularFace parseFace(String faceDeclaration) {
-    StringTokenizer tokenizer = new StringTokenizer(faceDeclaration);
-    if(!validVertexDeclComponentCount(tokenizer) ||
-        !tokenizer.nextToken().equals(FACE_LINE_HEADER)) {
+    ObjLineTokenizer tokenizer = new ObjLineTokenizer().reset(faceDeclaration);
+    if (tokenizer.nextDirective() != ObjDirective.FACE) {
       throwInvalidFaceDeclarationException(faceDeclaration);
     }
+    return parseFace(tokenizer);
+  }
+  
+  /**
+   * Parses the components of a face declaration from a tokenizer that has already read the 'f'
+   * header. Each component is decoded in place from the line.
+   */
+  public TriangularFace parseFace(ObjLineTokenizer tokenizer) {
+    int[] indices = new int[NUM_FACE_INDICES];
+    parseFace(tokenizer, indices, 0);
     
-    List<Integer> vertexIndices = Lists.newArrayList();
-    List<Integer> normalIndices = Lists.newArrayList();
-    List<Integer> textureIndices = Lists.newArrayList();
-    
-    while (tokenizer.hasMoreTokens()) {
-      parseComponent(tokenizer.nextToken(), vertexIndices, normalIndices, textureIndices);
-    }
-    
-    if (!allSetComponentsHaveSameElements(vertexIndices, normalIndices, textureIndices)) {
-      throwInvalidFaceDeclarationException(faceDeclaration);
+    IntArrayList vertexIndices = new IntArrayList(NUMBER_ELEMENTS_PER_VALUE);
+    IntArrayList normalIndices = new IntArrayList(NUMBER_ELEMENTS_PER_VALUE);
+    IntArrayList textureIndices = new IntArrayList(NUMBER_ELEMENTS_PER_VALUE);
+    for (int corner = 0; corner < NUM_FACE_INDICES; corner += INDICES_PER_CORNER) {
+      vertexIndices.add(indices[corner]);
+      if (indices[corner + 1] != MISSING_INDEX) {
+        textureIndices.add(indices[corner + 1]);
+      }
+      if (indices[corner + 2] != MISSING_INDEX) {
+        normalIndices.add(indices[corner + 2]);
+      }
     }
-    
     return new TriangularFace(vertexIndices, normalIndices, textureIndices);
   }
   
-  private boolean allSetComponentsHaveSameElements(List<Integer> vertexIndices,
-      List<Integer> normalIndices, List<Integer> textureIndices) {
-    // Mainly a sanity check
-    if (vertexIndices.size() != NUMBER_ELEMENTS_PER_VALUE) {
-      return false;
+  /**
+   * Like {@link #parseFace(ObjLineTokenizer)}, but writes the face into the destination starting
+   * at offset instead of creating a {@link TriangularFace}. Each of the three corners takes
+   * {@link #INDICES_PER_CORNER} values: the vertex, texture coordinate, and normal indices, all
+   * 0-indexed. Texture and normal indices the face does not declare are written as
+   * {@link #MISSING_INDEX}.
+   */
+  public void parseFace(ObjLineTokenizer tokenizer, int[] destination, int offset) {
+    int numTextureIndices = 0;
+    int numNormalIndices = 0;
+    int componentCount = 0;
+    while (componentCount < NUMBER_ELEMENTS_PER_VALUE && tokenizer.nextToken()) {
+      int cornerOffset = offset + componentCount * INDICES_PER_CORNER;
+      try {
+        parseComponent(tokenizer, destination, cornerOffset);
+      } catch (NumberFormatException e) {
+        throwInvalidFaceComponentException(tokenizer, componentCount);
+      }
+      numTextureIndices += (destination[cornerOffset + 1] != MISSING_INDEX ? 1 : 0);
+      numNormalIndices += (destination[cornerOffset + 2] != MISSING_INDEX ? 1 : 0);
+      componentCount++;
     }
     
-    // If we have an index value, we must have the same number of values as vertices
-    return (normalIndices.size() == NUMBER_ELEMENTS_PER_VALUE || normalIndices.size() == 0) && 
-        (textureIndices.size() == NUMBER_ELEMENTS_PER_VALUE || textureIndices.size() == 0);
+    if (componentCount != NUMBER_ELEMENTS_PER_VALUE || tokenizer.hasMoreTokens() ||
+        !allSetComponentsHaveSameElements(numNormalIndices, numTextureIndices)) {
+      throwInvalidFaceDeclarationException(tokenizer.getLine());
+    }
+  }
+  
+  // If we have an index value, we must have the same number of values as vertices
+  private boolean allSetComponentsHaveSameElements(int numNormalIndices, int numTextureIndices) {
+    return (numNormalIndices == NUMBER_ELEMENTS_PER_VALUE || numNormalIndices == 0) && 
+        (numTextureIndices == NUMBER_ELEMENTS_PER_VALUE || numTextureIndices == 0);
   }
 
-  private void parseComponent(String component, List<Integer> vertexIndices,
-      List<Integer> normalIndices, List<Integer> textureCoordIndices) {
-    StringTokenizer componentTokenizer = new StringTokenizer(component, COMPONENT_DELIM, true);
-    if (!validComponentTokenCount(componentTokenizer)) {
-      throwInvalidFaceComponentException(component);
+  // Components are 'x', 'x/y', 'x//z', or 'x/y/z'. The vertex index is mandatory and trailing
+  // empty fields are allowed. Throws a NumberFormatException for any malformed component.
+  private void parseComponent(ObjLineTokenizer tokenizer, int[] destination, int offset) {
+    CharSequence line = tokenizer.getLine();
+    int start = tokenizer.getTokenStart();
+    int end = tokenizer.getTokenEnd();
+    
+    int fieldEnd = findFieldEnd(line, start, end);
+    int vertexIndex = parseIndex(line, start, fieldEnd);
+    if (vertexIndex == NO_INDEX) {
+      throw new NumberFormatException();
     }
+    destination[offset] = vertexIndex;
+    destination[offset + 1] = MISSING_INDEX;
+    destination[offset + 2] = MISSING_INDEX;
     
-    try {
-      vertexIndices.add(getIndex(componentTokenizer.nextToken()));
-      int delimCount = 0;
-      while (componentTokenizer.hasMoreTokens()) {
-        String token = componentTokenizer.nextToken();
-        if (token.equals(COMPONENT_DELIM)) {
-          delimCount++;
-        } else if (delimCount == 1) {
-          textureCoordIndices.add(getIndex(token));
-        } else if (delimCount == 2) {
-          normalIndices.add(getIndex(token));
-        } else {
-          throwInvalidFaceComponentException(component);
-        }
+    for (int field = 1; fieldEnd < end; field++) {
+      if (field > 2) {
+        throw new NumberFormatException();
+      }
+      
+      start = fieldEnd + 1;
+      fieldEnd = findFieldEnd(line, start, end);
+      int index = parseIndex(line, start, fieldEnd);
+      if (index != NO_INDEX) {
+        destination[offset + field] = index;
       }
-    } catch (NumberFormatException e) {
-      throwInvalidFaceComponentException(component);
     }
-    
   }
   
-  // Parses string integer and accounts for the fact that .obj is not 0-indexed
-  private int getIndex(String token) {
-    return Integer.parseInt(token) - 1;
+  private int findFieldEnd(CharSequence line, int start, int end) {
+    int position = start;
+    while (position < end && line.charAt(position) != COMPONENT_DELIM) {
+      position++;
+    }
+    return position;
   }
   
-  private boolean validComponentTokenCount(StringTokenizer componentTokenizer) {
-    return componentTokenizer.countTokens() <= MAX_NUM_INDICES_AND_DELIM &&
-        componentTokenizer.countTokens() >= MIN_NUM_INDICES_AND_DELIM;
+  // Parses an integer index in place and accounts for the fact that .obj is not 0-indexed. Returns
+  // NO_INDEX for an empty field and throws a NumberFormatException on anything but digits or on
+  // 0, which no .obj element has and would otherwise read as MISSING_INDEX.
+  private int parseIndex(CharSequence line, int start, int end) {
+    if (start == end) {
+      return NO_INDEX;
+    }
+    
+    int position = start;
+    boolean negative = false;
+    char first = line.charAt(position);
+    if (first == '-' || first == '+') {
+      negative = (first == '-');
+      position++;
+    }
+    
+    if (position == end) {
+      throw new NumberFormatException();
+    }
+    
+    long value = 0;
+    for (; position < end; position++) {
+      int digit = line.charAt(position) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException();
+      }
+      value = value * 10 + digit;
+      if (value > Integer.MAX_VALUE) {
+        throw new NumberFormatException();
+      }
+    }
+    if (value == 0) {
+      throw new NumberFormatException();
+    }
+    return (int) (negative ? -value : value) - 1;
   }
 
-  private void throwInvalidFaceDeclarationException(String faceDeclaration) {
+  private void throwInvalidFaceDeclarationException(CharSequence faceDeclaration) {
     String errorMessage = String.format("Provided argument [%s] is not a valid face declaration.",
         faceDeclaration);
     throw new IllegalArgumentException(errorMessage);
   }
   
-  private void throwInvalidFaceComponentException(String faceComponent) {
+  // A bad component in a line that also has the wrong number of components is reported as a bad
+  // declaration. Counting only happens here, so well formed lines are never rescanned.
+  private void throwInvalidFaceComponentException(ObjLineTokenizer tokenizer,
+      int componentIndex) {
+    // The header, the components before this one, this one, and whatever follows
+    int tokenCount = componentIndex + 2 + tokenizer.countRemainingTokens();
+    if (tokenCount != NUM_FACE_DECL_COMPONENTS) {
+      throwInvalidFaceDeclarationException(tokenizer.getLine());
+    }
+    
+    CharSequence line = tokenizer.getLine();
     String errorMessage = String.format("Component [%s] is not a valid face component.",
-        faceComponent);
+        line.subSequence(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
     throw new IllegalArgumentException(errorMessage);
   }
-  
-  private boolean validVertexDeclComponentCount(StringTokenizer tokenizer) {
-    return tokenizer.countTokens() == NUM_FACE_DECL_COMPONENTS;
-  }
 }
@@ -0,0 +1,149 @@
+package com.et.util.mesh.fileparser.obj.lineparsers;
+
+/**
+ * Parses decimal floats directly out of a character sequence, without building a string. Handles
+ * the plain decimal and exponent forms that mesh exporters write, such as '-0.125', '3', '.5' and
+ * '1.5e-3'. Results are correctly rounded and always identical to {@link Float#parseFloat}.
+ * 
+ * Up to 18 significant digits are gathered into a long. When that mantissa is below 2^53 and the
+ * decimal exponent is within [-22, 22], both operands are exact doubles, so one multiply or
+ * divide gives the correctly rounded double. Narrowing that double to a float could round twice.
+ * That only goes wrong when the double lands exactly halfway between two floats, and that case
+ * is detected. Halfway cases, more digits, out of range exponents, and any other syntax such as
+ * hex, NaN, Infinity or a type suffix go through {@link Float#parseFloat}. Malformed input
+ * therefore gets the JDK's {@link NumberFormatException}.
+ */
+public final class FastFloatParser {
+  
+  private static final int MAX_SIGNIFICANT_DIGITS = 18;
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final int MAX_EXACT_EXPONENT = 22;
+  // Used only to keep absurd exponents from overflowing; anything this large falls back anyway.
+  private static final int MAX_EXPONENT_MAGNITUDE = 100000;
+  
+  // A double has 29 more mantissa bits than a float. If exactly the top one of those is set the
+  // double sits on the midpoint between two floats.
+  private static final long FLOAT_DROPPED_BITS_MASK = (1L << 29) - 1;
+  private static final long FLOAT_HALFWAY_BITS = 1L << 28;
+  
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  
+  private FastFloatParser() {}
+  
+  /**
+   * Parses the float spanning [start, end) of the given sequence.
+   */
+  public static float parseFloat(CharSequence sequence, int start, int end) {
+    int position = start;
+    boolean negative = false;
+    if (position < end) {
+      char sign = sequence.charAt(position);
+      if (sign == '-' || sign == '+') {
+        negative = (sign == '-');
+        position++;
+      }
+    }
+    
+    long mantissa = 0;
+    int significantDigits = 0;
+    int exponent = 0;
+    boolean sawDigit = false;
+    
+    for (; position < end; position++) {
+      int digit = sequence.charAt(position) - '0';
+      if (digit < 0 || digit > 9) {
+        break;
+      }
+      sawDigit = true;
+      if (mantissa == 0 && digit == 0) {
+        continue;
+      }
+      if (significantDigits == MAX_SIGNIFICANT_DIGITS) {
+        return fallback(sequence, start, end);
+      }
+      mantissa = mantissa * 10 + digit;
+      significantDigits++;
+    }
+    
+    if (position < end && sequence.charAt(position) == '.') {
+      for (position++; position < end; position++) {
+        int digit = sequence.charAt(position) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        sawDigit = true;
+        exponent--;
+        if (mantissa == 0 && digit == 0) {
+          continue;
+        }
+        if (significantDigits == MAX_SIGNIFICANT_DIGITS) {
+          return fallback(sequence, start, end);
+        }
+        mantissa = mantissa * 10 + digit;
+        significantDigits++;
+      }
+    }
+    
+    if (!sawDigit) {
+      return fallback(sequence, start, end);
+    }
+    
+    if (position < end && (sequence.charAt(position) == 'e' || sequence.charAt(position) == 'E')) {
+      position++;
+      boolean negativeExponent = false;
+      if (position < end) {
+        char sign = sequence.charAt(position);
+        if (sign == '-' || sign == '+') {
+          negativeExponent = (sign == '-');
+          position++;
+        }
+      }
+      
+      int exponentStart = position;
+      int explicitExponent = 0;
+      for (; position < end; position++) {
+        int digit = sequence.charAt(position) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        if (explicitExponent < MAX_EXPONENT_MAGNITUDE) {
+          explicitExponent = explicitExponent * 10 + digit;
+        }
+      }
+      
+      if (position == exponentStart) {
+        return fallback(sequence, start, end);
+      }
+      exponent += (negativeExponent ? -explicitExponent : explicitExponent);
+    }
+    
+    if (position != end) {
+      return fallback(sequence, start, end);
+    }
+    
+    if (mantissa == 0) {
+      return negative ? -0f : 0f;
+    }
+    
+    if (mantissa >= MAX_EXACT_MANTISSA || exponent < -MAX_EXACT_EXPONENT ||
+        exponent > MAX_EXACT_EXPONENT) {
+      return fallback(sequence, start, end);
+    }
+    
+    double value = (exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] :
+        mantissa * POWERS_OF_TEN[exponent]);
+    if ((Double.doubleToRawLongBits(value) & FLOAT_DROPPED_BITS_MASK) == FLOAT_HALFWAY_BITS) {
+      return fallback(sequence, start, end);
+    }
+    
+    float result = (float) value;
+    return negative ? -result : result;
+  }
+  
+  private static float fallback(CharSequence sequence, int start, int end) {
+    return Float.parseFloat(sequence.subSequence(start, end).toString());
+  }
+}
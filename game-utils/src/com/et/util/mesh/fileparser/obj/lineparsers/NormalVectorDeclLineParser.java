@@ -1,7 +1,5 @@
 package com.et.util.mesh.fileparser.obj.lineparsers;
 
-import java.util.StringTokenizer;
-
 import com.et.util.primitives.geom.NormalVector;
 
 /**
@@ -10,36 +8,50 @@ import com.et.util.primitives.geom.NormalVector;
 public class NormalVectorDeclLineParser {
   
   public static final String NORMAL_LINE_HEADER = "vn";
+  public static final int NUM_NORMAL_COMPONENTS = 3;
 
-  private static final float NUMBER_NORMAL_COMPONENTS = 4;
-  
   /**
    * Parses a line declaring a normal vector. Expected format is "vn x y z" where "x y z" specify
    * the normal components. Throws {@link IllegalArgumentException} if invalid line format is
    * provided.
    */
   public NormalVector parseNormalVector(String normalDeclaration) {
-    StringTokenizer tokenizer = new StringTokenizer(normalDeclaration);
-    if (tokenizer.countTokens() != NUMBER_NORMAL_COMPONENTS || 
-        !tokenizer.nextToken().equals(NORMAL_LINE_HEADER)) {
+    ObjLineTokenizer tokenizer = new ObjLineTokenizer().reset(normalDeclaration);
+    if (tokenizer.nextDirective() != ObjDirective.NORMAL) {
       throwInvalidNormalDeclarationException(normalDeclaration);
     }
-    
-    float x = 0;
-    float y = 0;
-    float z = 0;
-    
+    return parseNormalVector(tokenizer);
+  }
+  
+  /**
+   * Parses the components of a normal declaration from a tokenizer that has already read the 'vn'
+   * header.
+   */
+  public NormalVector parseNormalVector(ObjLineTokenizer tokenizer) {
+    float[] components = new float[NUM_NORMAL_COMPONENTS];
+    parseNormalVector(tokenizer, components, 0);
+    return new NormalVector(components[0], components[1], components[2]);
+  }
+  
+  /**
+   * Like {@link #parseNormalVector(ObjLineTokenizer)}, but writes x, y, and z into the
+   * destination starting at offset.
+   */
+  public void parseNormalVector(ObjLineTokenizer tokenizer, float[] destination, int offset) {
     try {
-      x = Float.parseFloat(tokenizer.nextToken());
-      y = Float.parseFloat(tokenizer.nextToken());
-      z = Float.parseFloat(tokenizer.nextToken());
+      destination[offset] = tokenizer.nextFloat();
+      destination[offset + 1] = tokenizer.nextFloat();
+      destination[offset + 2] = tokenizer.nextFloat();
     } catch (NumberFormatException e) {
-      throwInvalidNormalDeclarationException(normalDeclaration);
+      throwInvalidNormalDeclarationException(tokenizer.getLine());
+    }
+    
+    if (tokenizer.hasMoreTokens()) {
+      throwInvalidNormalDeclarationException(tokenizer.getLine());
     }
-    return new NormalVector(x, y, z);
   }
 
-  private void throwInvalidNormalDeclarationException(String normalDeclaration) {
+  private void throwInvalidNormalDeclarationException(CharSequence normalDeclaration) {
     String errorMessage = String.format("Provided argument [%s] is not a valid normal " +
     		"vector declaration.", normalDeclaration);
     throw new IllegalArgumentException(errorMessage);
@@ -0,0 +1,95 @@
+package com.et.util.mesh.fileparser.obj.lineparsers;
+
+/**
+ * The kinds of line found in Wavefront's .obj file, keyed by the header token that starts them.
+ */
+public enum ObjDirective {
+  VERTEX(VertexDeclLineParser.VERTEX_LINE_HEADER),
+  TEXTURE_COORD(TextureCoordDeclLineParser.TEXTURE_LINE_HEADER),
+  NORMAL(NormalVectorDeclLineParser.NORMAL_LINE_HEADER),
+  FACE(FaceDeclLineParser.FACE_LINE_HEADER),
+  OBJECT("o"),
+  GROUP("g"),
+  SMOOTHING_GROUP("s"),
+  USE_MATERIAL("usemtl"),
+  MATERIAL_LIBRARY("mtllib"),
+  LINE("l"),
+  COMMENT("#"),
+  BLANK(""),
+  UNKNOWN(null);
+  
+  private final String header;
+  
+  private ObjDirective(String header) {
+    this.header = header;
+  }
+  
+  /**
+   * Returns the header token for this directive, or null for {@link #UNKNOWN}.
+   */
+  public String getHeader() {
+    return header;
+  }
+  
+  /**
+   * Classifies the header token spanning [start, end) of the given line. Dispatches on the first
+   * characters instead of comparing strings so no token is ever materialized.
+   */
+  public static ObjDirective forHeader(CharSequence line, int start, int end) {
+    int length = end - start;
+    if (length == 0) {
+      return BLANK;
+    }
+    
+    char first = line.charAt(start);
+    if (first == '#') {
+      return COMMENT;
+    }
+    
+    if (length == 1) {
+      switch (first) {
+        case 'v':
+          return VERTEX;
+        case 'f':
+          return FACE;
+        case 'o':
+          return OBJECT;
+        case 'g':
+          return GROUP;
+        case 's':
+          return SMOOTHING_GROUP;
+        case 'l':
+          return LINE;
+        default:
+          return UNKNOWN;
+      }
+    }
+    
+    if (length == 2 && first == 'v') {
+      char second = line.charAt(start + 1);
+      if (second == 't') {
+        return TEXTURE_COORD;
+      } else if (second == 'n') {
+        return NORMAL;
+      }
+    }
+    
+    if (length == USE_MATERIAL.header.length()) {
+      if (USE_MATERIAL.matches(line, start)) {
+        return USE_MATERIAL;
+      } else if (MATERIAL_LIBRARY.matches(line, start)) {
+        return MATERIAL_LIBRARY;
+      }
+    }
+    return UNKNOWN;
+  }
+  
+  private boolean matches(CharSequence line, int start) {
+    for (int i = 0; i < header.length(); i++) {
+      if (line.charAt(start + i) != header.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,134 @@
+package com.et.util.mesh.fileparser.obj.lineparsers;
+
+/**
+ * A cursor over a single line of Wavefront's .obj file. Tokens are separated by whitespace and are
+ * read in place as offsets into the line, so walking a line does not allocate. One tokenizer is
+ * meant to be reused for every line of a file through {@link #reset(CharSequence)}.
+ */
+public class ObjLineTokenizer {
+  
+  private CharSequence line;
+  private int position;
+  private int length;
+  private int tokenStart;
+  private int tokenEnd;
+  
+  /**
+   * Points this tokenizer at the start of a new line.
+   */
+  public ObjLineTokenizer reset(CharSequence line) {
+    this.line = line;
+    this.length = line.length();
+    this.position = 0;
+    this.tokenStart = 0;
+    this.tokenEnd = 0;
+    return this;
+  }
+  
+  public CharSequence getLine() {
+    return line;
+  }
+  
+  /**
+   * Reads the first token of the line and classifies it. Must be called before any other token is
+   * read from the line.
+   */
+  public ObjDirective nextDirective() {
+    if (!nextToken()) {
+      return ObjDirective.BLANK;
+    }
+    return ObjDirective.forHeader(line, tokenStart, tokenEnd);
+  }
+  
+  /**
+   * Advances to the next token. Returns false, leaving the cursor at the end of the line, if
+   * there are no more tokens.
+   */
+  public boolean nextToken() {
+    skipWhitespace();
+    if (position >= length) {
+      tokenStart = tokenEnd = length;
+      return false;
+    }
+    
+    tokenStart = position;
+    while (position < length && !isWhitespace(line.charAt(position))) {
+      position++;
+    }
+    tokenEnd = position;
+    return true;
+  }
+  
+  public boolean hasMoreTokens() {
+    skipWhitespace();
+    return position < length;
+  }
+  
+  /**
+   * Start offset, in the line, of the token last read.
+   */
+  public int getTokenStart() {
+    return tokenStart;
+  }
+  
+  /**
+   * End offset, exclusive, of the token last read.
+   */
+  public int getTokenEnd() {
+    return tokenEnd;
+  }
+  
+  /**
+   * Reads the next token as a float. Throws {@link NumberFormatException} if there is no next
+   * token or it is not a number.
+   */
+  public float nextFloat() {
+    if (!nextToken()) {
+      throw new NumberFormatException("Expected a number at end of line.");
+    }
+    return FastFloatParser.parseFloat(line, tokenStart, tokenEnd);
+  }
+  
+  /**
+   * Returns everything after the current token with surrounding whitespace removed, and moves the
+   * cursor to the end of the line.
+   */
+  public String remainder() {
+    skipWhitespace();
+    int end = length;
+    while (end > position && isWhitespace(line.charAt(end - 1))) {
+      end--;
+    }
+    String remainder = line.subSequence(position, end).toString();
+    position = length;
+    return remainder;
+  }
+  
+  /**
+   * Counts the tokens left on the line without moving the cursor. This rescans the line, so it is
+   * only meant for validation on error paths.
+   */
+  public int countRemainingTokens() {
+    int savedPosition = position;
+    int savedStart = tokenStart;
+    int savedEnd = tokenEnd;
+    int count = 0;
+    while (nextToken()) {
+      count++;
+    }
+    position = savedPosition;
+    tokenStart = savedStart;
+    tokenEnd = savedEnd;
+    return count;
+  }
+  
+  private void skipWhitespace() {
+    while (position < length && isWhitespace(line.charAt(position))) {
+      position++;
+    }
+  }
+  
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f';
+  }
+}
@@ -1,7 +1,5 @@
 package com.et.util.mesh.fileparser.obj.lineparsers;
 
-import java.util.StringTokenizer;
-
 import com.et.util.primitives.TextureCoords;
 
 /**
@@ -10,40 +8,47 @@ import com.et.util.primitives.TextureCoords;
 public class TextureCoordDeclLineParser {
   
   public static final String TEXTURE_LINE_HEADER = "vt";
+  public static final int NUM_TEXTURE_COORDS = 3;
 
-  private static final int MIN_TEXTURE_COORD_DECL_COMPONENTS = 3;
-  private static final int MAX_TEXTURE_COORD_DECL_COMPONENTS = 4;
-  
   public TextureCoords parseTextureCords(String textureCoordsDeclaration) {
-    StringTokenizer tokenizer = new StringTokenizer(textureCoordsDeclaration);
-    if (!validTextureComponentCount(tokenizer) ||
-        !tokenizer.nextElement().equals(TEXTURE_LINE_HEADER)) {
+    ObjLineTokenizer tokenizer = new ObjLineTokenizer().reset(textureCoordsDeclaration);
+    if (tokenizer.nextDirective() != ObjDirective.TEXTURE_COORD) {
       throwInvalidTextureDeclarationException(textureCoordsDeclaration);
     }
-    
-    float u = 0;
-    float v = 0;
-    float w = 0;
-    
+    return parseTextureCords(tokenizer);
+  }
+  
+  /**
+   * Parses the coordinates of a texture declaration from a tokenizer that has already read the
+   * 'vt' header.
+   */
+  public TextureCoords parseTextureCords(ObjLineTokenizer tokenizer) {
+    float[] coords = new float[NUM_TEXTURE_COORDS];
+    parseTextureCords(tokenizer, coords, 0);
+    return new TextureCoords(coords[0], coords[1], coords[2]);
+  }
+  
+  /**
+   * Like {@link #parseTextureCords(ObjLineTokenizer)}, but writes u, v, and w into the
+   * destination starting at offset. A missing w is written as 0.
+   */
+  public void parseTextureCords(ObjLineTokenizer tokenizer, float[] destination, int offset) {
     try {
-      u = Float.parseFloat(tokenizer.nextToken());
-      v = Float.parseFloat(tokenizer.nextToken());
-      w = (tokenizer.hasMoreTokens() ? Float.parseFloat(tokenizer.nextToken()) : 0);
+      destination[offset] = tokenizer.nextFloat();
+      destination[offset + 1] = tokenizer.nextFloat();
+      destination[offset + 2] = (tokenizer.hasMoreTokens() ? tokenizer.nextFloat() : 0);
     } catch (NumberFormatException e) {
-      throwInvalidTextureDeclarationException(textureCoordsDeclaration);
+      throwInvalidTextureDeclarationException(tokenizer.getLine());
+    }
+    
+    if (tokenizer.hasMoreTokens()) {
+      throwInvalidTextureDeclarationException(tokenizer.getLine());
     }
-    return new TextureCoords(u, v, w);
   }
   
-  private void throwInvalidTextureDeclarationException(String textureCoordsDeclaration) {
+  private void throwInvalidTextureDeclarationException(CharSequence textureCoordsDeclaration) {
     String errorMessage = String.format("Provided argument [%s] is not a valid texture " +
         "coordinate declaration.", textureCoordsDeclaration);
     throw new IllegalArgumentException(errorMessage);
   }
-
-  private boolean validTextureComponentCount(StringTokenizer tokenizer) {
-    int count = tokenizer.countTokens();
-    return count == MIN_TEXTURE_COORD_DECL_COMPONENTS ||
-        count == MAX_TEXTURE_COORD_DECL_COMPONENTS;
-  }
 }
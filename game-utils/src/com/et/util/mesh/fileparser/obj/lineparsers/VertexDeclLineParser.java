@@ -1,7 +1,5 @@
 package com.et.util.mesh.fileparser.obj.lineparsers;
 
-import java.util.StringTokenizer;
-
 import com.et.util.primitives.geom.Vertex;
 
 /**
@@ -10,44 +8,52 @@ import com.et.util.primitives.geom.Vertex;
 public class VertexDeclLineParser {
   
   public static final String VERTEX_LINE_HEADER = "v";
+  public static final int NUM_VERTEX_ELEMENTS = 4;
 
-  private static final int MIN_VERTEX_DECL_COMPONENTS = 4;
-  private static final int MAX_VERTEX_DECL_COMPONENTS = 5;
-  
   /**
    * Parses a line declaring a vertex. These lines are of form 'v x y z [w],' where 'v' denotes a
    * vertex declaration and 'x y z [w]' denote the vertex elements. This method throws an 
    * {@link IllegalArgumentException} if the formatting is not followed.
    */
   public Vertex parseVertex(String vertexDeclaration) {
-    StringTokenizer tokenizer = new StringTokenizer(vertexDeclaration);
-    if (!validVertexDeclComponentCount(tokenizer) || 
-        !tokenizer.nextToken().equals(VERTEX_LINE_HEADER)) {
+    ObjLineTokenizer tokenizer = new ObjLineTokenizer().reset(vertexDeclaration);
+    if (tokenizer.nextDirective() != ObjDirective.VERTEX) {
       throwInvalidVertexDeclarationException(vertexDeclaration);
     }
-    
-    float x = 0;
-    float y = 0;
-    float z = 0;
-    float w = 0;
-    
+    return parseVertex(tokenizer);
+  }
+  
+  /**
+   * Parses the elements of a vertex declaration from a tokenizer that has already read the 'v'
+   * header. Throws {@link IllegalArgumentException} under the same conditions as
+   * {@link #parseVertex(String)}.
+   */
+  public Vertex parseVertex(ObjLineTokenizer tokenizer) {
+    float[] elements = new float[NUM_VERTEX_ELEMENTS];
+    parseVertex(tokenizer, elements, 0);
+    return new Vertex(elements[0], elements[1], elements[2], elements[3]);
+  }
+  
+  /**
+   * Like {@link #parseVertex(ObjLineTokenizer)}, but writes x, y, z, and w into the destination
+   * starting at offset instead of creating a {@link Vertex}.
+   */
+  public void parseVertex(ObjLineTokenizer tokenizer, float[] destination, int offset) {
     try {
-      x = Float.parseFloat(tokenizer.nextToken());
-      y = Float.parseFloat(tokenizer.nextToken());
-      z = Float.parseFloat(tokenizer.nextToken());
-      w = (tokenizer.hasMoreTokens() ? Float.parseFloat(tokenizer.nextToken()) : 1);
+      destination[offset] = tokenizer.nextFloat();
+      destination[offset + 1] = tokenizer.nextFloat();
+      destination[offset + 2] = tokenizer.nextFloat();
+      destination[offset + 3] = (tokenizer.hasMoreTokens() ? tokenizer.nextFloat() : 1);
     } catch (NumberFormatException e) {
-      throwInvalidVertexDeclarationException(vertexDeclaration);
+      throwInvalidVertexDeclarationException(tokenizer.getLine());
+    }
+    
+    if (tokenizer.hasMoreTokens()) {
+      throwInvalidVertexDeclarationException(tokenizer.getLine());
     }
-    return new Vertex(x, y, z, w);
-  }
-
-  private boolean validVertexDeclComponentCount(StringTokenizer tokenizer) {
-    int count = tokenizer.countTokens();
-    return count == MIN_VERTEX_DECL_COMPONENTS || count == MAX_VERTEX_DECL_COMPONENTS;
   }
 
-  private void throwInvalidVertexDeclarationException(String vertexDeclaration) {
+  private void throwInvalidVertexDeclarationException(CharSequence vertexDeclaration) {
     String errorMessage = String.format(
         "Provided argument [%s] is not a valid vertex declaration.", vertexDeclaration);
     throw new IllegalArgumentException(errorMessage);
@@ -0,0 +1,493 @@
+package com.et.util.mesh.normals;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.NORMAL_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.TEXTURE_COORD_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.et.util.concurrent.MoreFutures;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Generates vertex normals for meshes whose files declared none, so they need not be computed on
+ * the device. The normal of a triangle corner is the sum of the normals of the triangles it is
+ * smoothed with, each weighted as given by a {@link Weighting}. Corners are smoothed with
+ * triangles that share their position, whether or not the vertex index is shared, so seams in
+ * texture coordinates do not show as creases.
+ *
+ * A corner is smoothed with a triangle when both are in the same nonzero smoothing group, see
+ * {@link MeshData#getSmoothingGroups()}, and their planes meet at no more than the maximum
+ * smoothing angle. Triangles in group 0 are flat, and meshes without smoothing groups are taken
+ * as a single group, left to the angle alone.
+ *
+ * Meshes with separate indices get a normal stream with each distinct normal once and normal
+ * indices into it, leaving the other streams as they were. Meshes with
+ * {@link MeshData#hasUnifiedIndices()} get a normal per vertex, and vertices whose corners need
+ * different normals are copied after the existing ones, which keep their numbers.
+ *
+ * Vertices are handed out in runs to tasks on the executor, if there is one, and every sum is
+ * taken in the same order however the work is split, so the normals are the same with or
+ * without one.
+ */
+public class NormalGenerator {
+
+  /**
+   * How much each triangle counts towards the normals of its corners.
+   */
+  public enum Weighting {
+    /** By area, so slivers do little to the normals of the large triangles around them. */
+    AREA,
+    /**
+     * By the triangle's angle at the corner, so the normal does not depend on how the faces
+     * around a vertex are split into triangles.
+     */
+    ANGLE,
+    /** By area times angle, the default, which gives a little of both. */
+    AREA_AND_ANGLE
+  }
+
+  /** A maximum smoothing angle that leaves creases to the smoothing groups alone. */
+  public static final float NO_ANGLE_LIMIT = 180f;
+  public static final int DEFAULT_VERTICES_PER_TASK = 16384;
+
+  private static final int FLAT = 0;
+  private static final int UNMAPPED = -1;
+
+  private final float minCosine;
+  private final Weighting weighting;
+  private final ExecutorService executor;
+  private final int verticesPerTask;
+
+  public NormalGenerator() {
+    this(NO_ANGLE_LIMIT);
+  }
+
+  public NormalGenerator(float maxSmoothingAngle) {
+    this(maxSmoothingAngle, Weighting.AREA_AND_ANGLE, null);
+  }
+
+  /**
+   * Smooths across edges whose triangles meet at no more than maxSmoothingAngle degrees, on the
+   * executor if it is not null.
+   */
+  public NormalGenerator(float maxSmoothingAngle, Weighting weighting,
+      ExecutorService executor) {
+    this(maxSmoothingAngle, weighting, executor, DEFAULT_VERTICES_PER_TASK);
+  }
+
+  public NormalGenerator(float maxSmoothingAngle, Weighting weighting, ExecutorService executor,
+      int verticesPerTask) {
+    Preconditions.checkArgument(maxSmoothingAngle >= 0f && maxSmoothingAngle <= NO_ANGLE_LIMIT,
+        "Smoothing angle %s is not in [0, %s].", maxSmoothingAngle, NO_ANGLE_LIMIT);
+    Preconditions.checkArgument(verticesPerTask > 0, "Vertices per task %s is not positive.",
+        verticesPerTask);
+    // Nudged down so that planes meeting at exactly the angle are smoothed despite rounding
+    this.minCosine = maxSmoothingAngle == NO_ANGLE_LIMIT ? -2f
+        : (float) Math.cos(Math.toRadians(maxSmoothingAngle)) - 1e-6f;
+    this.weighting = Preconditions.checkNotNull(weighting);
+    this.executor = executor;
+    this.verticesPerTask = verticesPerTask;
+  }
+
+  /**
+   * Replaces every mesh of the object that has no normals with one that does.
+   */
+  public void addMissingNormals(MeshObject meshObject) {
+    for (MeshData mesh : ImmutableList.copyOf(meshObject.getAllMeshes())) {
+      if (!MeshData.hasStream(mesh.getNormals())) {
+        meshObject.addMesh(generate(mesh));
+      }
+    }
+  }
+
+  /**
+   * Returns a copy of the mesh with generated normals in place of any it had.
+   */
+  public MeshData generate(MeshData mesh) {
+    final Corners corners = new Corners(mesh);
+    forEachRange(corners.triangleCount, new RangeTask() {
+      @Override
+      void run(int start, int end) {
+        corners.measureTriangles(start, end);
+      }
+    });
+    corners.groupByPosition();
+    forEachRange(corners.vertexCount, new RangeTask() {
+      @Override
+      void run(int start, int end) {
+        corners.smooth(start, end);
+      }
+    });
+    corners.numberNormals();
+
+    MeshData.Builder builder = new MeshData.Builder()
+        .setName(mesh.getName())
+        .setMaterialRanges(mesh.getMaterialRanges())
+        .setSmoothingGroups(mesh.getSmoothingGroups());
+    if (mesh.hasUnifiedIndices()) {
+      corners.splitVertices(builder, mesh);
+    } else {
+      builder.setVertices(mesh.getVerticies())
+          .setBounds(mesh.getBounds())
+          .setTextureCoords(mesh.getTextureCoords())
+          .setVertexIndices(mesh.getVertexIndices())
+          .setTextureCoordIndices(mesh.getTextureIndices())
+          .setNormals(FloatBuffer.wrap(Arrays.copyOf(corners.normals,
+              corners.normalCount * NORMAL_COMPONENTS)))
+          .setNormalIndices(IntBuffer.wrap(corners.normalOf));
+    }
+    return builder.build();
+  }
+
+  private abstract static class RangeTask {
+    abstract void run(int start, int end);
+  }
+
+  /**
+   * Runs the task over [0, count) in runs of verticesPerTask, on the executor if there is one.
+   */
+  private void forEachRange(final int count, final RangeTask task) {
+    if (executor == null || count <= verticesPerTask) {
+      task.run(0, count);
+      return;
+    }
+    List<Future<Void>> pending = Lists.newArrayList();
+    for (int first = 0; first < count; first += verticesPerTask) {
+      final int start = first;
+      pending.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          task.run(start, Math.min(count, start + verticesPerTask));
+          return null;
+        }
+      }));
+    }
+    MoreFutures.getAll(pending);
+  }
+
+  /**
+   * The corners of a mesh's triangles and what is worked out about them. Ranges of triangles and
+   * of positions are independent, so tasks can fill them in at once.
+   */
+  private class Corners {
+
+    final int triangleCount;
+    final int vertexCount;
+    final float[] positions;
+    final int[] indices;
+    final int[] groups;
+    // Unit normal of each triangle and the weight of each corner
+    final float[] faceNormals;
+    final float[] weights;
+    // The first vertex at the same position as each vertex, and the corners at each of those
+    int[] positionOf;
+    int[] cornerStarts;
+    int[] cornerList;
+    final float[] cornerNormals;
+    // The distinct normals and the one each corner uses
+    float[] normals;
+    int normalCount;
+    final int[] normalOf;
+
+    Corners(MeshData mesh) {
+      FloatBuffer vertices = mesh.getVerticies();
+      IntBuffer vertexIndices = mesh.getVertexIndices();
+      vertexCount = vertices.capacity() / VERTEX_COMPONENTS;
+      triangleCount = vertexIndices.capacity() / INDICES_PER_TRIANGLE;
+      positions = new float[vertexCount * 3];
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        for (int axis = 0; axis < 3; axis++) {
+          positions[vertex * 3 + axis] = vertices.get(vertex * VERTEX_COMPONENTS + axis);
+        }
+      }
+      indices = new int[triangleCount * INDICES_PER_TRIANGLE];
+      for (int corner = 0; corner < indices.length; corner++) {
+        indices[corner] = vertexIndices.get(corner);
+      }
+      IntBuffer smoothingGroups = mesh.getSmoothingGroups();
+      if (smoothingGroups == null) {
+        groups = null;
+      } else {
+        Preconditions.checkArgument(smoothingGroups.capacity() == triangleCount,
+            "Mesh %s has %s smoothing groups for %s triangles.", mesh.getName(),
+            smoothingGroups.capacity(), triangleCount);
+        groups = new int[triangleCount];
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+          groups[triangle] = smoothingGroups.get(triangle);
+        }
+      }
+      faceNormals = new float[triangleCount * NORMAL_COMPONENTS];
+      weights = new float[indices.length];
+      cornerNormals = new float[indices.length * NORMAL_COMPONENTS];
+      normalOf = new int[indices.length];
+    }
+
+    void measureTriangles(int start, int end) {
+      for (int triangle = start; triangle < end; triangle++) {
+        int a = indices[triangle * 3] * 3;
+        int b = indices[triangle * 3 + 1] * 3;
+        int c = indices[triangle * 3 + 2] * 3;
+        float abX = positions[b] - positions[a];
+        float abY = positions[b + 1] - positions[a + 1];
+        float abZ = positions[b + 2] - positions[a + 2];
+        float acX = positions[c] - positions[a];
+        float acY = positions[c + 1] - positions[a + 1];
+        float acZ = positions[c + 2] - positions[a + 2];
+        float nX = abY * acZ - abZ * acY;
+        float nY = abZ * acX - abX * acZ;
+        float nZ = abX * acY - abY * acX;
+        float length = (float) Math.sqrt(nX * nX + nY * nY + nZ * nZ);
+        if (length == 0f) {
+          // No area, so no normal and no say in its neighbours'
+          continue;
+        }
+        faceNormals[triangle * 3] = nX / length;
+        faceNormals[triangle * 3 + 1] = nY / length;
+        faceNormals[triangle * 3 + 2] = nZ / length;
+        float area = length / 2f;
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int at = indices[triangle * 3 + corner] * 3;
+          int next = indices[triangle * 3 + (corner + 1) % 3] * 3;
+          int previous = indices[triangle * 3 + (corner + 2) % 3] * 3;
+          switch (weighting) {
+            case AREA:
+              weights[triangle * 3 + corner] = area;
+              break;
+            case ANGLE:
+              weights[triangle * 3 + corner] = angle(at, next, previous);
+              break;
+            default:
+              weights[triangle * 3 + corner] = area * angle(at, next, previous);
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the angle at corner at between the edges to next and previous, in radians.
+     */
+    private float angle(int at, int next, int previous) {
+      float toNextX = positions[next] - positions[at];
+      float toNextY = positions[next + 1] - positions[at + 1];
+      float toNextZ = positions[next + 2] - positions[at + 2];
+      float toPreviousX = positions[previous] - positions[at];
+      float toPreviousY = positions[previous + 1] - positions[at + 1];
+      float toPreviousZ = positions[previous + 2] - positions[at + 2];
+      double lengths = Math.sqrt((toNextX * toNextX + toNextY * toNextY + toNextZ * toNextZ)
+          * (toPreviousX * toPreviousX + toPreviousY * toPreviousY
+              + toPreviousZ * toPreviousZ));
+      double cosine = (toNextX * toPreviousX + toNextY * toPreviousY + toNextZ * toPreviousZ)
+          / lengths;
+      return (float) Math.acos(Math.max(-1.0, Math.min(1.0, cosine)));
+    }
+
+    /**
+     * Finds the vertices sharing each position and lists the corners at each position, in index
+     * order.
+     */
+    void groupByPosition() {
+      positionOf = new int[vertexCount];
+      int capacity = Integer.highestOneBit(Math.max(vertexCount, 1) * 2) * 2;
+      int[] slots = new int[capacity];
+      Arrays.fill(slots, UNMAPPED);
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        int slot = hash(vertex) & (capacity - 1);
+        while (slots[slot] != UNMAPPED && !samePosition(slots[slot], vertex)) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        if (slots[slot] == UNMAPPED) {
+          slots[slot] = vertex;
+        }
+        positionOf[vertex] = slots[slot];
+      }
+
+      cornerStarts = new int[vertexCount + 1];
+      for (int corner = 0; corner < indices.length; corner++) {
+        cornerStarts[positionOf[indices[corner]] + 1]++;
+      }
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        cornerStarts[vertex + 1] += cornerStarts[vertex];
+      }
+      cornerList = new int[indices.length];
+      int[] filled = new int[vertexCount];
+      for (int corner = 0; corner < indices.length; corner++) {
+        int position = positionOf[indices[corner]];
+        cornerList[cornerStarts[position] + filled[position]++] = corner;
+      }
+    }
+
+    private int hash(int vertex) {
+      int hash = 17;
+      for (int axis = 0; axis < 3; axis++) {
+        // Adding 0 turns -0 into 0, so both hash alike
+        hash = hash * 31 + Float.floatToIntBits(positions[vertex * 3 + axis] + 0f);
+      }
+      return hash ^ (hash >>> 16);
+    }
+
+    private boolean samePosition(int first, int second) {
+      return positions[first * 3] == positions[second * 3]
+          && positions[first * 3 + 1] == positions[second * 3 + 1]
+          && positions[first * 3 + 2] == positions[second * 3 + 2];
+    }
+
+    /**
+     * Works out the normal of every corner at positions [start, end).
+     */
+    void smooth(int start, int end) {
+      for (int position = start; position < end; position++) {
+        int first = cornerStarts[position];
+        int last = cornerStarts[position + 1];
+        for (int at = first; at < last; at++) {
+          int corner = cornerList[at];
+          int triangle = corner / INDICES_PER_TRIANGLE;
+          int group = groups == null ? 1 : groups[triangle];
+          float x = 0f;
+          float y = 0f;
+          float z = 0f;
+          if (group == FLAT) {
+            x = faceNormals[triangle * 3];
+            y = faceNormals[triangle * 3 + 1];
+            z = faceNormals[triangle * 3 + 2];
+          } else {
+            for (int other = first; other < last; other++) {
+              int otherCorner = cornerList[other];
+              int otherTriangle = otherCorner / INDICES_PER_TRIANGLE;
+              if ((groups == null || groups[otherTriangle] == group)
+                  && isSmoothedWith(triangle, otherTriangle)) {
+                float weight = weights[otherCorner];
+                x += weight * faceNormals[otherTriangle * 3];
+                y += weight * faceNormals[otherTriangle * 3 + 1];
+                z += weight * faceNormals[otherTriangle * 3 + 2];
+              }
+            }
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length > 0f) {
+              x /= length;
+              y /= length;
+              z /= length;
+            }
+          }
+          cornerNormals[corner * 3] = x;
+          cornerNormals[corner * 3 + 1] = y;
+          cornerNormals[corner * 3 + 2] = z;
+        }
+      }
+    }
+
+    private boolean isSmoothedWith(int triangle, int other) {
+      float cosine = faceNormals[triangle * 3] * faceNormals[other * 3]
+          + faceNormals[triangle * 3 + 1] * faceNormals[other * 3 + 1]
+          + faceNormals[triangle * 3 + 2] * faceNormals[other * 3 + 2];
+      // Triangles without area have a zero normal and go along with anything
+      return cosine >= minCosine || isDegenerate(triangle) || isDegenerate(other);
+    }
+
+    private boolean isDegenerate(int triangle) {
+      return faceNormals[triangle * 3] == 0f && faceNormals[triangle * 3 + 1] == 0f
+          && faceNormals[triangle * 3 + 2] == 0f;
+    }
+
+    /**
+     * Numbers the distinct normals in order of first use, sharing a number between corners at
+     * the same position with equal normals.
+     */
+    void numberNormals() {
+      normals = new float[indices.length * NORMAL_COMPONENTS];
+      for (int corner = 0; corner < indices.length; corner++) {
+        int position = positionOf[indices[corner]];
+        int number = UNMAPPED;
+        // Earlier corners come first in the position's list
+        for (int at = cornerStarts[position]; cornerList[at] != corner; at++) {
+          if (sameNormal(cornerList[at], corner)) {
+            number = normalOf[cornerList[at]];
+            break;
+          }
+        }
+        if (number == UNMAPPED) {
+          number = normalCount++;
+          System.arraycopy(cornerNormals, corner * 3, normals, number * 3, NORMAL_COMPONENTS);
+        }
+        normalOf[corner] = number;
+      }
+    }
+
+    private boolean sameNormal(int first, int second) {
+      return cornerNormals[first * 3] == cornerNormals[second * 3]
+          && cornerNormals[first * 3 + 1] == cornerNormals[second * 3 + 1]
+          && cornerNormals[first * 3 + 2] == cornerNormals[second * 3 + 2];
+    }
+
+    /**
+     * Sets the streams of a unified mesh, copying each vertex whose corners use more than one
+     * normal once for each further normal. Unused vertices keep a zero normal.
+     */
+    void splitVertices(MeshData.Builder builder, MeshData mesh) {
+      int[] normalOfVertex = new int[vertexCount];
+      Arrays.fill(normalOfVertex, UNMAPPED);
+      // Copies made so far: the vertex each copies, its normal, and the next copy of the vertex
+      int[] copyOf = new int[indices.length];
+      int[] copyNormal = new int[indices.length];
+      int[] nextCopy = new int[indices.length];
+      int[] firstCopy = new int[vertexCount];
+      Arrays.fill(firstCopy, UNMAPPED);
+      int copies = 0;
+      int[] newIndices = new int[indices.length];
+      for (int corner = 0; corner < indices.length; corner++) {
+        int vertex = indices[corner];
+        int normal = normalOf[corner];
+        if (normalOfVertex[vertex] == UNMAPPED) {
+          normalOfVertex[vertex] = normal;
+        }
+        if (normalOfVertex[vertex] == normal) {
+          newIndices[corner] = vertex;
+          continue;
+        }
+        int copy = firstCopy[vertex];
+        while (copy != UNMAPPED && copyNormal[copy] != normal) {
+          copy = nextCopy[copy];
+        }
+        if (copy == UNMAPPED) {
+          copy = copies++;
+          copyOf[copy] = vertex;
+          copyNormal[copy] = normal;
+          nextCopy[copy] = firstCopy[vertex];
+          firstCopy[vertex] = copy;
+        }
+        newIndices[corner] = vertexCount + copy;
+      }
+
+      int total = vertexCount + copies;
+      int[] sourceOf = new int[total];
+      float[] vertexNormals = new float[total * NORMAL_COMPONENTS];
+      for (int vertex = 0; vertex < total; vertex++) {
+        int normal = vertex < vertexCount ? normalOfVertex[vertex]
+            : copyNormal[vertex - vertexCount];
+        sourceOf[vertex] = vertex < vertexCount ? vertex : copyOf[vertex - vertexCount];
+        if (normal != UNMAPPED) {
+          System.arraycopy(normals, normal * 3, vertexNormals, vertex * 3, NORMAL_COMPONENTS);
+        }
+      }
+      builder.setVertices(MeshData.gather(mesh.getVerticies(), VERTEX_COMPONENTS, sourceOf,
+          sourceOf.length))
+          .setBounds(mesh.getBounds())
+          .setTextureCoords(MeshData.gather(mesh.getTextureCoords(), TEXTURE_COORD_COMPONENTS,
+              sourceOf, sourceOf.length))
+          .setNormals(FloatBuffer.wrap(vertexNormals))
+          .setVertexIndices(IntBuffer.wrap(newIndices))
+          .setUnifiedIndices(true);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package com.et.util.mesh.optimize;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.NORMAL_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.TEXTURE_COORD_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Splits meshes with too many vertices for 16-bit indices into parts that each have at most
+ * {@link MeshData#MAX_SHORT_INDEXED_VERTICES}, so every part can be drawn with GL_UNSIGNED_SHORT
+ * indices on devices without OES_element_index_uint.
+ */
+public class MeshSplitter {
+
+  private static final String PART_NAME_FORMAT = "%s#%d";
+
+  private final int maxVertices;
+
+  public MeshSplitter() {
+    this(MeshData.MAX_SHORT_INDEXED_VERTICES);
+  }
+
+  /**
+   * Splits into parts of at most maxVertices vertices, which must hold at least a triangle.
+   */
+  public MeshSplitter(int maxVertices) {
+    Preconditions.checkArgument(maxVertices >= INDICES_PER_TRIANGLE,
+        "Parts of %s vertices cannot hold a triangle.", maxVertices);
+    this.maxVertices = maxVertices;
+  }
+
+  /**
+   * Returns the mesh itself if it is small enough, and otherwise its parts, named after the mesh
+   * followed by '#' and the part number. Triangles are taken in index order and a new part is
+   * started when the next triangle would bring in one vertex too many, so vertex cache friendly
+   * orders, such as those of {@link VertexCacheOptimizer}, stay mostly intact. Vertices on a part
+   * boundary are copied into each part that uses them, and material ranges and smoothing groups
+   * are carried over.
+   */
+  public List<MeshData> split(MeshData mesh) {
+    Preconditions.checkArgument(mesh.hasUnifiedIndices(),
+        "Mesh %s must have unified indices to be split.", mesh.getName());
+    int vertexCount = mesh.getVerticies().capacity() / VERTEX_COMPONENTS;
+    if (vertexCount <= maxVertices) {
+      return ImmutableList.of(mesh);
+    }
+
+    IntBuffer indices = mesh.getVertexIndices();
+    List<MaterialRange> ranges = mesh.getMaterialRanges();
+    int[] rangeOf = rangeOfEachIndex(ranges, indices.capacity());
+
+    List<MeshData> parts = Lists.newArrayList();
+    // Local number of each vertex in the current part, valid when partOf matches the part
+    int[] localVertexOf = new int[vertexCount];
+    int[] partOf = new int[vertexCount];
+    Arrays.fill(partOf, -1);
+    int[] partVertices = new int[maxVertices];
+    int[] partIndices = new int[indices.capacity()];
+    int numPartVertices = 0;
+    int numPartIndices = 0;
+    int partStart = 0;
+
+    for (int triangle = 0; triangle < indices.capacity(); triangle += INDICES_PER_TRIANGLE) {
+      int part = parts.size();
+      int newVertices = 0;
+      for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+        int vertex = indices.get(triangle + corner);
+        if (partOf[vertex] != part && !isEarlierCorner(indices, triangle, corner, vertex)) {
+          newVertices++;
+        }
+      }
+      if (numPartVertices + newVertices > maxVertices) {
+        parts.add(makePart(mesh, parts.size(), partVertices, numPartVertices, partIndices,
+            numPartIndices, ranges, rangeOf, partStart));
+        part = parts.size();
+        partStart = triangle;
+        numPartVertices = 0;
+        numPartIndices = 0;
+      }
+
+      for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+        int vertex = indices.get(triangle + corner);
+        if (partOf[vertex] != part) {
+          partOf[vertex] = part;
+          localVertexOf[vertex] = numPartVertices;
+          partVertices[numPartVertices++] = vertex;
+        }
+        partIndices[numPartIndices++] = localVertexOf[vertex];
+      }
+    }
+    parts.add(makePart(mesh, parts.size(), partVertices, numPartVertices, partIndices,
+        numPartIndices, ranges, rangeOf, partStart));
+    return parts;
+  }
+
+  private static boolean isEarlierCorner(IntBuffer indices, int triangle, int corner,
+      int vertex) {
+    for (int earlier = 0; earlier < corner; earlier++) {
+      if (indices.get(triangle + earlier) == vertex) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the position in ranges of the range holding each index, or -1 when there are none.
+   */
+  private static int[] rangeOfEachIndex(List<MaterialRange> ranges, int indexCount) {
+    int[] rangeOf = new int[indexCount];
+    Arrays.fill(rangeOf, -1);
+    for (int range = 0; range < ranges.size(); range++) {
+      MaterialRange materialRange = ranges.get(range);
+      Arrays.fill(rangeOf, materialRange.getFirstIndex(),
+          materialRange.getFirstIndex() + materialRange.getIndexCount(), range);
+    }
+    return rangeOf;
+  }
+
+  private MeshData makePart(MeshData mesh, int part, int[] partVertices, int numVertices,
+      int[] partIndices, int numIndices, List<MaterialRange> ranges, int[] rangeOf,
+      int partStart) {
+    List<MaterialRange> partRanges = Lists.newArrayList();
+    if (!ranges.isEmpty()) {
+      int runStart = 0;
+      for (int index = 1; index <= numIndices; index++) {
+        if (index == numIndices
+            || rangeOf[partStart + index] != rangeOf[partStart + runStart]) {
+          int range = rangeOf[partStart + runStart];
+          partRanges.add(new MaterialRange(range < 0 ? null : ranges.get(range).getMaterialName(),
+              runStart, index - runStart));
+          runStart = index;
+        }
+      }
+    }
+
+    return new MeshData.Builder()
+        .setName(mesh.getName() == null ? null
+            : String.format(PART_NAME_FORMAT, mesh.getName(), part))
+        .setVertices(MeshData.gather(mesh.getVerticies(), VERTEX_COMPONENTS, partVertices,
+            numVertices))
+        .setNormals(MeshData.gather(mesh.getNormals(), NORMAL_COMPONENTS, partVertices,
+            numVertices))
+        .setTextureCoords(MeshData.gather(mesh.getTextureCoords(), TEXTURE_COORD_COMPONENTS,
+            partVertices, numVertices))
+        .setVertexIndices(IntBuffer.wrap(Arrays.copyOf(partIndices, numIndices)))
+        .setUnifiedIndices(true)
+        .setMaterialRanges(partRanges)
+        .setSmoothingGroups(partSmoothingGroups(mesh.getSmoothingGroups(),
+            partStart / INDICES_PER_TRIANGLE, numIndices / INDICES_PER_TRIANGLE))
+        .build();
+  }
+
+  private static IntBuffer partSmoothingGroups(IntBuffer smoothingGroups, int firstTriangle,
+      int numTriangles) {
+    if (!MeshData.hasStream(smoothingGroups)) {
+      return smoothingGroups;
+    }
+    IntBuffer source = smoothingGroups.duplicate();
+    source.clear();
+    source.position(firstTriangle);
+    int[] groups = new int[numTriangles];
+    source.get(groups);
+    return IntBuffer.wrap(groups);
+  }
+}
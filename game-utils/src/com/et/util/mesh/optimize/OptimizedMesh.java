@@ -0,0 +1,43 @@
+package com.et.util.mesh.optimize;
+
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Objects;
+
+/**
+ * A mesh reordered by a {@link VertexCacheOptimizer} along with how its indices fared in the
+ * vertex cache before and after.
+ */
+public class OptimizedMesh {
+
+  private final MeshData meshData;
+  private final VertexCacheStats statsBefore;
+  private final VertexCacheStats statsAfter;
+
+  public OptimizedMesh(MeshData meshData, VertexCacheStats statsBefore,
+      VertexCacheStats statsAfter) {
+    this.meshData = meshData;
+    this.statsBefore = statsBefore;
+    this.statsAfter = statsAfter;
+  }
+
+  public MeshData getMeshData() {
+    return meshData;
+  }
+
+  public VertexCacheStats getStatsBefore() {
+    return statsBefore;
+  }
+
+  public VertexCacheStats getStatsAfter() {
+    return statsAfter;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("meshData", meshData)
+        .add("statsBefore", statsBefore)
+        .add("statsAfter", statsAfter)
+        .toString();
+  }
+}
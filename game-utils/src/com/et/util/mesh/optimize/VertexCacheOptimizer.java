@@ -0,0 +1,291 @@
+package com.et.util.mesh.optimize;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.NORMAL_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.TEXTURE_COORD_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Reorders a mesh's triangles for the GPU's post-transform vertex cache using Tom Forsyth's linear
+ * speed vertex cache optimization, then renumbers its vertices in order of first use so vertex
+ * fetches walk memory forwards.
+ */
+public class VertexCacheOptimizer {
+
+  public static final int DEFAULT_CACHE_SIZE = 32;
+
+  private static final int UNMAPPED = -1;
+
+  // Scoring constants from Forsyth's paper
+  private static final float CACHE_DECAY_POWER = 1.5f;
+  private static final float LAST_TRIANGLE_SCORE = 0.75f;
+  private static final float VALENCE_BOOST_SCALE = 2.0f;
+  private static final float VALENCE_BOOST_POWER = 0.5f;
+
+  private final int cacheSize;
+  private final VertexCacheSimulator simulator;
+
+  public VertexCacheOptimizer() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Scores orders against a cache of cacheSize vertices, which the before and after statistics
+   * are simulated with too. Forsyth's orders do well over a range of sizes, so one order serves
+   * GPUs with different caches.
+   */
+  public VertexCacheOptimizer(int cacheSize) {
+    Preconditions.checkArgument(cacheSize > INDICES_PER_TRIANGLE,
+        "Cache size %s does not hold more than a triangle.", cacheSize);
+    this.cacheSize = cacheSize;
+    this.simulator = new VertexCacheSimulator(cacheSize);
+  }
+
+  /**
+   * Returns the reordered mesh. Triangles only move within their
+   * {@link MeshData#getMaterialRanges()}, so the ranges stay valid. All attribute streams are
+   * remapped alike and vertices no triangle uses are kept, after the used ones.
+   */
+  public OptimizedMesh optimize(MeshData mesh) {
+    Preconditions.checkArgument(mesh.hasUnifiedIndices(),
+        "Mesh %s must have unified indices to be optimized.", mesh.getName());
+    int vertexCount = mesh.getVerticies().capacity() / VERTEX_COMPONENTS;
+    IntBuffer sourceIndices = mesh.getVertexIndices();
+    int[] indices = new int[sourceIndices.capacity()];
+    for (int position = 0; position < indices.length; position++) {
+      indices[position] = sourceIndices.get(position);
+    }
+    VertexCacheStats statsBefore = simulator.simulate(sourceIndices, vertexCount);
+
+    List<MaterialRange> ranges = mesh.getMaterialRanges();
+    if (ranges.isEmpty()) {
+      ranges = ImmutableList.of(new MaterialRange(null, 0, indices.length));
+    }
+    int[] scratch = new int[indices.length];
+    int triangleCount = indices.length / INDICES_PER_TRIANGLE;
+    // The old number of the triangle at each place in the new order
+    int[] oldTriangleOf = new int[triangleCount];
+    for (int triangle = 0; triangle < triangleCount; triangle++) {
+      oldTriangleOf[triangle] = triangle;
+    }
+    for (MaterialRange range : ranges) {
+      orderTriangles(indices, range.getFirstIndex(), range.getIndexCount(), vertexCount, scratch,
+          oldTriangleOf);
+    }
+
+    int[] newVertexOf = renumberVertices(indices, vertexCount);
+    for (int position = 0; position < indices.length; position++) {
+      indices[position] = newVertexOf[indices[position]];
+    }
+    int[] oldVertexOf = new int[vertexCount];
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      oldVertexOf[newVertexOf[vertex]] = vertex;
+    }
+    IntBuffer optimizedIndices = IntBuffer.wrap(indices);
+
+    MeshData optimized = new MeshData.Builder()
+        .setName(mesh.getName())
+        .setVertices(MeshData.gather(mesh.getVerticies(), VERTEX_COMPONENTS, oldVertexOf,
+            vertexCount))
+        .setNormals(MeshData.gather(mesh.getNormals(), NORMAL_COMPONENTS, oldVertexOf,
+            vertexCount))
+        .setTextureCoords(MeshData.gather(mesh.getTextureCoords(), TEXTURE_COORD_COMPONENTS,
+            oldVertexOf, vertexCount))
+        .setVertexIndices(optimizedIndices)
+        .setUnifiedIndices(true)
+        .setMaterialRanges(mesh.getMaterialRanges())
+        .setSmoothingGroups(MeshData.gather(mesh.getSmoothingGroups(), 1, oldTriangleOf,
+            triangleCount))
+        .build();
+    return new OptimizedMesh(optimized, statsBefore,
+        simulator.simulate(optimizedIndices, vertexCount));
+  }
+
+  /**
+   * Reorders the triangles of indices [first, first + count) in place, writing the old number of
+   * each to oldTriangleOf at its new place.
+   */
+  private void orderTriangles(int[] indices, int first, int count, int vertexCount,
+      int[] scratch, int[] oldTriangleOf) {
+    int numTriangles = count / INDICES_PER_TRIANGLE;
+    if (numTriangles <= 1) {
+      return;
+    }
+
+    // Triangles around each vertex, in one flat array. The first remaining[v] entries of a
+    // vertex's run are the triangles it still has to be drawn in.
+    int[] remaining = new int[vertexCount];
+    for (int position = first; position < first + count; position++) {
+      remaining[indices[position]]++;
+    }
+    int[] adjacencyStart = new int[vertexCount + 1];
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      adjacencyStart[vertex + 1] = adjacencyStart[vertex] + remaining[vertex];
+    }
+    int[] adjacency = new int[count];
+    int[] filled = new int[vertexCount];
+    for (int triangle = 0; triangle < numTriangles; triangle++) {
+      for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+        int vertex = indices[first + triangle * INDICES_PER_TRIANGLE + corner];
+        adjacency[adjacencyStart[vertex] + filled[vertex]++] = triangle;
+      }
+    }
+
+    float[] vertexScore = new float[vertexCount];
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      vertexScore[vertex] = score(UNMAPPED, remaining[vertex]);
+    }
+
+    boolean[] drawn = new boolean[numTriangles];
+    // Room for the cache plus the triangle that pushes entries out of it
+    int[] cache = new int[cacheSize + INDICES_PER_TRIANGLE];
+    int[] nextCache = new int[cacheSize + INDICES_PER_TRIANGLE];
+    int cacheLength = 0;
+    int nextUndrawn = 0;
+    int best = UNMAPPED;
+
+    for (int output = 0; output < numTriangles; output++) {
+      if (best == UNMAPPED) {
+        // Nothing in the cache has triangles left, so start over from the next in file order
+        while (drawn[nextUndrawn]) {
+          nextUndrawn++;
+        }
+        best = nextUndrawn;
+      }
+
+      drawn[best] = true;
+      oldTriangleOf[first / INDICES_PER_TRIANGLE + output] = first / INDICES_PER_TRIANGLE + best;
+      int bestOffset = first + best * INDICES_PER_TRIANGLE;
+      System.arraycopy(indices, bestOffset, scratch, output * INDICES_PER_TRIANGLE,
+          INDICES_PER_TRIANGLE);
+
+      // The triangle's vertices go to the front of the cache, followed by what was there
+      int nextLength = 0;
+      for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+        int vertex = indices[bestOffset + corner];
+        removeTriangle(adjacency, adjacencyStart[vertex], remaining[vertex]--, best);
+        // Degenerate triangles repeat vertices
+        if (!contains(nextCache, nextLength, vertex)) {
+          nextCache[nextLength++] = vertex;
+        }
+      }
+      int triangleLength = nextLength;
+      for (int entry = 0; entry < cacheLength; entry++) {
+        if (!contains(nextCache, triangleLength, cache[entry])) {
+          nextCache[nextLength++] = cache[entry];
+        }
+      }
+
+      // Rescore what fell out of the cache and everything still in it
+      for (int entry = cacheSize; entry < nextLength; entry++) {
+        int vertex = nextCache[entry];
+        vertexScore[vertex] = score(UNMAPPED, remaining[vertex]);
+      }
+      cacheLength = Math.min(nextLength, cacheSize);
+      for (int entry = 0; entry < cacheLength; entry++) {
+        int vertex = nextCache[entry];
+        vertexScore[vertex] = score(entry, remaining[vertex]);
+      }
+      int[] swap = cache;
+      cache = nextCache;
+      nextCache = swap;
+
+      // The next triangle is the best one that touches the cache
+      best = UNMAPPED;
+      float bestScore = -1f;
+      for (int entry = 0; entry < cacheLength; entry++) {
+        int vertex = cache[entry];
+        int start = adjacencyStart[vertex];
+        for (int adjacent = start; adjacent < start + remaining[vertex]; adjacent++) {
+          int triangle = adjacency[adjacent];
+          int offset = first + triangle * INDICES_PER_TRIANGLE;
+          float triangleScore = vertexScore[indices[offset]] + vertexScore[indices[offset + 1]]
+              + vertexScore[indices[offset + 2]];
+          if (triangleScore > bestScore) {
+            bestScore = triangleScore;
+            best = triangle;
+          }
+        }
+      }
+    }
+
+    System.arraycopy(scratch, 0, indices, first, numTriangles * INDICES_PER_TRIANGLE);
+  }
+
+  private static boolean contains(int[] cache, int length, int vertex) {
+    for (int entry = 0; entry < length; entry++) {
+      if (cache[entry] == vertex) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Drops triangle from the first count entries of a vertex's adjacency run by swapping it with
+   * the last of them.
+   */
+  private static void removeTriangle(int[] adjacency, int start, int count, int triangle) {
+    for (int adjacent = start; adjacent < start + count; adjacent++) {
+      if (adjacency[adjacent] == triangle) {
+        adjacency[adjacent] = adjacency[start + count - 1];
+        adjacency[start + count - 1] = triangle;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Forsyth's vertex score. Vertices of the last triangle score a fixed amount so the next one
+   * does not favour any of its edges, older cache entries score less the further back they are,
+   * and vertices with few triangles left get a boost so they are finished off.
+   */
+  private float score(int cachePosition, int remainingTriangles) {
+    if (remainingTriangles == 0) {
+      return -1f;
+    }
+
+    float score = 0f;
+    if (cachePosition >= 0) {
+      if (cachePosition < INDICES_PER_TRIANGLE) {
+        score = LAST_TRIANGLE_SCORE;
+      } else {
+        float scale = 1f / (cacheSize - INDICES_PER_TRIANGLE);
+        score = (float) Math.pow(1f - (cachePosition - INDICES_PER_TRIANGLE) * scale,
+            CACHE_DECAY_POWER);
+      }
+    }
+    return score + VALENCE_BOOST_SCALE
+        * (float) Math.pow(remainingTriangles, -VALENCE_BOOST_POWER);
+  }
+
+  /**
+   * Returns the new number of every vertex: used vertices in order of first use, then unused ones
+   * in their old order.
+   */
+  private static int[] renumberVertices(int[] indices, int vertexCount) {
+    int[] newVertexOf = new int[vertexCount];
+    Arrays.fill(newVertexOf, UNMAPPED);
+    int next = 0;
+    for (int index : indices) {
+      if (newVertexOf[index] == UNMAPPED) {
+        newVertexOf[index] = next++;
+      }
+    }
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      if (newVertexOf[vertex] == UNMAPPED) {
+        newVertexOf[vertex] = next++;
+      }
+    }
+    return newVertexOf;
+  }
+}
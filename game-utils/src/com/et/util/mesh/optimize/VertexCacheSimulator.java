@@ -0,0 +1,57 @@
+package com.et.util.mesh.optimize;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Replays index buffers through a first in, first out post-transform vertex cache of a given
+ * number of entries, the kind most mobile GPUs have. Hits do not change the order of a FIFO
+ * cache, so whether a vertex is cached follows from how many misses there have been since it was
+ * last loaded, and the simulation takes constant time per index.
+ */
+public class VertexCacheSimulator {
+
+  private final int cacheSize;
+
+  public VertexCacheSimulator(int cacheSize) {
+    Preconditions.checkArgument(cacheSize > 0, "Cache size %s is not positive.", cacheSize);
+    this.cacheSize = cacheSize;
+  }
+
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  /**
+   * Simulates drawing all the indices, which must lie in [0, vertexCount), as triangles from an
+   * empty cache.
+   */
+  public VertexCacheStats simulate(IntBuffer indices, int vertexCount) {
+    return simulate(indices, 0, indices.capacity(), vertexCount);
+  }
+
+  /**
+   * Simulates drawing count indices starting at first, as for one material range.
+   */
+  public VertexCacheStats simulate(IntBuffer indices, int first, int count, int vertexCount) {
+    // Misses at the time each vertex was last loaded, far enough back to start out uncached
+    int[] loadedAt = new int[vertexCount];
+    Arrays.fill(loadedAt, -cacheSize - 1);
+    boolean[] used = new boolean[vertexCount];
+    int misses = 0;
+    int distinct = 0;
+    for (int position = first; position < first + count; position++) {
+      int vertex = indices.get(position);
+      if (!used[vertex]) {
+        used[vertex] = true;
+        distinct++;
+      }
+      if (misses - loadedAt[vertex] > cacheSize) {
+        loadedAt[vertex] = misses++;
+      }
+    }
+    return new VertexCacheStats(cacheSize, count / 3, distinct, misses);
+  }
+}
@@ -0,0 +1,92 @@
+package com.et.util.mesh.optimize;
+
+import com.google.common.base.Objects;
+
+/**
+ * How an index buffer fared in a simulated post-transform vertex cache. Every miss is a vertex
+ * the GPU has to shade again, so lower is better for both ratios. The average cache miss ratio
+ * (ACMR) is misses per triangle and ranges from about 0.5 for ideal orders of large grids to 3.
+ * The average transformed vertex ratio (ATVR) is misses per distinct vertex used and is 1 at
+ * best, which makes it easier to compare across meshes.
+ */
+public class VertexCacheStats {
+
+  private final int cacheSize;
+  private final int triangleCount;
+  private final int vertexCount;
+  private final int missCount;
+
+  public VertexCacheStats(int cacheSize, int triangleCount, int vertexCount, int missCount) {
+    this.cacheSize = cacheSize;
+    this.triangleCount = triangleCount;
+    this.vertexCount = vertexCount;
+    this.missCount = missCount;
+  }
+
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  public int getTriangleCount() {
+    return triangleCount;
+  }
+
+  /**
+   * Returns the number of distinct vertices the indices refer to.
+   */
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  public int getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the average cache miss ratio, or 0 for no triangles.
+   */
+  public float getAcmr() {
+    return triangleCount == 0 ? 0f : (float) missCount / triangleCount;
+  }
+
+  /**
+   * Returns the average transformed vertex ratio, or 0 for no vertices.
+   */
+  public float getAtvr() {
+    return vertexCount == 0 ? 0f : (float) missCount / vertexCount;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("cacheSize", cacheSize)
+        .add("triangleCount", triangleCount)
+        .add("vertexCount", vertexCount)
+        .add("missCount", missCount)
+        .add("acmr", getAcmr())
+        .add("atvr", getAtvr())
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(cacheSize, triangleCount, vertexCount, missCount);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof VertexCacheStats)) {
+      return false;
+    }
+
+    VertexCacheStats other = (VertexCacheStats) obj;
+    return cacheSize == other.cacheSize &&
+        triangleCount == other.triangleCount &&
+        vertexCount == other.vertexCount &&
+        missCount == other.missCount;
+  }
+}
@@ -0,0 +1,237 @@
+package com.et.util.mesh.quantize;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.NORMAL_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.TEXTURE_COORD_COMPONENTS;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Preconditions;
+
+/**
+ * Packs a mesh's float vertex attributes into smaller encodings that GLES expands on the fly, to
+ * cut the vertex fetch bandwidth that limits low-end GPUs.
+ */
+public class MeshQuantizer {
+
+  /**
+   * Ways to encode normals, both octahedral. 16 bits per component keep them within 0.05
+   * degrees, 8 bits within 1 degree.
+   */
+  public enum NormalEncoding {
+    OCTAHEDRAL_SNORM16(VertexAttributeFormat.GL_SHORT, 2),
+    OCTAHEDRAL_SNORM8(VertexAttributeFormat.GL_BYTE, 1);
+
+    private final int type;
+    private final int componentSize;
+
+    private NormalEncoding(int type, int componentSize) {
+      this.type = type;
+      this.componentSize = componentSize;
+    }
+  }
+
+  /**
+   * Ways to encode texture coordinates. UNORM16 works on every GLES 2 device but needs the
+   * shader to apply {@link QuantizedMesh#getTextureCoordScale()} and offset. HALF_FLOAT is only
+   * accepted by glVertexAttribPointer on GLES 3 contexts, and HALF_FLOAT_OES, which writes the
+   * same data, only on GLES 2 devices that expose OES_vertex_half_float.
+   */
+  public enum TextureCoordEncoding {
+    HALF_FLOAT(VertexAttributeFormat.GL_HALF_FLOAT, false, true),
+    HALF_FLOAT_OES(VertexAttributeFormat.GL_HALF_FLOAT_OES, false, true),
+    UNORM16(VertexAttributeFormat.GL_UNSIGNED_SHORT, true, false);
+
+    private final int type;
+    private final boolean normalized;
+    private final boolean halfFloat;
+
+    private TextureCoordEncoding(int type, boolean normalized, boolean halfFloat) {
+      this.type = type;
+      this.normalized = normalized;
+      this.halfFloat = halfFloat;
+    }
+
+    boolean isHalfFloat() {
+      return halfFloat;
+    }
+  }
+
+  private static final int POSITION_SIZE = 3;
+  private static final int NORMAL_SIZE = 2;
+  private static final int SHORT_BYTES = 2;
+  private static final int STRIDE_ALIGNMENT = 4;
+
+  private final NormalEncoding normalEncoding;
+  private final TextureCoordEncoding textureCoordEncoding;
+
+  public MeshQuantizer() {
+    this(NormalEncoding.OCTAHEDRAL_SNORM16, TextureCoordEncoding.UNORM16);
+  }
+
+  public MeshQuantizer(NormalEncoding normalEncoding,
+      TextureCoordEncoding textureCoordEncoding) {
+    this.normalEncoding = Preconditions.checkNotNull(normalEncoding);
+    this.textureCoordEncoding = Preconditions.checkNotNull(textureCoordEncoding);
+  }
+
+  /**
+   * Interleaves the mesh's positions as three snorm16 values normalized to its bounding box, with
+   * w divided out, its normals in the {@link NormalEncoding} and its texture coordinates in the
+   * {@link TextureCoordEncoding}. Each attribute sits at a multiple of its component size and the
+   * stride is rounded up to four bytes, so a vertex with everything takes 16 bytes with 16-bit
+   * normals and 12 with 8-bit ones, against 36 as floats.
+   */
+  public QuantizedMesh quantize(MeshData mesh) {
+    Preconditions.checkArgument(mesh.hasUnifiedIndices(),
+        "Mesh %s must have unified indices to be quantized.", mesh.getName());
+    FloatBuffer vertices = mesh.getVerticies();
+    FloatBuffer normals = MeshData.hasStream(mesh.getNormals()) ? mesh.getNormals() : null;
+    FloatBuffer textureCoords =
+        MeshData.hasStream(mesh.getTextureCoords()) ? mesh.getTextureCoords() : null;
+    int vertexCount = vertices.capacity() / VERTEX_COMPONENTS;
+
+    // Lay out the vertex: position, then normal, then texture coordinates
+    int offset = POSITION_SIZE * SHORT_BYTES;
+    int normalOffset = offset;
+    if (normals != null) {
+      offset += NORMAL_SIZE * normalEncoding.componentSize;
+    }
+    int textureCoordOffset = offset;
+    if (textureCoords != null) {
+      offset += TEXTURE_COORD_COMPONENTS * SHORT_BYTES;
+    }
+    int stride = (offset + STRIDE_ALIGNMENT - 1) / STRIDE_ALIGNMENT * STRIDE_ALIGNMENT;
+
+    ByteBuffer data = ByteBuffer.allocateDirect(vertexCount * stride);
+    data.order(ByteOrder.nativeOrder());
+
+    float[] positionScale = new float[POSITION_SIZE];
+    float[] positionOffset = new float[POSITION_SIZE];
+    writePositions(vertices, vertexCount, data, stride, positionScale, positionOffset);
+    VertexAttributeFormat positionFormat = new VertexAttributeFormat(POSITION_SIZE,
+        VertexAttributeFormat.GL_SHORT, true, stride, 0);
+
+    VertexAttributeFormat normalFormat = null;
+    if (normals != null) {
+      Preconditions.checkArgument(normals.capacity() / NORMAL_COMPONENTS == vertexCount,
+          "Mesh %s has %s normals for %s vertices.", mesh.getName(),
+          normals.capacity() / NORMAL_COMPONENTS, vertexCount);
+      writeNormals(normals, vertexCount, data, stride, normalOffset);
+      normalFormat = new VertexAttributeFormat(NORMAL_SIZE, normalEncoding.type, true, stride,
+          normalOffset);
+    }
+
+    float[] textureCoordScale = {1f, 1f};
+    float[] textureCoordTranslation = {0f, 0f};
+    VertexAttributeFormat textureCoordFormat = null;
+    if (textureCoords != null) {
+      Preconditions.checkArgument(
+          textureCoords.capacity() / TEXTURE_COORD_COMPONENTS == vertexCount,
+          "Mesh %s has %s texture coordinates for %s vertices.", mesh.getName(),
+          textureCoords.capacity() / TEXTURE_COORD_COMPONENTS, vertexCount);
+      writeTextureCoords(textureCoords, vertexCount, data, stride, textureCoordOffset,
+          textureCoordScale, textureCoordTranslation);
+      textureCoordFormat = new VertexAttributeFormat(TEXTURE_COORD_COMPONENTS,
+          textureCoordEncoding.type, textureCoordEncoding.normalized, stride, textureCoordOffset);
+    }
+
+    return new QuantizedMesh(mesh, data, vertexCount, positionFormat, normalFormat,
+        textureCoordFormat, normalEncoding, textureCoordEncoding, positionScale, positionOffset,
+        textureCoordScale, textureCoordTranslation);
+  }
+
+  private static void writePositions(FloatBuffer vertices, int vertexCount, ByteBuffer data,
+      int stride, float[] scale, float[] offset) {
+    float[] min = new float[POSITION_SIZE];
+    float[] max = new float[POSITION_SIZE];
+    for (int axis = 0; axis < POSITION_SIZE; axis++) {
+      min[axis] = Float.POSITIVE_INFINITY;
+      max[axis] = Float.NEGATIVE_INFINITY;
+    }
+    float[] position = new float[POSITION_SIZE];
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      readPosition(vertices, vertex, position);
+      for (int axis = 0; axis < POSITION_SIZE; axis++) {
+        min[axis] = Math.min(min[axis], position[axis]);
+        max[axis] = Math.max(max[axis], position[axis]);
+      }
+    }
+    for (int axis = 0; axis < POSITION_SIZE && vertexCount > 0; axis++) {
+      offset[axis] = (min[axis] + max[axis]) / 2f;
+      scale[axis] = (max[axis] - min[axis]) / 2f;
+    }
+
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      readPosition(vertices, vertex, position);
+      for (int axis = 0; axis < POSITION_SIZE; axis++) {
+        // A flat axis has a scale of 0 and decodes to its offset whatever is stored
+        float normalized = scale[axis] == 0f ? 0f : (position[axis] - offset[axis]) / scale[axis];
+        data.putShort(vertex * stride + axis * SHORT_BYTES, VertexCodecs.encodeSnorm16(normalized));
+      }
+    }
+  }
+
+  private static void readPosition(FloatBuffer vertices, int vertex, float[] out) {
+    int base = vertex * VERTEX_COMPONENTS;
+    float w = vertices.get(base + 3);
+    float scale = w == 0f ? 1f : 1f / w;
+    for (int axis = 0; axis < POSITION_SIZE; axis++) {
+      out[axis] = vertices.get(base + axis) * scale;
+    }
+  }
+
+  private void writeNormals(FloatBuffer normals, int vertexCount, ByteBuffer data, int stride,
+      int offset) {
+    float[] octahedral = new float[NORMAL_SIZE];
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      int base = vertex * NORMAL_COMPONENTS;
+      VertexCodecs.encodeOctahedral(normals.get(base), normals.get(base + 1),
+          normals.get(base + 2), octahedral);
+      int target = vertex * stride + offset;
+      if (normalEncoding == NormalEncoding.OCTAHEDRAL_SNORM16) {
+        data.putShort(target, VertexCodecs.encodeSnorm16(octahedral[0]));
+        data.putShort(target + SHORT_BYTES, VertexCodecs.encodeSnorm16(octahedral[1]));
+      } else {
+        data.put(target, VertexCodecs.encodeSnorm8(octahedral[0]));
+        data.put(target + 1, VertexCodecs.encodeSnorm8(octahedral[1]));
+      }
+    }
+  }
+
+  private void writeTextureCoords(FloatBuffer textureCoords, int vertexCount, ByteBuffer data,
+      int stride, int offset, float[] scale, float[] translation) {
+    if (!textureCoordEncoding.isHalfFloat()) {
+      for (int axis = 0; axis < TEXTURE_COORD_COMPONENTS; axis++) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+          float value = textureCoords.get(vertex * TEXTURE_COORD_COMPONENTS + axis);
+          min = Math.min(min, value);
+          max = Math.max(max, value);
+        }
+        if (vertexCount > 0) {
+          translation[axis] = min;
+          scale[axis] = max - min;
+        }
+      }
+    }
+
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      for (int axis = 0; axis < TEXTURE_COORD_COMPONENTS; axis++) {
+        float value = textureCoords.get(vertex * TEXTURE_COORD_COMPONENTS + axis);
+        short encoded;
+        if (textureCoordEncoding.isHalfFloat()) {
+          encoded = VertexCodecs.encodeHalf(value);
+        } else {
+          encoded = VertexCodecs.encodeUnorm16(
+              scale[axis] == 0f ? 0f : (value - translation[axis]) / scale[axis]);
+        }
+        data.putShort(vertex * stride + offset + axis * SHORT_BYTES, encoded);
+      }
+    }
+  }
+}
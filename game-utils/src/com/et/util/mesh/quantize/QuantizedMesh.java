@@ -0,0 +1,180 @@
+package com.et.util.mesh.quantize;
+
+import java.nio.ByteBuffer;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.quantize.MeshQuantizer.NormalEncoding;
+import com.et.util.mesh.quantize.MeshQuantizer.TextureCoordEncoding;
+import com.google.common.base.Objects;
+
+/**
+ * A mesh's vertices packed by a {@link MeshQuantizer} into one interleaved, direct,
+ * {@link java.nio.ByteOrder#nativeOrder()} buffer, along with the formats to bind each attribute
+ * with. Indices and material ranges are unchanged, so they are drawn from {@link #getMeshData()}.
+ *
+ * Positions, and texture coordinates encoded as {@link TextureCoordEncoding#UNORM16}, are
+ * normalized to the mesh's bounds. A shader gets the original values back as
+ * attribute * scale + offset, with the scales and offsets of this mesh as uniforms. Normals are
+ * octahedral and are decoded in the shader as in {@link VertexCodecs#decodeOctahedral}.
+ */
+public class QuantizedMesh {
+
+  private final MeshData meshData;
+  private final ByteBuffer vertexData;
+  private final int vertexCount;
+  private final VertexAttributeFormat positionFormat;
+  private final VertexAttributeFormat normalFormat;
+  private final VertexAttributeFormat textureCoordFormat;
+  private final NormalEncoding normalEncoding;
+  private final TextureCoordEncoding textureCoordEncoding;
+  private final float[] positionScale;
+  private final float[] positionOffset;
+  private final float[] textureCoordScale;
+  private final float[] textureCoordOffset;
+
+  QuantizedMesh(MeshData meshData, ByteBuffer vertexData, int vertexCount,
+      VertexAttributeFormat positionFormat, VertexAttributeFormat normalFormat,
+      VertexAttributeFormat textureCoordFormat, NormalEncoding normalEncoding,
+      TextureCoordEncoding textureCoordEncoding, float[] positionScale, float[] positionOffset,
+      float[] textureCoordScale, float[] textureCoordOffset) {
+    this.meshData = meshData;
+    this.vertexData = vertexData;
+    this.vertexCount = vertexCount;
+    this.positionFormat = positionFormat;
+    this.normalFormat = normalFormat;
+    this.textureCoordFormat = textureCoordFormat;
+    this.normalEncoding = normalEncoding;
+    this.textureCoordEncoding = textureCoordEncoding;
+    this.positionScale = positionScale;
+    this.positionOffset = positionOffset;
+    this.textureCoordScale = textureCoordScale;
+    this.textureCoordOffset = textureCoordOffset;
+  }
+
+  /**
+   * Returns the mesh that was quantized.
+   */
+  public MeshData getMeshData() {
+    return meshData;
+  }
+
+  /**
+   * Returns the interleaved vertices, {@link #getStride()} bytes each. The buffer is shared, so
+   * callers should read it through {@link ByteBuffer#duplicate()} if they move its position.
+   */
+  public ByteBuffer getVertexData() {
+    return vertexData;
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  public int getStride() {
+    return positionFormat.getStride();
+  }
+
+  public VertexAttributeFormat getPositionFormat() {
+    return positionFormat;
+  }
+
+  /**
+   * Returns the format of the normals, or null if the mesh has none.
+   */
+  public VertexAttributeFormat getNormalFormat() {
+    return normalFormat;
+  }
+
+  /**
+   * Returns the format of the texture coordinates, or null if the mesh has none.
+   */
+  public VertexAttributeFormat getTextureCoordFormat() {
+    return textureCoordFormat;
+  }
+
+  public NormalEncoding getNormalEncoding() {
+    return normalEncoding;
+  }
+
+  public TextureCoordEncoding getTextureCoordEncoding() {
+    return textureCoordEncoding;
+  }
+
+  /**
+   * Returns the x, y and z scales of the positions, half the size of the mesh's bounding box.
+   */
+  public float[] getPositionScale() {
+    return positionScale.clone();
+  }
+
+  /**
+   * Returns the x, y and z offsets of the positions, the center of the mesh's bounding box.
+   */
+  public float[] getPositionOffset() {
+    return positionOffset.clone();
+  }
+
+  public float[] getTextureCoordScale() {
+    return textureCoordScale.clone();
+  }
+
+  public float[] getTextureCoordOffset() {
+    return textureCoordOffset.clone();
+  }
+
+  public long getSizeInBytes() {
+    return vertexData.capacity();
+  }
+
+  /**
+   * Writes the position of a vertex as the GPU reads it to out[0..2].
+   */
+  public void decodePosition(int vertex, float[] out) {
+    int base = vertex * getStride() + positionFormat.getOffset();
+    for (int axis = 0; axis < 3; axis++) {
+      float value = VertexCodecs.decodeSnorm16(vertexData.getShort(base + axis * 2));
+      out[axis] = value * positionScale[axis] + positionOffset[axis];
+    }
+  }
+
+  /**
+   * Writes the unit normal of a vertex as the GPU reads it to out[0..2].
+   */
+  public void decodeNormal(int vertex, float[] out) {
+    int base = vertex * getStride() + normalFormat.getOffset();
+    float u;
+    float v;
+    if (normalEncoding == NormalEncoding.OCTAHEDRAL_SNORM16) {
+      u = VertexCodecs.decodeSnorm16(vertexData.getShort(base));
+      v = VertexCodecs.decodeSnorm16(vertexData.getShort(base + 2));
+    } else {
+      u = VertexCodecs.decodeSnorm8(vertexData.get(base));
+      v = VertexCodecs.decodeSnorm8(vertexData.get(base + 1));
+    }
+    VertexCodecs.decodeOctahedral(u, v, out);
+  }
+
+  /**
+   * Writes the texture coordinates of a vertex as the GPU reads them to out[0..1].
+   */
+  public void decodeTextureCoord(int vertex, float[] out) {
+    int base = vertex * getStride() + textureCoordFormat.getOffset();
+    for (int axis = 0; axis < 2; axis++) {
+      short encoded = vertexData.getShort(base + axis * 2);
+      float value = textureCoordEncoding.isHalfFloat()
+          ? VertexCodecs.decodeHalf(encoded) : VertexCodecs.decodeUnorm16(encoded);
+      out[axis] = value * textureCoordScale[axis] + textureCoordOffset[axis];
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("name", meshData.getName())
+        .add("vertexCount", vertexCount)
+        .add("positionFormat", positionFormat)
+        .add("normalFormat", normalFormat)
+        .add("textureCoordFormat", textureCoordFormat)
+        .toString();
+  }
+}
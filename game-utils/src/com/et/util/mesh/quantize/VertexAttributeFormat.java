@@ -0,0 +1,101 @@
+package com.et.util.mesh.quantize;
+
+import com.google.common.base.Objects;
+
+/**
+ * Where and how one attribute lies in an interleaved vertex buffer, holding the arguments of the
+ * matching glVertexAttribPointer(index, size, type, normalized, stride, offset) call.
+ */
+public class VertexAttributeFormat {
+
+  public static final int GL_BYTE = 0x1400;
+  public static final int GL_UNSIGNED_BYTE = 0x1401;
+  public static final int GL_SHORT = 0x1402;
+  public static final int GL_UNSIGNED_SHORT = 0x1403;
+  public static final int GL_FLOAT = 0x1406;
+  /** GL_HALF_FLOAT of GLES 3. */
+  public static final int GL_HALF_FLOAT = 0x140B;
+  /** GL_HALF_FLOAT_OES of GLES 2's OES_vertex_half_float, which has the same encoding. */
+  public static final int GL_HALF_FLOAT_OES = 0x8D61;
+
+  private final int size;
+  private final int type;
+  private final boolean normalized;
+  private final int stride;
+  private final int offset;
+
+  public VertexAttributeFormat(int size, int type, boolean normalized, int stride, int offset) {
+    this.size = size;
+    this.type = type;
+    this.normalized = normalized;
+    this.stride = stride;
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the number of components per vertex.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * Returns true if integer components are mapped to [-1, 1], or [0, 1] when unsigned, as the
+   * shader reads them.
+   */
+  public boolean isNormalized() {
+    return normalized;
+  }
+
+  /**
+   * Returns the number of bytes from one vertex to the next.
+   */
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * Returns the attribute's position in bytes from the start of each vertex.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("size", size)
+        .add("type", "0x" + Integer.toHexString(type))
+        .add("normalized", normalized)
+        .add("stride", stride)
+        .add("offset", offset)
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(size, type, normalized, stride, offset);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof VertexAttributeFormat)) {
+      return false;
+    }
+
+    VertexAttributeFormat other = (VertexAttributeFormat) obj;
+    return size == other.size &&
+        type == other.type &&
+        normalized == other.normalized &&
+        stride == other.stride &&
+        offset == other.offset;
+  }
+}
@@ -0,0 +1,164 @@
+package com.et.util.mesh.quantize;
+
+/**
+ * Conversions between floats and the compact encodings of {@link MeshQuantizer}. Decoding
+ * follows what GLES 3 does when it reads a normalized attribute, so the decoders give exactly what
+ * shaders see there. GLES 2 maps signed values as (2c + 1) / (2^b - 1) instead, which is off by at
+ * most one more half step.
+ */
+public final class VertexCodecs {
+
+  private static final float SNORM16_MAX = 32767f;
+  private static final float SNORM8_MAX = 127f;
+  private static final float UNORM16_MAX = 65535f;
+
+  private static final int FLOAT_EXPONENT_BIAS = 127;
+  private static final int HALF_EXPONENT_BIAS = 15;
+  private static final int HALF_INFINITY = 0x7C00;
+  private static final float HALF_SUBNORMAL_STEP = 1f / (1 << 24);
+
+  private VertexCodecs() {
+  }
+
+  /**
+   * Encodes a value in [-1, 1], clamping others.
+   */
+  public static short encodeSnorm16(float value) {
+    return (short) Math.round(clamp(value, -1f, 1f) * SNORM16_MAX);
+  }
+
+  public static float decodeSnorm16(short value) {
+    return Math.max(value / SNORM16_MAX, -1f);
+  }
+
+  /**
+   * Encodes a value in [-1, 1], clamping others.
+   */
+  public static byte encodeSnorm8(float value) {
+    return (byte) Math.round(clamp(value, -1f, 1f) * SNORM8_MAX);
+  }
+
+  public static float decodeSnorm8(byte value) {
+    return Math.max(value / SNORM8_MAX, -1f);
+  }
+
+  /**
+   * Encodes a value in [0, 1], clamping others, as an unsigned short.
+   */
+  public static short encodeUnorm16(float value) {
+    return (short) Math.round(clamp(value, 0f, 1f) * UNORM16_MAX);
+  }
+
+  public static float decodeUnorm16(short value) {
+    return (value & 0xFFFF) / UNORM16_MAX;
+  }
+
+  /**
+   * Encodes a value as an IEEE 754 half float, rounding to nearest even. Values too large for a
+   * half become infinite and NaN stays NaN.
+   */
+  public static short encodeHalf(float value) {
+    int bits = Float.floatToIntBits(value);
+    int sign = (bits >>> 16) & 0x8000;
+    int magnitude = bits & 0x7FFFFFFF;
+    if (magnitude > 0x7F800000) {
+      return (short) (sign | HALF_INFINITY | 0x200);
+    }
+    if (magnitude >= 0x47800000) {
+      // 65536 and above, including infinity
+      return (short) (sign | HALF_INFINITY);
+    }
+
+    int exponent = magnitude >>> 23;
+    if (exponent < FLOAT_EXPONENT_BIAS - HALF_EXPONENT_BIAS + 1) {
+      // Below the smallest normal half, so the half is subnormal with a step of 2^-24
+      if (exponent < FLOAT_EXPONENT_BIAS - 25) {
+        return (short) sign;
+      }
+      int mantissa = (magnitude & 0x7FFFFF) | 0x800000;
+      int shift = FLOAT_EXPONENT_BIAS - 1 - exponent;
+      return (short) (sign | roundShift(mantissa, shift));
+    }
+    int half = ((exponent - FLOAT_EXPONENT_BIAS + HALF_EXPONENT_BIAS) << 10)
+        | ((magnitude & 0x7FFFFF) >> 13);
+    int remainder = magnitude & 0x1FFF;
+    if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+      // Carries into the exponent where needed, up to infinity
+      half++;
+    }
+    return (short) (sign | half);
+  }
+
+  public static float decodeHalf(short value) {
+    int sign = (value & 0x8000) << 16;
+    int exponent = (value >>> 10) & 0x1F;
+    int mantissa = value & 0x3FF;
+    if (exponent == 0) {
+      float magnitude = mantissa * HALF_SUBNORMAL_STEP;
+      return sign == 0 ? magnitude : -magnitude;
+    }
+    if (exponent == 0x1F) {
+      return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+    }
+    return Float.intBitsToFloat(sign
+        | ((exponent - HALF_EXPONENT_BIAS + FLOAT_EXPONENT_BIAS) << 23) | (mantissa << 13));
+  }
+
+  /**
+   * Maps a direction to two coordinates in [-1, 1] by projecting it onto the octahedron
+   * |x| + |y| + |z| = 1 and folding the lower half over the upper one. The direction need not
+   * be unit length, and the zero vector maps to (0, 0), which decodes to +z.
+   */
+  public static void encodeOctahedral(float x, float y, float z, float[] out) {
+    float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+    if (length == 0f) {
+      out[0] = 0f;
+      out[1] = 0f;
+      return;
+    }
+    float u = x / length;
+    float v = y / length;
+    if (z < 0f) {
+      float foldedU = (1f - Math.abs(v)) * signNotZero(u);
+      v = (1f - Math.abs(u)) * signNotZero(v);
+      u = foldedU;
+    }
+    out[0] = u;
+    out[1] = v;
+  }
+
+  /**
+   * Maps octahedral coordinates back to a unit direction, written to out[0..2].
+   */
+  public static void decodeOctahedral(float u, float v, float[] out) {
+    float x = u;
+    float y = v;
+    float z = 1f - Math.abs(u) - Math.abs(v);
+    if (z < 0f) {
+      x = (1f - Math.abs(v)) * signNotZero(u);
+      y = (1f - Math.abs(u)) * signNotZero(v);
+    }
+    float scale = 1f / (float) Math.sqrt(x * x + y * y + z * z);
+    out[0] = x * scale;
+    out[1] = y * scale;
+    out[2] = z * scale;
+  }
+
+  private static int roundShift(int value, int shift) {
+    int shifted = value >> shift;
+    int remainder = value & ((1 << shift) - 1);
+    int halfway = 1 << (shift - 1);
+    if (remainder > halfway || (remainder == halfway && (shifted & 1) != 0)) {
+      shifted++;
+    }
+    return shifted;
+  }
+
+  private static float signNotZero(float value) {
+    return value >= 0f ? 1f : -1f;
+  }
+
+  private static float clamp(float value, float min, float max) {
+    return Math.min(Math.max(value, min), max);
+  }
+}
@@ -0,0 +1,12 @@
+package com.et.util.mesh.repository;
+
+import java.io.IOException;
+
+import com.et.util.mesh.data.MeshObject;
+
+/**
+ * Loads the {@link MeshObject} stored at an asset path, for a {@link MeshRepository}.
+ */
+public interface MeshObjectLoader {
+  MeshObject load(String assetPath) throws IOException;
+}
@@ -0,0 +1,115 @@
+package com.et.util.mesh.repository;
+
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.primitives.Ints;
+
+/**
+ * Keeps loaded {@link MeshObject}s in memory by asset path, so scenes sharing a mesh share one
+ * copy. Meshes are weighed by {@link MeshObject#getSizeInBytes()} and the least recently used are
+ * evicted once they weigh more than the budget together. A mesh larger than the whole budget is
+ * still returned but not kept. Meshes are weighed when loaded, so one that is grown in place
+ * afterwards must be passed to {@link #reweigh(String)} to keep the budget true.
+ * 
+ * Safe to use from any number of loader threads. Concurrent requests for a path that is not
+ * loaded yet wait on a single load instead of each loading it. A failed load is not kept, so the
+ * next request tries again.
+ */
+public class MeshRepository {
+  
+  private final LoadingCache<String, MeshObject> meshes;
+  
+  public MeshRepository(final MeshObjectLoader loader, long maxBytes) {
+    Preconditions.checkArgument(maxBytes >= 0, "Budget can not be negative.");
+    meshes = CacheBuilder.newBuilder()
+        // A single segment keeps eviction in true least recently used order across the whole
+        // budget, rather than per segment, at the cost of serializing writes.
+        .concurrencyLevel(1)
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<String, MeshObject>() {
+          @Override
+          public int weigh(String assetPath, MeshObject meshObject) {
+            return Ints.saturatedCast(meshObject.getSizeInBytes());
+          }
+        })
+        .recordStats()
+        .build(new CacheLoader<String, MeshObject>() {
+          @Override
+          public MeshObject load(String assetPath) throws Exception {
+            return loader.load(assetPath);
+          }
+        });
+  }
+  
+  /**
+   * Returns the mesh at the path, loading it if it is not in memory. Load failures are thrown as
+   * {@link com.google.common.util.concurrent.UncheckedExecutionException}s holding the cause.
+   */
+  public MeshObject get(String assetPath) {
+    return meshes.getUnchecked(assetPath);
+  }
+  
+  /**
+   * Returns the mesh at the path if it is in memory, or null without loading it.
+   */
+  public MeshObject getIfPresent(String assetPath) {
+    return meshes.getIfPresent(assetPath);
+  }
+  
+  /**
+   * Weighs the mesh at the path again after it was changed in place, as by
+   * {@link com.et.util.mesh.simplify.MeshLodGenerator#addLods} or
+   * {@link com.et.util.mesh.normals.NormalGenerator#addMissingNormals}, evicting meshes if the
+   * budget is now exceeded. Does nothing if the mesh is not in memory.
+   */
+  public void reweigh(String assetPath) {
+    MeshObject meshObject = meshes.asMap().get(assetPath);
+    if (meshObject != null) {
+      // Replacing an entry weighs its value again
+      meshes.asMap().replace(assetPath, meshObject, meshObject);
+    }
+  }
+  
+  public void invalidate(String assetPath) {
+    meshes.invalidate(assetPath);
+  }
+  
+  public void invalidateAll() {
+    meshes.invalidateAll();
+  }
+  
+  /**
+   * Returns the bytes held by the meshes currently in memory.
+   */
+  public long getSizeInBytes() {
+    long size = 0;
+    for (MeshObject meshObject : meshes.asMap().values()) {
+      size += meshObject.getSizeInBytes();
+    }
+    return size;
+  }
+  
+  public long getHitCount() {
+    return meshes.stats().hitCount();
+  }
+  
+  public long getMissCount() {
+    return meshes.stats().missCount();
+  }
+  
+  public long getEvictionCount() {
+    return meshes.stats().evictionCount();
+  }
+  
+  /**
+   * Returns every counter kept, including load counts and times.
+   */
+  public CacheStats getStats() {
+    return meshes.stats();
+  }
+}
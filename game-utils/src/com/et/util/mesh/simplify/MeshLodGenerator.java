@@ -0,0 +1,95 @@
+package com.et.util.mesh.simplify;
+
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.et.util.concurrent.MoreFutures;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Builds chains of levels of detail with a {@link MeshSimplifier}, one level per target ratio of
+ * the full mesh's triangle count. Each level is simplified from the one before it, which is both
+ * faster than starting over from the full mesh and keeps every level a subset of the last.
+ * Levels are named after their mesh followed by "#lod" and their level, starting at 1.
+ */
+public class MeshLodGenerator {
+
+  private static final String LOD_NAME_FORMAT = "%s#lod%d";
+
+  private final MeshSimplifier simplifier;
+  private final float[] ratios;
+
+  /**
+   * Generates a level for each ratio, which must be in (0, 1) and decreasing.
+   */
+  public MeshLodGenerator(MeshSimplifier simplifier, float... ratios) {
+    Preconditions.checkArgument(ratios.length > 0, "No level ratios given.");
+    float previous = 1f;
+    for (float ratio : ratios) {
+      Preconditions.checkArgument(ratio > 0f && ratio < previous,
+          "Ratio %s is not in (0, %s).", ratio, previous);
+      previous = ratio;
+    }
+    this.simplifier = Preconditions.checkNotNull(simplifier);
+    this.ratios = ratios.clone();
+  }
+
+  /**
+   * Returns the levels below the mesh, from most to least detailed. A level that could not be
+   * simplified as far as asked is as far as the simplifier got.
+   */
+  public List<MeshData> generate(MeshData mesh) {
+    int triangleCount = mesh.getVertexIndices().capacity() / INDICES_PER_TRIANGLE;
+    List<MeshData> levels = Lists.newArrayListWithCapacity(ratios.length);
+    MeshData previous = mesh;
+    for (int level = 0; level < ratios.length; level++) {
+      MeshData simplified = simplifier.simplify(previous,
+          Math.round(triangleCount * ratios[level]));
+      previous = new MeshData.Builder()
+          .setName(mesh.getName() == null ? null
+              : String.format(LOD_NAME_FORMAT, mesh.getName(), level + 1))
+          .setVertices(simplified.getVerticies())
+          .setNormals(simplified.getNormals())
+          .setTextureCoords(simplified.getTextureCoords())
+          .setVertexIndices(simplified.getVertexIndices())
+          .setUnifiedIndices(true)
+          .setMaterialRanges(simplified.getMaterialRanges())
+          .setSmoothingGroups(simplified.getSmoothingGroups())
+          .build();
+      levels.add(previous);
+    }
+    return levels;
+  }
+
+  /**
+   * Generates the levels of every mesh of the object on the executor, one task per mesh, and
+   * stores them with {@link MeshObject#setLods(String, List)} once all are done, leaving the
+   * object untouched if any fails. The object is only touched from the calling thread, which
+   * waits for the tasks with {@link MoreFutures#getAll(List)}.
+   */
+  public void addLods(MeshObject meshObject, ExecutorService executor) {
+    List<MeshData> meshes = ImmutableList.copyOf(meshObject.getAllMeshes());
+    List<Future<List<MeshData>>> pending = Lists.newArrayListWithCapacity(meshes.size());
+    for (final MeshData mesh : meshes) {
+      pending.add(executor.submit(new Callable<List<MeshData>>() {
+        @Override
+        public List<MeshData> call() {
+          return generate(mesh);
+        }
+      }));
+    }
+
+    List<List<MeshData>> levels = MoreFutures.getAll(pending);
+    for (int mesh = 0; mesh < meshes.size(); mesh++) {
+      meshObject.setLods(meshes.get(mesh).getName(), levels.get(mesh));
+    }
+  }
+}
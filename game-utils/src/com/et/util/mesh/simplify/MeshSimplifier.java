@@ -0,0 +1,783 @@
+package com.et.util.mesh.simplify;
+
+import static com.et.util.mesh.data.MeshData.VERTEX_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.NORMAL_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.TEXTURE_COORD_COMPONENTS;
+import static com.et.util.mesh.data.MeshData.INDICES_PER_TRIANGLE;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Reduces a mesh's triangle count with Garland and Heckbert's quadric error metrics, collapsing
+ * the cheapest edges first. A simplifier keeps no state between calls, so one can be shared by
+ * any number of threads.
+ */
+public class MeshSimplifier {
+
+  public static final float DEFAULT_ATTRIBUTE_WEIGHT = 0.5f;
+
+  private static final int POSITION_QUADRIC_SIZE = 10;
+  // Upper triangle of the symmetric 5x5 matrix over (x, y, z, attribute, 1)
+  private static final int ATTRIBUTE_QUADRIC_SIZE = 15;
+  private static final int ATTRIBUTE_QUADRIC_DIMENSION = 5;
+  private static final double BORDER_WEIGHT = 10.0;
+  // Collapses may turn a triangle by at most about 75 degrees
+  private static final double MIN_NORMAL_COSINE = 0.25;
+
+  private final float attributeWeight;
+
+  public MeshSimplifier() {
+    this(DEFAULT_ATTRIBUTE_WEIGHT);
+  }
+
+  /**
+   * Weighs attribute error against position error. 0 simplifies by shape alone.
+   */
+  public MeshSimplifier(float attributeWeight) {
+    Preconditions.checkArgument(attributeWeight >= 0f, "Attribute weight %s is negative.",
+        attributeWeight);
+    this.attributeWeight = attributeWeight;
+  }
+
+  /**
+   * Simplifies to about ratio times the mesh's triangle count, see
+   * {@link #simplify(MeshData, int)}.
+   */
+  public MeshData simplify(MeshData mesh, float ratio) {
+    Preconditions.checkArgument(ratio >= 0f && ratio <= 1f, "Ratio %s is not in [0, 1].", ratio);
+    int triangleCount = mesh.getVertexIndices().capacity() / INDICES_PER_TRIANGLE;
+    return simplify(mesh, Math.round(triangleCount * ratio));
+  }
+
+  /**
+   * Collapses edges until at most targetTriangles are left or no collapse is allowed, and
+   * returns the mesh itself if it is already small enough. Triangles keep their order and their
+   * smoothing groups, vertices no triangle uses any more are dropped and material ranges shrink to
+   * what is left of them.
+   *
+   * Collapses merge one vertex into a neighbour, which keeps its position and attributes, so no
+   * attribute is ever interpolated. Open borders, seams in the normals or texture coordinates,
+   * and the borders between {@link MeshData#getMaterialRanges()} keep their shape, and collapses
+   * that would flip a triangle or make the mesh non-manifold are skipped.
+   */
+  public MeshData simplify(MeshData mesh, int targetTriangles) {
+    Preconditions.checkArgument(mesh.hasUnifiedIndices(),
+        "Mesh %s must have unified indices to be simplified.", mesh.getName());
+    if (mesh.getVertexIndices().capacity() / INDICES_PER_TRIANGLE <= targetTriangles) {
+      return mesh;
+    }
+    Simplification simplification = new Simplification(mesh);
+    simplification.run(targetTriangles);
+    return simplification.build();
+  }
+
+  /**
+   * A collapse of one vertex into another, valid while neither has changed since it was costed.
+   */
+  private static class Collapse implements Comparable<Collapse> {
+    final double cost;
+    final int from;
+    final int to;
+    final int fromVersion;
+    final int toVersion;
+
+    Collapse(double cost, int from, int to, int fromVersion, int toVersion) {
+      this.cost = cost;
+      this.from = from;
+      this.to = to;
+      this.fromVersion = fromVersion;
+      this.toVersion = toVersion;
+    }
+
+    @Override
+    public int compareTo(Collapse other) {
+      // Ties are broken by vertex so results never depend on the queue's internals
+      int byCost = Double.compare(cost, other.cost);
+      if (byCost != 0) {
+        return byCost;
+      }
+      if (from != other.from) {
+        return from < other.from ? -1 : 1;
+      }
+      return to < other.to ? -1 : (to > other.to ? 1 : 0);
+    }
+  }
+
+  /**
+   * The state of simplifying one mesh. The cost of a collapse is the sum of squared distances
+   * from the kept position to the planes of the triangles merged into it, weighted by area, plus
+   * the attribute error of Hoppe's quadrics: how far the kept vertex's normal and texture
+   * coordinates are from the linear fields of the triangles around the removed one. Positions are
+   * scaled to the unit cube first, so the attribute weight means the same for every mesh. Edges
+   * of open borders get extra planes at right angles to their triangle, and vertices sharing a
+   * position with others or on the border between two material ranges are locked.
+   */
+  private class Simplification {
+    final MeshData mesh;
+    final int vertexCount;
+    final int triangleCount;
+    final int[] indices;
+    final boolean[] triangleAlive;
+    int liveTriangles;
+
+    // Positions scaled to the unit cube, and the vertices sharing each distinct position
+    final float[] positions;
+    final int[] positionOf;
+    final int[] verticesAtPosition;
+    final boolean[] borderPosition;
+    final double[] positionQuadrics;
+
+    final int channels;
+    final float[] attributes;
+    final double[] attributeQuadrics;
+
+    final boolean[] locked;
+    final boolean[] removed;
+    final int[] version;
+    final int[][] trianglesOf;
+    final int[] trianglesOfCount;
+    final PriorityQueue<Collapse> queue = new PriorityQueue<Collapse>();
+
+    // Stamped marks for neighbourhood checks, so they need no clearing between checks
+    final int[] neighbourMark;
+    final int[] sharedMark;
+    int stamp;
+    final int[] queuedMark;
+    int queuedStamp;
+    final double[] fieldPoint = new double[ATTRIBUTE_QUADRIC_DIMENSION];
+    final double[] normalBefore = new double[3];
+    final double[] normalAfter = new double[3];
+    final double[] edge1 = new double[3];
+    final double[] edge2 = new double[3];
+
+    Simplification(MeshData mesh) {
+      this.mesh = mesh;
+      vertexCount = mesh.getVerticies().capacity() / VERTEX_COMPONENTS;
+      IntBuffer sourceIndices = mesh.getVertexIndices();
+      triangleCount = sourceIndices.capacity() / INDICES_PER_TRIANGLE;
+      indices = new int[triangleCount * INDICES_PER_TRIANGLE];
+      for (int position = 0; position < indices.length; position++) {
+        indices[position] = sourceIndices.get(position);
+      }
+      triangleAlive = new boolean[triangleCount];
+      Arrays.fill(triangleAlive, true);
+      liveTriangles = triangleCount;
+
+      positions = normalizedPositions(mesh.getVerticies());
+      positionOf = new int[vertexCount];
+      int positionCount = weldPositions(mesh.getVerticies());
+      verticesAtPosition = new int[positionCount];
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        verticesAtPosition[positionOf[vertex]]++;
+      }
+      borderPosition = new boolean[positionCount];
+      positionQuadrics = new double[positionCount * POSITION_QUADRIC_SIZE];
+
+      FloatBuffer normals = mesh.getNormals();
+      FloatBuffer textureCoords = mesh.getTextureCoords();
+      boolean hasNormals = MeshData.hasStream(normals);
+      boolean hasTextureCoords = MeshData.hasStream(textureCoords);
+      channels = attributeWeight == 0f ? 0 : (hasNormals ? NORMAL_COMPONENTS : 0)
+          + (hasTextureCoords ? TEXTURE_COORD_COMPONENTS : 0);
+      attributes = new float[vertexCount * channels];
+      for (int vertex = 0; vertex < vertexCount && channels > 0; vertex++) {
+        int channel = 0;
+        if (hasNormals) {
+          for (int component = 0; component < NORMAL_COMPONENTS; component++) {
+            attributes[vertex * channels + channel++] =
+                normals.get(vertex * NORMAL_COMPONENTS + component);
+          }
+        }
+        if (hasTextureCoords) {
+          for (int component = 0; component < TEXTURE_COORD_COMPONENTS; component++) {
+            attributes[vertex * channels + channel++] =
+                textureCoords.get(vertex * TEXTURE_COORD_COMPONENTS + component);
+          }
+        }
+      }
+      attributeQuadrics = new double[vertexCount * channels * ATTRIBUTE_QUADRIC_SIZE];
+
+      locked = new boolean[vertexCount];
+      removed = new boolean[vertexCount];
+      version = new int[vertexCount];
+      trianglesOfCount = new int[vertexCount];
+      for (int index : indices) {
+        trianglesOfCount[index]++;
+      }
+      trianglesOf = new int[vertexCount][];
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        trianglesOf[vertex] = new int[trianglesOfCount[vertex]];
+        trianglesOfCount[vertex] = 0;
+      }
+      for (int triangle = 0; triangle < triangleCount; triangle++) {
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int vertex = indices[triangle * INDICES_PER_TRIANGLE + corner];
+          trianglesOf[vertex][trianglesOfCount[vertex]++] = triangle;
+        }
+      }
+      neighbourMark = new int[positionCount];
+      sharedMark = new int[positionCount];
+      queuedMark = new int[vertexCount];
+
+      lockSeamsAndRanges();
+      addTriangleQuadrics();
+      addBorderQuadrics();
+    }
+
+    float[] normalizedPositions(FloatBuffer vertices) {
+      float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+      float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        for (int axis = 0; axis < 3; axis++) {
+          float value = vertices.get(vertex * VERTEX_COMPONENTS + axis);
+          min[axis] = Math.min(min[axis], value);
+          max[axis] = Math.max(max[axis], value);
+        }
+      }
+      float extent = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+      float scale = extent > 0f ? 1f / extent : 1f;
+      float[] normalized = new float[vertexCount * 3];
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        for (int axis = 0; axis < 3; axis++) {
+          normalized[vertex * 3 + axis] =
+              (vertices.get(vertex * VERTEX_COMPONENTS + axis) - min[axis]) * scale;
+        }
+      }
+      return normalized;
+    }
+
+    /**
+     * Numbers the distinct positions and returns how many there are.
+     */
+    int weldPositions(FloatBuffer vertices) {
+      Map<PositionKey, Integer> positionNumbers = Maps.newHashMap();
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        int base = vertex * VERTEX_COMPONENTS;
+        PositionKey key = new PositionKey(vertices.get(base), vertices.get(base + 1),
+            vertices.get(base + 2));
+        Integer number = positionNumbers.get(key);
+        if (number == null) {
+          number = positionNumbers.size();
+          positionNumbers.put(key, number);
+        }
+        positionOf[vertex] = number;
+      }
+      return positionNumbers.size();
+    }
+
+    void lockSeamsAndRanges() {
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        locked[vertex] = verticesAtPosition[positionOf[vertex]] > 1;
+      }
+      List<MaterialRange> ranges = mesh.getMaterialRanges();
+      if (ranges.size() > 1) {
+        int[] rangeOfVertex = new int[vertexCount];
+        Arrays.fill(rangeOfVertex, -1);
+        for (int range = 0; range < ranges.size(); range++) {
+          MaterialRange materialRange = ranges.get(range);
+          int end = materialRange.getFirstIndex() + materialRange.getIndexCount();
+          for (int position = materialRange.getFirstIndex(); position < end; position++) {
+            int vertex = indices[position];
+            if (rangeOfVertex[vertex] >= 0 && rangeOfVertex[vertex] != range) {
+              locked[vertex] = true;
+            }
+            rangeOfVertex[vertex] = range;
+          }
+        }
+      }
+    }
+
+    void addTriangleQuadrics() {
+      double[] normal = new double[3];
+      double[] gradient = new double[3];
+      for (int triangle = 0; triangle < triangleCount; triangle++) {
+        int a = indices[triangle * INDICES_PER_TRIANGLE];
+        int b = indices[triangle * INDICES_PER_TRIANGLE + 1];
+        int c = indices[triangle * INDICES_PER_TRIANGLE + 2];
+        double doubleArea = normal(a, b, c, normal);
+        if (doubleArea == 0.0) {
+          continue;
+        }
+        double area = doubleArea / 2.0;
+        double d = -(normal[0] * positions[a * 3] + normal[1] * positions[a * 3 + 1]
+            + normal[2] * positions[a * 3 + 2]);
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int vertex = indices[triangle * INDICES_PER_TRIANGLE + corner];
+          addPlane(positionOf[vertex], normal[0], normal[1], normal[2], d, area);
+        }
+
+        for (int channel = 0; channel < channels; channel++) {
+          if (!attributeGradient(a, b, c, channel, gradient)) {
+            continue;
+          }
+          double offset = attributes[a * channels + channel] - dot(gradient, a);
+          for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+            int vertex = indices[triangle * INDICES_PER_TRIANGLE + corner];
+            addAttributeField(vertex, channel, gradient, offset, area * attributeWeight);
+          }
+        }
+      }
+    }
+
+    /**
+     * Adds a plane through each edge that only one triangle has, at right angles to it, to the
+     * edge's ends.
+     */
+    void addBorderQuadrics() {
+      Map<Long, Integer> edgeTriangles = Maps.newHashMap();
+      for (int triangle = 0; triangle < triangleCount; triangle++) {
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          Long edge = edgeKey(triangle, corner);
+          Integer count = edgeTriangles.get(edge);
+          edgeTriangles.put(edge, count == null ? 1 : count + 1);
+        }
+      }
+
+      double[] normal = new double[3];
+      for (int triangle = 0; triangle < triangleCount; triangle++) {
+        int base = triangle * INDICES_PER_TRIANGLE;
+        if (normal(indices[base], indices[base + 1], indices[base + 2], normal) == 0.0) {
+          continue;
+        }
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          if (edgeTriangles.get(edgeKey(triangle, corner)) != 1) {
+            continue;
+          }
+          int start = indices[base + corner];
+          int end = indices[base + (corner + 1) % INDICES_PER_TRIANGLE];
+          double ex = positions[end * 3] - positions[start * 3];
+          double ey = positions[end * 3 + 1] - positions[start * 3 + 1];
+          double ez = positions[end * 3 + 2] - positions[start * 3 + 2];
+          double length = Math.sqrt(ex * ex + ey * ey + ez * ez);
+          if (length == 0.0) {
+            continue;
+          }
+          // Unit vector in the triangle's plane, at right angles to the edge
+          double px = (ey * normal[2] - ez * normal[1]) / length;
+          double py = (ez * normal[0] - ex * normal[2]) / length;
+          double pz = (ex * normal[1] - ey * normal[0]) / length;
+          double d = -(px * positions[start * 3] + py * positions[start * 3 + 1]
+              + pz * positions[start * 3 + 2]);
+          double weight = BORDER_WEIGHT * length * length;
+          addPlane(positionOf[start], px, py, pz, d, weight);
+          addPlane(positionOf[end], px, py, pz, d, weight);
+          borderPosition[positionOf[start]] = true;
+          borderPosition[positionOf[end]] = true;
+        }
+      }
+    }
+
+    Long edgeKey(int triangle, int corner) {
+      int base = triangle * INDICES_PER_TRIANGLE;
+      long start = positionOf[indices[base + corner]];
+      long end = positionOf[indices[base + (corner + 1) % INDICES_PER_TRIANGLE]];
+      return Math.min(start, end) << 32 | Math.max(start, end);
+    }
+
+    void run(int targetTriangles) {
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        queueCollapsesAround(vertex, false);
+      }
+      while (liveTriangles > targetTriangles && !queue.isEmpty()) {
+        Collapse collapse = queue.poll();
+        if (removed[collapse.from] || removed[collapse.to]
+            || version[collapse.from] != collapse.fromVersion
+            || version[collapse.to] != collapse.toVersion
+            || !canCollapse(collapse.from, collapse.to)) {
+          continue;
+        }
+        collapse(collapse.from, collapse.to);
+        queueCollapsesAround(collapse.to, true);
+      }
+    }
+
+    /**
+     * Queues collapses of the edges around vertex, in both directions. Without allNeighbours
+     * only edges to neighbours numbered above vertex are queued, so a pass over all vertices
+     * queues each edge once.
+     */
+    void queueCollapsesAround(int vertex, boolean allNeighbours) {
+      queuedStamp++;
+      for (int entry = 0; entry < trianglesOfCount[vertex]; entry++) {
+        int triangle = trianglesOf[vertex][entry];
+        if (!triangleAlive[triangle]) {
+          continue;
+        }
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int neighbour = indices[triangle * INDICES_PER_TRIANGLE + corner];
+          if (neighbour != vertex && queuedMark[neighbour] != queuedStamp
+              && (allNeighbours || neighbour > vertex)) {
+            queuedMark[neighbour] = queuedStamp;
+            queueCollapse(vertex, neighbour);
+            queueCollapse(neighbour, vertex);
+          }
+        }
+      }
+    }
+
+    void queueCollapse(int from, int to) {
+      if (locked[from] || positionOf[from] == positionOf[to]) {
+        return;
+      }
+      queue.add(new Collapse(cost(from, to), from, to, version[from], version[to]));
+    }
+
+    /**
+     * Returns the error of the merged quadrics at the kept vertex.
+     */
+    double cost(int from, int to) {
+      double x = positions[to * 3];
+      double y = positions[to * 3 + 1];
+      double z = positions[to * 3 + 2];
+      double cost = evaluatePlanes(positionOf[from], x, y, z)
+          + evaluatePlanes(positionOf[to], x, y, z);
+      for (int channel = 0; channel < channels; channel++) {
+        double attribute = attributes[to * channels + channel];
+        cost += evaluateAttributeField(from, channel, x, y, z, attribute)
+            + evaluateAttributeField(to, channel, x, y, z, attribute);
+      }
+      return cost;
+    }
+
+    boolean canCollapse(int from, int to) {
+      // A border vertex may only slide along the border
+      if (borderPosition[positionOf[from]] && !isBorderEdge(from, to)) {
+        return false;
+      }
+
+      stamp++;
+      int sharedTriangles = 0;
+      double[] before = normalBefore;
+      double[] after = normalAfter;
+      for (int entry = 0; entry < trianglesOfCount[from]; entry++) {
+        int triangle = trianglesOf[from][entry];
+        if (!triangleAlive[triangle]) {
+          continue;
+        }
+        int base = triangle * INDICES_PER_TRIANGLE;
+        int a = indices[base];
+        int b = indices[base + 1];
+        int c = indices[base + 2];
+        if (a == to || b == to || c == to) {
+          sharedTriangles++;
+          int opposite = a != from && a != to ? a : b != from && b != to ? b : c;
+          neighbourMark[positionOf[opposite]] = stamp;
+          continue;
+        }
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int vertex = indices[base + corner];
+          // The other side of a seam at the kept vertex would be torn from it
+          if (positionOf[vertex] == positionOf[to]) {
+            return false;
+          }
+          if (vertex != from) {
+            neighbourMark[positionOf[vertex]] = stamp;
+          }
+        }
+        if (normal(a, b, c, before) == 0.0) {
+          continue;
+        }
+        double doubleArea = normal(a == from ? to : a, b == from ? to : b, c == from ? to : c,
+            after);
+        if (doubleArea == 0.0 || before[0] * after[0] + before[1] * after[1]
+            + before[2] * after[2] < MIN_NORMAL_COSINE) {
+          return false;
+        }
+      }
+      if (sharedTriangles == 0) {
+        return false;
+      }
+
+      // Link condition: the ends may only share the neighbours opposite the edge
+      int sharedNeighbours = 0;
+      for (int entry = 0; entry < trianglesOfCount[to]; entry++) {
+        int triangle = trianglesOf[to][entry];
+        if (!triangleAlive[triangle]) {
+          continue;
+        }
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          int position = positionOf[indices[triangle * INDICES_PER_TRIANGLE + corner]];
+          if (neighbourMark[position] == stamp && sharedMark[position] != stamp) {
+            sharedMark[position] = stamp;
+            sharedNeighbours++;
+          }
+        }
+      }
+      return sharedNeighbours <= sharedTriangles;
+    }
+
+    boolean isBorderEdge(int from, int to) {
+      int shared = 0;
+      for (int entry = 0; entry < trianglesOfCount[from]; entry++) {
+        int triangle = trianglesOf[from][entry];
+        int base = triangle * INDICES_PER_TRIANGLE;
+        if (triangleAlive[triangle]
+            && (indices[base] == to || indices[base + 1] == to || indices[base + 2] == to)) {
+          shared++;
+        }
+      }
+      return shared == 1;
+    }
+
+    void collapse(int from, int to) {
+      int[] merged = new int[trianglesOfCount[from] + trianglesOfCount[to]];
+      int mergedCount = 0;
+      for (int entry = 0; entry < trianglesOfCount[to]; entry++) {
+        int triangle = trianglesOf[to][entry];
+        if (triangleAlive[triangle]) {
+          merged[mergedCount++] = triangle;
+        }
+      }
+      for (int entry = 0; entry < trianglesOfCount[from]; entry++) {
+        int triangle = trianglesOf[from][entry];
+        if (!triangleAlive[triangle]) {
+          continue;
+        }
+        int base = triangle * INDICES_PER_TRIANGLE;
+        boolean hasTo = false;
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          hasTo |= indices[base + corner] == to;
+        }
+        if (hasTo) {
+          triangleAlive[triangle] = false;
+          liveTriangles--;
+          continue;
+        }
+        for (int corner = 0; corner < INDICES_PER_TRIANGLE; corner++) {
+          if (indices[base + corner] == from) {
+            indices[base + corner] = to;
+          }
+        }
+        merged[mergedCount++] = triangle;
+      }
+      trianglesOf[to] = merged;
+      trianglesOfCount[to] = mergedCount;
+      trianglesOfCount[from] = 0;
+
+      int fromQuadric = positionOf[from] * POSITION_QUADRIC_SIZE;
+      int toQuadric = positionOf[to] * POSITION_QUADRIC_SIZE;
+      for (int term = 0; term < POSITION_QUADRIC_SIZE; term++) {
+        positionQuadrics[toQuadric + term] += positionQuadrics[fromQuadric + term];
+      }
+      int attributeTerms = channels * ATTRIBUTE_QUADRIC_SIZE;
+      for (int term = 0; term < attributeTerms; term++) {
+        attributeQuadrics[to * attributeTerms + term] +=
+            attributeQuadrics[from * attributeTerms + term];
+      }
+      removed[from] = true;
+      version[to]++;
+    }
+
+    MeshData build() {
+      int[] newVertexOf = new int[vertexCount];
+      Arrays.fill(newVertexOf, -1);
+      int[] oldVertexOf = new int[vertexCount];
+      int newVertexCount = 0;
+      for (int triangle = 0; triangle < triangleCount; triangle++) {
+        for (int corner = 0; triangleAlive[triangle] && corner < INDICES_PER_TRIANGLE; corner++) {
+          newVertexOf[indices[triangle * INDICES_PER_TRIANGLE + corner]] = 0;
+        }
+      }
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        if (newVertexOf[vertex] == 0) {
+          newVertexOf[vertex] = newVertexCount;
+          oldVertexOf[newVertexCount++] = vertex;
+        }
+      }
+
+      int[] newIndices = new int[liveTriangles * INDICES_PER_TRIANGLE];
+      int[] liveBefore = new int[triangleCount + 1];
+      int[] oldTriangleOf = new int[liveTriangles];
+      int next = 0;
+      for (int triangle = 0; triangle < triangleCount; triangle++) {
+        liveBefore[triangle + 1] = liveBefore[triangle] + (triangleAlive[triangle] ? 1 : 0);
+        if (triangleAlive[triangle]) {
+          oldTriangleOf[liveBefore[triangle]] = triangle;
+        }
+        for (int corner = 0; triangleAlive[triangle] && corner < INDICES_PER_TRIANGLE; corner++) {
+          newIndices[next++] = newVertexOf[indices[triangle * INDICES_PER_TRIANGLE + corner]];
+        }
+      }
+
+      List<MaterialRange> ranges = Lists.newArrayList();
+      for (MaterialRange range : mesh.getMaterialRanges()) {
+        int firstTriangle = range.getFirstIndex() / INDICES_PER_TRIANGLE;
+        int endTriangle = (range.getFirstIndex() + range.getIndexCount()) / INDICES_PER_TRIANGLE;
+        ranges.add(new MaterialRange(range.getMaterialName(),
+            liveBefore[firstTriangle] * INDICES_PER_TRIANGLE,
+            (liveBefore[endTriangle] - liveBefore[firstTriangle]) * INDICES_PER_TRIANGLE));
+      }
+
+      return new MeshData.Builder()
+          .setName(mesh.getName())
+          .setVertices(MeshData.gather(mesh.getVerticies(), VERTEX_COMPONENTS, oldVertexOf,
+              newVertexCount))
+          .setNormals(MeshData.gather(mesh.getNormals(), NORMAL_COMPONENTS, oldVertexOf,
+              newVertexCount))
+          .setTextureCoords(MeshData.gather(mesh.getTextureCoords(), TEXTURE_COORD_COMPONENTS,
+              oldVertexOf, newVertexCount))
+          .setVertexIndices(IntBuffer.wrap(newIndices))
+          .setUnifiedIndices(true)
+          .setMaterialRanges(ranges)
+          .setSmoothingGroups(MeshData.gather(mesh.getSmoothingGroups(), 1, oldTriangleOf,
+              liveTriangles))
+          .build();
+    }
+
+    /**
+     * Writes the unit normal of triangle (a, b, c) and returns twice its area, or 0 without
+     * touching the normal if it has none.
+     */
+    double normal(int a, int b, int c, double[] out) {
+      double abx = positions[b * 3] - positions[a * 3];
+      double aby = positions[b * 3 + 1] - positions[a * 3 + 1];
+      double abz = positions[b * 3 + 2] - positions[a * 3 + 2];
+      double acx = positions[c * 3] - positions[a * 3];
+      double acy = positions[c * 3 + 1] - positions[a * 3 + 1];
+      double acz = positions[c * 3 + 2] - positions[a * 3 + 2];
+      double nx = aby * acz - abz * acy;
+      double ny = abz * acx - abx * acz;
+      double nz = abx * acy - aby * acx;
+      double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+      if (length == 0.0) {
+        return 0.0;
+      }
+      out[0] = nx / length;
+      out[1] = ny / length;
+      out[2] = nz / length;
+      return length;
+    }
+
+    /**
+     * Finds the gradient in the plane of triangle (a, b, c) of the linear field that takes the
+     * channel's value at each corner, returning false if the triangle is too thin to have one.
+     */
+    boolean attributeGradient(int a, int b, int c, int channel, double[] out) {
+      double[] e1 = edge1;
+      double[] e2 = edge2;
+      for (int axis = 0; axis < 3; axis++) {
+        e1[axis] = positions[b * 3 + axis] - positions[a * 3 + axis];
+        e2[axis] = positions[c * 3 + axis] - positions[a * 3 + axis];
+      }
+      double d11 = e1[0] * e1[0] + e1[1] * e1[1] + e1[2] * e1[2];
+      double d12 = e1[0] * e2[0] + e1[1] * e2[1] + e1[2] * e2[2];
+      double d22 = e2[0] * e2[0] + e2[1] * e2[1] + e2[2] * e2[2];
+      double determinant = d11 * d22 - d12 * d12;
+      if (determinant <= 1e-12 * d11 * d22) {
+        return false;
+      }
+      double base = attributes[a * channels + channel];
+      double delta1 = attributes[b * channels + channel] - base;
+      double delta2 = attributes[c * channels + channel] - base;
+      double alpha = (delta1 * d22 - delta2 * d12) / determinant;
+      double beta = (delta2 * d11 - delta1 * d12) / determinant;
+      for (int axis = 0; axis < 3; axis++) {
+        out[axis] = alpha * e1[axis] + beta * e2[axis];
+      }
+      return true;
+    }
+
+    double dot(double[] vector, int vertex) {
+      return vector[0] * positions[vertex * 3] + vector[1] * positions[vertex * 3 + 1]
+          + vector[2] * positions[vertex * 3 + 2];
+    }
+
+    void addPlane(int position, double a, double b, double c, double d, double weight) {
+      int base = position * POSITION_QUADRIC_SIZE;
+      positionQuadrics[base] += weight * a * a;
+      positionQuadrics[base + 1] += weight * a * b;
+      positionQuadrics[base + 2] += weight * a * c;
+      positionQuadrics[base + 3] += weight * a * d;
+      positionQuadrics[base + 4] += weight * b * b;
+      positionQuadrics[base + 5] += weight * b * c;
+      positionQuadrics[base + 6] += weight * b * d;
+      positionQuadrics[base + 7] += weight * c * c;
+      positionQuadrics[base + 8] += weight * c * d;
+      positionQuadrics[base + 9] += weight * d * d;
+    }
+
+    double evaluatePlanes(int position, double x, double y, double z) {
+      int base = position * POSITION_QUADRIC_SIZE;
+      double[] q = positionQuadrics;
+      return q[base] * x * x + 2 * q[base + 1] * x * y + 2 * q[base + 2] * x * z
+          + 2 * q[base + 3] * x + q[base + 4] * y * y + 2 * q[base + 5] * y * z
+          + 2 * q[base + 6] * y + q[base + 7] * z * z + 2 * q[base + 8] * z + q[base + 9];
+    }
+
+    /**
+     * Adds the squared error (gradient . p + offset - attribute)^2 to a vertex's quadric for the
+     * channel.
+     */
+    void addAttributeField(int vertex, int channel, double[] gradient, double offset,
+        double weight) {
+      double[] terms = {gradient[0], gradient[1], gradient[2], -1.0, offset};
+      int base = (vertex * channels + channel) * ATTRIBUTE_QUADRIC_SIZE;
+      for (int row = 0; row < ATTRIBUTE_QUADRIC_DIMENSION; row++) {
+        for (int column = row; column < ATTRIBUTE_QUADRIC_DIMENSION; column++) {
+          attributeQuadrics[base++] += weight * terms[row] * terms[column];
+        }
+      }
+    }
+
+    double evaluateAttributeField(int vertex, int channel, double x, double y, double z,
+        double attribute) {
+      double[] point = fieldPoint;
+      point[0] = x;
+      point[1] = y;
+      point[2] = z;
+      point[3] = attribute;
+      point[4] = 1.0;
+      int base = (vertex * channels + channel) * ATTRIBUTE_QUADRIC_SIZE;
+      double error = 0.0;
+      for (int row = 0; row < ATTRIBUTE_QUADRIC_DIMENSION; row++) {
+        for (int column = row; column < ATTRIBUTE_QUADRIC_DIMENSION; column++) {
+          double term = attributeQuadrics[base++] * point[row] * point[column];
+          error += row == column ? term : 2 * term;
+        }
+      }
+      return error;
+    }
+  }
+
+  /**
+   * Positions compared by value, with 0 and -0 alike.
+   */
+  private static class PositionKey {
+    private final float x;
+    private final float y;
+    private final float z;
+
+    PositionKey(float x, float y, float z) {
+      this.x = x + 0f;
+      this.y = y + 0f;
+      this.z = z + 0f;
+    }
+
+    @Override
+    public int hashCode() {
+      return Float.floatToIntBits(x) * 73856093 ^ Float.floatToIntBits(y) * 19349663
+          ^ Float.floatToIntBits(z) * 83492791;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof PositionKey)) {
+        return false;
+      }
+      PositionKey other = (PositionKey) obj;
+      return Float.compare(x, other.x) == 0 && Float.compare(y, other.y) == 0
+          && Float.compare(z, other.z) == 0;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.et.util.primitives;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A growable list of floats held in a flat array, for attribute streams that would otherwise be
+ * built from objects per element. Values compare as {@link Float#equals(Object)} does, so NaNs
+ * equal each other and 0 differs from -0, and the list hashes and prints like a
+ * {@link java.util.List} of the boxed values.
+ */
+public class FloatArrayList {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int BYTES_PER_FLOAT = 4;
+
+  private float[] elements;
+  private int size;
+
+  public FloatArrayList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public FloatArrayList(int initialCapacity) {
+    Preconditions.checkArgument(initialCapacity >= 0, "Negative capacity: %s", initialCapacity);
+    elements = new float[initialCapacity];
+  }
+
+  /**
+   * Returns a list holding a copy of the given values.
+   */
+  public static FloatArrayList of(float... values) {
+    FloatArrayList list = new FloatArrayList(values.length);
+    list.addAll(values, 0, values.length);
+    return list;
+  }
+
+  public void add(float value) {
+    ensureCapacity(size + 1);
+    elements[size++] = value;
+  }
+
+  /**
+   * Appends length values of the given array starting at offset.
+   */
+  public void addAll(float[] values, int offset, int length) {
+    Preconditions.checkPositionIndexes(offset, offset + length, values.length);
+    ensureCapacity(size + length);
+    System.arraycopy(values, offset, elements, size, length);
+    size += length;
+  }
+
+  public float get(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return elements[index];
+  }
+
+  public void set(int index, float value) {
+    Preconditions.checkElementIndex(index, size);
+    elements[index] = value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Empties the list, keeping its capacity for reuse.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Grows the backing array so it holds at least the given number of values without growing
+   * again.
+   */
+  public void ensureCapacity(int capacity) {
+    if (elements.length < capacity) {
+      elements = Arrays.copyOf(elements, Math.max(capacity, elements.length * 2));
+    }
+  }
+
+  /**
+   * Returns a copy of the values as an array sized to fit them.
+   */
+  public float[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  /**
+   * Copies the values into a new direct {@link ByteOrder#nativeOrder()} buffer, ready to hand to
+   * GL, at position 0 with a capacity equal to the number of values.
+   */
+  public FloatBuffer toBuffer() {
+    FloatBuffer buffer = ByteBuffer.allocateDirect(size * BYTES_PER_FLOAT)
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+    buffer.put(elements, 0, size);
+    buffer.rewind();
+    return buffer;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(size * 8 + 2).append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(elements[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  @Override
+  public int hashCode() {
+    // Matches List.hashCode() of the boxed values
+    int hash = 1;
+    for (int i = 0; i < size; i++) {
+      hash = 31 * hash + Float.floatToIntBits(elements[i]);
+    }
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof FloatArrayList)) {
+      return false;
+    }
+
+    FloatArrayList other = (FloatArrayList) obj;
+    if (size != other.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (Float.floatToIntBits(elements[i]) != Float.floatToIntBits(other.elements[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,200 @@
+package com.et.util.primitives;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A growable list of ints held in a flat array, for index streams that would otherwise be built
+ * as a {@link List} of boxed {@link Integer}s. Equal to another IntArrayList holding the same
+ * values in the same order, and hashes and prints like a {@link List} of those values.
+ */
+public class IntArrayList {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int BYTES_PER_INT = 4;
+
+  private int[] elements;
+  private int size;
+
+  public IntArrayList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public IntArrayList(int initialCapacity) {
+    Preconditions.checkArgument(initialCapacity >= 0, "Negative capacity: %s", initialCapacity);
+    elements = new int[initialCapacity];
+  }
+
+  /**
+   * Returns a list holding a copy of the given values.
+   */
+  public static IntArrayList of(int... values) {
+    IntArrayList list = new IntArrayList(values.length);
+    list.addAll(values, 0, values.length);
+    return list;
+  }
+
+  /**
+   * Returns a list holding the given values, unboxed, or null if the collection is null.
+   */
+  public static IntArrayList copyOf(Collection<Integer> values) {
+    if (values == null) {
+      return null;
+    }
+    IntArrayList list = new IntArrayList(values.size());
+    for (Integer value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  public void add(int value) {
+    ensureCapacity(size + 1);
+    elements[size++] = value;
+  }
+
+  /**
+   * Appends length values of the given array starting at offset.
+   */
+  public void addAll(int[] values, int offset, int length) {
+    Preconditions.checkPositionIndexes(offset, offset + length, values.length);
+    ensureCapacity(size + length);
+    System.arraycopy(values, offset, elements, size, length);
+    size += length;
+  }
+
+  public int get(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return elements[index];
+  }
+
+  public void set(int index, int value) {
+    Preconditions.checkElementIndex(index, size);
+    elements[index] = value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Empties the list, keeping its capacity for reuse.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Grows the backing array so it holds at least the given number of values without growing
+   * again.
+   */
+  public void ensureCapacity(int capacity) {
+    if (elements.length < capacity) {
+      elements = Arrays.copyOf(elements, Math.max(capacity, elements.length * 2));
+    }
+  }
+
+  /**
+   * Returns a copy of the values as an array sized to fit them.
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  /**
+   * Copies the values into a new direct {@link ByteOrder#nativeOrder()} buffer, ready to hand to
+   * GL, at position 0 with a capacity equal to the number of values.
+   */
+  public IntBuffer toBuffer() {
+    IntBuffer buffer = ByteBuffer.allocateDirect(size * BYTES_PER_INT)
+        .order(ByteOrder.nativeOrder())
+        .asIntBuffer();
+    buffer.put(elements, 0, size);
+    buffer.rewind();
+    return buffer;
+  }
+
+  /**
+   * Returns a fixed-size {@link List} view of the values that boxes on access, for callers that
+   * still need one. Writes through the view change this list.
+   */
+  public List<Integer> asList() {
+    return new ListView();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(size * 4 + 2).append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(elements[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  @Override
+  public int hashCode() {
+    // Matches List.hashCode() of the boxed values
+    int hash = 1;
+    for (int i = 0; i < size; i++) {
+      hash = 31 * hash + elements[i];
+    }
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null || !(obj instanceof IntArrayList)) {
+      return false;
+    }
+
+    IntArrayList other = (IntArrayList) obj;
+    if (size != other.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (elements[i] != other.elements[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private class ListView extends AbstractList<Integer> implements RandomAccess {
+
+    @Override
+    public Integer get(int index) {
+      return IntArrayList.this.get(index);
+    }
+
+    @Override
+    public Integer set(int index, Integer value) {
+      int previous = IntArrayList.this.get(index);
+      IntArrayList.this.set(index, value);
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
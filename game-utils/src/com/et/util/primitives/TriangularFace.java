@@ -6,45 +6,98 @@ import com.google.common.base.Objects;
 
 /**
  * A data object defininf a triangular face. This has three indices into a vertex buffer and
- * three optional indices into a texture and normal buffer.
+ * three optional indices into a texture and normal buffer. Indices are held unboxed in
+ * {@link IntArrayList}s; the {@link List} accessors copy in and view out for older callers.
  */
 public class TriangularFace {
 
-  List<Integer> vertexIndices;
-  List<Integer> normalIndices;
-  List<Integer> textureIndices;
+  IntArrayList vertexIndices;
+  IntArrayList normalIndices;
+  IntArrayList textureIndices;
   
   public TriangularFace(List<Integer> vertexIndices, List<Integer> normalIndices, 
       List<Integer> textureIndices) {
+    this(IntArrayList.copyOf(vertexIndices), IntArrayList.copyOf(normalIndices),
+        IntArrayList.copyOf(textureIndices));
+  }
+  
+  public TriangularFace(IntArrayList vertexIndices, IntArrayList normalIndices,
+      IntArrayList textureIndices) {
     this.vertexIndices = vertexIndices;
     this.normalIndices = normalIndices;
     this.textureIndices = textureIndices;
   }
 
   public List<Integer> getVertexIndices() {
-    return vertexIndices;
+    return asList(vertexIndices);
   }
 
   public void setVertexIndices(List<Integer> vertexIndices) {
+    this.vertexIndices = IntArrayList.copyOf(vertexIndices);
+  }
+
+  public void setVertexIndices(IntArrayList vertexIndices) {
     this.vertexIndices = vertexIndices;
   }
 
   public List<Integer> getNormalIndices() {
-    return normalIndices;
+    return asList(normalIndices);
   }
 
   public void setNormalIndices(List<Integer> normalIndices) {
+    this.normalIndices = IntArrayList.copyOf(normalIndices);
+  }
+
+  public void setNormalIndices(IntArrayList normalIndices) {
     this.normalIndices = normalIndices;
   }
 
   public List<Integer> getTextureIndices() {
-    return textureIndices;
+    return asList(textureIndices);
   }
 
   public void setTextureIndices(List<Integer> textureIndices) {
+    this.textureIndices = IntArrayList.copyOf(textureIndices);
+  }
+
+  public void setTextureIndices(IntArrayList textureIndices) {
     this.textureIndices = textureIndices;
   }
   
+  public IntArrayList getVertexIndexList() {
+    return vertexIndices;
+  }
+  
+  public IntArrayList getNormalIndexList() {
+    return normalIndices;
+  }
+  
+  public IntArrayList getTextureIndexList() {
+    return textureIndices;
+  }
+  
+  /**
+   * Returns the vertex index of the given corner without boxing it.
+   */
+  public int getVertexIndex(int corner) {
+    return vertexIndices.get(corner);
+  }
+  
+  /**
+   * Returns the normal index of the given corner. Only valid if {@link #hasNormals()}.
+   */
+  public int getNormalIndex(int corner) {
+    return normalIndices.get(corner);
+  }
+  
+  /**
+   * Returns the texture coordinate index of the given corner. Only valid if
+   * {@link #hasTextureCoords()}.
+   */
+  public int getTextureIndex(int corner) {
+    return textureIndices.get(corner);
+  }
+  
   public boolean hasNormals() {
     return normalIndices != null && !normalIndices.isEmpty();
   }
@@ -56,9 +109,9 @@ public class TriangularFace {
   @Override
   public String toString() {
     return Objects.toStringHelper(getClass())
-        .add("vertexIndices", vertexIndices.toString())
-        .add("normalIndices", normalIndices.toString())
-        .add("textureIndices", textureIndices.toString())
+        .add("vertexIndices", vertexIndices)
+        .add("normalIndices", normalIndices)
+        .add("textureIndices", textureIndices)
         .toString();
   }
   
@@ -83,5 +136,7 @@ public class TriangularFace {
         Objects.equal(textureIndices, other.textureIndices);
   }
   
-  
+  private static List<Integer> asList(IntArrayList indices) {
+    return indices == null ? null : indices.asList();
+  }
 }
@@ -0,0 +1,77 @@
+package com.et.util.concurrent;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link MoreFutures}.
+ */
+public class MoreFuturesTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsInOrder() {
+    List<Future<Integer>> futures = Lists.newArrayList();
+    for (int task = 0; task < 10; task++) {
+      final int value = task;
+      futures.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return value;
+        }
+      }));
+    }
+    assertEquals(ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), MoreFutures.getAll(futures));
+  }
+
+  @Test
+  public void testFailureCancelsTheRest() {
+    final CountDownLatch never = new CountDownLatch(1);
+    List<Future<Void>> futures = Lists.newArrayList();
+    futures.add(executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() {
+        throw new IllegalStateException("failed");
+      }
+    }));
+    futures.add(executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws InterruptedException {
+        never.await();
+        return null;
+      }
+    }));
+
+    try {
+      MoreFutures.getAll(futures);
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("failed", e.getMessage());
+    }
+    assertTrue(futures.get(1).isCancelled());
+  }
+}
@@ -0,0 +1,178 @@
+package com.et.util.mesh.batching;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link StaticMeshBatcher}.
+ */
+public class StaticMeshBatcherTest {
+
+  private static final float DELTA = 1e-5f;
+
+  private StaticMeshBatcher batcher;
+
+  @Before
+  public void setUp() {
+    batcher = new StaticMeshBatcher();
+  }
+
+  @Test
+  public void testConcatenatesAndRebasesIndices() {
+    MeshData first = triangle(null);
+    MeshData second = triangle(null);
+
+    List<MeshBatch> batches = batcher.batch(Lists.newArrayList(first, second));
+    assertEquals(1, batches.size());
+    MeshData batched = batches.get(0).getMeshData();
+    assertTrue(batched.hasUnifiedIndices());
+    assertEquals(IntBuffer.wrap(new int[] {0, 1, 2, 3, 4, 5}), batched.getVertexIndices());
+    assertEquals(24, batched.getVerticies().capacity());
+    assertEquals(12, batched.getTextureCoords().capacity());
+    assertTrue(batched.getMaterialRanges().isEmpty());
+    assertEquals(Lists.newArrayList(new BatchRange(0, null, 0, 3), new BatchRange(1, null, 3, 3)),
+        batches.get(0).getRanges());
+  }
+
+  @Test
+  public void testBakesTransforms() {
+    // Translate by (10, 0, 0) after scaling x by 2
+    float[] transform = identity();
+    transform[0] = 2f;
+    transform[12] = 10f;
+
+    MeshData batched = batcher.batch(Lists.newArrayList(triangle(null)),
+        Lists.<float[]>newArrayList(transform)).get(0).getMeshData();
+    float[] vertices = new float[12];
+    batched.getVerticies().get(vertices);
+    assertArrayEquals(new float[] {10, 0, 0, 1, 12, 0, 0, 1, 10, 1, 0, 1}, vertices, DELTA);
+
+    // Normals stay unit length and perpendicular under the non-uniform scale, so (1, 1, 0) turns
+    // into (1, 2, 0) normalized
+    float[] normals = new float[9];
+    batched.getNormals().get(normals);
+    float root = (float) Math.sqrt(5);
+    assertArrayEquals(new float[] {0, 0, 1, 0, 0, 1, 1 / root, 2 / root, 0}, normals, DELTA);
+  }
+
+  @Test
+  public void testMirroringReversesWinding() {
+    float[] mirror = identity();
+    mirror[0] = -1f;
+
+    MeshData batched = batcher.batch(Lists.newArrayList(triangle(null)),
+        Lists.<float[]>newArrayList(mirror)).get(0).getMeshData();
+    assertEquals(IntBuffer.wrap(new int[] {0, 2, 1}), batched.getVertexIndices());
+    assertEquals(1f, batched.getNormals().get(2), DELTA);
+  }
+
+  @Test
+  public void testGroupsByMaterial() {
+    MeshData stone = triangle(Lists.newArrayList(new MaterialRange("stone", 0, 3)));
+    MeshData wood = triangle(Lists.newArrayList(new MaterialRange("wood", 0, 3)));
+
+    MeshBatch batch = batcher.batch(Lists.newArrayList(stone, wood, stone)).get(0);
+    assertEquals(Lists.newArrayList(new MaterialRange("stone", 0, 6),
+        new MaterialRange("wood", 6, 3)), batch.getMeshData().getMaterialRanges());
+    assertEquals(Lists.newArrayList(new BatchRange(0, "stone", 0, 3),
+        new BatchRange(2, "stone", 3, 3), new BatchRange(1, "wood", 6, 3)), batch.getRanges());
+    assertEquals(IntBuffer.wrap(new int[] {0, 1, 2, 6, 7, 8, 3, 4, 5}),
+        batch.getMeshData().getVertexIndices());
+  }
+
+  @Test
+  public void testSplitsAtVertexLimit() {
+    batcher.setMaxVerticesPerBatch(7);
+    List<MeshBatch> batches = batcher.batch(Lists.newArrayList(triangle(null), triangle(null),
+        triangle(null), triangle(null), triangle(null)));
+
+    assertEquals(3, batches.size());
+    assertEquals("batch0", batches.get(0).getMeshData().getName());
+    assertEquals(Lists.newArrayList(new BatchRange(2, null, 0, 3), new BatchRange(3, null, 3, 3)),
+        batches.get(1).getRanges());
+    for (MeshBatch batch : batches) {
+      IntBuffer indices = batch.getMeshData().getVertexIndices();
+      for (int index = 0; index < indices.capacity(); index++) {
+        assertTrue(indices.get(index) < 7);
+      }
+    }
+  }
+
+  @Test
+  public void testOversizedMeshGetsOwnBatch() {
+    batcher.setMaxVerticesPerBatch(2);
+    assertEquals(2, batcher.batch(Lists.newArrayList(triangle(null), triangle(null))).size());
+  }
+
+  @Test
+  public void testMissingStreamsAreZeroFilled() {
+    MeshData bare = new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(new float[] {0, 0, 0, 1, 1, 0, 0, 1, 0, 1, 0, 1}))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, 2}))
+        .setUnifiedIndices(true)
+        .build();
+
+    MeshData batched = batcher.batch(Lists.newArrayList(triangle(null), bare)).get(0)
+        .getMeshData();
+    assertEquals(18, batched.getNormals().capacity());
+    assertEquals(0f, batched.getNormals().get(17), 0f);
+  }
+
+  @Test
+  public void testRenumbersSmoothingGroups() {
+    // The same group in two meshes stays apart, and a mesh without groups gets one of its own
+    MeshData grouped = new MeshData.Builder()
+        .setVertices(triangle(null).getVerticies())
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, 2, 2, 1, 0, 0, 2, 1}))
+        .setUnifiedIndices(true)
+        .setSmoothingGroups(IntBuffer.wrap(new int[] {5, 0, 7}))
+        .build();
+    MeshData batched = batcher.batch(Lists.newArrayList(grouped, triangle(null), grouped))
+        .get(0).getMeshData();
+    assertEquals(IntBuffer.wrap(new int[] {1, 0, 2, 3, 4, 0, 5}), batched.getSmoothingGroups());
+
+    MeshData ungrouped = batcher.batch(Lists.newArrayList(triangle(null), triangle(null)))
+        .get(0).getMeshData();
+    assertFalse(MeshData.hasStream(ungrouped.getSmoothingGroups()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsSeparateIndices() {
+    batcher.batch(Lists.newArrayList(new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(new float[4]))
+        .setVertexIndices(IntBuffer.wrap(new int[0]))
+        .build()));
+  }
+
+  /**
+   * A right triangle in the xy plane with a normal on the z axis, except the last corner's, which
+   * points along (1, 1, 0) normalized.
+   */
+  private MeshData triangle(List<MaterialRange> materialRanges) {
+    float root = (float) Math.sqrt(0.5);
+    return new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(new float[] {0, 0, 0, 1, 1, 0, 0, 1, 0, 1, 0, 1}))
+        .setNormals(FloatBuffer.wrap(new float[] {0, 0, 1, 0, 0, 1, root, root, 0}))
+        .setTextureCoords(FloatBuffer.wrap(new float[] {0, 0, 1, 0, 0, 1}))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, 2}))
+        .setUnifiedIndices(true)
+        .setMaterialRanges(materialRanges)
+        .build();
+  }
+
+  private float[] identity() {
+    float[] matrix = new float[16];
+    matrix[0] = matrix[5] = matrix[10] = matrix[15] = 1f;
+    return matrix;
+  }
+}
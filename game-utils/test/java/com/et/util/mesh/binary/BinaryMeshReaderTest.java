@@ -0,0 +1,261 @@
+package com.et.util.mesh.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.Bounds;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.et.util.mesh.fileparser.obj.ObjFileMeshObjectParser;
+import com.et.util.mesh.fileparser.obj.ResourceObjFile;
+import com.et.util.mesh.normals.NormalGenerator;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests for {@link BinaryMeshReader}, {@link BinaryMeshWriter}, and
+ * {@link ObjToBinaryMeshConverter}.
+ */
+public class BinaryMeshReaderTest {
+  
+  private static final String OBJ_FILE = "v 1 2 3\nv 4 5 6\nv 7 8 9\nv 1 1 1\nvn 0 1 0\nvt 0 1\n"
+      + "o tri\nf 1/1/1 2/1/1 3/1/1\no quad\nf 1 2 3\nf 3 4 1\no third\nf 4//1 3//1 2//1\n";
+  
+  private Injector injector;
+  private ObjFileMeshObjectParser parser;
+  private BinaryMeshReader reader;
+  private BinaryMeshWriter writer;
+  
+  @Before
+  public void setUp() {
+    injector = Guice.createInjector(new MeshFileParserModule());
+    parser = injector.getInstance(ObjFileMeshObjectParser.class);
+    reader = new BinaryMeshReader();
+    writer = new BinaryMeshWriter();
+  }
+  
+  @Test
+  public void testRoundTrip() {
+    MeshObject meshObject = parseObj();
+    assertEquals(meshObject, reader.read(writer.toBytes(meshObject)));
+  }
+  
+  @Test
+  public void testRoundTripUnified() {
+    parser.setUnifiedIndices(true);
+    MeshObject meshObject = parseObj();
+    MeshObject read = reader.read(writer.toBytes(meshObject));
+    assertEquals(meshObject, read);
+    assertTrue(read.getMesh("tri").hasUnifiedIndices());
+  }
+  
+  @Test
+  public void testRoundTripMaterials() {
+    String file = "mtllib scene.mtl\nv 1 2 3\nv 4 5 6\nv 7 8 9\nf 1 2 3\nusemtl red\nf 3 2 1\n"
+        + "usemtl blue\nf 2 3 1\no tri\nusemtl red\nf 1 2 3\n";
+    MeshObject meshObject = parser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(file.getBytes())));
+    MeshObject read = reader.read(writer.toBytes(meshObject));
+    
+    assertEquals(meshObject, read);
+    assertEquals(3, read.getMesh("default").getMaterialRanges().size());
+    assertNull(read.getMesh("default").getMaterialRanges().get(0).getMaterialName());
+    assertEquals("scene.mtl", read.getMaterialLibraries().get(0));
+  }
+  
+  @Test
+  public void testRoundTripLods() {
+    MeshObject meshObject = parseObj();
+    // Levels keep their own names and need not share their owner's
+    meshObject.setLods("quad", Lists.newArrayList(meshObject.getMesh("third"),
+        meshObject.getMesh("tri")));
+    meshObject.setLods("tri", Lists.newArrayList(meshObject.getMesh("third")));
+    
+    MeshObject read = reader.read(writer.toBytes(meshObject));
+    assertEquals(meshObject, read);
+    assertEquals(meshObject.getAllMeshes().size(), read.getAllMeshes().size());
+    assertEquals(meshObject.getSizeInBytes(), read.getSizeInBytes());
+    assertEquals(meshObject.getLod("quad", 2), read.getLod("quad", 2));
+    assertEquals("third", read.getLod("quad", 1).getName());
+    assertTrue(read.getLods("third").isEmpty());
+  }
+  
+  @Test
+  public void testAbsentStreamsAndNamesStayAbsent() {
+    MeshObject meshObject = new MeshObject();
+    meshObject.addMesh(new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(new float[] {1, 2, 3, 1}))
+        .setNormals(FloatBuffer.wrap(new float[0]))
+        .build());
+    
+    MeshData read = reader.read(writer.toBytes(meshObject)).getMesh(null);
+    assertNull(read.getName());
+    assertNull(read.getVertexIndices());
+    assertNull(read.getTextureCoords());
+    assertEquals(0, read.getNormals().capacity());
+    assertEquals(meshObject.getMesh(null), read);
+  }
+  
+  @Test
+  public void testBlocksAreAlignedLittleEndianViews() {
+    ByteBuffer bytes = writer.toBytes(parseObj());
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.capacity());
+    direct.put(bytes).clear();
+    
+    MeshData mesh = reader.read(direct).getMesh("tri");
+    FloatBuffer vertices = mesh.getVerticies();
+    IntBuffer indices = mesh.getVertexIndices();
+    // Views of the loaded bytes rather than copies
+    assertTrue(vertices.isDirect());
+    assertTrue(indices.isDirect());
+    assertEquals(ByteOrder.LITTLE_ENDIAN, vertices.order());
+    assertEquals(ByteOrder.LITTLE_ENDIAN, indices.order());
+    
+    direct.order(ByteOrder.LITTLE_ENDIAN);
+    int meshCount = direct.getInt(BinaryMeshFormat.MESH_COUNT_OFFSET);
+    for (int entry = 0; entry < meshCount; entry++) {
+      int streams = (BinaryMeshFormat.HEADER_INTS + entry * BinaryMeshFormat.DIRECTORY_ENTRY_INTS
+          + BinaryMeshFormat.STREAMS_START) * BinaryMeshFormat.BYTES_PER_VALUE;
+      for (int stream = 0; stream < BinaryMeshFormat.STREAMS; stream++) {
+        int offset = direct.getInt(streams + stream * 2 * BinaryMeshFormat.BYTES_PER_VALUE);
+        assertEquals(0, offset % BinaryMeshFormat.BLOCK_ALIGNMENT);
+      }
+    }
+  }
+  
+  @Test
+  public void testBoundsAreStored() {
+    MeshObject meshObject = parseObj();
+    MeshObject read = reader.read(writer.toBytes(meshObject));
+    for (MeshData mesh : meshObject.getAllMeshes()) {
+      assertEquals(mesh.getBounds(), read.getMesh(mesh.getName()).getBounds());
+    }
+    
+    // Bounds that do not match the vertices come back as written, so they were not recomputed
+    MeshObject stated = new MeshObject();
+    Bounds loose = new Bounds(new float[] {-5, -5, -5}, new float[] {5, 5, 5},
+        new float[] {0, 0, 0}, 9f);
+    stated.addMesh(new MeshData.Builder()
+        .setName("stated")
+        .setVertices(FloatBuffer.wrap(new float[] {1, 2, 3, 1}))
+        .setBounds(loose)
+        .build());
+    stated.addMesh(new MeshData.Builder()
+        .setName("empty")
+        .setVertices(FloatBuffer.wrap(new float[0]))
+        .build());
+    read = reader.read(writer.toBytes(stated));
+    assertEquals(loose, read.getMesh("stated").getBounds());
+    assertSame(Bounds.EMPTY, read.getMesh("empty").getBounds());
+  }
+  
+  @Test
+  public void testReadsFromPositionOfBuffer() {
+    MeshObject meshObject = parseObj();
+    ByteBuffer bytes = writer.toBytes(meshObject);
+    ByteBuffer padded = ByteBuffer.allocate(bytes.capacity() + 3);
+    padded.position(3);
+    padded.put(bytes).position(3);
+    assertEquals(meshObject, reader.read(padded));
+    assertEquals(3, padded.position());
+  }
+  
+  @Test
+  public void testReadFromStream() throws IOException {
+    MeshObject meshObject = parseObj();
+    ByteBuffer bytes = writer.toBytes(meshObject);
+    assertEquals(meshObject, reader.read(new ByteArrayInputStream(bytes.array())));
+  }
+  
+  @Test
+  public void testConverterWritesMappableFile() throws IOException {
+    File directory = Files.createTempDir();
+    File objFile = new File(directory, "mesh.obj");
+    File binaryFile = new File(directory, "mesh.bin");
+    FileOutputStream output = new FileOutputStream(objFile);
+    output.write(OBJ_FILE.getBytes("UTF-8"));
+    output.close();
+    
+    MeshObject converted = injector.getInstance(ObjToBinaryMeshConverter.class)
+        .convert(objFile, binaryFile);
+    assertEquals(parseObj(), converted);
+    assertEquals(converted, reader.read(binaryFile));
+    
+    binaryFile.delete();
+    objFile.delete();
+    directory.delete();
+  }
+  
+  @Test
+  public void testConverterAddsMissingNormals() throws IOException {
+    File directory = Files.createTempDir();
+    File objFile = new File(directory, "mesh.obj");
+    File binaryFile = new File(directory, "mesh.bin");
+    FileOutputStream output = new FileOutputStream(objFile);
+    output.write(OBJ_FILE.getBytes("UTF-8"));
+    output.close();
+    
+    ObjToBinaryMeshConverter converter = injector.getInstance(ObjToBinaryMeshConverter.class);
+    converter.setNormalGenerator(new NormalGenerator());
+    MeshObject converted = converter.convert(objFile, binaryFile);
+    MeshObject expected = parseObj();
+    new NormalGenerator().addMissingNormals(expected);
+    assertEquals(expected, converted);
+    assertEquals(parseObj().getMesh("tri"), converted.getMesh("tri"));
+    assertTrue(converted.getMesh("quad").getNormals().capacity() > 0);
+    assertEquals(converted, reader.read(binaryFile));
+    
+    binaryFile.delete();
+    objFile.delete();
+    directory.delete();
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsWrongMagic() {
+    ByteBuffer bytes = writer.toBytes(parseObj());
+    bytes.put(0, (byte) 'X');
+    reader.read(bytes);
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsUnknownVersion() {
+    ByteBuffer bytes = writer.toBytes(parseObj());
+    bytes.order(ByteOrder.LITTLE_ENDIAN).putInt(BinaryMeshFormat.BYTES_PER_VALUE, 99);
+    reader.read(bytes);
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsTruncatedFile() {
+    ByteBuffer bytes = writer.toBytes(parseObj());
+    bytes.limit(bytes.limit() - 1);
+    reader.read(bytes);
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsShortFile() {
+    reader.read(ByteBuffer.allocate(3));
+  }
+  
+  private MeshObject parseObj() {
+    try {
+      return parser.parse(new ResourceObjFile(new ByteArrayInputStream(
+          OBJ_FILE.getBytes("UTF-8"))));
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
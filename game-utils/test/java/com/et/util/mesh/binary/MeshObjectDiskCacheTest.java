@@ -0,0 +1,212 @@
+package com.et.util.mesh.binary;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Tests for {@link MeshObjectDiskCache}.
+ */
+public class MeshObjectDiskCacheTest {
+  
+  private static final long MAX_BYTES = 1024 * 1024;
+  
+  private File directory;
+  private MeshObjectDiskCache cache;
+  
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+    cache = createCache(MAX_BYTES);
+  }
+  
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+  
+  @Test
+  public void testMissThenHit() throws IOException {
+    MeshObject meshObject = createMeshObject("cube", 10);
+    assertNull(cache.get(key("cube")));
+    
+    cache.put(key("cube"), meshObject);
+    assertEquals(meshObject, cache.get(key("cube")));
+    assertNull(cache.get(key("other")));
+  }
+  
+  @Test
+  public void testKeepsLods() throws IOException {
+    MeshObject meshObject = createMeshObject("cube", 10);
+    meshObject.setLods("cube", ImmutableList.of(
+        createMeshObject("cube", 6).getMesh("cube"), createMeshObject("cube", 3).getMesh("cube")));
+    cache.put(key("cube"), meshObject);
+    MeshObject cached = cache.get(key("cube"));
+    assertEquals(meshObject, cached);
+    assertEquals(2, cached.getLods("cube").size());
+  }
+  
+  @Test
+  public void testHitFromAnotherInstance() throws IOException {
+    MeshObject meshObject = createMeshObject("cube", 10);
+    cache.put(key("cube"), meshObject);
+    assertEquals(meshObject, createCache(MAX_BYTES).get(key("cube")));
+  }
+  
+  @Test
+  public void testCorruptEntryIsDiscarded() throws IOException {
+    cache.put(key("cube"), createMeshObject("cube", 10));
+    File entry = onlyEntry();
+    
+    RandomAccessFile file = new RandomAccessFile(entry, "rw");
+    file.seek(file.length() - 1);
+    int last = file.read();
+    file.seek(file.length() - 1);
+    file.write(last ^ 0xFF);
+    file.close();
+    
+    assertNull(cache.get(key("cube")));
+    assertFalse(entry.exists());
+  }
+  
+  @Test
+  public void testTruncatedEntryIsDiscarded() throws IOException {
+    cache.put(key("cube"), createMeshObject("cube", 10));
+    File entry = onlyEntry();
+    
+    RandomAccessFile file = new RandomAccessFile(entry, "rw");
+    file.setLength(file.length() - 4);
+    file.close();
+    
+    assertNull(cache.get(key("cube")));
+    assertFalse(entry.exists());
+  }
+  
+  @Test
+  public void testOtherVersionIsDiscarded() throws IOException {
+    cache.put(key("cube"), createMeshObject("cube", 10));
+    File entry = onlyEntry();
+    
+    RandomAccessFile file = new RandomAccessFile(entry, "rw");
+    // The cache version, little-endian, right after the magic
+    file.seek(4);
+    file.write(99);
+    file.close();
+    
+    assertNull(cache.get(key("cube")));
+    assertFalse(entry.exists());
+  }
+  
+  @Test
+  public void testEntryUnderWrongKeyIsDiscarded() throws IOException {
+    cache.put(key("cube"), createMeshObject("cube", 10));
+    File entry = onlyEntry();
+    assertTrue(entry.renameTo(new File(directory, key("other") + ".mesh")));
+    
+    assertNull(cache.get(key("other")));
+    assertEquals(0, directory.listFiles().length);
+  }
+  
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws IOException {
+    cache.put(key("first"), createMeshObject("first", 100));
+    long entryBytes = cache.size();
+    MeshObjectDiskCache smallCache = createCache(entryBytes * 2);
+    
+    smallCache.put(key("second"), createMeshObject("second", 100));
+    new File(directory, key("first") + ".mesh").setLastModified(1000);
+    new File(directory, key("second") + ".mesh").setLastModified(2000);
+    smallCache.put(key("third"), createMeshObject("third", 100));
+    
+    assertNull(smallCache.get(key("first")));
+    assertNotNull(smallCache.get(key("second")));
+    assertNotNull(smallCache.get(key("third")));
+    assertTrue(smallCache.size() <= entryBytes * 2);
+  }
+  
+  @Test
+  public void testConcurrentPutsOfOneKey() throws Exception {
+    final int numThreads = 4;
+    final List<MeshObject> meshObjects = Lists.newArrayList();
+    for (int thread = 0; thread < numThreads; thread++) {
+      meshObjects.add(createMeshObject("cube", 1000 + thread));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<Void>> puts = Lists.newArrayList();
+    for (int thread = 0; thread < numThreads; thread++) {
+      final MeshObject meshObject = meshObjects.get(thread);
+      puts.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          for (int put = 0; put < 20; put++) {
+            cache.put(key("cube"), meshObject);
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> put : puts) {
+      put.get();
+    }
+    executor.shutdown();
+    
+    assertTrue(meshObjects.contains(cache.get(key("cube"))));
+    onlyEntry();
+  }
+  
+  private MeshObjectDiskCache createCache(long maxBytes) {
+    return new MeshObjectDiskCache(directory, maxBytes, new BinaryMeshReader(),
+        new BinaryMeshWriter());
+  }
+  
+  private File onlyEntry() {
+    File[] entries = directory.listFiles();
+    assertEquals(1, entries.length);
+    return entries[0];
+  }
+  
+  private HashCode key(String name) {
+    return Hashing.murmur3_128().hashBytes(name.getBytes());
+  }
+  
+  private MeshObject createMeshObject(String name, int numVertices) {
+    float[] vertices = new float[numVertices * 4];
+    int[] indices = new int[numVertices];
+    for (int i = 0; i < numVertices; i++) {
+      vertices[i * 4] = i;
+      vertices[i * 4 + 3] = 1;
+      indices[i] = numVertices - i - 1;
+    }
+    MeshObject meshObject = new MeshObject();
+    meshObject.addMesh(new MeshData.Builder()
+        .setName(name)
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .build());
+    return meshObject;
+  }
+}
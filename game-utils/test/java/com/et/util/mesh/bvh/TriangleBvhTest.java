@@ -0,0 +1,361 @@
+package com.et.util.mesh.bvh;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshData;
+
+/**
+ * Tests for {@link TriangleBvh}, {@link TriangleBvhBuilder} and {@link BvhQuery}, checked against
+ * testing every triangle.
+ */
+public class TriangleBvhTest {
+
+  private static final int QUERIES = 500;
+
+  private Random random;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    random = new Random(7);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testRaycastTriangle() {
+    float[] triangle = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+    float[] hit = new float[3];
+    assertTrue(Intersections.raycastTriangle(triangle, 0, 0.25f, 0.5f, 2f, 0, 0, -1, hit));
+    assertEquals(2f, hit[0], 1e-6f);
+    assertEquals(0.25f, hit[1], 1e-6f);
+    assertEquals(0.5f, hit[2], 1e-6f);
+    // From behind, and missing beside and behind the origin
+    assertTrue(Intersections.raycastTriangle(triangle, 0, 0.25f, 0.25f, -1f, 0, 0, 1, hit));
+    assertFalse(Intersections.raycastTriangle(triangle, 0, 0.75f, 0.75f, 2f, 0, 0, -1, hit));
+    assertFalse(Intersections.raycastTriangle(triangle, 0, 0.25f, 0.25f, 2f, 0, 0, 1, hit));
+  }
+
+  @Test
+  public void testTriangleOverlapsBox() {
+    float[] triangle = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+    assertTrue(Intersections.triangleOverlapsBox(triangle, 0, 0.2f, 0.2f, 0f, 0.1f, 0.1f, 0.1f));
+    // Inside the triangle's bounds but past its hypotenuse
+    assertFalse(Intersections.triangleOverlapsBox(triangle, 0, 0.9f, 0.9f, 0f, 0.1f, 0.1f,
+        0.1f));
+    assertFalse(Intersections.triangleOverlapsBox(triangle, 0, 0.2f, 0.2f, 0.5f, 0.1f, 0.1f,
+        0.1f));
+  }
+
+  @Test
+  public void testSquaredDistanceToTriangle() {
+    float[] triangle = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+    assertEquals(4f, Intersections.squaredDistanceToTriangle(triangle, 0, 0.2f, 0.2f, 2f), 1e-6f);
+    assertEquals(2f, Intersections.squaredDistanceToTriangle(triangle, 0, -1f, -1f, 0f), 1e-6f);
+    assertEquals(0.5f, Intersections.squaredDistanceToTriangle(triangle, 0, 1f, 1f, 0f), 1e-6f);
+  }
+
+  @Test
+  public void testEmptyMesh() {
+    TriangleBvh bvh = new TriangleBvhBuilder().build(soup(0));
+    BvhQuery query = bvh.newQuery();
+    assertEquals(0, bvh.getNodeCount());
+    assertFalse(query.raycastClosest(0, 0, 0, 1, 0, 0, Float.POSITIVE_INFINITY));
+    assertEquals(-1, query.getHitTriangle());
+    assertFalse(query.raycastAny(0, 0, 0, 1, 0, 0, Float.POSITIVE_INFINITY));
+    assertEquals(0, query.overlapBox(-1, -1, -1, 1, 1, 1, new int[1]));
+    assertEquals(0, query.overlapSphere(0, 0, 0, 1, new int[1]));
+  }
+
+  @Test
+  public void testStructure() {
+    TriangleBvh bvh = new TriangleBvhBuilder().build(soup(1000));
+    assertEquals(1000, bvh.getTriangleCount());
+    assertTrue(bvh.getNodeCount() > 1000 / TriangleBvhBuilder.DEFAULT_MAX_LEAF_SIZE);
+    assertTrue(bvh.getNodeCount() < 2 * 1000);
+    assertTrue(bvh.getDepth() < 40);
+
+    // Every triangle is in exactly one leaf, inside the bounds of every node above it
+    int[] seen = new int[1000];
+    checkNode(bvh, 0, seen);
+    for (int count : seen) {
+      assertEquals(1, count);
+    }
+  }
+
+  private void checkNode(TriangleBvh bvh, int node, int[] seen) {
+    int first = bvh.nodeData[node * 2];
+    int count = bvh.nodeData[node * 2 + 1];
+    if (count == 0) {
+      checkNode(bvh, first, seen);
+      checkNode(bvh, first + 1, seen);
+      return;
+    }
+    for (int triangle = first; triangle < first + count; triangle++) {
+      seen[bvh.triangleIds[triangle]]++;
+      for (int corner = 0; corner < 3; corner++) {
+        for (int axis = 0; axis < 3; axis++) {
+          float value = bvh.triangles[triangle * 9 + corner * 3 + axis];
+          assertTrue(value >= bvh.nodeBounds[node * 6 + axis]);
+          assertTrue(value <= bvh.nodeBounds[node * 6 + 3 + axis]);
+          assertTrue(value >= bvh.nodeBounds[axis]);
+          assertTrue(value <= bvh.nodeBounds[3 + axis]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRaycastSoup() {
+    MeshData mesh = soup(2000);
+    checkRaycasts(mesh, new TriangleBvhBuilder().build(mesh));
+  }
+
+  @Test
+  public void testRaycastGrid() {
+    // Axis aligned rays along a flat grid's edges are where slab tests go wrong
+    MeshData mesh = grid(40);
+    TriangleBvh bvh = new TriangleBvhBuilder().build(mesh);
+    checkRaycasts(mesh, bvh);
+    BvhQuery query = bvh.newQuery();
+    assertTrue(query.raycastClosest(3f, 4f, 5f, 0f, 0f, -1f, Float.POSITIVE_INFINITY));
+    assertEquals(5f, query.getHitDistance(), 0f);
+    assertTrue(query.raycastAny(3f, 4f, 5f, 0f, 0f, -2f, 2.5f));
+    assertFalse(query.raycastAny(3f, 4f, 5f, 0f, 0f, -1f, 4.9f));
+  }
+
+  @Test
+  public void testOverlapSoup() {
+    MeshData mesh = soup(2000);
+    checkOverlaps(mesh, new TriangleBvhBuilder().build(mesh));
+  }
+
+  @Test
+  public void testOverlapGrid() {
+    MeshData mesh = grid(40);
+    checkOverlaps(mesh, new TriangleBvhBuilder().build(mesh));
+  }
+
+  @Test
+  public void testOverlapTruncated() {
+    TriangleBvh bvh = new TriangleBvhBuilder().build(grid(10));
+    int[] out = new int[3];
+    int found = bvh.newQuery().overlapBox(-1, -1, -1, 11, 11, 1, out);
+    assertEquals(200, found);
+  }
+
+  @Test
+  public void testParallelBuild() {
+    MeshData mesh = soup(40000);
+    TriangleBvh sequential = new TriangleBvhBuilder().build(mesh);
+    TriangleBvh parallel = new TriangleBvhBuilder(executor).build(mesh);
+    assertEquals(sequential.getNodeCount(), parallel.getNodeCount());
+    assertEquals(sequential.getDepth(), parallel.getDepth());
+    assertTrue(Arrays.equals(sequential.nodeBounds, parallel.nodeBounds));
+    assertTrue(Arrays.equals(sequential.nodeData, parallel.nodeData));
+    assertTrue(Arrays.equals(sequential.triangleIds, parallel.triangleIds));
+    checkRaycasts(mesh, parallel);
+    checkOverlaps(mesh, parallel);
+  }
+
+  @Test
+  public void testLeafSize() {
+    MeshData mesh = soup(1000);
+    TriangleBvh bvh = new TriangleBvhBuilder(1, null).build(mesh);
+    assertTrue(bvh.getNodeCount() > new TriangleBvhBuilder().build(mesh).getNodeCount());
+    checkRaycasts(mesh, bvh);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadLeafSize() {
+    new TriangleBvhBuilder(0, null);
+  }
+
+  private void checkRaycasts(MeshData mesh, TriangleBvh bvh) {
+    float[] triangles = triangles(mesh);
+    float[] hit = new float[3];
+    BvhQuery query = bvh.newQuery();
+    for (int cast = 0; cast < QUERIES; cast++) {
+      float ox = random.nextFloat() * 50f - 5f;
+      float oy = random.nextFloat() * 50f - 5f;
+      float oz = random.nextFloat() * 50f - 5f;
+      // Aim at a random triangle's corner half the time so most of these hit something
+      float dx;
+      float dy;
+      float dz;
+      if (cast % 2 == 0) {
+        int corner = random.nextInt(triangles.length / 3) * 3;
+        dx = triangles[corner] - ox;
+        dy = triangles[corner + 1] - oy;
+        dz = triangles[corner + 2] - oz;
+      } else if (cast % 4 == 1) {
+        dx = 0f;
+        dy = 0f;
+        dz = random.nextBoolean() ? 1f : -1f;
+      } else {
+        dx = (float) random.nextGaussian();
+        dy = (float) random.nextGaussian();
+        dz = (float) random.nextGaussian();
+      }
+      float maxDistance = cast % 3 == 0 ? random.nextFloat() : Float.POSITIVE_INFINITY;
+
+      int expected = -1;
+      float closest = maxDistance;
+      for (int triangle = 0; triangle < triangles.length / 9; triangle++) {
+        if (Intersections.raycastTriangle(triangles, triangle * 9, ox, oy, oz, dx, dy, dz, hit)
+            && (hit[0] < closest || (hit[0] == closest && expected == -1))) {
+          closest = hit[0];
+          expected = triangle;
+        }
+      }
+
+      assertEquals(expected != -1, query.raycastClosest(ox, oy, oz, dx, dy, dz, maxDistance));
+      assertEquals(expected, query.getHitTriangle());
+      if (expected != -1) {
+        assertEquals(closest, query.getHitDistance(), 0f);
+        Intersections.raycastTriangle(triangles, expected * 9, ox, oy, oz, dx, dy, dz, hit);
+        assertEquals(hit[1], query.getHitU(), 0f);
+        assertEquals(hit[2], query.getHitV(), 0f);
+      }
+      assertEquals(expected != -1, query.raycastAny(ox, oy, oz, dx, dy, dz, maxDistance));
+    }
+  }
+
+  private void checkOverlaps(MeshData mesh, TriangleBvh bvh) {
+    float[] triangles = triangles(mesh);
+    int count = triangles.length / 9;
+    int[] out = new int[count];
+    BvhQuery query = bvh.newQuery();
+    for (int test = 0; test < QUERIES; test++) {
+      float x = random.nextFloat() * 45f - 2f;
+      float y = random.nextFloat() * 45f - 2f;
+      float z = random.nextFloat() * 45f - 2f;
+      float size = random.nextFloat() * 4f;
+
+      int found = query.overlapBox(x - size, y - size, z - size, x + size, y + size, z + size,
+          out);
+      boolean[] expected = new boolean[count];
+      int expectedCount = 0;
+      for (int triangle = 0; triangle < count; triangle++) {
+        if (Intersections.triangleOverlapsBox(triangles, triangle * 9, x, y, z, size, size,
+            size)) {
+          expected[triangle] = true;
+          expectedCount++;
+        }
+      }
+      assertFound(expected, expectedCount, out, found);
+
+      found = query.overlapSphere(x, y, z, size, out);
+      expected = new boolean[count];
+      expectedCount = 0;
+      for (int triangle = 0; triangle < count; triangle++) {
+        if (Intersections.squaredDistanceToTriangle(triangles, triangle * 9, x, y, z)
+            <= size * size) {
+          expected[triangle] = true;
+          expectedCount++;
+        }
+      }
+      assertFound(expected, expectedCount, out, found);
+    }
+  }
+
+  private static void assertFound(boolean[] expected, int expectedCount, int[] out, int found) {
+    assertEquals(expectedCount, found);
+    for (int position = 0; position < found; position++) {
+      assertTrue(expected[out[position]]);
+      // Each triangle only once
+      expected[out[position]] = false;
+    }
+  }
+
+  /**
+   * Returns the corners of every triangle in mesh order, nine floats each.
+   */
+  private static float[] triangles(MeshData mesh) {
+    IntBuffer indices = mesh.getVertexIndices();
+    FloatBuffer vertices = mesh.getVerticies();
+    float[] triangles = new float[indices.capacity() * 3];
+    for (int index = 0; index < indices.capacity(); index++) {
+      for (int axis = 0; axis < 3; axis++) {
+        triangles[index * 3 + axis] = vertices.get(indices.get(index) * 4 + axis);
+      }
+    }
+    return triangles;
+  }
+
+  /**
+   * Small triangles scattered through a 40 unit cube, each with vertices of its own.
+   */
+  private MeshData soup(int count) {
+    float[] vertices = new float[count * 3 * 4];
+    int[] indices = new int[count * 3];
+    for (int triangle = 0; triangle < count; triangle++) {
+      float x = random.nextFloat() * 40f;
+      float y = random.nextFloat() * 40f;
+      float z = random.nextFloat() * 40f;
+      for (int corner = 0; corner < 3; corner++) {
+        int vertex = triangle * 3 + corner;
+        vertices[vertex * 4] = x + random.nextFloat() * 2f;
+        vertices[vertex * 4 + 1] = y + random.nextFloat() * 2f;
+        vertices[vertex * 4 + 2] = z + random.nextFloat() * 2f;
+        vertices[vertex * 4 + 3] = 1f;
+        indices[vertex] = vertex;
+      }
+    }
+    return new MeshData.Builder()
+        .setName("soup")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .build();
+  }
+
+  /**
+   * A flat grid of unit squares in the z = 0 plane, two triangles each.
+   */
+  private static MeshData grid(int size) {
+    int row = size + 1;
+    float[] vertices = new float[row * row * 4];
+    for (int y = 0; y <= size; y++) {
+      for (int x = 0; x <= size; x++) {
+        int vertex = y * row + x;
+        vertices[vertex * 4] = x;
+        vertices[vertex * 4 + 1] = y;
+        vertices[vertex * 4 + 3] = 1f;
+      }
+    }
+    int[] indices = new int[size * size * 6];
+    int next = 0;
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        int corner = y * row + x;
+        indices[next++] = corner;
+        indices[next++] = corner + 1;
+        indices[next++] = corner + row + 1;
+        indices[next++] = corner;
+        indices[next++] = corner + row + 1;
+        indices[next++] = corner + row;
+      }
+    }
+    return new MeshData.Builder()
+        .setName("grid")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .build();
+  }
+}
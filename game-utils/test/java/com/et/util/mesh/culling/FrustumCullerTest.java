@@ -0,0 +1,285 @@
+package com.et.util.mesh.culling;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+
+/**
+ * Tests for {@link FrustumCuller}, {@link InstanceList} and {@link Frustum}, checked against
+ * testing every instance against every plane.
+ */
+public class FrustumCullerTest {
+
+  private static final float[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+  private Random random;
+  private MeshData cube;
+  private Frustum frustum;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    random = new Random(11);
+    cube = cube("cube", 0.5f);
+    frustum = new Frustum().setFromMatrix(camera(0f, 0f, 0f, 0f), 0);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testFrustumFromMatrix() {
+    // Looking down -z with a 90 degree field of view from 1 to 100
+    assertTrue(frustum.distance(Frustum.NEAR, 0f, 0f, -2f) > 0f);
+    assertTrue(frustum.distance(Frustum.NEAR, 0f, 0f, 0f) < 0f);
+    assertEquals(99f, frustum.distance(Frustum.FAR, 0f, 0f, -1f), 1e-3f);
+    assertTrue(frustum.distance(Frustum.RIGHT, 4f, 0f, -5f) > 0f);
+    assertTrue(frustum.distance(Frustum.RIGHT, 6f, 0f, -5f) < 0f);
+    assertTrue(frustum.distance(Frustum.LEFT, -6f, 0f, -5f) < 0f);
+    assertTrue(frustum.distance(Frustum.TOP, 0f, 6f, -5f) < 0f);
+    assertTrue(frustum.distance(Frustum.BOTTOM, 0f, -6f, -5f) < 0f);
+    // Normals are unit length
+    for (int plane = 0; plane < Frustum.PLANES; plane++) {
+      float a = frustum.getPlaneComponent(plane, 0);
+      float b = frustum.getPlaneComponent(plane, 1);
+      float c = frustum.getPlaneComponent(plane, 2);
+      assertEquals(1f, a * a + b * b + c * c, 1e-5f);
+    }
+  }
+
+  @Test
+  public void testCullSimple() {
+    InstanceList instances = new InstanceList();
+    instances.add(cube, 0f, 0f, -10f);
+    instances.add(cube, 0f, 0f, 10f);
+    instances.add(cube, 50f, 0f, -10f);
+    // Straddling the right plane
+    instances.add(cube, 10f, 0f, -10f);
+    // Past the far plane
+    instances.add(cube, 0f, 0f, -101f);
+    int[] visible = new int[instances.size()];
+    assertEquals(2, new FrustumCuller().cull(instances, frustum, visible));
+    assertEquals(0, visible[0]);
+    assertEquals(3, visible[1]);
+  }
+
+  @Test
+  public void testSphereStraddlesButBoxOutside() {
+    // An upright rod just right of the frustum, whose sphere reaches back inside
+    MeshData rod = box("rod", 0.05f, 4f, 0.05f);
+    InstanceList instances = new InstanceList();
+    instances.add(rod, 10.5f, 0f, -10f);
+    assertEquals(0, new FrustumCuller().cull(instances, frustum, new int[1]));
+    assertTrue(frustum.distance(Frustum.RIGHT, 10.5f, 0f, -10f) > -4f);
+  }
+
+  @Test
+  public void testEmptyMesh() {
+    MeshData empty = new MeshData.Builder()
+        .setName("empty")
+        .setVertices(FloatBuffer.wrap(new float[0]))
+        .setVertexIndices(IntBuffer.wrap(new int[0]))
+        .build();
+    InstanceList instances = new InstanceList();
+    instances.add(empty, 0f, 0f, -10f);
+    instances.add(cube, 0f, 0f, -10f);
+    int[] visible = new int[2];
+    assertEquals(1, new FrustumCuller().cull(instances, frustum, visible));
+    assertEquals(1, visible[0]);
+  }
+
+  @Test
+  public void testModelMatrix() {
+    // Rotated 90 degrees about y, scaled by 2 and moved to (3, 0, -10)
+    float[] model = {0, 0, -2, 0, 0, 2, 0, 0, 2, 0, 0, 0, 3, 0, -10, 1};
+    InstanceList instances = new InstanceList();
+    MeshData slab = box("slab", 1f, 0.5f, 0.25f);
+    instances.add(slab, model, 0);
+    assertEquals(2.5f, instances.minX[0], 1e-6f);
+    assertEquals(3.5f, instances.maxX[0], 1e-6f);
+    assertEquals(-1f, instances.minY[0], 1e-6f);
+    assertEquals(-12f, instances.minZ[0], 1e-6f);
+    assertEquals(-8f, instances.maxZ[0], 1e-6f);
+    assertTrue(instances.radius[0] >= 2f * (float) Math.sqrt(1 + 0.25 + 0.0625) - 1e-5f);
+
+    instances.setTransform(0, IDENTITY, 0);
+    assertEquals(-1f, instances.minX[0], 1e-6f);
+    assertEquals(0, new FrustumCuller().cull(instances, frustum, new int[1]));
+  }
+
+  @Test
+  public void testAddAll() {
+    MeshObject object = new MeshObject();
+    object.addMesh(cube("a", 1f));
+    object.addMesh(cube("b", 2f));
+    InstanceList instances = new InstanceList();
+    instances.add(cube, 0f, 0f, -5f);
+    float[] model = IDENTITY.clone();
+    model[14] = -10f;
+    assertEquals(1, instances.addAll(object, model, 0));
+    assertEquals(3, instances.size());
+    assertEquals(3, new FrustumCuller().cull(instances, frustum, new int[3]));
+  }
+
+  @Test
+  public void testCullAgainstBruteForce() {
+    InstanceList instances = scene(5000);
+    FrustumCuller culler = new FrustumCuller();
+    int[] visible = new int[instances.size()];
+    // The same culler over several frames, so remembered planes are in use
+    for (int frame = 0; frame < 20; frame++) {
+      frustum.setFromMatrix(camera(random.nextFloat() * 360f, random.nextFloat() * 40f - 20f,
+          random.nextFloat() * 40f - 20f, random.nextFloat() * 40f - 20f), 0);
+      if (frame % 5 == 4) {
+        // Move a few instances, making their blocks stale
+        for (int move = 0; move < 50; move++) {
+          float[] model = IDENTITY.clone();
+          model[12] = random.nextFloat() * 100f - 50f;
+          model[14] = random.nextFloat() * 100f - 50f;
+          instances.setTransform(random.nextInt(instances.size()), model, 0);
+        }
+      }
+      int count = culler.cull(instances, frustum, visible);
+      int[] expected = bruteForce(instances, frustum);
+      assertTrue(count > 0);
+      assertTrue(count < instances.size());
+      assertArrayEquals(expected, Arrays.copyOf(visible, count));
+    }
+  }
+
+  @Test
+  public void testParallelCull() {
+    InstanceList instances = scene(5000);
+    FrustumCuller sequential = new FrustumCuller();
+    FrustumCuller parallel = new FrustumCuller(executor, 500);
+    int[] expected = new int[instances.size()];
+    int[] visible = new int[instances.size()];
+    for (int frame = 0; frame < 10; frame++) {
+      frustum.setFromMatrix(camera(frame * 36f, 0f, 0f, 0f), 0);
+      int expectedCount = sequential.cull(instances, frustum, expected);
+      assertEquals(expectedCount, parallel.cull(instances, frustum, visible));
+      assertArrayEquals(Arrays.copyOf(expected, expectedCount), Arrays.copyOf(visible,
+          expectedCount));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutputTooSmall() {
+    InstanceList instances = new InstanceList();
+    instances.add(cube, 0f, 0f, 0f);
+    new FrustumCuller().cull(instances, frustum, new int[0]);
+  }
+
+  /**
+   * Instances of a few sizes of box scattered in rows through a 100 unit square, so
+   * neighbouring instances share blocks as they would in a level.
+   */
+  private InstanceList scene(int count) {
+    MeshData[] meshes = {cube, box("tall", 0.5f, 3f, 0.5f), box("long", 4f, 0.5f, 0.2f)};
+    InstanceList instances = new InstanceList();
+    int side = (int) Math.ceil(Math.sqrt(count));
+    for (int instance = 0; instance < count; instance++) {
+      float x = (instance % side) * 100f / side - 50f + random.nextFloat();
+      float z = (instance / side) * 100f / side - 50f + random.nextFloat();
+      instances.add(meshes[random.nextInt(meshes.length)], x, random.nextFloat() * 4f - 2f, z);
+    }
+    return instances;
+  }
+
+  private static int[] bruteForce(InstanceList instances, Frustum frustum) {
+    int[] visible = new int[instances.size()];
+    int count = 0;
+    for (int instance = 0; instance < instances.size(); instance++) {
+      boolean outside = false;
+      for (int plane = 0; plane < Frustum.PLANES; plane++) {
+        float distance = frustum.distance(plane, instances.centerX[instance],
+            instances.centerY[instance], instances.centerZ[instance]);
+        boolean boxOutside = true;
+        for (int corner = 0; corner < 8; corner++) {
+          float x = (corner & 1) == 0 ? instances.minX[instance] : instances.maxX[instance];
+          float y = (corner & 2) == 0 ? instances.minY[instance] : instances.maxY[instance];
+          float z = (corner & 4) == 0 ? instances.minZ[instance] : instances.maxZ[instance];
+          boxOutside &= frustum.distance(plane, x, y, z) < 0f;
+        }
+        outside |= distance < -instances.radius[instance] || boxOutside;
+      }
+      if (!outside) {
+        visible[count++] = instance;
+      }
+    }
+    return Arrays.copyOf(visible, count);
+  }
+
+  /**
+   * A 90 degree perspective from 1 to 100 times a camera at (x, y, z) turned by yaw degrees
+   * about y, column major.
+   */
+  private static float[] camera(float yaw, float x, float y, float z) {
+    float near = 1f;
+    float far = 100f;
+    float[] projection = new float[16];
+    projection[0] = 1f;
+    projection[5] = 1f;
+    projection[10] = (far + near) / (near - far);
+    projection[11] = -1f;
+    projection[14] = 2f * far * near / (near - far);
+
+    // The inverse of the camera's placement: rotate by -yaw, after moving by -position
+    float cos = (float) Math.cos(Math.toRadians(yaw));
+    float sin = (float) Math.sin(Math.toRadians(yaw));
+    float[] view = {cos, 0, sin, 0, 0, 1, 0, 0, -sin, 0, cos, 0, 0, 0, 0, 1};
+    view[12] = -(cos * x - sin * z);
+    view[13] = -y;
+    view[14] = -(sin * x + cos * z);
+
+    float[] product = new float[16];
+    for (int column = 0; column < 4; column++) {
+      for (int row = 0; row < 4; row++) {
+        float sum = 0f;
+        for (int inner = 0; inner < 4; inner++) {
+          sum += projection[inner * 4 + row] * view[column * 4 + inner];
+        }
+        product[column * 4 + row] = sum;
+      }
+    }
+    return product;
+  }
+
+  private static MeshData cube(String name, float halfSize) {
+    return box(name, halfSize, halfSize, halfSize);
+  }
+
+  /**
+   * The eight corners of a box centred on the origin, as two triangles only, since culling only
+   * looks at bounds.
+   */
+  private static MeshData box(String name, float halfX, float halfY, float halfZ) {
+    float[] vertices = new float[8 * 4];
+    for (int corner = 0; corner < 8; corner++) {
+      vertices[corner * 4] = (corner & 1) == 0 ? -halfX : halfX;
+      vertices[corner * 4 + 1] = (corner & 2) == 0 ? -halfY : halfY;
+      vertices[corner * 4 + 2] = (corner & 4) == 0 ? -halfZ : halfZ;
+      vertices[corner * 4 + 3] = 1f;
+    }
+    return new MeshData.Builder()
+        .setName(name)
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, 3, 4, 7, 6}))
+        .build();
+  }
+}
@@ -0,0 +1,153 @@
+package com.et.util.mesh.data;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Bounds} and the bounds of {@link MeshData} and {@link MeshObject}.
+ */
+public class BoundsTest {
+
+  private static final int POINTS = 500;
+
+  private float[] points;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(21);
+    points = new float[POINTS * 4];
+    for (int point = 0; point < POINTS; point++) {
+      points[point * 4] = (float) random.nextGaussian() * 10f + 3f;
+      points[point * 4 + 1] = (float) random.nextGaussian() - 50f;
+      points[point * 4 + 2] = random.nextFloat() * 4f;
+      points[point * 4 + 3] = 1f;
+    }
+  }
+
+  @Test
+  public void testBuilderHoldsEveryPoint() {
+    Bounds bounds = Bounds.of(FloatBuffer.wrap(points));
+    assertFalse(bounds.isEmpty());
+    for (int axis = 0; axis < 3; axis++) {
+      float min = Float.MAX_VALUE;
+      float max = -Float.MAX_VALUE;
+      for (int point = 0; point < POINTS; point++) {
+        min = Math.min(min, points[point * 4 + axis]);
+        max = Math.max(max, points[point * 4 + axis]);
+      }
+      assertEquals(min, bounds.getMin(axis), 0f);
+      assertEquals(max, bounds.getMax(axis), 0f);
+    }
+    assertInsideSphere(bounds, points);
+  }
+
+  @Test
+  public void testSphereIsNoLargerThanTheBoxs() {
+    Bounds bounds = Bounds.of(FloatBuffer.wrap(points));
+    double halfDiagonal = 0.0;
+    for (int axis = 0; axis < 3; axis++) {
+      double half = (bounds.getMax(axis) - bounds.getMin(axis)) / 2.0;
+      halfDiagonal += half * half;
+    }
+    assertTrue(bounds.getSphereRadius() <= Math.sqrt(halfDiagonal) * 1.0001);
+  }
+
+  @Test
+  public void testSinglePoint() {
+    Bounds bounds = new Bounds.Builder().add(1f, 2f, 3f).build();
+    assertEquals(0f, bounds.getSphereRadius(), 0f);
+    assertEquals(2f, bounds.getSphereCenter(1), 0f);
+    assertEquals(3f, bounds.getMax(2), 0f);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertSame(Bounds.EMPTY, Bounds.of(null));
+    assertSame(Bounds.EMPTY, Bounds.of(FloatBuffer.allocate(0)));
+    assertTrue(Bounds.EMPTY.isEmpty());
+    Bounds bounds = Bounds.of(FloatBuffer.wrap(points));
+    assertSame(bounds, bounds.union(Bounds.EMPTY));
+    assertSame(bounds, Bounds.EMPTY.union(bounds));
+  }
+
+  @Test
+  public void testUnion() {
+    float[] first = new float[POINTS * 2];
+    float[] second = new float[POINTS * 2];
+    System.arraycopy(points, 0, first, 0, first.length);
+    System.arraycopy(points, first.length, second, 0, second.length);
+    for (int value = 0; value < second.length; value += 4) {
+      second[value] += 100f;
+    }
+    Bounds union = Bounds.of(FloatBuffer.wrap(first)).union(Bounds.of(FloatBuffer.wrap(second)));
+    assertInsideSphere(union, first);
+    assertInsideSphere(union, second);
+    assertTrue(union.getMax(0) > 100f);
+
+    // A sphere inside another leaves it as it is
+    Bounds inner = new Bounds.Builder().add(3f, -50f, 2f).build();
+    Bounds outer = Bounds.of(FloatBuffer.wrap(points));
+    assertEquals(outer.getSphereRadius(), outer.union(inner).getSphereRadius(), 0f);
+  }
+
+  @Test
+  public void testMeshDataBounds() {
+    MeshData mesh = new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(points))
+        .build();
+    assertEquals(Bounds.of(FloatBuffer.wrap(points)), mesh.getBounds());
+
+    Bounds given = new Bounds.Builder().add(0f, 0f, 0f).build();
+    assertSame(given, new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(points))
+        .setBounds(given)
+        .build()
+        .getBounds());
+    // Vertices set after the bounds replace them
+    assertEquals(Bounds.of(FloatBuffer.wrap(points)), new MeshData.Builder()
+        .setBounds(given)
+        .setVertices(FloatBuffer.wrap(points))
+        .build()
+        .getBounds());
+    assertSame(Bounds.EMPTY, new MeshData.Builder().build().getBounds());
+  }
+
+  @Test
+  public void testMeshObjectBounds() {
+    MeshObject meshObject = new MeshObject();
+    assertSame(Bounds.EMPTY, meshObject.getBounds());
+    float[] moved = points.clone();
+    for (int value = 2; value < moved.length; value += 4) {
+      moved[value] -= 30f;
+    }
+    meshObject.addMesh(new MeshData.Builder()
+        .setName("a")
+        .setVertices(FloatBuffer.wrap(points))
+        .build());
+    meshObject.addMesh(new MeshData.Builder()
+        .setName("b")
+        .setVertices(FloatBuffer.wrap(moved))
+        .build());
+    Bounds bounds = meshObject.getBounds();
+    assertEquals(-30f, bounds.getMin(2), 0.1f);
+    assertInsideSphere(bounds, points);
+    assertInsideSphere(bounds, moved);
+  }
+
+  private void assertInsideSphere(Bounds bounds, float[] vertices) {
+    for (int point = 0; point < vertices.length / 4; point++) {
+      double squaredDistance = 0.0;
+      for (int axis = 0; axis < 3; axis++) {
+        double delta = vertices[point * 4 + axis] - bounds.getSphereCenter(axis);
+        squaredDistance += delta * delta;
+      }
+      assertTrue("Point " + point + " is outside the sphere.",
+          Math.sqrt(squaredDistance) <= bounds.getSphereRadius());
+    }
+  }
+}
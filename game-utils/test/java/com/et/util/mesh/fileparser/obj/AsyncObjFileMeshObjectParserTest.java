@@ -0,0 +1,260 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.AsyncMeshObjectParser;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.et.util.mesh.fileparser.annotations.ObjMeshFileParser;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Tests for {@link AsyncObjFileMeshObjectParser}. Loads run on an executor the test drives by
+ * hand, with a clock that uses up a step's budget every time it is read.
+ */
+public class AsyncObjFileMeshObjectParserTest {
+  
+  private static final String FILE = createFile();
+  
+  private Injector injector;
+  private ManualExecutor executor;
+  private AsyncObjFileMeshObjectParser asyncParser;
+  
+  @Before
+  public void setUp() {
+    injector = Guice.createInjector(new MeshFileParserModule(1, 1));
+    executor = new ManualExecutor();
+    Ticker ticker = new Ticker() {
+      private long nanos = 0;
+      
+      @Override
+      public long read() {
+        return nanos++;
+      }
+    };
+    asyncParser = new AsyncObjFileMeshObjectParser(new IncrementalObjFileMeshObjectParser(
+        injector.getInstance(ObjFileStreamingParser.class),
+        injector.getInstance(ObjMeshLocalizer.class), ticker), executor);
+    asyncParser.setCancellationCheckInterval(1, TimeUnit.NANOSECONDS);
+  }
+  
+  @Test
+  public void testResultMatchesSequential() throws Exception {
+    ListenableFuture<MeshObject> result = asyncParser.parse(mappedFile());
+    assertFalse(result.isDone());
+    executor.runAll();
+    assertEquals(expected(), result.get());
+  }
+  
+  @Test
+  public void testCallbackOnChosenExecutor() {
+    ManualExecutor callbackExecutor = new ManualExecutor();
+    RecordingCallback callback = new RecordingCallback();
+    asyncParser.parse(mappedFile(), callback, callbackExecutor);
+    
+    executor.runAll();
+    assertNull(callback.success);
+    callbackExecutor.runAll();
+    assertEquals(expected(), callback.success);
+  }
+  
+  @Test
+  public void testCancelledBeforeStartNeverReads() {
+    CountingObjFile file = new CountingObjFile(mappedFile());
+    ListenableFuture<MeshObject> result = asyncParser.parse(file);
+    result.cancel(false);
+    executor.runAll();
+    assertEquals(0, file.linesRead);
+  }
+  
+  @Test
+  public void testCancelledDuringParseStops() {
+    final CountingObjFile file = new CountingObjFile(mappedFile());
+    final List<ListenableFuture<MeshObject>> result = Lists.newArrayList();
+    file.onLineRead = new Runnable() {
+      @Override
+      public void run() {
+        // Cancel without interrupting once the parse is under way
+        result.get(0).cancel(false);
+      }
+    };
+    result.add(asyncParser.parse(file));
+    executor.runAll();
+    
+    assertTrue(result.get(0).isCancelled());
+    assertTrue(file.linesRead > 0);
+    assertTrue(file.hasMoreElements());
+  }
+  
+  @Test
+  public void testParseFailureFailsFuture() throws Exception {
+    RecordingCallback callback = new RecordingCallback();
+    ListenableFuture<MeshObject> result = asyncParser.parse(
+        new MappedObjFile(ByteBuffer.wrap("f 1 2 3\n".getBytes())), callback, executor);
+    executor.runAll();
+    assertTrue(callback.failure instanceof IndexOutOfBoundsException);
+    try {
+      result.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IndexOutOfBoundsException);
+    }
+  }
+  
+  @Test
+  public void testRejectedLoadFailsFuture() throws Exception {
+    executor.rejecting = true;
+    ListenableFuture<MeshObject> result = asyncParser.parse(mappedFile());
+    assertTrue(result.isDone());
+    try {
+      result.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+  
+  @Test
+  public void testBoundLoadExecutorRuns() throws Exception {
+    AsyncMeshObjectParser<ObjFile> bound = injector.getInstance(Key.get(
+        new TypeLiteral<AsyncMeshObjectParser<ObjFile>>() {}, ObjMeshFileParser.class));
+    assertTrue(bound instanceof AsyncObjFileMeshObjectParser);
+    assertEquals(expected(), bound.parse(mappedFile()).get(10, TimeUnit.SECONDS));
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testLoadExecutorMustHaveThreads() {
+    new MeshFileParserModule(0, 1);
+  }
+  
+  private MeshObject expected() {
+    return injector.getInstance(ObjFileMeshObjectParser.class).parse(
+        new ResourceObjFile(new ByteArrayInputStream(FILE.getBytes())));
+  }
+  
+  private MappedObjFile mappedFile() {
+    return new MappedObjFile(ByteBuffer.wrap(FILE.getBytes()));
+  }
+  
+  private static String createFile() {
+    StringBuilder file = new StringBuilder();
+    for (int object = 0; object < 4; object++) {
+      file.append("o obj").append(object).append('\n');
+      for (int vertex = 0; vertex < 30; vertex++) {
+        file.append("v ").append(object).append(' ').append(vertex).append(" 1\n");
+      }
+      for (int face = 0; face < 10; face++) {
+        int first = object * 30 + face * 3 + 1;
+        file.append("f ").append(first).append(' ').append(first + 1).append(' ')
+            .append(first + 2).append('\n');
+      }
+    }
+    return file.toString();
+  }
+  
+  private static class ManualExecutor extends AbstractExecutorService {
+    final Queue<Runnable> tasks = Queues.newArrayDeque();
+    boolean rejecting = false;
+    
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove().run();
+      }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      if (rejecting) {
+        throw new RejectedExecutionException();
+      }
+      tasks.add(command);
+    }
+
+    @Override
+    public void shutdown() {}
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return Lists.newArrayList(tasks);
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return false;
+    }
+  }
+  
+  private static class RecordingCallback implements FutureCallback<MeshObject> {
+    MeshObject success;
+    Throwable failure;
+
+    @Override
+    public void onSuccess(MeshObject result) {
+      success = result;
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      failure = t;
+    }
+  }
+  
+  private static class CountingObjFile implements ObjFile {
+    private final ObjFile file;
+    int linesRead = 0;
+    Runnable onLineRead;
+    
+    CountingObjFile(ObjFile file) {
+      this.file = file;
+    }
+
+    @Override
+    public CharSequence getNextElement() {
+      linesRead++;
+      if (onLineRead != null) {
+        onLineRead.run();
+      }
+      return file.getNextElement();
+    }
+
+    @Override
+    public boolean hasMoreElements() {
+      return file.hasMoreElements();
+    }
+
+    @Override
+    public void putLine(String line) {
+      file.putLine(line);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.binary.BinaryMeshReader;
+import com.et.util.mesh.binary.BinaryMeshWriter;
+import com.et.util.mesh.binary.MeshObjectDiskCache;
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.et.util.mesh.fileparser.MeshObjectParser;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+
+/**
+ * Tests for {@link CachingObjFileMeshObjectParser}.
+ */
+public class CachingObjFileMeshObjectParserTest {
+  
+  private static final String FILE = "v 1 2 3\nv 4 5 6\nv 7 8 9\nvn 0 1 0\no tri\n"
+      + "f 1//1 2//1 3//1\no back\nf 3//1 2//1 1//1\n";
+  
+  private File directory;
+  private ObjFileMeshObjectParser objParser;
+  private CountingParser countingParser;
+  private MeshObjectDiskCache cache;
+  
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+    objParser = Guice.createInjector(new MeshFileParserModule())
+        .getInstance(ObjFileMeshObjectParser.class);
+    countingParser = new CountingParser(objParser);
+    cache = new MeshObjectDiskCache(directory, 1024 * 1024, new BinaryMeshReader(),
+        new BinaryMeshWriter());
+  }
+  
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+  
+  @Test
+  public void testSecondParseIsServedFromCache() {
+    CachingObjFileMeshObjectParser parser =
+        new CachingObjFileMeshObjectParser(countingParser, "separate", cache);
+    MeshObject expected = objParser.parse(file(FILE));
+    
+    assertEquals(expected, parser.parse(file(FILE)));
+    assertEquals(1, countingParser.parses);
+    assertEquals(expected, parser.parse(file(FILE)));
+    assertEquals(1, countingParser.parses);
+  }
+  
+  @Test
+  public void testChangedFileIsReparsed() {
+    CachingObjFileMeshObjectParser parser =
+        new CachingObjFileMeshObjectParser(countingParser, "separate", cache);
+    parser.parse(file(FILE));
+    
+    String changed = FILE.replace("v 1 2 3", "v 1 2 4");
+    assertEquals(objParser.parse(file(changed)), parser.parse(file(changed)));
+    assertEquals(2, countingParser.parses);
+  }
+  
+  @Test
+  public void testVariantsDoNotShareEntries() {
+    new CachingObjFileMeshObjectParser(countingParser, "separate", cache).parse(file(FILE));
+    
+    objParser.setUnifiedIndices(true);
+    MeshObject unified = new CachingObjFileMeshObjectParser(countingParser, "unified", cache)
+        .parse(file(FILE));
+    assertEquals(2, countingParser.parses);
+    assertEquals(objParser.parse(file(FILE)), unified);
+  }
+  
+  private MappedObjFile file(String contents) {
+    return new MappedObjFile(ByteBuffer.wrap(contents.getBytes()));
+  }
+  
+  private static class CountingParser implements MeshObjectParser<ObjFile> {
+    private final MeshObjectParser<ObjFile> parser;
+    int parses = 0;
+    
+    CountingParser(MeshObjectParser<ObjFile> parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    public MeshObject parse(ObjFile file) {
+      parses++;
+      return parser.parse(file);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests for {@link IncrementalObjFileMeshObjectParser} and {@link IncrementalObjParse}. Results
+ * are checked against {@link ObjFileMeshObjectParser}.
+ */
+public class IncrementalObjFileMeshObjectParserTest {
+  
+  // The generator offsets each object's faces by the face count, so this matches it
+  private static final int NUM_OF_ELEMENTS = 6;
+  private static final int NUM_FACES = 6;
+  private static final int NUM_COMPONENTS_PER_FACE = 3;
+  
+  private ObjFileMeshObjectParser sequentialParser;
+  private IncrementalObjFileMeshObjectParser incrementalParser;
+  private FakeTicker ticker;
+  private String file;
+  
+  @Before
+  public void setUp() {
+    Injector injector = Guice.createInjector(new MeshFileParserModule());
+    ticker = new FakeTicker();
+    sequentialParser = injector.getInstance(ObjFileMeshObjectParser.class);
+    incrementalParser = new IncrementalObjFileMeshObjectParser(
+        injector.getInstance(ObjFileStreamingParser.class),
+        injector.getInstance(ObjMeshLocalizer.class), ticker);
+    
+    int numIndices = NUM_FACES * NUM_COMPONENTS_PER_FACE;
+    file = new TestObjFileGenerator(generateRandomFloats(NUM_OF_ELEMENTS * 4),
+        generateRandomFloats(NUM_OF_ELEMENTS * 2), generateRandomFloats(NUM_OF_ELEMENTS * 3),
+        generateRandomIndices(numIndices), generateRandomIndices(numIndices),
+        generateRandomIndices(numIndices))
+        .withAllComponentsInterleaved()
+        .withFacesForSetComponents()
+        .forObject("Obj1")
+        .forObject("Obj2")
+        .forObject("Obj3")
+        .generateFile();
+  }
+  
+  @Test
+  public void testParseMatchesSequential() {
+    assertEquals(expected(), incrementalParser.parse(mappedFile()));
+  }
+  
+  @Test
+  public void testStepsMatchSequential() {
+    // Every clock read advances the fake clock by a nanosecond
+    for (long budget = 0; budget < 8; budget++) {
+      IncrementalObjParse parse = incrementalParser.begin(mappedFile());
+      while (!parse.step(budget)) {}
+      assertEquals(expected(), parse.getMeshObject());
+    }
+  }
+  
+  @Test
+  public void testStepStopsWhenBudgetIsSpent() {
+    IncrementalObjParse parse = incrementalParser.begin(mappedFile());
+    ticker.nanosPerRead = 100;
+    
+    assertFalse(parse.step(100));
+    long linesAfterFirstStep = parse.getLinesParsed();
+    assertTrue(linesAfterFirstStep > 0);
+    
+    assertFalse(parse.step(100));
+    assertTrue(parse.getLinesParsed() > linesAfterFirstStep);
+  }
+  
+  @Test
+  public void testProgress() {
+    IncrementalObjParse parse = incrementalParser.begin(mappedFile());
+    assertEquals(0f, parse.getProgress(), 0f);
+    
+    float lastProgress = 0;
+    while (!parse.step(0)) {
+      float progress = parse.getProgress();
+      assertTrue(progress >= lastProgress);
+      assertTrue(progress < 1f);
+      lastProgress = progress;
+    }
+    assertTrue(parse.isDone());
+    assertEquals(1f, parse.getProgress(), 0f);
+    assertTrue(parse.step(0));
+  }
+  
+  @Test
+  public void testProgressOfUnsizedFile() {
+    IncrementalObjParse parse = incrementalParser.begin(
+        new ResourceObjFile(new ByteArrayInputStream(file.getBytes())));
+    parse.step(0);
+    assertEquals(0f, parse.getProgress(), 0f);
+    parse.step(Long.MAX_VALUE);
+    assertEquals(1f, parse.getProgress(), 0f);
+    assertEquals(expected(), parse.getMeshObject());
+  }
+  
+  @Test
+  public void testUnifiedIndices() {
+    sequentialParser.setUnifiedIndices(true);
+    incrementalParser.setUnifiedIndices(true);
+    IncrementalObjParse parse = incrementalParser.begin(mappedFile());
+    while (!parse.step(1)) {}
+    assertEquals(expected(), parse.getMeshObject());
+  }
+  
+  @Test(expected = IllegalStateException.class)
+  public void testMeshObjectUnavailableBeforeDone() {
+    IncrementalObjParse parse = incrementalParser.begin(mappedFile());
+    parse.step(0);
+    parse.getMeshObject();
+  }
+  
+  private MeshObject expected() {
+    return sequentialParser.parse(new ResourceObjFile(new ByteArrayInputStream(file.getBytes())));
+  }
+  
+  private MappedObjFile mappedFile() {
+    return new MappedObjFile(ByteBuffer.wrap(file.getBytes()));
+  }
+  
+  private List<Float> generateRandomFloats(int numToGenerate) {
+    List<Float> floats = Lists.newArrayList();
+    for (int i = 0; i < numToGenerate; i++) {
+      floats.add((float) (Math.random()));
+    }
+    return floats;
+  }
+  
+  private List<Integer> generateRandomIndices(int numToGenerate) {
+    List<Integer> indices = Lists.newArrayList();
+    for (int i = 0; i < numToGenerate; i++) {
+      // Face indices are 1-valued
+      indices.add((int) (Math.random() * NUM_OF_ELEMENTS) + 1);
+    }
+    return indices;
+  }
+  
+  private static class FakeTicker extends Ticker {
+    long nanos = 0;
+    long nanosPerRead = 1;
+    
+    @Override
+    public long read() {
+      nanos += nanosPerRead;
+      return nanos;
+    }
+  }
+}
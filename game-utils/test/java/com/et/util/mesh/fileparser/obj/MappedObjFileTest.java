@@ -0,0 +1,110 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests implementation of {@link MappedObjFile}.
+ */
+public class MappedObjFileTest {
+
+  @Test
+  public void testReadsMultiLineFile() {
+    String file = "line1\nline2\nline3";
+    testOnFile(file, file.split("\n"));
+  }
+  
+  @Test
+  public void testHandlesEmptyFile() {
+    testOnFile("", new String[0]);
+  }
+  
+  @Test
+  public void testReadsTrailingNewLines() {
+    String file = "line1\nline2\n\n\n";
+    String[] expectedContents = {"line1", "line2", "", ""};
+    testOnFile(file, expectedContents);
+  }
+  
+  @Test
+  public void testStripsCarriageReturns() {
+    String file = "v 1 2 3\r\nf 1 2 3\r\n\r\n";
+    String[] expectedContents = {"v 1 2 3", "f 1 2 3", ""};
+    testOnFile(file, expectedContents);
+  }
+  
+  @Test
+  public void testPutLineComplicatedUseCase() {
+    MappedObjFile objFile = getMappedObjFile("line1\nline2\nline3");
+    objFile.getNextElement();
+    objFile.putLine("line4");
+    objFile.putLine("line5");
+    objFile.getNextElement();
+    objFile.getNextElement();
+    objFile.getNextElement();
+    objFile.putLine("line6");
+    String[] expectedContents = {"line6", "line3"};
+    testOnFile(objFile, expectedContents);
+  }
+  
+  @Test
+  public void testPutLineAfterLastLine() {
+    MappedObjFile objFile = getMappedObjFile("line1");
+    objFile.getNextElement();
+    objFile.putLine("line1");
+    testOnFile(objFile, "line1");
+  }
+  
+  @Test
+  public void testReadsFromBufferPosition() {
+    ByteBuffer buffer = ByteBuffer.wrap("skip\nline1\nline2\nrest".getBytes());
+    buffer.position(5);
+    buffer.limit(17);
+    testOnFile(new MappedObjFile(buffer), "line1", "line2");
+    assertEquals(5, buffer.position());
+  }
+  
+  @Test
+  public void testLineIsCharSequenceView() {
+    CharSequence line = getMappedObjFile("vn 0.5 1 2\n").getNextElement();
+    assertEquals(10, line.length());
+    assertEquals('n', line.charAt(1));
+    assertEquals("0.5", line.subSequence(3, 6).toString());
+  }
+  
+  @Test
+  public void testOpensFileOnDisk() throws IOException {
+    File file = File.createTempFile("mapped", ".obj");
+    file.deleteOnExit();
+    FileOutputStream outputStream = new FileOutputStream(file);
+    outputStream.write("o cube\nv 1 2 3\n".getBytes());
+    outputStream.close();
+    
+    testOnFile(MappedObjFile.open(file), "o cube", "v 1 2 3");
+  }
+  
+  private void testOnFile(String file, String... expectedContents) {
+    testOnFile(getMappedObjFile(file), expectedContents);
+  }
+  
+  private void testOnFile(MappedObjFile objFile, String... expectedContents) {
+    int lineCount = 0;
+    while (objFile.hasMoreElements()) {
+      CharSequence content = objFile.getNextElement();
+      assertEquals(expectedContents[lineCount], content.toString());
+      lineCount++;
+    }
+    
+    assertEquals(expectedContents.length, lineCount);
+  }
+  
+  private MappedObjFile getMappedObjFile(String file) {
+    return new MappedObjFile(ByteBuffer.wrap(file.getBytes()));
+  }
+}
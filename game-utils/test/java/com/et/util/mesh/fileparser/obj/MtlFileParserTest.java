@@ -0,0 +1,78 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.Material;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link MtlFileParser}.
+ */
+public class MtlFileParserTest {
+  
+  private MtlFileParser parser;
+  
+  @Before
+  public void setUp() {
+    parser = new MtlFileParser();
+  }
+  
+  @Test
+  public void testParsesMaterials() {
+    Map<String, Material> materials = parse("# Blender MTL\n\nnewmtl wood\nNs 96.078431\n"
+        + "Ka 0.1 0.2 0.3\nKd 0.640000 0.5 0.4\nKs 0.5\nKe 0 0 0.25\nNi 1.5\nd 0.75\nillum 2\n"
+        + "map_Kd textures/wood.png\nmap_Bump -bm 0.5 wood_normal.png\n\nnewmtl glass\nTr 0.9\n"
+        + "map_d -s 1 1 1 -o 0 0 0 mask.png\n");
+    
+    assertEquals(Lists.newArrayList("wood", "glass"), Lists.newArrayList(materials.keySet()));
+    Material expectedWood = new Material.Builder()
+        .setName("wood")
+        .setSpecularExponent(96.078431f)
+        .setAmbientColor(0.1f, 0.2f, 0.3f)
+        .setDiffuseColor(0.64f, 0.5f, 0.4f)
+        .setSpecularColor(0.5f, 0.5f, 0.5f)
+        .setEmissiveColor(0f, 0f, 0.25f)
+        .setOpticalDensity(1.5f)
+        .setDissolve(0.75f)
+        .setIlluminationModel(2)
+        .setDiffuseMap("textures/wood.png")
+        .setBumpMap("wood_normal.png")
+        .build();
+    assertEquals(expectedWood, materials.get("wood"));
+    
+    Material glass = materials.get("glass");
+    assertEquals(0.1f, glass.getDissolve(), 1e-6f);
+    assertEquals("mask.png", glass.getDissolveMap());
+    assertNull(glass.getDiffuseMap());
+    assertArrayEquals(new float[] {1f, 1f, 1f}, glass.getDiffuseColor(), 0f);
+  }
+  
+  @Test
+  public void testRecordsSkippedLines() {
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+    Map<String, Material> materials = parser.parse(new ResourceObjFile(new ByteArrayInputStream(
+        "Kd 1 0 0\nnewmtl red\nKd 1 x 0\nTf 1 1 1\nd 2\nKd 1 0 0\n".getBytes())), diagnostics);
+    
+    assertEquals(new Material.Builder().setName("red").setDiffuseColor(1f, 0f, 0f).build(),
+        materials.get("red"));
+    assertEquals(3, diagnostics.getMalformedLineCount());
+    assertEquals(1, (int) diagnostics.getUnknownDirectiveCounts().get("Tf"));
+  }
+  
+  @Test
+  public void testColorsAreCopied() {
+    Material material = new Material.Builder().setName("m").build();
+    material.getDiffuseColor()[0] = 0f;
+    assertArrayEquals(new float[] {1f, 1f, 1f}, material.getDiffuseColor(), 0f);
+  }
+  
+  private Map<String, Material> parse(String file) {
+    return parser.parse(new ResourceObjFile(new ByteArrayInputStream(file.getBytes())));
+  }
+}
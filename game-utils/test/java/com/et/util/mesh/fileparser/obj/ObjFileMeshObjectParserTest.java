@@ -3,14 +3,20 @@ package com.et.util.mesh.fileparser.obj;
 import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.et.util.mesh.data.MaterialRange;
 import com.et.util.mesh.data.MeshData;
 import com.et.util.mesh.data.MeshObject;
 import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.et.util.mesh.fileparser.MeshObjectParser;
+import com.et.util.mesh.fileparser.annotations.ObjMeshFileParser;
+import com.et.util.mesh.fileparser.annotations.UnifiedIndexObjMeshFileParser;
 import com.et.util.primitives.TextureCoords;
 import com.et.util.primitives.TriangularFace;
 import com.et.util.primitives.geom.NormalVector;
@@ -18,6 +24,8 @@ import com.et.util.primitives.geom.Vertex;
 import com.google.common.collect.Lists;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
 
 /**
  * Tests for {@link ObjFileMeshObjectParser}.
@@ -281,6 +289,124 @@ public class ObjFileMeshObjectParserTest {
     testGeneration(file1 + file2, data1, data2);
   }
   
+  @Test
+  public void testExporterDirectivesDoNotChangeMeshes() {
+    // Smoothing groups are kept, see testRecordsSmoothingGroups
+    String plain = "mtllib tri.mtl\nv 1 2 3\nv 4 5 6\nv 7 8 9\nvn 0 1 0\no tri\nusemtl wood\n"
+        + "s 1\nf 1//1 2//1 3//1\n";
+    String exported = "# Blender export\nmtllib tri.mtl\n\nv 1 2 3\nv 4 5 6\nv 7 8 9\n"
+        + "vn 0 1 0\no tri\ng tri_group\nusemtl wood\ns 1\nf 1//1 2//1 3//1\ns off\nl 1 2\n";
+    
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+    MeshObject parsed = parser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(exported.getBytes())), diagnostics);
+    assertEquals(parser.parse(new ResourceObjFile(new ByteArrayInputStream(plain.getBytes()))),
+        parsed);
+    assertFalse(diagnostics.hasProblems());
+  }
+  
+  @Test
+  public void testRecordsSmoothingGroups() {
+    String file = "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\no first\nusemtl red\ns 1\nf 1 2 3\n"
+        + "usemtl blue\ns off\nf 2 4 3\nusemtl red\ns 2\nf 1 3 4\no second\nf 4 2 1\n";
+    
+    MeshObject parsed = parser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(file.getBytes())));
+    // Groups follow their faces when they are grouped by material
+    assertEquals(IntBuffer.wrap(new int[] {1, 2, 0}),
+        parsed.getMesh("first").getSmoothingGroups());
+    assertEquals(IntBuffer.wrap(new int[] {2}), parsed.getMesh("second").getSmoothingGroups());
+    
+    String withoutGroups = "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n";
+    assertNull(parser.parse(new ResourceObjFile(new ByteArrayInputStream(
+        withoutGroups.getBytes()))).getMesh("default").getSmoothingGroups());
+  }
+  
+  @Test
+  public void testSkippedLinesAreSummarized() {
+    String file = "v 1 2 3\nvp 1 2\nv 4 5 6\nvp 3 4\ncstype bezier\nv 7 x 9\nv 7 8 9\n"
+        + "f 1 2 3\n";
+    
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics();
+    MeshObject parsed = parser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(file.getBytes())), diagnostics);
+    assertEquals(3, parsed.getMesh("default").getVerticies().capacity() / NUM_VERTEX_COMPONENTS);
+    assertEquals(2, (int) diagnostics.getUnknownDirectiveCounts().get("vp"));
+    assertEquals(1, (int) diagnostics.getUnknownDirectiveCounts().get("cstype"));
+    assertEquals(1, diagnostics.getMalformedLineCount());
+    assertEquals(4, diagnostics.getExamples().size());
+    assertTrue(diagnostics.getExamples().get(3).startsWith("'v 7 x 9'"));
+  }
+  
+  @Test
+  public void testGroupsFacesByMaterial() {
+    String file = "mtllib a.mtl b.mtl\nv 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\nf 1 2 3\n"
+        + "usemtl red\nf 2 4 3\nusemtl blue\nf 1 3 4\nusemtl red\nf 4 2 1\nusemtl blue\n"
+        + "f 3 1 2\no next\nf 1 2 4\n";
+    
+    MeshObject parsed = parser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(file.getBytes())));
+    assertEquals(Lists.newArrayList("a.mtl", "b.mtl"), parsed.getMaterialLibraries());
+    
+    // Faces without a material first, then by first use, keeping file order within a material
+    MeshData mesh = parsed.getMesh("default");
+    assertEquals(Lists.newArrayList(new MaterialRange(null, 0, 3),
+        new MaterialRange("red", 3, 6), new MaterialRange("blue", 9, 6)),
+        mesh.getMaterialRanges());
+    assertEquals(IntBuffer.wrap(new int[] {0, 1, 2, 1, 3, 2, 3, 1, 0, 0, 2, 3, 2, 0, 1}),
+        mesh.getVertexIndices());
+    
+    // The material stays current into the next object
+    assertEquals(Lists.newArrayList(new MaterialRange("blue", 0, 3)),
+        parsed.getMesh("next").getMaterialRanges());
+  }
+  
+  @Test
+  public void testNoMaterialRangesWithoutMaterials() {
+    String file = "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n";
+    MeshObject parsed = parser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(file.getBytes())));
+    assertTrue(parsed.getMesh("default").getMaterialRanges().isEmpty());
+    assertTrue(parsed.getMaterialLibraries().isEmpty());
+  }
+  
+  @Test
+  public void testUnifiedIndexParserBinding() {
+    Injector injector = Guice.createInjector(new MeshFileParserModule());
+    MeshObjectParser<ObjFile> unifiedParser = injector.getInstance(
+        Key.get(new TypeLiteral<MeshObjectParser<ObjFile>>() {},
+            UnifiedIndexObjMeshFileParser.class));
+    String file = fileGenerator.withVertices()
+        .withTextureCoords()
+        .withNormals()
+        .withFacesForSetComponents()
+        .generateFile();
+    
+    MeshData data = unifiedParser.parse(new ResourceObjFile(new ByteArrayInputStream(
+        file.getBytes()))).getMesh("default");
+    assertTrue(data.hasUnifiedIndices());
+    assertEquals(NUM_FACES * NUM_COMPONENTS_PER_FACE, data.getVertexIndices().capacity());
+    assertEquals(data.getVerticies().capacity() / NUM_VERTEX_COMPONENTS,
+        data.getNormals().capacity() / NUM_NORMAL_COMPONENTS);
+    assertEquals(data.getVerticies().capacity() / NUM_VERTEX_COMPONENTS,
+        data.getTextureCoords().capacity() / NUM_TEX_COMPONENTS);
+  }
+  
+  @Test
+  public void testResourceFileParserBinding() {
+    Injector injector = Guice.createInjector(new MeshFileParserModule());
+    MeshObjectParser<ResourceObjFile> resourceParser = injector.getInstance(
+        Key.get(new TypeLiteral<MeshObjectParser<ResourceObjFile>>() {},
+            ObjMeshFileParser.class));
+    String file = fileGenerator.withVertices()
+        .withNormals()
+        .withFacesForSetComponents()
+        .generateFile();
+    
+    assertEquals(parser.parse(new ResourceObjFile(new ByteArrayInputStream(file.getBytes()))),
+        resourceParser.parse(new ResourceObjFile(new ByteArrayInputStream(file.getBytes()))));
+  }
+  
   private List<Integer> accountForZeroIndex(List<Integer> vIn) {
     List<Integer> newList = Lists.newArrayList();
     for (Integer integer : vIn) {
@@ -295,6 +421,10 @@ public class ObjFileMeshObjectParserTest {
     ResourceObjFile objFile = new ResourceObjFile(new ByteArrayInputStream(
         file.toString().getBytes()));
     assertEquals("For file: " + file.toString(), expectedObject, parser.parse(objFile));
+    
+    MappedObjFile mappedFile = new MappedObjFile(ByteBuffer.wrap(file.getBytes()));
+    assertEquals("For mapped file: " + file.toString(), expectedObject,
+        parser.parse(mappedFile));
   }
   
   private MeshObject createMeshObject(MeshData... meshes) {
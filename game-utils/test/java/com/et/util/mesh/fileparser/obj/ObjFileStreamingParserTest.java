@@ -0,0 +1,205 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.et.util.mesh.fileparser.MeshParseListener;
+import com.et.util.mesh.fileparser.StreamingMeshParser;
+import com.et.util.mesh.fileparser.annotations.ObjMeshFileParser;
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Tests for {@link ObjFileStreamingParser} and {@link ObjMeshObjectListener}.
+ */
+public class ObjFileStreamingParserTest {
+  
+  private Injector injector;
+  private ObjFileStreamingParser parser;
+  private RecordingListener listener;
+  
+  @Before
+  public void setUp() {
+    injector = Guice.createInjector(new MeshFileParserModule());
+    parser = injector.getInstance(ObjFileStreamingParser.class);
+    listener = new RecordingListener();
+  }
+  
+  @Test
+  public void testEventsInFileOrder() {
+    parse("# comment\nv 1 2 3\no first\nvt 0.5 0.25\nvn 0 1 0\nv 4 5 6 0.5\nf 1/1/1 2/1/1 1/1/1\n");
+    
+    List<String> expected = Lists.newArrayList(
+        "v 1.0 2.0 3.0 1.0",
+        "o first",
+        "vt 0.5 0.25 0.0",
+        "vn 0.0 1.0 0.0",
+        "v 4.0 5.0 6.0 0.5",
+        "f [0, 0, 0, 1, 0, 0, 0, 0, 0]",
+        "end");
+    assertEquals(expected, listener.events);
+  }
+  
+  @Test
+  public void testMissingIndices() {
+    parse("f 1 2 3\nf 1//2 2//3 3//1\nf 1/2 2/3 3/1\n");
+    
+    int m = MeshParseListener.MISSING_INDEX;
+    List<String> expected = Lists.newArrayList(
+        "f " + Arrays.toString(new int[] {0, m, m, 1, m, m, 2, m, m}),
+        "f " + Arrays.toString(new int[] {0, m, 1, 1, m, 2, 2, m, 0}),
+        "f " + Arrays.toString(new int[] {0, 1, m, 1, 2, m, 2, 0, m}),
+        "end");
+    assertEquals(expected, listener.events);
+  }
+  
+  @Test
+  public void testSkipsInvalidLines() {
+    parse("v 1 2 3\nbad line\nv 1 x 3\nf 1 2\nvn 0 1 0\n");
+    
+    List<String> expected = Lists.newArrayList("v 1.0 2.0 3.0 1.0", "vn 0.0 1.0 0.0", "end");
+    assertEquals(expected, listener.events);
+  }
+  
+  @Test
+  public void testExporterDirectives() {
+    parse("mtllib a.mtl b.mtl\n\ng body arm\nusemtl skin\ns 2\ns off\nl 1 2 3\n");
+    
+    List<String> expected = Lists.newArrayList(
+        "mtllib a.mtl b.mtl",
+        "g body arm",
+        "usemtl skin",
+        "s 2",
+        "s 0",
+        "end");
+    assertEquals(expected, listener.events);
+  }
+  
+  @Test
+  public void testDiagnosticsKeepFirstExamples() {
+    ObjParseDiagnostics diagnostics = new ObjParseDiagnostics(2);
+    parser.parse(new ResourceObjFile(new ByteArrayInputStream(
+        "vp 1\nvp 2\ns smooth\nbevel on\n".getBytes())), listener, diagnostics);
+    
+    assertEquals(Lists.newArrayList("end"), listener.events);
+    assertEquals(2, (int) diagnostics.getUnknownDirectiveCounts().get("vp"));
+    assertEquals(1, (int) diagnostics.getUnknownDirectiveCounts().get("bevel"));
+    assertEquals(1, diagnostics.getMalformedLineCount());
+    assertEquals(Lists.newArrayList("'vp 1': unknown directive", "'vp 2': unknown directive"),
+        diagnostics.getExamples());
+    
+    ObjParseDiagnostics merged = new ObjParseDiagnostics();
+    merged.addAll(diagnostics);
+    merged.addAll(diagnostics);
+    assertEquals(4, (int) merged.getUnknownDirectiveCounts().get("vp"));
+    assertEquals(2, merged.getMalformedLineCount());
+    assertEquals(4, merged.getExamples().size());
+  }
+  
+  @Test
+  public void testEmptyFile() {
+    parse("");
+    assertEquals(Lists.newArrayList("end"), listener.events);
+  }
+  
+  @Test
+  public void testMeshObjectListenerMatchesParser() {
+    String file = "v 1 2 3\nv 4 5 6\nv 7 8 9\nvn 0 1 0\no tri\nf 1//1 2//1 3//1\n"
+        + "o other\nvt 0 1\nf 3/1 2/1 1/1\n";
+    ObjMeshObjectListener meshListener = new ObjMeshObjectListener(
+        injector.getInstance(ObjMeshLocalizer.class), /* unifiedIndices */ false);
+    parser.parse(new MappedObjFile(ByteBuffer.wrap(file.getBytes())), meshListener);
+    
+    MeshObject expected = injector.getInstance(ObjFileMeshObjectParser.class).parse(
+        new ResourceObjFile(new ByteArrayInputStream(file.getBytes())));
+    assertEquals(expected, meshListener.getMeshObject());
+    // The vertices declared before the first object form a default mesh
+    assertEquals(3, meshListener.getMeshObject().getAllMeshes().size());
+  }
+  
+  @Test(expected = IllegalStateException.class)
+  public void testMeshObjectUnavailableBeforeEnd() {
+    new ObjMeshObjectListener(injector.getInstance(ObjMeshLocalizer.class), false)
+        .getMeshObject();
+  }
+  
+  @Test
+  public void testStreamingParserBinding() {
+    StreamingMeshParser<ObjFile> bound = injector.getInstance(Key.get(
+        new TypeLiteral<StreamingMeshParser<ObjFile>>() {}, ObjMeshFileParser.class));
+    assertTrue(bound instanceof ObjFileStreamingParser);
+  }
+  
+  private void parse(String file) {
+    parser.parse(new ResourceObjFile(new ByteArrayInputStream(file.getBytes())), listener);
+  }
+  
+  /**
+   * Records every event as a line of text.
+   */
+  private static class RecordingListener implements MeshParseListener {
+    final List<String> events = Lists.newArrayList();
+
+    @Override
+    public void onObjectStart(String name) {
+      events.add("o " + name);
+    }
+
+    @Override
+    public void onVertex(float x, float y, float z, float w) {
+      events.add("v " + x + " " + y + " " + z + " " + w);
+    }
+
+    @Override
+    public void onTexCoord(float u, float v, float w) {
+      events.add("vt " + u + " " + v + " " + w);
+    }
+
+    @Override
+    public void onNormal(float x, float y, float z) {
+      events.add("vn " + x + " " + y + " " + z);
+    }
+
+    @Override
+    public void onFace(int[] indices) {
+      events.add("f " + Arrays.toString(indices));
+    }
+
+    @Override
+    public void onGroup(String names) {
+      events.add("g " + names);
+    }
+
+    @Override
+    public void onSmoothingGroup(int group) {
+      events.add("s " + group);
+    }
+
+    @Override
+    public void onUseMaterial(String name) {
+      events.add("usemtl " + name);
+    }
+
+    @Override
+    public void onMaterialLibrary(String fileNames) {
+      events.add("mtllib " + fileNames);
+    }
+
+    @Override
+    public void onEnd() {
+      events.add("end");
+    }
+  }
+}
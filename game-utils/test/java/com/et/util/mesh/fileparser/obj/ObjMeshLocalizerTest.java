@@ -7,6 +7,9 @@ import java.util.List;
 import org.junit.Test;
 
 import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.fileparser.obj.lineparsers.FaceDeclLineParser;
+import com.et.util.primitives.FloatArrayList;
+import com.et.util.primitives.IntArrayList;
 import com.et.util.primitives.TextureCoords;
 import com.et.util.primitives.TriangularFace;
 import com.et.util.primitives.geom.NormalVector;
@@ -80,6 +83,92 @@ public class ObjMeshLocalizerTest {
     assertEquals(expectedData, data);
   }
 
+  @Test
+  public void testEqualElementsShareLocalCopy() {
+    List<Vertex> vertices = Lists.newArrayList(new Vertex(.1f, .2f, .3f),
+        new Vertex(.4f, .5f, .6f), new Vertex(.1f, .2f, .3f));
+    List<TriangularFace> faces = Lists.newArrayList(new TriangularFace(
+        Lists.newArrayList(2, 1, 0), (List<Integer>) null, (List<Integer>) null));
+    MeshData.Builder meshDataBuilder = new MeshData.Builder();
+    localizer.makeLocalMeshData(meshDataBuilder, vertices, globalTextureCoords, globalNormals,
+        faces);
+    MeshData data = meshDataBuilder.build();
+    
+    // Global elements 0 and 2 are equal so both resolve to the first local copy
+    MeshData expectedData = new MeshData.Builder()
+        .setVertices(Lists.newArrayList(vertices.get(2), vertices.get(1)))
+        .setTextureCoords(Lists.<TextureCoords>newArrayList())
+        .setNormals(Lists.<NormalVector>newArrayList())
+        .setVertexIndices(Lists.newArrayList(0, 1, 0))
+        .setTextureCoordIndices(Lists.<Integer>newArrayList())
+        .setNormalIndices(Lists.<Integer>newArrayList())
+        .build();
+    
+    assertEquals(expectedData, data);
+  }
+  
+  @Test
+  public void testUnifiedIndicesWeldTriples() {
+    List<TriangularFace> faces = Lists.newArrayList(
+        new TriangularFace(Lists.newArrayList(0, 3, 5), Lists.newArrayList(0, 3, 5),
+            Lists.newArrayList(1, 3, 5)),
+        new TriangularFace(Lists.newArrayList(0, 5, 2), Lists.newArrayList(0, 2, 2),
+            Lists.newArrayList(1, 5, 2)));
+    MeshData.Builder meshDataBuilder = new MeshData.Builder();
+    localizer.makeUnifiedLocalMeshData(meshDataBuilder, globalVertices, globalTextureCoords,
+        globalNormals, faces);
+    MeshData data = meshDataBuilder.build();
+    
+    // Triples (0,1,0), (3,3,3), (5,5,5), (0,1,0), (5,5,2), (2,2,2); only the first repeats
+    List<Vertex> expectedVertices = Lists.newArrayList(globalVertices.get(0),
+        globalVertices.get(3), globalVertices.get(5), globalVertices.get(5),
+        globalVertices.get(2));
+    List<TextureCoords> expectedTexCoords = Lists.newArrayList(globalTextureCoords.get(1),
+        globalTextureCoords.get(3), globalTextureCoords.get(5), globalTextureCoords.get(5),
+        globalTextureCoords.get(2));
+    List<NormalVector> expectedNormals = Lists.newArrayList(globalNormals.get(0),
+        globalNormals.get(3), globalNormals.get(5), globalNormals.get(2),
+        globalNormals.get(2));
+    
+    MeshData expectedData = new MeshData.Builder()
+        .setVertices(expectedVertices)
+        .setTextureCoords(expectedTexCoords)
+        .setNormals(expectedNormals)
+        .setVertexIndices(Lists.newArrayList(0, 1, 2, 0, 3, 4))
+        .setUnifiedIndices(true)
+        .build();
+    
+    assertEquals(expectedData, data);
+    assertTrue(data.hasUnifiedIndices());
+  }
+  
+  @Test
+  public void testUnifiedIndicesFillMissingNormals() {
+    List<TriangularFace> faces = Lists.newArrayList(
+        new TriangularFace(Lists.newArrayList(0, 1, 2), Lists.newArrayList(4, 4, 4),
+            (List<Integer>) null),
+        new TriangularFace(Lists.newArrayList(0, 1, 3), (List<Integer>) null,
+            (List<Integer>) null));
+    MeshData.Builder meshDataBuilder = new MeshData.Builder();
+    localizer.makeUnifiedLocalMeshData(meshDataBuilder, globalVertices, globalTextureCoords,
+        globalNormals, faces);
+    MeshData data = meshDataBuilder.build();
+    
+    NormalVector missing = new NormalVector(0f, 0f, 0f);
+    MeshData expectedData = new MeshData.Builder()
+        .setVertices(Lists.newArrayList(globalVertices.get(0), globalVertices.get(1),
+            globalVertices.get(2), globalVertices.get(0), globalVertices.get(1),
+            globalVertices.get(3)))
+        .setTextureCoords(Lists.<TextureCoords>newArrayList())
+        .setNormals(Lists.newArrayList(globalNormals.get(4), globalNormals.get(4),
+            globalNormals.get(4), missing, missing, missing))
+        .setVertexIndices(Lists.newArrayList(0, 1, 2, 3, 4, 5))
+        .setUnifiedIndices(true)
+        .build();
+    
+    assertEquals(expectedData, data);
+  }
+  
   @Test
   public void testLocalizedNoIndices() {
     List<TriangularFace> faces = Lists.newArrayList();
@@ -97,4 +186,77 @@ public class ObjMeshLocalizerTest {
     assertEquals(expectedData, data);
     
   }
+  
+  @Test
+  public void testPrimitiveListsMatchObjects() {
+    List<TriangularFace> faces = Lists.newArrayList(
+        new TriangularFace(IntArrayList.of(0, 3, 5), IntArrayList.of(0, 3, 5),
+            IntArrayList.of(0, 3, 5)),
+        new TriangularFace(IntArrayList.of(0, 3, 2), IntArrayList.of(0, 2, 3),
+            IntArrayList.of(0, 3, 3)),
+        new TriangularFace(IntArrayList.of(2, 3, 4), new IntArrayList(), new IntArrayList()));
+    FloatArrayList vertices = new FloatArrayList();
+    for (Vertex vertex : globalVertices) {
+      vertices.addAll(new float[] {vertex.getX(), vertex.getY(), vertex.getZ(), vertex.getW()},
+          0, 4);
+    }
+    FloatArrayList textureCoords = new FloatArrayList();
+    for (TextureCoords coords : globalTextureCoords) {
+      textureCoords.addAll(new float[] {coords.getU(), coords.getV(), coords.getW()}, 0, 3);
+    }
+    FloatArrayList normals = new FloatArrayList();
+    for (NormalVector normal : globalNormals) {
+      normals.addAll(new float[] {normal.getX(), normal.getY(), normal.getZ()}, 0, 3);
+    }
+    IntArrayList flatFaces = new IntArrayList();
+    for (TriangularFace face : faces) {
+      for (int corner = 0; corner < 3; corner++) {
+        flatFaces.add(face.getVertexIndex(corner));
+        flatFaces.add(face.hasTextureCoords() ? face.getTextureIndex(corner) :
+            FaceDeclLineParser.MISSING_INDEX);
+        flatFaces.add(face.hasNormals() ? face.getNormalIndex(corner) :
+            FaceDeclLineParser.MISSING_INDEX);
+      }
+    }
+    
+    MeshData.Builder fromObjects = new MeshData.Builder();
+    localizer.makeLocalMeshData(fromObjects, globalVertices, globalTextureCoords, globalNormals,
+        faces);
+    MeshData.Builder fromLists = new MeshData.Builder();
+    localizer.makeLocalMeshData(fromLists, vertices, textureCoords, normals, flatFaces);
+    assertEquals(fromObjects.build(), fromLists.build());
+    
+    MeshData.Builder unifiedFromObjects = new MeshData.Builder();
+    localizer.makeUnifiedLocalMeshData(unifiedFromObjects, globalVertices, globalTextureCoords,
+        globalNormals, faces);
+    MeshData.Builder unifiedFromLists = new MeshData.Builder();
+    localizer.makeUnifiedLocalMeshData(unifiedFromLists, vertices, textureCoords, normals,
+        flatFaces);
+    assertEquals(unifiedFromObjects.build(), unifiedFromLists.build());
+  }
+  
+  @Test
+  public void testPrimitiveListsTakeNullAsEmpty() {
+    FloatArrayList vertices = FloatArrayList.of(0f, 0f, 0f, 1f, 1f, 0f, 0f, 1f, 0f, 1f, 0f, 1f);
+    IntArrayList faces = IntArrayList.of(0, FaceDeclLineParser.MISSING_INDEX,
+        FaceDeclLineParser.MISSING_INDEX, 1, FaceDeclLineParser.MISSING_INDEX,
+        FaceDeclLineParser.MISSING_INDEX, 2, FaceDeclLineParser.MISSING_INDEX,
+        FaceDeclLineParser.MISSING_INDEX);
+    MeshData.Builder withNulls = new MeshData.Builder();
+    localizer.makeUnifiedLocalMeshData(withNulls, vertices, null, null, faces);
+    MeshData.Builder withEmpty = new MeshData.Builder();
+    localizer.makeUnifiedLocalMeshData(withEmpty, vertices, new FloatArrayList(),
+        new FloatArrayList(), faces);
+    assertEquals(withEmpty.build(), withNulls.build());
+    
+    withNulls = new MeshData.Builder();
+    localizer.makeLocalMeshData(withNulls, vertices, null, null, faces);
+    assertEquals(3, withNulls.build().getVertexIndices().capacity());
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrimitiveListsRejectPartialElements() {
+    localizer.makeLocalMeshData(new MeshData.Builder(), FloatArrayList.of(1f, 2f, 3f),
+        new FloatArrayList(), new FloatArrayList(), new IntArrayList());
+  }
 }
@@ -0,0 +1,185 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests for {@link ParallelObjFileMeshObjectParser}. Results are checked against the sequential
+ * {@link ObjFileMeshObjectParser}.
+ */
+public class ParallelObjFileMeshObjectParserTest {
+  
+  // The generator offsets each object's faces by the face count, so this matches it
+  private static final int NUM_OF_ELEMENTS = 6;
+  private static final int NUM_FACES = 6;
+  private static final int NUM_COMPONENTS_PER_FACE = 3;
+  
+  private ExecutorService executor;
+  private ObjFileMeshObjectParser sequentialParser;
+  private ParallelObjFileMeshObjectParser parallelParser;
+  private TestObjFileGenerator fileGenerator;
+  
+  @Before
+  public void setUp() {
+    Injector injector = Guice.createInjector(new MeshFileParserModule());
+    executor = Executors.newFixedThreadPool(4);
+    sequentialParser = injector.getInstance(ObjFileMeshObjectParser.class);
+    parallelParser = new ParallelObjFileMeshObjectParser(
+        injector.getInstance(ObjFileMeshObjectParser.class), executor);
+    
+    int numIndices = NUM_FACES * NUM_COMPONENTS_PER_FACE;
+    fileGenerator = new TestObjFileGenerator(generateRandomFloats(NUM_OF_ELEMENTS * 4),
+        generateRandomFloats(NUM_OF_ELEMENTS * 2), generateRandomFloats(NUM_OF_ELEMENTS * 3),
+        generateRandomIndices(numIndices), generateRandomIndices(numIndices),
+        generateRandomIndices(numIndices));
+  }
+  
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+  
+  @Test
+  public void testEmptyFile() {
+    testMatchesSequential("", 1);
+  }
+  
+  @Test
+  public void testSingleChunk() {
+    String file = fileGenerator.withVertices()
+        .withTextureCoords()
+        .withNormals()
+        .withFacesForSetComponents()
+        .forObject("Obj1")
+        .generateFile();
+    testMatchesSequential(file, Integer.MAX_VALUE);
+  }
+  
+  @Test
+  public void testObjectsSpanChunks() {
+    String file = fileGenerator.withAllComponentsInterleaved()
+        .withFacesForSetComponents()
+        .forObject("Obj1")
+        .forObject("Obj2")
+        .forObject("Obj3")
+        .generateFile();
+    
+    // Everything from one line per chunk up to a handful of chunks
+    for (int minChunkSize = 1; minChunkSize < file.length(); minChunkSize *= 3) {
+      testMatchesSequential(file, minChunkSize);
+    }
+  }
+  
+  @Test
+  public void testDefaultObjectWithoutFaces() {
+    String file = fileGenerator.withVertices()
+        .withNormals()
+        .generateFile();
+    testMatchesSequential(file, 1);
+  }
+  
+  @Test
+  public void testObjectsWithoutFacesSeePoolsSoFar() {
+    String file = "v 1 2 3\no first\nv 4 5 6\no second\nv 7 8 9\nvn 0 1 0\n";
+    testMatchesSequential(file, 1);
+    testMatchesSequential(file, 8);
+  }
+  
+  @Test
+  public void testUnifiedIndices() {
+    String file = fileGenerator.withVertices()
+        .withTextureCoords()
+        .withNormals()
+        .withFacesForSetComponents()
+        .forObject("Obj1")
+        .forObject("Obj2")
+        .generateFile();
+    sequentialParser.setUnifiedIndices(true);
+    parallelParser.setUnifiedIndices(true);
+    testMatchesSequential(file, 16);
+  }
+  
+  @Test
+  public void testSkipsInvalidLines() {
+    String file = "v 1 2 3\nv 4 5 6\nbad line\nv 7 8 9\nf 1 2 3\nf 1 2\n";
+    testMatchesSequential(file, 1);
+  }
+  
+  @Test
+  public void testMaterialsCarryAcrossChunks() {
+    String file = "mtllib scene.mtl\nv 1 2 3\nv 4 5 6\nv 7 8 9\nf 1 2 3\nusemtl red\no a\n"
+        + "f 1 2 3\nusemtl blue\nf 3 2 1\nf 2 3 1\nusemtl red\nf 1 3 2\no b\nf 2 1 3\n"
+        + "mtllib extra.mtl\nusemtl blue\nf 3 1 2\n";
+    for (int minChunkSize = 1; minChunkSize < file.length(); minChunkSize *= 2) {
+      testMatchesSequential(file, minChunkSize);
+    }
+    sequentialParser.setUnifiedIndices(true);
+    parallelParser.setUnifiedIndices(true);
+    testMatchesSequential(file, 1);
+  }
+  
+  @Test
+  public void testSmoothingGroupsCarryAcrossChunks() {
+    String file = "v 1 2 3\nv 4 5 6\nv 7 8 9\nf 1 2 3\no a\nf 1 2 3\ns 1\nusemtl red\n"
+        + "f 3 2 1\nf 2 3 1\ns off\nf 1 3 2\no b\nf 2 1 3\ns 2\nusemtl blue\nf 3 1 2\n"
+        + "o c\nf 1 2 3\nusemtl red\nf 2 3 1\n";
+    for (int minChunkSize = 1; minChunkSize < file.length(); minChunkSize *= 2) {
+      testMatchesSequential(file, minChunkSize);
+    }
+    sequentialParser.setUnifiedIndices(true);
+    parallelParser.setUnifiedIndices(true);
+    testMatchesSequential(file, 1);
+
+    parallelParser.setMinChunkSize(1);
+    MeshObject parsed = parallelParser.parse(new MappedObjFile(ByteBuffer.wrap(file.getBytes())));
+    assertNull(parsed.getMesh("default").getSmoothingGroups());
+    assertNotNull(parsed.getMesh("a").getSmoothingGroups());
+    assertEquals(2, parsed.getMesh("c").getSmoothingGroups().get(0));
+  }
+  
+  @Test
+  public void testInvalidSmoothingGroupIsSkipped() {
+    testMatchesSequential("v 1 2 3\nv 4 5 6\nv 7 8 9\ns 3\nf 1 2 3\ns x\nf 3 2 1\n", 1);
+  }
+  
+  private void testMatchesSequential(String file, int minChunkSize) {
+    MeshObject expected = sequentialParser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(file.getBytes())));
+    
+    parallelParser.setMinChunkSize(minChunkSize);
+    MeshObject parsed = parallelParser.parse(new MappedObjFile(ByteBuffer.wrap(file.getBytes())));
+    assertEquals("For file: " + file + " with chunk size " + minChunkSize, expected, parsed);
+  }
+  
+  private List<Float> generateRandomFloats(int numToGenerate) {
+    List<Float> floats = Lists.newArrayList();
+    for (int i = 0; i < numToGenerate; i++) {
+      floats.add((float) (Math.random()));
+    }
+    return floats;
+  }
+  
+  private List<Integer> generateRandomIndices(int numToGenerate) {
+    List<Integer> indices = Lists.newArrayList();
+    for (int i = 0; i < numToGenerate; i++) {
+      // Face indices are 1-valued
+      indices.add((int) (Math.random() * NUM_OF_ELEMENTS) + 1);
+    }
+    return indices;
+  }
+}
@@ -0,0 +1,138 @@
+package com.et.util.mesh.fileparser.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.Bounds;
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.fileparser.MeshFileParserModule;
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Tests for {@link PresizedObjFileMeshObjectParser}. Results are checked against the sequential
+ * {@link ObjFileMeshObjectParser}.
+ */
+public class PresizedObjFileMeshObjectParserTest {
+  
+  // The generator offsets each object's faces by the face count, so this matches it
+  private static final int NUM_OF_ELEMENTS = 6;
+  private static final int NUM_FACES = 6;
+  private static final int NUM_COMPONENTS_PER_FACE = 3;
+  
+  private ObjFileMeshObjectParser sequentialParser;
+  private PresizedObjFileMeshObjectParser presizedParser;
+  private TestObjFileGenerator fileGenerator;
+  
+  @Before
+  public void setUp() {
+    Injector injector = Guice.createInjector(new MeshFileParserModule());
+    sequentialParser = injector.getInstance(ObjFileMeshObjectParser.class);
+    presizedParser = injector.getInstance(PresizedObjFileMeshObjectParser.class);
+    
+    int numIndices = NUM_FACES * NUM_COMPONENTS_PER_FACE;
+    fileGenerator = new TestObjFileGenerator(generateRandomFloats(NUM_OF_ELEMENTS * 4),
+        generateRandomFloats(NUM_OF_ELEMENTS * 2), generateRandomFloats(NUM_OF_ELEMENTS * 3),
+        generateRandomIndices(numIndices), generateRandomIndices(numIndices),
+        generateRandomIndices(numIndices));
+  }
+  
+  @Test
+  public void testEmptyFile() {
+    testMatchesSequential("");
+  }
+  
+  @Test
+  public void testMultipleObjects() {
+    String file = fileGenerator.withAllComponentsInterleaved()
+        .withFacesForSetComponents()
+        .forObject("Obj1")
+        .forObject("Obj2")
+        .forObject("Obj3")
+        .generateFile();
+    testMatchesSequential(file);
+  }
+  
+  @Test
+  public void testDefaultObjectWithoutFaces() {
+    String file = fileGenerator.withVertices()
+        .withNormals()
+        .generateFile();
+    testMatchesSequential(file);
+  }
+  
+  @Test
+  public void testObjectsWithoutFacesSeePoolsSoFar() {
+    testMatchesSequential("v 1 2 3\no first\nv 4 5 6\no second\nv 7 8 9\nvn 0 1 0\n");
+  }
+  
+  @Test
+  public void testEqualElementsShareLocalCopy() {
+    testMatchesSequential("v 1 2 3\nv 1 2 3\nv 4 5 6\nvt 0.5 0.5 1\nvt 0.5 0.5 0\n"
+        + "f 1/1 2/2 3/1\nf 2/2 3/1 1/1\n");
+  }
+  
+  @Test
+  public void testMixedFaces() {
+    testMatchesSequential("v 1 2 3\nv 4 5 6\nv 7 8 9\nvn 0 1 0\nvt 0 1\n"
+        + "f 1 2 3\nf 1//1 2//1 3//1\nf 3/1/1 2/1/1 1/1/1\n");
+  }
+  
+  @Test
+  public void testUnifiedIndices() {
+    String file = fileGenerator.withVertices()
+        .withTextureCoords()
+        .withNormals()
+        .withFacesForSetComponents()
+        .forObject("Obj1")
+        .forObject("Obj2")
+        .generateFile();
+    sequentialParser.setUnifiedIndices(true);
+    presizedParser.setUnifiedIndices(true);
+    testMatchesSequential(file);
+    testMatchesSequential("v 1 2 3\nv 4 5 6\nv 7 8 9\nvn 0 1 0\nvt 0 1\n"
+        + "f 1 2 3\nf 1//1 2//1 3//1\nf 3/1/1 2/1/1 1/1/1\n");
+  }
+  
+  @Test
+  public void testSkipsInvalidLines() {
+    testMatchesSequential("v 1 2 3\nv 4 5 6\nbad line\nv 7 8 9\nf 1 2 3\nf 1 2\nv 1 x 3\n");
+  }
+  
+  private void testMatchesSequential(String file) {
+    MeshObject expected = sequentialParser.parse(new ResourceObjFile(
+        new ByteArrayInputStream(file.getBytes())));
+    MeshObject parsed = presizedParser.parse(new MappedObjFile(ByteBuffer.wrap(file.getBytes())));
+    assertEquals("For file: " + file, expected, parsed);
+    // Bounds are gathered while localizing, in the order the vertices are written
+    for (MeshData mesh : parsed.getAllMeshes()) {
+      assertEquals(Bounds.of(mesh.getVerticies()), mesh.getBounds());
+      assertEquals(expected.getMesh(mesh.getName()).getBounds(), mesh.getBounds());
+    }
+  }
+  
+  private List<Float> generateRandomFloats(int numToGenerate) {
+    List<Float> floats = Lists.newArrayList();
+    for (int i = 0; i < numToGenerate; i++) {
+      floats.add((float) (Math.random()));
+    }
+    return floats;
+  }
+  
+  private List<Integer> generateRandomIndices(int numToGenerate) {
+    List<Integer> indices = Lists.newArrayList();
+    for (int i = 0; i < numToGenerate; i++) {
+      // Face indices are 1-valued
+      indices.add((int) (Math.random() * NUM_OF_ELEMENTS) + 1);
+    }
+    return indices;
+  }
+}
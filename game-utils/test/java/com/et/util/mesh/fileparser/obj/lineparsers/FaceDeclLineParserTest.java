@@ -59,6 +59,13 @@ public class FaceDeclLineParserTest {
     testInvalidFaceComponentParse("f /23/43 /32/23 /43/2");
   }
   
+  @Test
+  public void testErrorZeroIndex() {
+    testInvalidFaceComponentParse("f 0 2 3");
+    testInvalidFaceComponentParse("f 1/0/1 2/0/2 3/0/3");
+    testInvalidFaceComponentParse("f 1//1 2//-0 3//3");
+  }
+  
   @Test
   public void testErrorTooManyCompnentELements() {
     testInvalidFaceComponentParse("f 12/23/43/21 21/23/43 23/34/43");
@@ -0,0 +1,123 @@
+package com.et.util.mesh.fileparser.obj.lineparsers;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FastFloatParser}. Every case is checked bit for bit against
+ * {@link Float#parseFloat}.
+ */
+public class FastFloatParserTest {
+  
+  private static final int NUM_RANDOM_CASES = 200000;
+  
+  private final Random random = new Random(0x5EEDL);
+  
+  @Test
+  public void testSimpleValues() {
+    testMatchesJdk("0", "-0", "0.0", "-0.0", "1", "-1", "+1", "1.", ".5", "-.5", "0.1", "0.125",
+        "3.14159", "-12.345678", "100000", "1e3", "1E3", "1e+3", "1.5e-3", "-2.5E-10",
+        "000123.4500", "0.000001", "16777217", "9007199254740993");
+  }
+  
+  @Test
+  public void testFallbackForms() {
+    testMatchesJdk("NaN", "Infinity", "-Infinity", "0x1.8p1", "1.5f", "2d", "1e39", "-1e39",
+        "1e-46", "1.4e-45", "3.4028235e38", "1.17549435e-38", "0.1234567890123456789012",
+        "123456789012345678901234567890", "1e-30", "7e25");
+  }
+  
+  @Test
+  public void testHalfwayCases() {
+    // 2^24 + 1 and 2^25 + 2 lie exactly between two floats
+    testMatchesJdk("16777217", "33554434", "16777217.0", "1.6777217e7", "0.16777217e8");
+  }
+  
+  @Test
+  public void testParsesWithinLargerSequence() {
+    String line = "v 1.25 -3.5e2 7";
+    assertEquals(-350f, FastFloatParser.parseFloat(line, 7, 13), 0f);
+    assertEquals(1.25f, FastFloatParser.parseFloat(line, 2, 6), 0f);
+  }
+  
+  @Test
+  public void testInvalidValues() {
+    testInvalid("", "-", "+", ".", "-.", "e5", "1e", "1e+", "1.2.3", "abc", "1,5", "--1");
+  }
+  
+  @Test
+  public void testRandomExporterStyleValues() {
+    for (int i = 0; i < NUM_RANDOM_CASES; i++) {
+      float value = (random.nextFloat() - 0.5f) * (float) Math.pow(10, random.nextInt(9) - 4);
+      testMatchesJdk(String.format(Locale.US, "%." + random.nextInt(10) + "f", value));
+    }
+  }
+  
+  @Test
+  public void testRandomScientificValues() {
+    for (int i = 0; i < NUM_RANDOM_CASES; i++) {
+      double value = random.nextDouble() * Math.pow(10, random.nextInt(80) - 40);
+      testMatchesJdk(String.format(Locale.US, "%." + random.nextInt(12) + "e", value));
+    }
+  }
+  
+  @Test
+  public void testRandomShortestRepresentations() {
+    for (int i = 0; i < NUM_RANDOM_CASES; i++) {
+      float value = Float.intBitsToFloat(random.nextInt());
+      testMatchesJdk(Float.toString(value));
+    }
+  }
+  
+  @Test
+  public void testRandomDigitStrings() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < NUM_RANDOM_CASES; i++) {
+      builder.setLength(0);
+      if (random.nextBoolean()) {
+        builder.append('-');
+      }
+      int integerDigits = random.nextInt(12);
+      int fractionDigits = random.nextInt(12);
+      appendDigits(builder, integerDigits);
+      if (fractionDigits > 0 || integerDigits == 0) {
+        builder.append('.');
+        appendDigits(builder, Math.max(fractionDigits, 1));
+      }
+      if (random.nextInt(4) == 0) {
+        builder.append('e').append(random.nextInt(60) - 30);
+      }
+      testMatchesJdk(builder.toString());
+    }
+  }
+  
+  private void appendDigits(StringBuilder builder, int count) {
+    for (int i = 0; i < count; i++) {
+      builder.append((char) ('0' + random.nextInt(10)));
+    }
+  }
+  
+  private void testMatchesJdk(String... values) {
+    for (String value : values) {
+      float expected = Float.parseFloat(value);
+      float parsed = FastFloatParser.parseFloat(value, 0, value.length());
+      assertEquals("For value: " + value, Float.floatToRawIntBits(expected),
+          Float.floatToRawIntBits(parsed));
+    }
+  }
+  
+  private void testInvalid(String... values) {
+    for (String value : values) {
+      try {
+        FastFloatParser.parseFloat(value, 0, value.length());
+        fail("Should not be able to parse: " + value);
+      } catch (NumberFormatException e) {
+        // Expected
+      }
+    }
+  }
+}
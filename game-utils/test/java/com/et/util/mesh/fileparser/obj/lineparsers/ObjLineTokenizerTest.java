@@ -0,0 +1,99 @@
+package com.et.util.mesh.fileparser.obj.lineparsers;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ObjLineTokenizer}.
+ */
+public class ObjLineTokenizerTest {
+  
+  ObjLineTokenizer tokenizer = new ObjLineTokenizer();
+  
+  @Test
+  public void testClassifiesDirectives() {
+    testDirective("v 1 2 3", ObjDirective.VERTEX);
+    testDirective("vt 1 2", ObjDirective.TEXTURE_COORD);
+    testDirective("vn 1 2 3", ObjDirective.NORMAL);
+    testDirective("f 1 2 3", ObjDirective.FACE);
+    testDirective("o name", ObjDirective.OBJECT);
+    testDirective("# a comment", ObjDirective.COMMENT);
+    testDirective("#comment", ObjDirective.COMMENT);
+    testDirective("", ObjDirective.BLANK);
+    testDirective("   \t ", ObjDirective.BLANK);
+    testDirective("g body arm", ObjDirective.GROUP);
+    testDirective("s 1", ObjDirective.SMOOTHING_GROUP);
+    testDirective("usemtl wood", ObjDirective.USE_MATERIAL);
+    testDirective("mtllib scene.mtl", ObjDirective.MATERIAL_LIBRARY);
+    testDirective("l 1 2 3", ObjDirective.LINE);
+    testDirective("vp 1 2", ObjDirective.UNKNOWN);
+    testDirective("usemtx wood", ObjDirective.UNKNOWN);
+    testDirective("vertex 1 2 3", ObjDirective.UNKNOWN);
+  }
+  
+  @Test
+  public void testSkipsLeadingAndMixedWhitespace() {
+    tokenizer.reset("  \tv\t1.5  -2 \t3e2\r");
+    assertEquals(ObjDirective.VERTEX, tokenizer.nextDirective());
+    assertEquals(1.5f, tokenizer.nextFloat(), 0f);
+    assertEquals(-2f, tokenizer.nextFloat(), 0f);
+    assertEquals(300f, tokenizer.nextFloat(), 0f);
+    assertFalse(tokenizer.hasMoreTokens());
+    assertFalse(tokenizer.nextToken());
+  }
+  
+  @Test
+  public void testTokenOffsets() {
+    String line = "f 1/2/3 22//4";
+    tokenizer.reset(line);
+    tokenizer.nextDirective();
+    assertTrue(tokenizer.nextToken());
+    assertEquals("1/2/3", line.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
+    assertTrue(tokenizer.nextToken());
+    assertEquals("22//4", line.substring(tokenizer.getTokenStart(), tokenizer.getTokenEnd()));
+  }
+  
+  @Test
+  public void testRemainderIsTrimmed() {
+    tokenizer.reset("o   My Object  ");
+    tokenizer.nextDirective();
+    assertEquals("My Object", tokenizer.remainder());
+    assertFalse(tokenizer.hasMoreTokens());
+  }
+  
+  @Test
+  public void testCountRemainingTokensKeepsPosition() {
+    tokenizer.reset("v 1 2 3 4");
+    tokenizer.nextDirective();
+    tokenizer.nextFloat();
+    assertEquals(3, tokenizer.countRemainingTokens());
+    assertEquals(2f, tokenizer.nextFloat(), 0f);
+  }
+  
+  @Test(expected = NumberFormatException.class)
+  public void testNextFloatAtEndOfLine() {
+    tokenizer.reset("vn");
+    tokenizer.nextDirective();
+    tokenizer.nextFloat();
+  }
+  
+  @Test(expected = NumberFormatException.class)
+  public void testNextFloatOnGarbage() {
+    tokenizer.reset("v abc");
+    tokenizer.nextDirective();
+    tokenizer.nextFloat();
+  }
+  
+  @Test
+  public void testResetReusesTokenizer() {
+    tokenizer.reset("v 1 2 3");
+    tokenizer.nextDirective();
+    tokenizer.reset("f 1 2 3");
+    assertEquals(ObjDirective.FACE, tokenizer.nextDirective());
+  }
+  
+  private void testDirective(String line, ObjDirective expected) {
+    assertEquals("For line: " + line, expected, tokenizer.reset(line).nextDirective());
+  }
+}
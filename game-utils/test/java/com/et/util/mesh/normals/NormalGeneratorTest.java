@@ -0,0 +1,397 @@
+package com.et.util.mesh.normals;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.et.util.mesh.normals.NormalGenerator.Weighting;
+import com.et.util.mesh.optimize.MeshSplitter;
+import com.et.util.mesh.optimize.VertexCacheOptimizer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link NormalGenerator}.
+ */
+public class NormalGeneratorTest {
+
+  private static final float EPSILON = 1e-5f;
+  private static final float DIAGONAL = (float) (1 / Math.sqrt(3));
+
+  // A unit cube's corners, numbered by bits x, y, z, and two triangles per face, wound outwards
+  private static final int[] CUBE_INDICES = {
+      0, 2, 3, 0, 3, 1, // -z
+      4, 5, 7, 4, 7, 6, // +z
+      0, 1, 5, 0, 5, 4, // -y
+      2, 6, 7, 2, 7, 3, // +y
+      0, 4, 6, 0, 6, 2, // -x
+      1, 3, 7, 1, 7, 5, // +x
+  };
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSmoothCube() {
+    MeshData smooth = new NormalGenerator().generate(cube(true, null));
+    // Every corner is smoothed over its three faces, which count alike
+    assertEquals(8 * 3, smooth.getNormals().capacity());
+    assertEquals(cube(true, null).getVertexIndices(), smooth.getVertexIndices());
+    for (int vertex = 0; vertex < 8; vertex++) {
+      for (int axis = 0; axis < 3; axis++) {
+        float sign = (vertex & (1 << axis)) == 0 ? -1f : 1f;
+        assertEquals(sign * DIAGONAL, smooth.getNormals().get(vertex * 3 + axis), EPSILON);
+      }
+    }
+  }
+
+  @Test
+  public void testAngleSplitsCube() {
+    MeshData flat = new NormalGenerator(60f).generate(cube(true, null));
+    assertFlatCube(flat);
+    // The original vertices keep their numbers and the copies come after them
+    assertEquals(24 * 4, flat.getVerticies().capacity());
+    assertEquals(24 * 2, flat.getTextureCoords().capacity());
+    for (int corner = 0; corner < CUBE_INDICES.length; corner++) {
+      int vertex = flat.getVertexIndices().get(corner);
+      for (int component = 0; component < 4; component++) {
+        assertEquals(flat.getVerticies().get(CUBE_INDICES[corner] * 4 + component),
+            flat.getVerticies().get(vertex * 4 + component), 0f);
+      }
+    }
+    assertEquals(cube(true, null).getBounds(), flat.getBounds());
+  }
+
+  @Test
+  public void testFlatSmoothingGroupSplitsCube() {
+    assertFlatCube(new NormalGenerator().generate(cube(true, new int[12])));
+  }
+
+  @Test
+  public void testSmoothingGroups() {
+    // Each face its own group is flat, and all in one group is smooth
+    int[] perFace = new int[12];
+    for (int triangle = 0; triangle < 12; triangle++) {
+      perFace[triangle] = triangle / 2 + 1;
+    }
+    assertFlatCube(new NormalGenerator().generate(cube(true, perFace)));
+
+    int[] oneGroup = new int[12];
+    java.util.Arrays.fill(oneGroup, 3);
+    assertEquals(8 * 3, new NormalGenerator().generate(cube(true, oneGroup)).getNormals()
+        .capacity());
+
+    // The four sides in one group and the top and bottom flat: eight vertices around the sides
+    // and eight more for the flat faces
+    int[] sides = sidesGroups();
+    MeshData mesh = new NormalGenerator().generate(cube(true, sides));
+    assertEquals(16 * 3, mesh.getNormals().capacity());
+    IntBuffer indices = mesh.getVertexIndices();
+    FloatBuffer normals = mesh.getNormals();
+    int side = indices.get(12);
+    assertEquals(0f, normals.get(side * 3 + 2), EPSILON);
+    assertEquals(1f, Math.abs(normals.get(side * 3)) * (float) Math.sqrt(2), EPSILON);
+    assertEquals(mesh.getSmoothingGroups(), IntBuffer.wrap(sides));
+  }
+
+  @Test
+  public void testSmoothingGroupsSurviveOptimizing() {
+    MeshData mesh = cube(true, sidesGroups());
+    MeshData optimized = new VertexCacheOptimizer().optimize(mesh).getMeshData();
+    assertEquals(getCorners(new NormalGenerator().generate(mesh)),
+        getCorners(new NormalGenerator().generate(optimized)));
+  }
+
+  @Test
+  public void testSmoothingGroupsSurviveSplitting() {
+    // Two cubes side by side, each a part of its own, the second with a group per face
+    float[] vertices = new float[16 * 4];
+    int[] indices = new int[CUBE_INDICES.length * 2];
+    int[] groups = new int[24];
+    for (int vertex = 0; vertex < 8; vertex++) {
+      setCorner(vertices, vertex);
+      setCorner(vertices, vertex + 8);
+      vertices[(vertex + 8) * 4] += 2f;
+    }
+    for (int corner = 0; corner < CUBE_INDICES.length; corner++) {
+      indices[corner] = CUBE_INDICES[corner];
+      indices[corner + CUBE_INDICES.length] = CUBE_INDICES[corner] + 8;
+    }
+    System.arraycopy(sidesGroups(), 0, groups, 0, 12);
+    for (int triangle = 12; triangle < 24; triangle++) {
+      groups[triangle] = triangle / 2;
+    }
+    MeshData mesh = new MeshData.Builder()
+        .setName("cubes")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .setSmoothingGroups(IntBuffer.wrap(groups))
+        .build();
+
+    List<MeshData> parts = new MeshSplitter(8).split(mesh);
+    assertEquals(2, parts.size());
+    List<String> partCorners = Lists.newArrayList();
+    for (MeshData part : parts) {
+      partCorners.addAll(getCorners(new NormalGenerator().generate(part)));
+    }
+    Collections.sort(partCorners);
+    assertEquals(getCorners(new NormalGenerator().generate(mesh)), partCorners);
+    assertEquals(IntBuffer.wrap(sidesGroups()), parts.get(0).getSmoothingGroups());
+  }
+
+  @Test
+  public void testSeparateIndices() {
+    MeshData cube = cube(false, null);
+    MeshData smooth = new NormalGenerator().generate(cube);
+    assertFalse(smooth.hasUnifiedIndices());
+    assertSame(cube.getVerticies(), smooth.getVerticies());
+    assertSame(cube.getVertexIndices(), smooth.getVertexIndices());
+    assertEquals(8 * 3, smooth.getNormals().capacity());
+    assertEquals(CUBE_INDICES.length, smooth.getNormalIndices().capacity());
+
+    // Equal normals are shared between the corners of one position, not across positions
+    MeshData flat = new NormalGenerator(45f).generate(cube);
+    assertEquals(8 * 3 * 3, flat.getNormals().capacity());
+    for (int corner = 0; corner < CUBE_INDICES.length; corner++) {
+      int normal = flat.getNormalIndices().get(corner);
+      float length = 0f;
+      for (int axis = 0; axis < 3; axis++) {
+        length += Math.abs(flat.getNormals().get(normal * 3 + axis));
+      }
+      assertEquals(1f, length, EPSILON);
+    }
+  }
+
+  @Test
+  public void testSmoothsAcrossSeams() {
+    // Two triangles folded along the y axis whose shared edge has its vertices twice over, as a
+    // texture seam leaves them
+    float[] vertices = {
+        0, 0, 0, 1, 0, 1, 0, 1, -1, 0, -1, 1,
+        0, 0, 0, 1, 0, 1, 0, 1, 1, 0, -1, 1};
+    MeshData mesh = new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setTextureCoords(FloatBuffer.wrap(new float[] {0, 0, 0, 1, 1, 0, 1, 0, 1, 1, 0, 0}))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, 2, 3, 5, 4}))
+        .setUnifiedIndices(true)
+        .build();
+    MeshData smooth = new NormalGenerator().generate(mesh);
+    assertEquals(6 * 3, smooth.getNormals().capacity());
+    for (int axis = 0; axis < 3; axis++) {
+      assertEquals(smooth.getNormals().get(axis), smooth.getNormals().get(3 * 3 + axis), 0f);
+    }
+    assertEquals(0f, smooth.getNormals().get(0), EPSILON);
+    assertEquals(1f, smooth.getNormals().get(2), EPSILON);
+  }
+
+  @Test
+  public void testAngleWeightingIgnoresSplits() {
+    // The cube with its +x face split into four triangles around its centre, which adds no
+    // angle at the face's corners but does take area from them
+    float[] vertices = new float[9 * 4];
+    for (int vertex = 0; vertex < 8; vertex++) {
+      setCorner(vertices, vertex);
+    }
+    vertices[8 * 4] = 1f;
+    vertices[8 * 4 + 1] = 0.5f;
+    vertices[8 * 4 + 2] = 0.5f;
+    vertices[8 * 4 + 3] = 1f;
+    int[] indices = new int[CUBE_INDICES.length + 6];
+    System.arraycopy(CUBE_INDICES, 0, indices, 0, 30);
+    int[] fan = {1, 3, 8, 3, 7, 8, 7, 5, 8, 5, 1, 8};
+    System.arraycopy(fan, 0, indices, 30, fan.length);
+    MeshData split = new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .build();
+
+    MeshData byAngle = new NormalGenerator(180f, Weighting.ANGLE, null).generate(split);
+    assertEquals(DIAGONAL, byAngle.getNormals().get(7 * 3), EPSILON);
+    MeshData byArea = new NormalGenerator(180f, Weighting.AREA, null).generate(split);
+    assertTrue(byArea.getNormals().get(7 * 3) < DIAGONAL - 0.01f);
+  }
+
+  @Test
+  public void testParallelMatchesSequential() {
+    MeshData sphere = sphere(40);
+    MeshData sequential = new NormalGenerator(50f).generate(sphere);
+    MeshData parallel = new NormalGenerator(50f, Weighting.AREA_AND_ANGLE, executor, 100)
+        .generate(sphere);
+    assertEquals(sequential, parallel);
+    // Smooth everywhere but the seam and poles, where the rows of triangles meet at a point
+    FloatBuffer normals = sequential.getNormals();
+    FloatBuffer positions = sequential.getVerticies();
+    for (int vertex = 0; vertex < normals.capacity() / 3; vertex++) {
+      float dot = 0f;
+      for (int axis = 0; axis < 3; axis++) {
+        dot += normals.get(vertex * 3 + axis) * positions.get(vertex * 4 + axis);
+      }
+      assertEquals(1f, dot, 0.01f);
+    }
+  }
+
+  @Test
+  public void testAddMissingNormals() {
+    MeshObject object = new MeshObject();
+    MeshData withNormals = new NormalGenerator().generate(cube(true, null));
+    MeshData withoutNormals = new MeshData.Builder()
+        .setName("bare")
+        .setVertices(cube(true, null).getVerticies())
+        .setNormals(FloatBuffer.wrap(new float[0]))
+        .setVertexIndices(IntBuffer.wrap(CUBE_INDICES))
+        .setUnifiedIndices(true)
+        .build();
+    object.addMesh(withNormals);
+    object.addMesh(withoutNormals);
+    new NormalGenerator().addMissingNormals(object);
+    assertSame(withNormals, object.getMesh("cube"));
+    assertEquals(8 * 3, object.getMesh("bare").getNormals().capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongSmoothingGroupCount() {
+    new NormalGenerator().generate(cube(true, new int[11]));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadAngle() {
+    new NormalGenerator(190f);
+  }
+
+  private static void assertFlatCube(MeshData flat) {
+    IntBuffer indices = flat.getVertexIndices();
+    FloatBuffer normals = flat.getNormals();
+    for (int triangle = 0; triangle < 12; triangle++) {
+      int face = triangle / 2;
+      int axis = new int[] {2, 2, 1, 1, 0, 0}[face];
+      float sign = face % 2 == 0 ? -1f : 1f;
+      for (int corner = 0; corner < 3; corner++) {
+        int vertex = indices.get(triangle * 3 + corner);
+        for (int component = 0; component < 3; component++) {
+          assertEquals(component == axis ? sign : 0f, normals.get(vertex * 3 + component),
+              EPSILON);
+        }
+      }
+    }
+  }
+
+  /**
+   * The four sides of the cube in one group and the top and bottom flat.
+   */
+  private static int[] sidesGroups() {
+    int[] sides = new int[12];
+    for (int triangle = 4; triangle < 12; triangle++) {
+      sides[triangle] = 1;
+    }
+    return sides;
+  }
+
+  /**
+   * Returns the position and normal at each triangle corner of a mesh, sorted so meshes with the
+   * triangles in another order compare equal.
+   */
+  private static List<String> getCorners(MeshData mesh) {
+    IntBuffer indices = mesh.getVertexIndices();
+    List<String> corners = Lists.newArrayList();
+    for (int corner = 0; corner < indices.capacity(); corner++) {
+      int vertex = indices.get(corner);
+      StringBuilder builder = new StringBuilder();
+      for (int component = 0; component < 3; component++) {
+        builder.append(mesh.getVerticies().get(vertex * 4 + component)).append(' ');
+      }
+      for (int component = 0; component < 3; component++) {
+        float normal = mesh.getNormals().get(vertex * 3 + component);
+        builder.append(Math.round(normal * 1000)).append(' ');
+      }
+      corners.add(builder.toString());
+    }
+    Collections.sort(corners);
+    return ImmutableList.copyOf(corners);
+  }
+
+  private static void setCorner(float[] vertices, int vertex) {
+    vertices[vertex * 4] = vertex & 1;
+    vertices[vertex * 4 + 1] = (vertex >> 1) & 1;
+    vertices[vertex * 4 + 2] = (vertex >> 2) & 1;
+    vertices[vertex * 4 + 3] = 1f;
+  }
+
+  private static MeshData cube(boolean unified, int[] smoothingGroups) {
+    float[] vertices = new float[8 * 4];
+    float[] textureCoords = new float[8 * 2];
+    for (int vertex = 0; vertex < 8; vertex++) {
+      setCorner(vertices, vertex);
+      textureCoords[vertex * 2] = vertex / 8f;
+    }
+    return new MeshData.Builder()
+        .setName("cube")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setTextureCoords(FloatBuffer.wrap(textureCoords))
+        .setVertexIndices(IntBuffer.wrap(CUBE_INDICES))
+        .setUnifiedIndices(unified)
+        .setSmoothingGroups(smoothingGroups == null ? null : IntBuffer.wrap(smoothingGroups))
+        .build();
+  }
+
+  /**
+   * A unit latitude and longitude sphere with rows + 1 rings of 2 * rows + 1 vertices, the last
+   * of each ring repeating the first as a texture seam does.
+   */
+  private static MeshData sphere(int rows) {
+    int columns = rows * 2;
+    float[] vertices = new float[(rows + 1) * (columns + 1) * 4];
+    for (int ring = 0; ring <= rows; ring++) {
+      double latitude = Math.PI * ring / rows;
+      for (int column = 0; column <= columns; column++) {
+        double longitude = 2 * Math.PI * (column % columns) / columns;
+        int vertex = ring * (columns + 1) + column;
+        vertices[vertex * 4] = (float) (Math.sin(latitude) * Math.cos(longitude));
+        vertices[vertex * 4 + 1] = (float) Math.cos(latitude);
+        vertices[vertex * 4 + 2] = (float) (Math.sin(latitude) * Math.sin(longitude));
+        vertices[vertex * 4 + 3] = 1f;
+      }
+    }
+    int[] indices = new int[rows * columns * 6];
+    int next = 0;
+    for (int ring = 0; ring < rows; ring++) {
+      for (int column = 0; column < columns; column++) {
+        int corner = ring * (columns + 1) + column;
+        int below = corner + columns + 1;
+        indices[next++] = corner;
+        indices[next++] = corner + 1;
+        indices[next++] = below + 1;
+        indices[next++] = corner;
+        indices[next++] = below + 1;
+        indices[next++] = below;
+      }
+    }
+    return new MeshData.Builder()
+        .setName("sphere")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .build();
+  }
+}
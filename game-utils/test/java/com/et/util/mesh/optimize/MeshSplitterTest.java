@@ -0,0 +1,170 @@
+package com.et.util.mesh.optimize;
+
+import static org.junit.Assert.*;
+
+import java.nio.Buffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link MeshSplitter} and the short index output of {@link MeshData}.
+ */
+public class MeshSplitterTest {
+  
+  @Test
+  public void testSmallMeshIsKept() {
+    MeshData mesh = strip(4, null);
+    assertSame(mesh, new MeshSplitter().split(mesh).get(0));
+  }
+  
+  @Test
+  public void testPartsStayUnderLimit() {
+    // 30 triangles over 32 vertices
+    MeshData mesh = strip(32, null);
+    List<MeshData> parts = new MeshSplitter(8).split(mesh);
+    
+    int triangles = 0;
+    for (MeshData part : parts) {
+      assertTrue(part.getVerticies().capacity() / 4 <= 8);
+      assertTrue(part.hasUnifiedIndices());
+      triangles += part.getVertexIndices().capacity() / 3;
+    }
+    assertEquals(30, triangles);
+    // Each part after the first repeats the two vertices of the edge it continues from
+    assertEquals(5, parts.size());
+    assertEquals("strip#0", parts.get(0).getName());
+    assertEquals("strip#4", parts.get(4).getName());
+  }
+  
+  @Test
+  public void testPartsDrawTheSameTriangles() {
+    MeshData mesh = strip(20, null);
+    List<String> expected = positions(mesh);
+    List<String> actual = Lists.newArrayList();
+    for (MeshData part : new MeshSplitter(5).split(mesh)) {
+      actual.addAll(positions(part));
+    }
+    assertEquals(expected, actual);
+  }
+  
+  @Test
+  public void testMaterialRangesAreCarriedOver() {
+    // Triangles 0-5 are "a" and 6-9 are "b", parts hold up to 4 triangles
+    MeshData mesh = strip(12, Lists.newArrayList(new MaterialRange("a", 0, 18),
+        new MaterialRange("b", 18, 12)));
+    List<MeshData> parts = new MeshSplitter(6).split(mesh);
+    
+    assertEquals(3, parts.size());
+    assertEquals(Lists.newArrayList(new MaterialRange("a", 0, 12)),
+        parts.get(0).getMaterialRanges());
+    assertEquals(Lists.newArrayList(new MaterialRange("a", 0, 6), new MaterialRange("b", 6, 6)),
+        parts.get(1).getMaterialRanges());
+    assertEquals(Lists.newArrayList(new MaterialRange("b", 0, 6)),
+        parts.get(2).getMaterialRanges());
+  }
+  
+  @Test
+  public void testShortIndicesForSmallMeshes() {
+    MeshData mesh = strip(4, null);
+    assertTrue(mesh.hasShortIndices());
+    assertEquals(MeshData.GL_UNSIGNED_SHORT, mesh.getIndexType());
+    
+    Buffer indices = mesh.getIndicesForAndroid();
+    assertTrue(indices instanceof ShortBuffer);
+    ShortBuffer shorts = (ShortBuffer) indices;
+    assertEquals(ByteOrder.nativeOrder(), shorts.order());
+    assertTrue(shorts.isDirect());
+    assertEquals(ShortBuffer.wrap(new short[] {0, 1, 2, 2, 1, 3}), shorts);
+  }
+  
+  @Test
+  public void testIntIndicesForLargeMeshes() {
+    int vertices = MeshData.MAX_SHORT_INDEXED_VERTICES + 1;
+    MeshData mesh = new MeshData.Builder()
+        .setVertices(FloatBuffer.allocate(vertices * 4))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, vertices - 2, vertices - 1}))
+        .setUnifiedIndices(true)
+        .build();
+    assertFalse(mesh.hasShortIndices());
+    assertEquals(MeshData.GL_UNSIGNED_INT, mesh.getIndexType());
+    assertTrue(mesh.getIndicesForAndroid() instanceof IntBuffer);
+    
+    List<MeshData> parts = new MeshSplitter().split(mesh);
+    assertEquals(1, parts.size());
+    assertTrue(parts.get(0).hasShortIndices());
+    assertEquals(ShortBuffer.wrap(new short[] {0, 1, 2}),
+        parts.get(0).getVertIndicesAsShortsForAndroid());
+  }
+  
+  @Test
+  public void testUnsignedShortRange() {
+    int vertices = MeshData.MAX_SHORT_INDEXED_VERTICES;
+    MeshData mesh = new MeshData.Builder()
+        .setVertices(FloatBuffer.allocate(vertices * 4))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, vertices - 1}))
+        .setUnifiedIndices(true)
+        .build();
+    assertEquals(vertices - 1, mesh.getVertIndicesAsShortsForAndroid().get(2) & 0xFFFF);
+  }
+  
+  @Test(expected = IllegalStateException.class)
+  public void testShortIndicesRejectLargeMeshes() {
+    new MeshData.Builder()
+        .setVertices(FloatBuffer.allocate((MeshData.MAX_SHORT_INDEXED_VERTICES + 1) * 4))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, 2}))
+        .build()
+        .getVertIndicesAsShortsForAndroid();
+  }
+  
+  /**
+   * A strip of vertexCount vertices at x = 0, 1, 2, ... alternating between y = 0 and y = 1,
+   * making vertexCount - 2 triangles.
+   */
+  private MeshData strip(int vertexCount, List<MaterialRange> ranges) {
+    float[] vertices = new float[vertexCount * 4];
+    float[] textureCoords = new float[vertexCount * 2];
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      vertices[vertex * 4] = vertex;
+      vertices[vertex * 4 + 1] = vertex % 2;
+      vertices[vertex * 4 + 3] = 1;
+      textureCoords[vertex * 2] = vertex;
+    }
+    int[] indices = new int[(vertexCount - 2) * 3];
+    for (int triangle = 0; triangle < vertexCount - 2; triangle++) {
+      boolean even = triangle % 2 == 0;
+      indices[triangle * 3] = triangle + (even ? 0 : 1);
+      indices[triangle * 3 + 1] = triangle + (even ? 1 : 0);
+      indices[triangle * 3 + 2] = triangle + 2;
+    }
+    return new MeshData.Builder()
+        .setName("strip")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setTextureCoords(FloatBuffer.wrap(textureCoords))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .setMaterialRanges(ranges)
+        .build();
+  }
+  
+  private List<String> positions(MeshData mesh) {
+    List<String> positions = Lists.newArrayList();
+    IntBuffer indices = mesh.getVertexIndices();
+    for (int index = 0; index < indices.capacity(); index++) {
+      int vertex = indices.get(index);
+      assertEquals(mesh.getVerticies().get(vertex * 4), mesh.getTextureCoords().get(vertex * 2),
+          0f);
+      positions.add(mesh.getVerticies().get(vertex * 4) + "," + mesh.getVerticies().get(
+          vertex * 4 + 1));
+    }
+    return positions;
+  }
+}
@@ -0,0 +1,183 @@
+package com.et.util.mesh.optimize;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link VertexCacheOptimizer} and {@link VertexCacheSimulator}.
+ */
+public class VertexCacheOptimizerTest {
+  
+  private static final int GRID_SIZE = 24;
+  
+  private VertexCacheOptimizer optimizer;
+  
+  @Before
+  public void setUp() {
+    optimizer = new VertexCacheOptimizer();
+  }
+  
+  @Test
+  public void testSimulatorCountsFifoMisses() {
+    VertexCacheSimulator simulator = new VertexCacheSimulator(3);
+    // 0 1 2 miss, 2 1 hit, 3 misses and evicts 0, so 0 misses again
+    VertexCacheStats stats = simulator.simulate(IntBuffer.wrap(new int[] {0, 1, 2, 2, 1, 3, 0, 1,
+        3}), 4);
+    assertEquals(3, stats.getTriangleCount());
+    assertEquals(4, stats.getVertexCount());
+    assertEquals(6, stats.getMissCount());
+    assertEquals(2f, stats.getAcmr(), 0f);
+    assertEquals(1.5f, stats.getAtvr(), 0f);
+  }
+  
+  @Test
+  public void testSimulatorHitsDoNotRefreshEntries() {
+    // In a FIFO cache 0 is evicted by 3 even though it was just used
+    VertexCacheStats stats = new VertexCacheSimulator(3).simulate(
+        IntBuffer.wrap(new int[] {0, 1, 2, 0, 3, 0}), 4);
+    assertEquals(5, stats.getMissCount());
+  }
+  
+  @Test
+  public void testImprovesShuffledGrid() {
+    MeshData grid = shuffledGrid(null);
+    OptimizedMesh optimized = optimizer.optimize(grid);
+    
+    assertEquals(new VertexCacheSimulator(VertexCacheOptimizer.DEFAULT_CACHE_SIZE).simulate(
+        grid.getVertexIndices(), (GRID_SIZE + 1) * (GRID_SIZE + 1)),
+        optimized.getStatsBefore());
+    assertTrue(optimized.getStatsBefore().getAcmr() > 2f);
+    assertTrue("ACMR " + optimized.getStatsAfter().getAcmr(),
+        optimized.getStatsAfter().getAcmr() < 0.8f);
+    assertTrue(optimized.getStatsAfter().getAtvr() < 1.4f);
+    assertSameTriangles(grid, optimized.getMeshData(), 0, grid.getVertexIndices().capacity());
+  }
+  
+  @Test
+  public void testVerticesAreInOrderOfFirstUse() {
+    MeshData optimized = optimizer.optimize(shuffledGrid(null)).getMeshData();
+    IntBuffer indices = optimized.getVertexIndices();
+    int nextNew = 0;
+    for (int position = 0; position < indices.capacity(); position++) {
+      assertTrue(indices.get(position) <= nextNew);
+      if (indices.get(position) == nextNew) {
+        nextNew++;
+      }
+    }
+  }
+  
+  @Test
+  public void testTrianglesStayInTheirMaterialRanges() {
+    int half = GRID_SIZE * GRID_SIZE * 3;
+    List<MaterialRange> ranges = Lists.newArrayList(new MaterialRange("a", 0, half),
+        new MaterialRange("b", half, half));
+    MeshData grid = shuffledGrid(ranges);
+    MeshData optimized = optimizer.optimize(grid).getMeshData();
+    
+    assertEquals(ranges, optimized.getMaterialRanges());
+    assertSameTriangles(grid, optimized, 0, half);
+    assertSameTriangles(grid, optimized, half, half);
+  }
+  
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsSeparateIndices() {
+    optimizer.optimize(new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(new float[4]))
+        .setVertexIndices(IntBuffer.wrap(new int[0]))
+        .build());
+  }
+  
+  /**
+   * A grid of two triangles per cell with the triangles in random order. Each vertex carries its
+   * grid position in every stream so remapping can be checked through any of them.
+   */
+  private MeshData shuffledGrid(List<MaterialRange> ranges) {
+    int side = GRID_SIZE + 1;
+    float[] vertices = new float[side * side * 4];
+    float[] normals = new float[side * side * 3];
+    float[] textureCoords = new float[side * side * 2];
+    for (int y = 0; y < side; y++) {
+      for (int x = 0; x < side; x++) {
+        int vertex = y * side + x;
+        vertices[vertex * 4] = x;
+        vertices[vertex * 4 + 1] = y;
+        vertices[vertex * 4 + 3] = 1;
+        normals[vertex * 3] = x;
+        normals[vertex * 3 + 1] = y;
+        textureCoords[vertex * 2] = x;
+        textureCoords[vertex * 2 + 1] = y;
+      }
+    }
+    
+    List<int[]> triangles = Lists.newArrayList();
+    for (int y = 0; y < GRID_SIZE; y++) {
+      for (int x = 0; x < GRID_SIZE; x++) {
+        int corner = y * side + x;
+        triangles.add(new int[] {corner, corner + 1, corner + side});
+        triangles.add(new int[] {corner + 1, corner + side + 1, corner + side});
+      }
+    }
+    Collections.shuffle(triangles, new Random(42));
+    int[] indices = new int[triangles.size() * 3];
+    for (int triangle = 0; triangle < triangles.size(); triangle++) {
+      System.arraycopy(triangles.get(triangle), 0, indices, triangle * 3, 3);
+    }
+    
+    return new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setNormals(FloatBuffer.wrap(normals))
+        .setTextureCoords(FloatBuffer.wrap(textureCoords))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .setMaterialRanges(ranges)
+        .build();
+  }
+  
+  /**
+   * Checks both meshes draw the same triangles, by grid position and with the same winding, in
+   * indices [first, first + count).
+   */
+  private void assertSameTriangles(MeshData expected, MeshData actual, int first, int count) {
+    assertEquals(triangleKeys(expected, first, count), triangleKeys(actual, first, count));
+  }
+  
+  private List<String> triangleKeys(MeshData mesh, int first, int count) {
+    List<String> keys = Lists.newArrayList();
+    IntBuffer indices = mesh.getVertexIndices();
+    for (int triangle = first; triangle < first + count; triangle += 3) {
+      String[] corners = new String[3];
+      for (int corner = 0; corner < 3; corner++) {
+        int vertex = indices.get(triangle + corner);
+        String position = mesh.getVerticies().get(vertex * 4) + "," 
+            + mesh.getVerticies().get(vertex * 4 + 1);
+        assertEquals(position, mesh.getNormals().get(vertex * 3) + ","
+            + mesh.getNormals().get(vertex * 3 + 1));
+        assertEquals(position, mesh.getTextureCoords().get(vertex * 2) + ","
+            + mesh.getTextureCoords().get(vertex * 2 + 1));
+        corners[corner] = position;
+      }
+      // Rotate so the smallest corner is first, which keeps the winding
+      int start = 0;
+      for (int corner = 1; corner < 3; corner++) {
+        if (corners[corner].compareTo(corners[start]) < 0) {
+          start = corner;
+        }
+      }
+      keys.add(corners[start] + " " + corners[(start + 1) % 3] + " " + corners[(start + 2) % 3]);
+    }
+    Collections.sort(keys);
+    return keys;
+  }
+}
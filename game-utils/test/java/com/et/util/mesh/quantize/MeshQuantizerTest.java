@@ -0,0 +1,229 @@
+package com.et.util.mesh.quantize;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.quantize.MeshQuantizer.NormalEncoding;
+import com.et.util.mesh.quantize.MeshQuantizer.TextureCoordEncoding;
+
+/**
+ * Tests for {@link MeshQuantizer}, checking decoded attributes against the float data.
+ */
+public class MeshQuantizerTest {
+
+  private static final int VERTEX_COUNT = 2000;
+
+  private MeshData mesh;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(19);
+    float[] vertices = new float[VERTEX_COUNT * 4];
+    float[] normals = new float[VERTEX_COUNT * 3];
+    float[] textureCoords = new float[VERTEX_COUNT * 2];
+    for (int vertex = 0; vertex < VERTEX_COUNT; vertex++) {
+      vertices[vertex * 4] = random.nextFloat() * 40f - 10f;
+      vertices[vertex * 4 + 1] = random.nextFloat() * 2f + 100f;
+      vertices[vertex * 4 + 2] = random.nextFloat() * -0.5f;
+      vertices[vertex * 4 + 3] = 1f;
+      normals[vertex * 3] = (float) random.nextGaussian();
+      normals[vertex * 3 + 1] = (float) random.nextGaussian();
+      normals[vertex * 3 + 2] = (float) random.nextGaussian();
+      textureCoords[vertex * 2] = random.nextFloat() * 4f - 1f;
+      textureCoords[vertex * 2 + 1] = random.nextFloat();
+    }
+    int[] indices = new int[VERTEX_COUNT];
+    for (int index = 0; index < indices.length; index++) {
+      indices[index] = index;
+    }
+    mesh = new MeshData.Builder()
+        .setName("cloud")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setNormals(FloatBuffer.wrap(normals))
+        .setTextureCoords(FloatBuffer.wrap(textureCoords))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .build();
+  }
+
+  @Test
+  public void testFormats() {
+    QuantizedMesh quantized = new MeshQuantizer().quantize(mesh);
+    assertEquals(16, quantized.getStride());
+    assertEquals(VERTEX_COUNT * 16, quantized.getSizeInBytes());
+    assertTrue(quantized.getVertexData().isDirect());
+    assertEquals(ByteOrder.nativeOrder(), quantized.getVertexData().order());
+    assertEquals(new VertexAttributeFormat(3, VertexAttributeFormat.GL_SHORT, true, 16, 0),
+        quantized.getPositionFormat());
+    assertEquals(new VertexAttributeFormat(2, VertexAttributeFormat.GL_SHORT, true, 16, 6),
+        quantized.getNormalFormat());
+    assertEquals(new VertexAttributeFormat(2, VertexAttributeFormat.GL_UNSIGNED_SHORT, true, 16,
+        10), quantized.getTextureCoordFormat());
+
+    // Half floats differ only in the type GL is told, as GLES 2 and 3 name them differently
+    QuantizedMesh half = new MeshQuantizer(NormalEncoding.OCTAHEDRAL_SNORM16,
+        TextureCoordEncoding.HALF_FLOAT).quantize(mesh);
+    QuantizedMesh halfOes = new MeshQuantizer(NormalEncoding.OCTAHEDRAL_SNORM16,
+        TextureCoordEncoding.HALF_FLOAT_OES).quantize(mesh);
+    assertEquals(new VertexAttributeFormat(2, VertexAttributeFormat.GL_HALF_FLOAT, false, 16, 10),
+        half.getTextureCoordFormat());
+    assertEquals(new VertexAttributeFormat(2, VertexAttributeFormat.GL_HALF_FLOAT_OES, false, 16,
+        10), halfOes.getTextureCoordFormat());
+    assertEquals(half.getVertexData(), halfOes.getVertexData());
+
+    quantized = new MeshQuantizer(NormalEncoding.OCTAHEDRAL_SNORM8, TextureCoordEncoding.UNORM16)
+        .quantize(mesh);
+    assertEquals(12, quantized.getStride());
+    assertEquals(new VertexAttributeFormat(2, VertexAttributeFormat.GL_BYTE, true, 12, 6),
+        quantized.getNormalFormat());
+    assertEquals(new VertexAttributeFormat(2, VertexAttributeFormat.GL_UNSIGNED_SHORT, true, 12,
+        8), quantized.getTextureCoordFormat());
+  }
+
+  @Test
+  public void testMissingAttributes() {
+    MeshData positionsOnly = new MeshData.Builder()
+        .setVertices(mesh.getVerticies())
+        .setVertexIndices(mesh.getVertexIndices())
+        .setUnifiedIndices(true)
+        .build();
+    QuantizedMesh quantized = new MeshQuantizer().quantize(positionsOnly);
+    assertEquals(8, quantized.getStride());
+    assertNull(quantized.getNormalFormat());
+    assertNull(quantized.getTextureCoordFormat());
+  }
+
+  @Test
+  public void testPositionErrorBound() {
+    QuantizedMesh quantized = new MeshQuantizer().quantize(mesh);
+    float[] scale = quantized.getPositionScale();
+    assertArrayEquals(new float[] {20f, 1f, 0.25f}, scale, 0.05f);
+    float[] decoded = new float[3];
+    for (int vertex = 0; vertex < VERTEX_COUNT; vertex++) {
+      quantized.decodePosition(vertex, decoded);
+      for (int axis = 0; axis < 3; axis++) {
+        // Half a step of the box plus float rounding around the offset
+        float bound = scale[axis] / 32767f / 2f + Math.ulp(100f) * 2f;
+        assertEquals(mesh.getVerticies().get(vertex * 4 + axis), decoded[axis], bound);
+      }
+    }
+  }
+
+  @Test
+  public void testFlatMeshesAreExact() {
+    MeshData flat = new MeshData.Builder()
+        .setVertices(FloatBuffer.wrap(new float[] {1, 2, 3, 1, 4, 2, 3, 1, 1, 5, 3, 1}))
+        .setVertexIndices(IntBuffer.wrap(new int[] {0, 1, 2}))
+        .setUnifiedIndices(true)
+        .build();
+    QuantizedMesh quantized = new MeshQuantizer().quantize(flat);
+    float[] decoded = new float[3];
+    quantized.decodePosition(2, decoded);
+    assertArrayEquals(new float[] {1, 5, 3}, decoded, 0f);
+  }
+
+  @Test
+  public void testNormalErrorBound() {
+    assertNormalError(new MeshQuantizer().quantize(mesh), 0.05);
+    assertNormalError(new MeshQuantizer(NormalEncoding.OCTAHEDRAL_SNORM8,
+        TextureCoordEncoding.HALF_FLOAT).quantize(mesh), 1.0);
+  }
+
+  @Test
+  public void testHalfFloatTextureCoordErrorBound() {
+    QuantizedMesh quantized = new MeshQuantizer(NormalEncoding.OCTAHEDRAL_SNORM16,
+        TextureCoordEncoding.HALF_FLOAT_OES).quantize(mesh);
+    float[] decoded = new float[2];
+    for (int vertex = 0; vertex < VERTEX_COUNT; vertex++) {
+      quantized.decodeTextureCoord(vertex, decoded);
+      for (int axis = 0; axis < 2; axis++) {
+        float expected = mesh.getTextureCoords().get(vertex * 2 + axis);
+        // 11 significant bits, so a relative error of at most 2^-11
+        assertEquals(expected, decoded[axis], Math.abs(expected) / 2048f + 1e-7f);
+      }
+    }
+  }
+
+  @Test
+  public void testUnorm16TextureCoordErrorBound() {
+    QuantizedMesh quantized = new MeshQuantizer().quantize(mesh);
+    float[] scale = quantized.getTextureCoordScale();
+    assertEquals(-1f, quantized.getTextureCoordOffset()[0], 0.01f);
+    float[] decoded = new float[2];
+    for (int vertex = 0; vertex < VERTEX_COUNT; vertex++) {
+      quantized.decodeTextureCoord(vertex, decoded);
+      for (int axis = 0; axis < 2; axis++) {
+        float bound = scale[axis] / 65535f / 2f + Math.ulp(4f);
+        assertEquals(mesh.getTextureCoords().get(vertex * 2 + axis), decoded[axis], bound);
+      }
+    }
+  }
+
+  @Test
+  public void testHalfFloats() {
+    assertEquals(0x3C00, VertexCodecs.encodeHalf(1f));
+    assertEquals((short) 0xC000, VertexCodecs.encodeHalf(-2f));
+    assertEquals(0x7BFF, VertexCodecs.encodeHalf(65504f));
+    assertEquals(0x7C00, VertexCodecs.encodeHalf(65520f));
+    assertEquals(0x7C00, VertexCodecs.encodeHalf(Float.POSITIVE_INFINITY));
+    assertEquals(0x0001, VertexCodecs.encodeHalf(1f / (1 << 24)));
+    assertEquals(0x0000, VertexCodecs.encodeHalf(1f / (1 << 25)));
+    assertEquals(0x0400, VertexCodecs.encodeHalf(1f / (1 << 14)));
+    // 1 + 2^-11 is halfway between two halves and rounds to the even one
+    assertEquals(0x3C00, VertexCodecs.encodeHalf(1f + 1f / 2048));
+    assertEquals(0x3C02, VertexCodecs.encodeHalf(1f + 3f / 2048));
+    assertTrue(Float.isNaN(VertexCodecs.decodeHalf(VertexCodecs.encodeHalf(Float.NaN))));
+
+    // Every finite half survives a round trip
+    for (int bits = 0; bits < 0x10000; bits++) {
+      short half = (short) bits;
+      float value = VertexCodecs.decodeHalf(half);
+      if (!Float.isNaN(value)) {
+        assertEquals(half, VertexCodecs.encodeHalf(value));
+      }
+    }
+  }
+
+  @Test
+  public void testOctahedralAxes() {
+    float[][] axes = {{1, 0, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+    float[] octahedral = new float[2];
+    float[] decoded = new float[3];
+    for (float[] axis : axes) {
+      VertexCodecs.encodeOctahedral(axis[0], axis[1], axis[2], octahedral);
+      VertexCodecs.decodeOctahedral(octahedral[0], octahedral[1], decoded);
+      assertArrayEquals(axis, decoded, 1e-6f);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequiresUnifiedIndices() {
+    new MeshQuantizer().quantize(new MeshData.Builder()
+        .setVertices(mesh.getVerticies())
+        .setVertexIndices(mesh.getVertexIndices())
+        .build());
+  }
+
+  private void assertNormalError(QuantizedMesh quantized, double maxDegrees) {
+    float[] decoded = new float[3];
+    for (int vertex = 0; vertex < VERTEX_COUNT; vertex++) {
+      quantized.decodeNormal(vertex, decoded);
+      float x = mesh.getNormals().get(vertex * 3);
+      float y = mesh.getNormals().get(vertex * 3 + 1);
+      float z = mesh.getNormals().get(vertex * 3 + 2);
+      double length = Math.sqrt(x * x + y * y + z * z);
+      double dot = (x * decoded[0] + y * decoded[1] + z * decoded[2]) / length;
+      double degrees = Math.toDegrees(Math.acos(Math.min(dot, 1.0)));
+      assertTrue("Normal " + vertex + " is off by " + degrees + " degrees.",
+          degrees <= maxDegrees);
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.et.util.mesh.repository;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Tests for {@link MeshRepository}.
+ */
+public class MeshRepositoryTest {
+  
+  // Each test mesh holds 100 vertices of four floats and 100 indices
+  private static final int MESH_BYTES = 100 * 4 * 4 + 100 * 4;
+  
+  @Test
+  public void testSizeInBytesCountsHeapAndDirectStreams() {
+    MeshData mesh = new MeshData.Builder()
+        .setVertices(FloatBuffer.allocate(12))
+        .setNormals(ByteBuffer.allocateDirect(9 * 4).asFloatBuffer())
+        .setVertexIndices(IntBuffer.allocate(6))
+        .build();
+    assertEquals((12 + 9 + 6) * 4, mesh.getSizeInBytes());
+    
+    MeshObject meshObject = new MeshObject();
+    meshObject.addMesh(mesh);
+    meshObject.addMesh(new MeshData.Builder().setName("other")
+        .setVertices(FloatBuffer.allocate(4)).build());
+    assertEquals((12 + 9 + 6 + 4) * 4, meshObject.getSizeInBytes());
+  }
+  
+  @Test
+  public void testHitsAndMisses() {
+    CountingLoader loader = new CountingLoader();
+    MeshRepository repository = new MeshRepository(loader, MESH_BYTES * 10);
+    
+    MeshObject first = repository.get("a");
+    assertSame(first, repository.get("a"));
+    repository.get("b");
+    
+    assertEquals(2, loader.loads.get());
+    assertEquals(1, repository.getHitCount());
+    assertEquals(2, repository.getMissCount());
+    assertEquals(0, repository.getEvictionCount());
+    assertEquals(2 * MESH_BYTES, repository.getSizeInBytes());
+  }
+  
+  @Test
+  public void testEvictsLeastRecentlyUsedOverBudget() {
+    CountingLoader loader = new CountingLoader();
+    MeshRepository repository = new MeshRepository(loader, MESH_BYTES * 2);
+    
+    repository.get("a");
+    repository.get("b");
+    // Touch a so b is the least recently used
+    repository.get("a");
+    repository.get("c");
+    
+    assertEquals(1, repository.getEvictionCount());
+    assertNull(repository.getIfPresent("b"));
+    assertNotNull(repository.getIfPresent("a"));
+    assertNotNull(repository.getIfPresent("c"));
+    assertTrue(repository.getSizeInBytes() <= MESH_BYTES * 2);
+  }
+  
+  @Test
+  public void testMeshOverBudgetIsReturnedButNotKept() {
+    MeshRepository repository = new MeshRepository(new CountingLoader(), MESH_BYTES / 2);
+    assertNotNull(repository.get("a"));
+    assertNull(repository.getIfPresent("a"));
+  }
+  
+  @Test
+  public void testConcurrentRequestsShareOneLoad() throws Exception {
+    final CountDownLatch allRequested = new CountDownLatch(1);
+    final CountingLoader loader = new CountingLoader() {
+      @Override
+      public MeshObject load(String assetPath) throws IOException {
+        try {
+          allRequested.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return super.load(assetPath);
+      }
+    };
+    final MeshRepository repository = new MeshRepository(loader, MESH_BYTES * 10);
+    
+    int numThreads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<MeshObject>> results = Lists.newArrayList();
+    for (int thread = 0; thread < numThreads; thread++) {
+      results.add(executor.submit(new Callable<MeshObject>() {
+        @Override
+        public MeshObject call() {
+          return repository.get("shared");
+        }
+      }));
+    }
+    // Give every thread time to ask before the load completes
+    Thread.sleep(100);
+    allRequested.countDown();
+    
+    MeshObject first = results.get(0).get(10, TimeUnit.SECONDS);
+    for (Future<MeshObject> result : results) {
+      assertSame(first, result.get(10, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+    assertEquals(1, loader.loads.get());
+  }
+  
+  @Test
+  public void testFailedLoadIsRetried() {
+    final AtomicInteger attempts = new AtomicInteger();
+    MeshRepository repository = new MeshRepository(new CountingLoader() {
+      @Override
+      public MeshObject load(String assetPath) throws IOException {
+        if (attempts.incrementAndGet() == 1) {
+          throw new IOException("missing");
+        }
+        return super.load(assetPath);
+      }
+    }, MESH_BYTES * 10);
+    
+    try {
+      repository.get("a");
+      fail();
+    } catch (UncheckedExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertNotNull(repository.get("a"));
+  }
+  
+  @Test
+  public void testReweighAfterGrowing() {
+    MeshRepository repository = new MeshRepository(new CountingLoader(), MESH_BYTES * 3);
+    MeshObject first = repository.get("a");
+    repository.get("b");
+    repository.get("a");
+    
+    MeshData mesh = first.getMesh("a");
+    first.setLods("a", ImmutableList.of(mesh, mesh));
+    repository.reweigh("a");
+    assertEquals(1, repository.getEvictionCount());
+    assertNull(repository.getIfPresent("b"));
+    assertSame(first, repository.getIfPresent("a"));
+    assertEquals(MESH_BYTES * 3, repository.getSizeInBytes());
+    
+    repository.reweigh("missing");
+    assertNull(repository.getIfPresent("missing"));
+  }
+  
+  @Test
+  public void testInvalidate() {
+    CountingLoader loader = new CountingLoader();
+    MeshRepository repository = new MeshRepository(loader, MESH_BYTES * 10);
+    repository.get("a");
+    repository.invalidate("a");
+    assertNull(repository.getIfPresent("a"));
+    repository.get("a");
+    assertEquals(2, loader.loads.get());
+  }
+  
+  private static class CountingLoader implements MeshObjectLoader {
+    final AtomicInteger loads = new AtomicInteger();
+
+    @Override
+    public MeshObject load(String assetPath) throws IOException {
+      loads.incrementAndGet();
+      MeshObject meshObject = new MeshObject();
+      meshObject.addMesh(new MeshData.Builder()
+          .setName(assetPath)
+          .setVertices(FloatBuffer.allocate(100 * 4))
+          .setVertexIndices(IntBuffer.allocate(100))
+          .build());
+      return meshObject;
+    }
+  }
+}
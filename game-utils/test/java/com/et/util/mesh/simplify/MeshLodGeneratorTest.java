@@ -0,0 +1,114 @@
+package com.et.util.mesh.simplify;
+
+import static org.junit.Assert.*;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MeshData;
+import com.et.util.mesh.data.MeshObject;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link MeshLodGenerator} and the levels of detail of {@link MeshObject}.
+ */
+public class MeshLodGeneratorTest {
+
+  private MeshLodGenerator generator;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    generator = new MeshLodGenerator(new MeshSimplifier(), 0.5f, 0.25f, 0.1f);
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testGenerate() {
+    MeshData sphere = MeshSimplifierTest.sphere(3);
+    int triangles = MeshSimplifierTest.triangles(sphere);
+    List<MeshData> levels = generator.generate(sphere);
+
+    assertEquals(3, levels.size());
+    assertEquals("sphere#lod1", levels.get(0).getName());
+    assertEquals("sphere#lod3", levels.get(2).getName());
+    assertTrue(MeshSimplifierTest.triangles(levels.get(0)) <= triangles / 2);
+    assertTrue(MeshSimplifierTest.triangles(levels.get(1)) <= triangles / 4);
+    assertTrue(MeshSimplifierTest.triangles(levels.get(2)) <= Math.round(triangles * 0.1f));
+    assertTrue(levels.get(2).getVerticies().capacity() < levels.get(1).getVerticies().capacity());
+  }
+
+  @Test
+  public void testLevelsKeepSmoothingGroups() {
+    MeshData sphere = MeshSimplifierTest.sphere(3);
+    int[] groups = new int[MeshSimplifierTest.triangles(sphere)];
+    Arrays.fill(groups, 4);
+    List<MeshData> levels = generator.generate(new MeshData.Builder()
+        .setName(sphere.getName())
+        .setVertices(sphere.getVerticies())
+        .setVertexIndices(sphere.getVertexIndices())
+        .setUnifiedIndices(true)
+        .setSmoothingGroups(IntBuffer.wrap(groups))
+        .build());
+
+    for (MeshData level : levels) {
+      int[] levelGroups = new int[MeshSimplifierTest.triangles(level)];
+      Arrays.fill(levelGroups, 4);
+      assertEquals(IntBuffer.wrap(levelGroups), level.getSmoothingGroups());
+    }
+  }
+
+  @Test
+  public void testAddLods() {
+    MeshObject meshObject = new MeshObject();
+    MeshData sphere = MeshSimplifierTest.sphere(3);
+    MeshData grid = MeshSimplifierTest.grid(16, 1f, null);
+    meshObject.addMesh(sphere);
+    meshObject.addMesh(grid);
+    long sizeBefore = meshObject.getSizeInBytes();
+
+    generator.addLods(meshObject, executor);
+
+    assertEquals(generator.generate(sphere), meshObject.getLods("sphere"));
+    assertEquals(generator.generate(grid), meshObject.getLods("grid"));
+    assertSame(sphere, meshObject.getLod("sphere", 0));
+    assertSame(meshObject.getLods("sphere").get(1), meshObject.getLod("sphere", 2));
+    assertSame(meshObject.getLods("sphere").get(2), meshObject.getLod("sphere", 7));
+    assertTrue(meshObject.getSizeInBytes() > sizeBefore);
+  }
+
+  @Test
+  public void testMeshesWithoutLods() {
+    MeshObject meshObject = new MeshObject();
+    MeshData grid = MeshSimplifierTest.grid(2, 0f, null);
+    meshObject.addMesh(grid);
+    assertTrue(meshObject.getLods("grid").isEmpty());
+    assertSame(grid, meshObject.getLod("grid", 2));
+    assertNull(meshObject.getLod("missing", 0));
+    
+    // Clearing levels leaves the object as if it never had any
+    MeshObject withoutLods = new MeshObject();
+    withoutLods.addMesh(grid);
+    meshObject.setLods("grid", generator.generate(grid));
+    meshObject.setLods("grid", ImmutableList.<MeshData>of());
+    assertEquals(withoutLods, meshObject);
+    assertTrue(meshObject.getAllLods().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRatiosMustDecrease() {
+    new MeshLodGenerator(new MeshSimplifier(), 0.5f, 0.5f);
+  }
+}
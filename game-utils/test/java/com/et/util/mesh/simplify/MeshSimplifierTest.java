@@ -0,0 +1,319 @@
+package com.et.util.mesh.simplify;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.et.util.mesh.data.MaterialRange;
+import com.et.util.mesh.data.MeshData;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for {@link MeshSimplifier}.
+ */
+public class MeshSimplifierTest {
+
+  private MeshSimplifier simplifier;
+
+  @Before
+  public void setUp() {
+    simplifier = new MeshSimplifier();
+  }
+
+  @Test
+  public void testFlatGridKeepsItsOutline() {
+    MeshData grid = grid(20, 0f, null);
+    MeshData simplified = simplifier.simplify(grid, 0.05f);
+
+    assertTrue(triangles(simplified) <= Math.round(triangles(grid) * 0.05f));
+    // No holes and no folds, so the simplified grid still covers the whole square once
+    assertEquals(400f, area(simplified), 1e-3f);
+    assertTrue(hasVertex(simplified, 0, 0));
+    assertTrue(hasVertex(simplified, 20, 0));
+    assertTrue(hasVertex(simplified, 0, 20));
+    assertTrue(hasVertex(simplified, 20, 20));
+  }
+
+  @Test
+  public void testSphereKeepsItsShape() {
+    MeshData sphere = sphere(3);
+    MeshData simplified = simplifier.simplify(sphere, 0.2f);
+
+    assertTrue(triangles(simplified) <= Math.round(triangles(sphere) * 0.2f));
+    assertClosedManifold(simplified);
+    FloatBuffer vertices = simplified.getVerticies();
+    IntBuffer indices = simplified.getVertexIndices();
+    for (int triangle = 0; triangle < indices.capacity() / 3; triangle++) {
+      float[] centroid = new float[3];
+      for (int corner = 0; corner < 3; corner++) {
+        for (int axis = 0; axis < 3; axis++) {
+          centroid[axis] += vertices.get(indices.get(triangle * 3 + corner) * 4 + axis) / 3f;
+        }
+      }
+      float radius = (float) Math.sqrt(centroid[0] * centroid[0] + centroid[1] * centroid[1]
+          + centroid[2] * centroid[2]);
+      assertTrue("Triangle " + triangle + " is at " + radius, radius > 0.85f);
+    }
+  }
+
+  @Test
+  public void testCreasesAreKept() {
+    // A grid with a ridge along x = 10 can lose vertices along the ridge, but not the ridge
+    MeshData grid = grid(20, 2f, null);
+    MeshData simplified = simplifier.simplify(grid, 0.1f);
+    assertTrue(hasVertex(simplified, 10, 0));
+    assertTrue(hasVertex(simplified, 10, 20));
+    FloatBuffer vertices = simplified.getVerticies();
+    IntBuffer indices = simplified.getVertexIndices();
+    for (int triangle = 0; triangle < indices.capacity() / 3; triangle++) {
+      float minX = Float.MAX_VALUE;
+      float maxX = -Float.MAX_VALUE;
+      for (int corner = 0; corner < 3; corner++) {
+        float x = vertices.get(indices.get(triangle * 3 + corner) * 4);
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+      }
+      assertTrue("Triangle " + triangle + " crosses the ridge.", maxX <= 10f || minX >= 10f);
+    }
+    assertEquals(400f, area(simplified), 1e-3f);
+  }
+
+  @Test
+  public void testMaterialRangesStayClosed() {
+    List<MaterialRange> ranges = Lists.newArrayList(new MaterialRange("a", 0, 10 * 20 * 6),
+        new MaterialRange("b", 10 * 20 * 6, 10 * 20 * 6));
+    MeshData simplified = simplifier.simplify(grid(20, 0f, ranges), 0.1f);
+
+    List<MaterialRange> simplifiedRanges = simplified.getMaterialRanges();
+    assertEquals(2, simplifiedRanges.size());
+    assertEquals(0, simplifiedRanges.get(0).getFirstIndex());
+    assertEquals(simplifiedRanges.get(0).getIndexCount(), simplifiedRanges.get(1).getFirstIndex());
+    assertEquals(simplified.getVertexIndices().capacity(),
+        simplifiedRanges.get(1).getFirstIndex() + simplifiedRanges.get(1).getIndexCount());
+    // The row between the two materials is kept whole
+    for (int x = 0; x <= 20; x++) {
+      assertTrue(hasVertex(simplified, x, 10));
+    }
+    assertEquals(400f, area(simplified), 1e-3f);
+  }
+
+  @Test
+  public void testSmoothingGroupsFollowTheirTriangles() {
+    // One group per material, so every surviving triangle's group names its range
+    List<MaterialRange> ranges = Lists.newArrayList(new MaterialRange("a", 0, 10 * 20 * 6),
+        new MaterialRange("b", 10 * 20 * 6, 10 * 20 * 6));
+    MeshData grid = grid(20, 0f, ranges);
+    int[] groups = new int[triangles(grid)];
+    for (int triangle = 0; triangle < groups.length; triangle++) {
+      groups[triangle] = triangle < groups.length / 2 ? 1 : 2;
+    }
+    MeshData simplified = simplifier.simplify(new MeshData.Builder()
+        .setVertices(grid.getVerticies())
+        .setVertexIndices(grid.getVertexIndices())
+        .setUnifiedIndices(true)
+        .setMaterialRanges(ranges)
+        .setSmoothingGroups(IntBuffer.wrap(groups))
+        .build(), 0.1f);
+
+    IntBuffer simplifiedGroups = simplified.getSmoothingGroups();
+    assertEquals(triangles(simplified), simplifiedGroups.capacity());
+    int firstOfB = simplified.getMaterialRanges().get(1).getFirstIndex() / 3;
+    for (int triangle = 0; triangle < simplifiedGroups.capacity(); triangle++) {
+      assertEquals(triangle < firstOfB ? 1 : 2, simplifiedGroups.get(triangle));
+    }
+  }
+
+  @Test
+  public void testSmallMeshesAreKept() {
+    MeshData grid = grid(2, 0f, null);
+    assertSame(grid, simplifier.simplify(grid, triangles(grid)));
+  }
+
+  @Test
+  public void testDeterministic() {
+    MeshData sphere = sphere(2);
+    assertEquals(simplifier.simplify(sphere, 0.3f), new MeshSimplifier().simplify(sphere, 0.3f));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequiresUnifiedIndices() {
+    MeshData grid = grid(2, 0f, null);
+    simplifier.simplify(new MeshData.Builder()
+        .setVertices(grid.getVerticies())
+        .setVertexIndices(grid.getVertexIndices())
+        .build(), 0.5f);
+  }
+
+  /**
+   * A size by size grid of unit squares in z = 0, raised to ridgeHeight along x = size / 2.
+   */
+  static MeshData grid(int size, float ridgeHeight, List<MaterialRange> ranges) {
+    int row = size + 1;
+    float[] vertices = new float[row * row * 4];
+    float[] normals = new float[row * row * 3];
+    float[] textureCoords = new float[row * row * 2];
+    for (int y = 0; y <= size; y++) {
+      for (int x = 0; x <= size; x++) {
+        int vertex = y * row + x;
+        vertices[vertex * 4] = x;
+        vertices[vertex * 4 + 1] = y;
+        vertices[vertex * 4 + 2] = x == size / 2 ? ridgeHeight : 0f;
+        vertices[vertex * 4 + 3] = 1f;
+        normals[vertex * 3 + 2] = 1f;
+        textureCoords[vertex * 2] = x / (float) size;
+        textureCoords[vertex * 2 + 1] = y / (float) size;
+      }
+    }
+    int[] indices = new int[size * size * 6];
+    int next = 0;
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        int corner = y * row + x;
+        indices[next++] = corner;
+        indices[next++] = corner + 1;
+        indices[next++] = corner + row + 1;
+        indices[next++] = corner;
+        indices[next++] = corner + row + 1;
+        indices[next++] = corner + row;
+      }
+    }
+    return new MeshData.Builder()
+        .setName("grid")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setNormals(FloatBuffer.wrap(normals))
+        .setTextureCoords(FloatBuffer.wrap(textureCoords))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .setMaterialRanges(ranges)
+        .build();
+  }
+
+  /**
+   * A unit icosphere subdivided the given number of times, with normals pointing out.
+   */
+  static MeshData sphere(int subdivisions) {
+    float t = (float) ((1 + Math.sqrt(5)) / 2);
+    List<float[]> points = Lists.newArrayList();
+    float[][] corners = {{-1, t, 0}, {1, t, 0}, {-1, -t, 0}, {1, -t, 0}, {0, -1, t}, {0, 1, t},
+        {0, -1, -t}, {0, 1, -t}, {t, 0, -1}, {t, 0, 1}, {-t, 0, -1}, {-t, 0, 1}};
+    for (float[] corner : corners) {
+      points.add(unit(corner));
+    }
+    List<int[]> faces = Lists.newArrayList(new int[][] {{0, 11, 5}, {0, 5, 1}, {0, 1, 7},
+        {0, 7, 10}, {0, 10, 11}, {1, 5, 9}, {5, 11, 4}, {11, 10, 2}, {10, 7, 6}, {7, 1, 8},
+        {3, 9, 4}, {3, 4, 2}, {3, 2, 6}, {3, 6, 8}, {3, 8, 9}, {4, 9, 5}, {2, 4, 11},
+        {6, 2, 10}, {8, 6, 7}, {9, 8, 1}});
+    for (int level = 0; level < subdivisions; level++) {
+      Map<Long, Integer> midpoints = Maps.newHashMap();
+      List<int[]> subdivided = Lists.newArrayList();
+      for (int[] face : faces) {
+        int a = midpoint(points, midpoints, face[0], face[1]);
+        int b = midpoint(points, midpoints, face[1], face[2]);
+        int c = midpoint(points, midpoints, face[2], face[0]);
+        subdivided.add(new int[] {face[0], a, c});
+        subdivided.add(new int[] {face[1], b, a});
+        subdivided.add(new int[] {face[2], c, b});
+        subdivided.add(new int[] {a, b, c});
+      }
+      faces = subdivided;
+    }
+
+    float[] vertices = new float[points.size() * 4];
+    float[] normals = new float[points.size() * 3];
+    for (int vertex = 0; vertex < points.size(); vertex++) {
+      float[] point = points.get(vertex);
+      System.arraycopy(point, 0, vertices, vertex * 4, 3);
+      vertices[vertex * 4 + 3] = 1f;
+      System.arraycopy(point, 0, normals, vertex * 3, 3);
+    }
+    int[] indices = new int[faces.size() * 3];
+    for (int face = 0; face < faces.size(); face++) {
+      System.arraycopy(faces.get(face), 0, indices, face * 3, 3);
+    }
+    return new MeshData.Builder()
+        .setName("sphere")
+        .setVertices(FloatBuffer.wrap(vertices))
+        .setNormals(FloatBuffer.wrap(normals))
+        .setVertexIndices(IntBuffer.wrap(indices))
+        .setUnifiedIndices(true)
+        .build();
+  }
+
+  static int triangles(MeshData mesh) {
+    return mesh.getVertexIndices().capacity() / 3;
+  }
+
+  private static int midpoint(List<float[]> points, Map<Long, Integer> midpoints, int a, int b) {
+    long key = (long) Math.min(a, b) << 32 | Math.max(a, b);
+    Integer midpoint = midpoints.get(key);
+    if (midpoint == null) {
+      float[] pa = points.get(a);
+      float[] pb = points.get(b);
+      midpoint = points.size();
+      points.add(unit(new float[] {pa[0] + pb[0], pa[1] + pb[1], pa[2] + pb[2]}));
+      midpoints.put(key, midpoint);
+    }
+    return midpoint;
+  }
+
+  private static float[] unit(float[] vector) {
+    float length = (float) Math.sqrt(vector[0] * vector[0] + vector[1] * vector[1]
+        + vector[2] * vector[2]);
+    return new float[] {vector[0] / length, vector[1] / length, vector[2] / length};
+  }
+
+  /**
+   * Returns the total area of the mesh's triangles projected onto z = 0, counting triangles
+   * facing away negatively.
+   */
+  private static float area(MeshData mesh) {
+    FloatBuffer vertices = mesh.getVerticies();
+    IntBuffer indices = mesh.getVertexIndices();
+    float area = 0f;
+    for (int triangle = 0; triangle < indices.capacity() / 3; triangle++) {
+      int a = indices.get(triangle * 3) * 4;
+      int b = indices.get(triangle * 3 + 1) * 4;
+      int c = indices.get(triangle * 3 + 2) * 4;
+      area += ((vertices.get(b) - vertices.get(a)) * (vertices.get(c + 1) - vertices.get(a + 1))
+          - (vertices.get(c) - vertices.get(a)) * (vertices.get(b + 1) - vertices.get(a + 1)))
+          / 2f;
+    }
+    return area;
+  }
+
+  private static boolean hasVertex(MeshData mesh, float x, float y) {
+    FloatBuffer vertices = mesh.getVerticies();
+    for (int vertex = 0; vertex < vertices.capacity() / 4; vertex++) {
+      if (vertices.get(vertex * 4) == x && vertices.get(vertex * 4 + 1) == y) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void assertClosedManifold(MeshData mesh) {
+    Map<Long, Integer> edges = Maps.newHashMap();
+    IntBuffer indices = mesh.getVertexIndices();
+    for (int triangle = 0; triangle < indices.capacity() / 3; triangle++) {
+      for (int corner = 0; corner < 3; corner++) {
+        // Directed edges, each of which a closed, consistently wound mesh has exactly once
+        long key = (long) indices.get(triangle * 3 + corner) << 32
+            | indices.get(triangle * 3 + (corner + 1) % 3);
+        Integer count = edges.get(key);
+        edges.put(key, count == null ? 1 : count + 1);
+      }
+    }
+    for (Map.Entry<Long, Integer> edge : edges.entrySet()) {
+      assertEquals(Integer.valueOf(1), edge.getValue());
+      long reverse = (edge.getKey() & 0xFFFFFFFFL) << 32 | edge.getKey() >>> 32;
+      assertTrue(edges.containsKey(reverse));
+    }
+  }
+}
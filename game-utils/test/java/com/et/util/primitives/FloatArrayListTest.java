@@ -0,0 +1,50 @@
+package com.et.util.primitives;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link FloatArrayList}.
+ */
+public class FloatArrayListTest {
+
+  @Test
+  public void testGrowsPastCapacity() {
+    FloatArrayList list = new FloatArrayList(0);
+    for (int i = 0; i < 50; i++) {
+      list.add(i * .5f);
+    }
+    list.addAll(new float[] {1f, 2f, 3f}, 0, 3);
+    assertEquals(53, list.size());
+    assertEquals(24.5f, list.get(49), 0f);
+    assertEquals(3f, list.get(52), 0f);
+    list.set(52, -1f);
+    assertEquals(-1f, list.toArray()[52], 0f);
+  }
+
+  @Test
+  public void testToBuffer() {
+    FloatBuffer buffer = FloatArrayList.of(.25f, -8f).toBuffer();
+    assertTrue(buffer.isDirect());
+    assertEquals(ByteOrder.nativeOrder(), buffer.order());
+    assertEquals(0, buffer.position());
+    assertEquals(FloatBuffer.wrap(new float[] {.25f, -8f}), buffer);
+  }
+
+  @Test
+  public void testMatchesBoxedList() {
+    List<Float> boxed = Lists.newArrayList(1.5f, Float.NaN, -0f);
+    FloatArrayList list = FloatArrayList.of(1.5f, Float.NaN, -0f);
+    assertEquals(boxed.hashCode(), list.hashCode());
+    assertEquals(boxed.toString(), list.toString());
+    assertEquals(FloatArrayList.of(1.5f, Float.NaN, -0f), list);
+    assertFalse(FloatArrayList.of(1.5f, Float.NaN, 0f).equals(list));
+  }
+}
@@ -0,0 +1,67 @@
+package com.et.util.primitives;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for {@link IntArrayList}.
+ */
+public class IntArrayListTest {
+
+  @Test
+  public void testGrowsPastCapacity() {
+    IntArrayList list = new IntArrayList(1);
+    for (int i = 0; i < 100; i++) {
+      list.add(i * 3);
+    }
+    list.addAll(new int[] {-1, -2, -3, -4}, 1, 2);
+    assertEquals(102, list.size());
+    assertEquals(297, list.get(99));
+    assertEquals(-3, list.get(101));
+    list.set(0, 7);
+    assertEquals(7, list.toArray()[0]);
+    assertEquals(102, list.toArray().length);
+    list.clear();
+    assertTrue(list.isEmpty());
+  }
+
+  @Test
+  public void testToBuffer() {
+    IntBuffer buffer = IntArrayList.of(4, 5, 6).toBuffer();
+    assertTrue(buffer.isDirect());
+    assertEquals(ByteOrder.nativeOrder(), buffer.order());
+    assertEquals(0, buffer.position());
+    assertEquals(3, buffer.capacity());
+    assertEquals(IntBuffer.wrap(new int[] {4, 5, 6}), buffer);
+    assertEquals(0, new IntArrayList().toBuffer().capacity());
+  }
+
+  @Test
+  public void testMatchesBoxedList() {
+    List<Integer> boxed = Lists.newArrayList(1, -20, 300);
+    IntArrayList list = IntArrayList.copyOf(boxed);
+    assertEquals(IntArrayList.of(1, -20, 300), list);
+    assertFalse(IntArrayList.of(1, -20).equals(list));
+    assertEquals(boxed.hashCode(), list.hashCode());
+    assertEquals(boxed.toString(), list.toString());
+    assertEquals(boxed, list.asList());
+    assertNull(IntArrayList.copyOf(null));
+
+    list.asList().set(1, 9);
+    assertEquals(9, list.get(1));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetPastSize() {
+    IntArrayList list = new IntArrayList(8);
+    list.add(1);
+    list.get(1);
+  }
+}